@@ -10,6 +10,7 @@ import {
 import { useState, useEffect } from 'react';
 import { motion, AnimatePresence } from 'framer-motion';
 import logo from '../assets/logo.png';
+import ImageService from '../services/ImageService';
 
 const NavLink = ({ to, children, onClick }) => {
     const { pathname } = useLocation();
@@ -187,7 +188,7 @@ const Navbar = () => {
                                     <div className="relative h-8 w-8 rounded-full overflow-hidden ring-2 ring-green-400 ring-offset-1 dark:ring-offset-gray-900 bg-gray-100 dark:bg-gray-800">
                                         {user.profilePhoto ? (
                                             <img
-                                                src={user.profilePhoto.startsWith('http') ? user.profilePhoto : `${import.meta.env.VITE_API_BASE_URL}${user.profilePhoto}`}
+                                                src={ImageService.thumb(user.profilePhoto)}
                                                 alt="Profile"
                                                 className="h-full w-full object-cover"
                                                 onError={(e) => {
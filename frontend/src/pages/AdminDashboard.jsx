@@ -12,10 +12,16 @@ import {
     PieChart, Pie, Cell, Legend, BarChart, Bar
 } from 'recharts';
 
+const USER_PAGE_SIZE = 50;
+const JOB_POLL_INTERVAL_MS = 1000;
+const JOB_POLL_ATTEMPTS = 30;
+
 const AdminDashboard = () => {
     const { user } = useAuth();
     const [stats, setStats] = useState({ users: 0, products: 0, orders: 0, revenue: 0 });
     const [users, setUsers] = useState([]);
+    const [nextCursor, setNextCursor] = useState(null);
+    const [loadingMore, setLoadingMore] = useState(false);
     const [loading, setLoading] = useState(true);
     const [refreshTrigger, setRefreshTrigger] = useState(0);
     const [searchTerm, setSearchTerm] = useState('');
@@ -34,11 +40,12 @@ const AdminDashboard = () => {
                 setLoading(true);
                 const [statsRes, usersRes] = await Promise.all([
                     axios.get(`${import.meta.env.VITE_API_BASE_URL}/api/admin/stats`, authConfig),
-                    axios.get(`${import.meta.env.VITE_API_BASE_URL}/api/admin/users`, authConfig)
+                    axios.get(`${import.meta.env.VITE_API_BASE_URL}/api/admin/users`, { ...authConfig, params: { size: USER_PAGE_SIZE } })
                 ]);
 
                 setStats(statsRes.data);
-                setUsers(Array.isArray(usersRes.data) ? usersRes.data : []);
+                setUsers(usersRes.data?.items || []);
+                setNextCursor(usersRes.data?.nextCursor ?? null);
             } catch (error) {
                 console.error("Error fetching admin data:", error);
             } finally {
@@ -51,11 +58,28 @@ const AdminDashboard = () => {
         }
     }, [token, refreshTrigger]);
 
+    // The user list is keyset-paged, newest first: pass the last page's nextCursor to load older users
+    const loadMoreUsers = async () => {
+        if (nextCursor == null) return;
+        try {
+            setLoadingMore(true);
+            const res = await axios.get(`${import.meta.env.VITE_API_BASE_URL}/api/admin/users`,
+                { ...authConfig, params: { cursor: nextCursor, size: USER_PAGE_SIZE } });
+            setUsers(prev => [...prev, ...(res.data?.items || [])]);
+            setNextCursor(res.data?.nextCursor ?? null);
+        } catch (error) {
+            console.error("Error loading more users:", error);
+        } finally {
+            setLoadingMore(false);
+        }
+    };
+
     // Real analytics from backend stats and user list
     const revenueTrendData = stats.revenueTrend || [];
 
-    const farmerCount = users.filter(u => u.role?.toUpperCase().includes('FARMER')).length;
-    const retailerCount = users.filter(u => u.role?.toUpperCase().includes('RETAILER')).length;
+    // Counted by the server, since only the loaded pages of users are known here
+    const farmerCount = stats.farmers ?? users.filter(u => u.role?.toUpperCase().includes('FARMER')).length;
+    const retailerCount = stats.retailers ?? users.filter(u => u.role?.toUpperCase().includes('RETAILER')).length;
 
     const distributionData = [
         { name: 'Farmers', value: farmerCount },
@@ -67,10 +91,28 @@ const AdminDashboard = () => {
 
     const COLORS = ['#10b981', '#3b82f6'];
 
+    // Deletes run as a background job: the 202 only means it was queued, so poll it until it completes
+    const waitForUserJob = async (jobId) => {
+        for (let attempt = 0; attempt < JOB_POLL_ATTEMPTS; attempt++) {
+            await new Promise(resolve => setTimeout(resolve, JOB_POLL_INTERVAL_MS));
+            const res = await axios.get(`${import.meta.env.VITE_API_BASE_URL}/api/admin/users/jobs/${jobId}`, authConfig);
+            if (res.data?.job?.status === 'COMPLETED') {
+                return res.data;
+            }
+        }
+        return null;
+    };
+
     const handleDeleteUser = async (userId) => {
         if (window.confirm('Are you sure you want to delete this user? This action cannot be undone.')) {
             try {
-                await axios.delete(`${import.meta.env.VITE_API_BASE_URL}/api/admin/users/${userId}`, authConfig);
+                const res = await axios.delete(`${import.meta.env.VITE_API_BASE_URL}/api/admin/users/${userId}`, authConfig);
+                const progress = await waitForUserJob(res.data.id);
+                if (!progress) {
+                    alert("The user is still being deleted; refresh in a moment to see the result");
+                } else if (progress.failures?.length > 0) {
+                    alert(`Could not delete user: ${progress.failures[0].error}`);
+                }
                 setRefreshTrigger(prev => prev + 1);
             } catch (error) {
                 console.error("Error deleting user:", error);
@@ -451,6 +493,17 @@ const AdminDashboard = () => {
                                         <p className="text-gray-500 dark:text-gray-400 font-bold">No matching agents found in current sector</p>
                                     </div>
                                 )}
+                                {nextCursor != null && (
+                                    <div className="p-6 text-center border-t border-gray-100 dark:border-gray-700">
+                                        <button
+                                            onClick={loadMoreUsers}
+                                            disabled={loadingMore}
+                                            className="px-6 py-2 rounded-xl bg-gray-100 dark:bg-gray-700 text-gray-700 dark:text-gray-200 font-bold text-sm hover:bg-gray-200 dark:hover:bg-gray-600 disabled:opacity-50"
+                                        >
+                                            {loadingMore ? 'Loading...' : 'Load older users'}
+                                        </button>
+                                    </div>
+                                )}
                             </div>
                         </div>
                     )}
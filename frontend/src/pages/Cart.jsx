@@ -9,6 +9,7 @@ import {
 import OrderService from '../services/OrderService';
 import { useState } from 'react';
 import { motion, AnimatePresence } from 'framer-motion';
+import ImageService from '../services/ImageService';
 
 const Cart = () => {
     const { cart, total, removeFromCart, updateQuantity, clearCart } = useCart();
@@ -205,7 +206,7 @@ const Cart = () => {
                                         <div className="h-28 w-28 flex-shrink-0 rounded-2xl overflow-hidden bg-gray-50 dark:bg-gray-900 flex items-center justify-center border border-gray-100 dark:border-gray-700 group-hover:shadow-md transition-all">
                                             {item.imageUrl ? (
                                                 <img
-                                                    src={item.imageUrl}
+                                                    src={ImageService.thumb(item.imageUrl)}
                                                     alt={item.name}
                                                     className="w-full h-full object-cover transition-transform duration-500 group-hover:scale-110"
                                                     onError={(e) => {
@@ -7,6 +7,7 @@ import {
     Plus, ShoppingBag, List, TrendingUp, IndianRupee, Package,
     Calendar, Clock, User, ArrowRight, Loader2, BadgeCheck
 } from 'lucide-react';
+import ImageService from '../services/ImageService';
 
 const STATUS_STYLES = {
     PENDING: 'bg-yellow-100 text-yellow-800 dark:bg-yellow-900/30 dark:text-yellow-300',
@@ -112,7 +113,10 @@ const Dashboard = () => {
                         <motion.div variants={itemVariants} className="bg-white dark:bg-gray-800 p-6 rounded-xl shadow-md border-l-4 border-green-500 transition-colors">
                             <div className="flex justify-between items-center">
                                 <div>
-                                    <p className="text-sm font-medium text-gray-500 dark:text-gray-400">
+                                    <p
+                                        className="text-sm font-medium text-gray-500 dark:text-gray-400"
+                                        title={isFarmer ? 'Your own items across all orders, paid or not' : undefined}
+                                    >
                                         {isFarmer ? 'Potential Sales' : 'Total Spent'}
                                     </p>
                                     <p className="text-2xl font-bold text-gray-900 dark:text-white flex items-center mt-1">
@@ -288,7 +292,7 @@ const Dashboard = () => {
                                                         <div className="h-8 w-8 flex-shrink-0 rounded-md overflow-hidden bg-gray-100 dark:bg-gray-600 flex items-center justify-center text-gray-400 dark:text-gray-500">
                                                             {item.product?.imageUrl ? (
                                                                 <img
-                                                                    src={item.product.imageUrl}
+                                                                    src={ImageService.thumb(item.product.imageUrl)}
                                                                     alt={item.product?.name}
                                                                     className="w-full h-full object-cover"
                                                                     onError={(e) => {
@@ -7,6 +7,7 @@ import {
     Mail, Phone, MapPin, Search, Filter, ArrowRight, FileText
 } from 'lucide-react';
 import { motion, AnimatePresence } from 'framer-motion';
+import ImageService from '../services/ImageService';
 
 const STATUS_TRANSITIONS = {
     PENDING: ['CONFIRMED', 'CANCELLED'],
@@ -328,7 +329,7 @@ const FarmerOrders = () => {
                                                             <div className="h-16 w-16 flex-shrink-0 rounded-2xl overflow-hidden bg-gray-100 dark:bg-gray-700 flex items-center justify-center text-gray-400 dark:text-gray-500 border border-white dark:border-gray-800 shadow-sm transition-transform group-hover/item:scale-105">
                                                                 {item.product?.imageUrl ? (
                                                                     <img
-                                                                        src={item.product.imageUrl}
+                                                                        src={ImageService.thumb(item.product.imageUrl)}
                                                                         alt={item.product?.name}
                                                                         className="w-full h-full object-cover"
                                                                         onError={(e) => {
@@ -5,6 +5,7 @@ import { ShoppingCart, Search, Filter, Loader2, IndianRupee, Package, Info, Chec
 import { motion, AnimatePresence } from 'framer-motion';
 import { useCart } from '../context/CartContext';
 import { useAuth } from '../context/AuthContext';
+import ImageService from '../services/ImageService';
 
 const Marketplace = () => {
     const [products, setProducts] = useState([]);
@@ -215,7 +216,7 @@ const Marketplace = () => {
                                 <div className="h-48 bg-gray-200 dark:bg-gray-700 relative">
                                     {product.imageUrl ? (
                                         <img
-                                            src={product.imageUrl}
+                                            src={ImageService.card(product.imageUrl)}
                                             alt={product.name}
                                             className={`w-full h-full object-cover ${product.quantity <= 0 ? 'grayscale' : ''}`}
                                             onError={(e) => {
@@ -7,6 +7,7 @@ import {
     Truck, CheckCircle, MapPin
 } from 'lucide-react';
 import { motion, AnimatePresence } from 'framer-motion';
+import ImageService from '../services/ImageService';
 
 const MyOrders = () => {
     const [orders, setOrders] = useState([]);
@@ -351,7 +352,7 @@ const MyOrders = () => {
                                                         <div className="h-16 w-16 flex-shrink-0 rounded-xl overflow-hidden bg-gray-100 dark:bg-gray-700 flex items-center justify-center text-gray-400 dark:text-gray-500 transition-colors shadow-sm">
                                                             {item.product?.imageUrl ? (
                                                                 <img
-                                                                    src={item.product.imageUrl}
+                                                                    src={ImageService.thumb(item.product.imageUrl)}
                                                                     alt={item.product?.name}
                                                                     className="w-full h-full object-cover transition-transform group-hover/item:scale-110"
                                                                     onError={(e) => {
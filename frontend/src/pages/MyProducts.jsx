@@ -3,6 +3,7 @@ import axios from 'axios';
 import { useAuth } from '../context/AuthContext';
 import { Link } from 'react-router-dom';
 import { Edit, Trash2, Plus, Package, IndianRupee, X, EyeOff, Eye } from 'lucide-react';
+import ImageService from '../services/ImageService';
 
 const MyProducts = () => {
     const { user } = useAuth();
@@ -135,7 +136,7 @@ const MyProducts = () => {
                             <div className="h-52 bg-gray-100 dark:bg-gray-700 relative overflow-hidden transition-colors">
                                 {product.imageUrl ? (
                                     <img
-                                        src={product.imageUrl}
+                                        src={ImageService.card(product.imageUrl)}
                                         alt={product.name}
                                         className="w-full h-full object-cover transition-transform duration-500 hover:scale-110"
                                         onError={(e) => {
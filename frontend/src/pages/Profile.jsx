@@ -2,6 +2,7 @@ import { useState, useEffect } from 'react';
 import { useAuth } from '../context/AuthContext';
 import { User, Phone, Mail, Shield, Camera, Save, X, Edit2 } from 'lucide-react';
 import axios from 'axios';
+import ImageService from '../services/ImageService';
 
 const Profile = () => {
     const { user, updateUser } = useAuth();
@@ -93,12 +94,7 @@ const Profile = () => {
                         <div className="h-32 w-32 rounded-full border-4 border-white dark:border-gray-800 bg-gray-200 dark:bg-gray-700 flex items-center justify-center overflow-hidden relative transition-colors shadow-lg">
                             {previewUrl || user.profilePhoto ? (
                                 <img
-                                    src={
-                                        previewUrl ||
-                                        (user.profilePhoto?.startsWith('http')
-                                            ? user.profilePhoto
-                                            : `${import.meta.env.VITE_API_BASE_URL}${user.profilePhoto}`)
-                                    }
+                                    src={previewUrl || ImageService.thumb(user.profilePhoto)}
                                     alt="Profile"
                                     className="h-full w-full object-cover"
                                     onError={(e) => {
@@ -0,0 +1,24 @@
+// Uploaded photos are served resized with ?size=thumb (160px), card (480px) or detail (1080px)
+const UPLOADED = '/uploads/sha256/';
+
+// Relative upload paths, such as profile photos, are resolved against the API
+const resolveUrl = (url) => (url.startsWith('http') ? url : `${import.meta.env.VITE_API_BASE_URL}${url}`);
+
+// Links to other sites and blob previews are returned unchanged
+const sizedUrl = (url, size) => {
+    if (!url) {
+        return url;
+    }
+    if (!url.includes(UPLOADED) || url.includes('?')) {
+        return url.startsWith('/') ? resolveUrl(url) : url;
+    }
+    return `${resolveUrl(url)}?size=${size}`;
+};
+
+const ImageService = {
+    thumb: (url) => sizedUrl(url, 'thumb'),
+    card: (url) => sizedUrl(url, 'card'),
+    detail: (url) => sizedUrl(url, 'detail')
+};
+
+export default ImageService;
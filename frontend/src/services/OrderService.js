@@ -12,14 +12,21 @@ const placeOrder = async (orderRequest) => {
     return response.data;
 };
 
-const getMyOrders = async () => {
-    const response = await axios.get(API_URL, { headers: getAuthHeader() });
+// mode is ALL_OR_NOTHING (default) or BEST_EFFORT; the response has one result per order
+const placeOrders = async (orders, mode) => {
+    const response = await axios.post(`${API_URL}/bulk`, { orders, mode }, { headers: getAuthHeader() });
     return response.data;
 };
 
-const getFarmerOrders = async () => {
-    const response = await axios.get(`${API_URL}/farmer`, { headers: getAuthHeader() });
-    return response.data;
+// Order listings are keyset-paged: pass the previous page's nextCursor to load older orders.
+const getMyOrders = async (cursor) => {
+    const response = await axios.get(API_URL, { params: { cursor }, headers: getAuthHeader() });
+    return response.data.items;
+};
+
+const getFarmerOrders = async (cursor) => {
+    const response = await axios.get(`${API_URL}/farmer`, { params: { cursor }, headers: getAuthHeader() });
+    return response.data.items;
 };
 
 const cancelOrder = async (orderId) => {
@@ -35,6 +42,11 @@ const updateOrderStatus = async (orderId, status) => {
     return response.data;
 };
 
+const updateOrderStatuses = async (orderIds, status) => {
+    const response = await axios.patch(`${API_URL}/status`, { orderIds, status }, { headers: getAuthHeader() });
+    return response.data;
+};
+
 const getDashboardStats = async () => {
     const response = await axios.get(`${API_URL}/dashboard-stats`, { headers: getAuthHeader() });
     return response.data;
@@ -52,10 +64,12 @@ const verifyPayment = async (verificationData) => {
 
 const OrderService = {
     placeOrder,
+    placeOrders,
     getMyOrders,
     getFarmerOrders,
     cancelOrder,
     updateOrderStatus,
+    updateOrderStatuses,
     getDashboardStats,
     createPaymentOrder,
     verifyPayment
@@ -0,0 +1,56 @@
+package com.farmtrade.backend.component;
+
+import com.farmtrade.backend.repository.OrderRepository;
+import com.farmtrade.backend.service.OrderService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Cancels checkouts that placed an order but never recorded a Razorpay order,
+ * for example because the process stopped while the gateway call was in
+ * flight. Their stock is released; each order is cancelled in its own short
+ * transaction, and a checkout that completes concurrently is left alone.
+ */
+@Component
+public class CheckoutSweeper {
+
+    private static final Logger logger = LoggerFactory.getLogger(CheckoutSweeper.class);
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Value("${app.payments.checkout.sweep-batch-size:100}")
+    private int batchSize;
+
+    @Scheduled(fixedDelayString = "${app.payments.checkout.sweep-interval-ms:60000}")
+    public void sweepExpiredCheckouts() {
+        int cancelled = 0;
+        List<Long> expired;
+        try {
+            do {
+                expired = orderRepository.findExpiredCheckoutIds(LocalDateTime.now(), PageRequest.of(0, batchSize));
+                for (Long orderId : expired) {
+                    if (orderService.cancelUnfinishedCheckout(orderId)) {
+                        cancelled++;
+                    }
+                }
+            } while (expired.size() == batchSize);
+        } catch (RuntimeException e) {
+            logger.error("Checkout sweep failed; it will be retried on the next run", e);
+        }
+        if (cancelled > 0) {
+            logger.info("Cancelled {} expired checkouts", cancelled);
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.farmtrade.backend.model.Product;
 import com.farmtrade.backend.model.Role;
 import com.farmtrade.backend.model.User;
 import com.farmtrade.backend.model.UserStatus;
+import com.farmtrade.backend.repository.OrderFarmerRepository;
 import com.farmtrade.backend.repository.ProductRepository;
 import com.farmtrade.backend.repository.UserRepository;
 import java.math.BigDecimal;
@@ -23,6 +24,9 @@ public class DataInitializer implements CommandLineRunner {
         @Autowired
         ProductRepository productRepository;
 
+        @Autowired
+        OrderFarmerRepository orderFarmerRepository;
+
         @Autowired
         PasswordEncoder encoder;
 
@@ -54,6 +58,7 @@ public class DataInitializer implements CommandLineRunner {
                         farmer.setStatus(UserStatus.APPROVED);
                         farmer.setMobileNumber("9876543210");
                         farmer.setAddress("Green Valley Farms, Punjab");
+                        farmer.setRegion("Punjab");
                         userRepository.save(farmer);
                         System.out.println("Farmer user seeded: farmer@farmtrade.com / farmer123");
                 }
@@ -68,6 +73,7 @@ public class DataInitializer implements CommandLineRunner {
                         retailer.setStatus(UserStatus.APPROVED);
                         retailer.setMobileNumber("8888888888");
                         retailer.setAddress("Main Market, Mumbai");
+                        retailer.setRegion("Maharashtra");
                         retailer.setLicenceNumber("RT-12345");
                         userRepository.save(retailer);
                         System.out.println("Retailer user seeded: retailer@farmtrade.com / retailer123");
@@ -77,6 +83,14 @@ public class DataInitializer implements CommandLineRunner {
                 if (productRepository.count() == 0) {
                         seedPremiumProducts(farmer);
                 }
+
+                // Link orders placed before order_farmers existed to their farmers
+                int linked = orderFarmerRepository.backfillMissing();
+                int itemsLinked = orderFarmerRepository.backfillItemLinks();
+                if (linked > 0 || itemsLinked > 0) {
+                        System.out.println("Backfilled " + linked + " order-farmer links and " + itemsLinked
+                                        + " order item links");
+                }
         }
 
         private void seedPremiumProducts(User farmer) {
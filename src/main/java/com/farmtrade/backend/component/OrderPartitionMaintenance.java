@@ -0,0 +1,156 @@
+package com.farmtrade.backend.component;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Keeps the partitioned orders/order_items layout from
+ * db/orders-partitioning.sql healthy: creates monthly hot partitions ahead of
+ * time and moves DELIVERED or CANCELLED orders older than the archive horizon,
+ * together with their lines, into the yearly archive partitions. Archived rows
+ * stay in the same tables, so every existing query still sees them.
+ */
+@Component
+@ConditionalOnProperty(name = "app.orders.partitioning.enabled", havingValue = "true")
+public class OrderPartitionMaintenance {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderPartitionMaintenance.class);
+
+    private static final DateTimeFormatter MONTH_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final List<String> TABLES = List.of("orders", "order_items");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${app.orders.partitioning.months-ahead:3}")
+    private int monthsAhead;
+
+    @Value("${app.orders.archive.horizon-days:180}")
+    private int archiveHorizonDays;
+
+    @Value("${app.orders.archive.batch-size:500}")
+    private int archiveBatchSize;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (!isPartitioned()) {
+            logger.warn("app.orders.partitioning.enabled is set but orders is not partitioned; "
+                    + "apply db/orders-partitioning.sql first");
+            return;
+        }
+        createUpcomingPartitions();
+    }
+
+    @Scheduled(cron = "${app.orders.partitioning.cron:0 30 2 * * *}")
+    public void runMaintenance() {
+        if (!isPartitioned()) {
+            return;
+        }
+        createUpcomingPartitions();
+        int archived = archiveColdOrders();
+        logger.info("Order partition maintenance archived {} orders", archived);
+    }
+
+    public void createUpcomingPartitions() {
+        createUpcomingPartitions(LocalDateTime.now());
+    }
+
+    void createUpcomingPartitions(LocalDateTime now) {
+        YearMonth current = YearMonth.from(now);
+        for (String table : TABLES) {
+            for (int i = 0; i <= monthsAhead; i++) {
+                YearMonth month = current.plusMonths(i);
+                jdbcTemplate.execute(String.format(
+                        "CREATE TABLE IF NOT EXISTS %1$s_hot_p%2$s PARTITION OF %1$s_hot FOR VALUES FROM ('%3$s') TO ('%4$s')",
+                        table, month.format(MONTH_SUFFIX), month.atDay(1), month.plusMonths(1).atDay(1)));
+            }
+            // Archive partitions are yearly and must cover every year the horizon can reach back into
+            int firstYear = now.minusDays(archiveHorizonDays).getYear();
+            for (int year = firstYear; year <= current.getYear(); year++) {
+                jdbcTemplate.execute(String.format(
+                        "CREATE TABLE IF NOT EXISTS %1$s_archive_p%2$d PARTITION OF %1$s_archive "
+                                + "FOR VALUES FROM ('%2$d-01-01') TO ('%3$d-01-01') WITH (fillfactor = 100)",
+                        table, year, year + 1));
+            }
+        }
+    }
+
+    /**
+     * Flips the archived flag in bounded batches; PostgreSQL moves each row
+     * into the matching archive partition as part of the UPDATE. Updates go
+     * through the parent tables, since row movement only happens within the
+     * partition tree being updated. Lines move first, in the same transaction
+     * as their orders.
+     */
+    public int archiveColdOrders() {
+        return archiveColdOrders(LocalDateTime.now());
+    }
+
+    int archiveColdOrders(LocalDateTime now) {
+        Timestamp cutoff = Timestamp.valueOf(now.minusDays(archiveHorizonDays));
+        int total = 0;
+        int moved;
+        do {
+            moved = transactionTemplate.execute(status -> archiveBatch(cutoff));
+            total += moved;
+        } while (moved == archiveBatchSize);
+        return total;
+    }
+
+    private int archiveBatch(Timestamp cutoff) {
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM orders WHERE archived = false AND status IN ('DELIVERED', 'CANCELLED') "
+                        + "AND order_date < ? "
+                        + "ORDER BY order_date LIMIT ? FOR UPDATE SKIP LOCKED",
+                Long.class, cutoff, archiveBatchSize);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        Long[] idArray = ids.toArray(new Long[0]);
+        jdbcTemplate.update("UPDATE order_items SET archived = true "
+                + "WHERE archived = false AND order_date < ? AND order_id = ANY (?)",
+                ps -> {
+                    ps.setTimestamp(1, cutoff);
+                    ps.setArray(2, toSqlArray(ps.getConnection(), idArray));
+                });
+        jdbcTemplate.update("UPDATE orders SET archived = true WHERE archived = false AND order_date < ? AND id = ANY (?)",
+                ps -> {
+                    ps.setTimestamp(1, cutoff);
+                    ps.setArray(2, toSqlArray(ps.getConnection(), idArray));
+                });
+        return ids.size();
+    }
+
+    private static Array toSqlArray(Connection connection, Long[] ids) throws SQLException {
+        return connection.createArrayOf("bigint", ids);
+    }
+
+    private boolean isPartitioned() {
+        Boolean partitioned = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table pt JOIN pg_class c ON c.oid = pt.partrelid "
+                        + "WHERE c.relname = 'orders_hot')",
+                Boolean.class);
+        return Boolean.TRUE.equals(partitioned);
+    }
+}
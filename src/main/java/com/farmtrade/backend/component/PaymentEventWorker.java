@@ -0,0 +1,35 @@
+package com.farmtrade.backend.component;
+
+import com.farmtrade.backend.service.PaymentWebhookService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Drains the payment_events inbox. Each batch is its own transaction, and
+ * rows are claimed with SKIP LOCKED, so several instances can share the work.
+ * An event whose order is not found yet is deferred until its next attempt,
+ * so a full batch of those ends the loop instead of being claimed again.
+ */
+@Component
+public class PaymentEventWorker {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentEventWorker.class);
+
+    @Autowired
+    private PaymentWebhookService paymentWebhookService;
+
+    @Scheduled(fixedDelayString = "${app.payments.webhook.poll-interval-ms:2000}")
+    public void drainInbox() {
+        int claimed;
+        try {
+            do {
+                claimed = paymentWebhookService.processBatch();
+            } while (claimed == paymentWebhookService.getBatchSize());
+        } catch (RuntimeException e) {
+            logger.error("Payment event batch failed; it will be retried on the next poll", e);
+        }
+    }
+}
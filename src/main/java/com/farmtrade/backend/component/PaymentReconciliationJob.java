@@ -0,0 +1,53 @@
+package com.farmtrade.backend.component;
+
+import com.farmtrade.backend.dto.PaymentReconciliationReport;
+import com.farmtrade.backend.service.PaymentReconciliationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs payment reconciliation on a schedule and keeps the latest report for
+ * the admin endpoint.
+ */
+@Component
+public class PaymentReconciliationJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentReconciliationJob.class);
+
+    @Autowired
+    private PaymentReconciliationService paymentReconciliationService;
+
+    @Value("${app.payments.reconcile.enabled:true}")
+    private boolean enabled;
+
+    private final AtomicReference<PaymentReconciliationReport> lastRun = new AtomicReference<>();
+
+    public PaymentReconciliationReport getLastRun() {
+        return lastRun.get();
+    }
+
+    @Scheduled(cron = "${app.payments.reconcile.cron:0 */15 * * * *}")
+    public void reconcilePayments() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            PaymentReconciliationReport report = paymentReconciliationService.reconcile();
+            lastRun.set(report);
+            if (report.getChecked() > 0) {
+                logger.info("Payment reconciliation: {} checked in {} pages, {} completed, {} failed, "
+                        + "{} still pending, {} already settled, {} lookup errors",
+                        report.getChecked(), report.getPages(), report.getCompleted(), report.getFailed(),
+                        report.getStillPending(), report.getAlreadySettled(), report.getLookupErrors());
+            }
+        } catch (RuntimeException e) {
+            logger.error("Payment reconciliation failed; it will run again on the next schedule", e);
+        }
+    }
+}
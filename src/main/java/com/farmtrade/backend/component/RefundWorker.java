@@ -0,0 +1,33 @@
+package com.farmtrade.backend.component;
+
+import com.farmtrade.backend.service.RefundService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Drains the refund queue. Refunds are claimed with SKIP LOCKED under a
+ * lease, so several instances can share the work.
+ */
+@Component
+public class RefundWorker {
+
+    private static final Logger logger = LoggerFactory.getLogger(RefundWorker.class);
+
+    @Autowired
+    private RefundService refundService;
+
+    @Scheduled(fixedDelayString = "${app.payments.refunds.poll-interval-ms:5000}")
+    public void drainQueue() {
+        int claimed;
+        try {
+            do {
+                claimed = refundService.processBatch();
+            } while (claimed == refundService.getBatchSize());
+        } catch (RuntimeException e) {
+            logger.error("Refund batch failed; its refunds will be retried once their lease runs out", e);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.farmtrade.backend.component;
+
+import com.farmtrade.backend.service.StatsRollupService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/**
+ * Fills the stats rollups from the full history the first time the
+ * application starts with empty rollup tables, and every night recomputes the
+ * last few days, repairing drift from writes that bypass StatsRollupService
+ * (manual SQL, partition archiving, deleted accounts).
+ */
+@Component
+public class RollupBackfillJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(RollupBackfillJob.class);
+
+    @Autowired
+    private StatsRollupService statsRollupService;
+
+    @Value("${app.stats.rollups.repair-days:2}")
+    private int repairDays;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        try {
+            if (statsRollupService.isEmpty()) {
+                int days = statsRollupService.rebuildAll();
+                logger.info("Backfilled stats rollups for {} days", days);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Stats rollup backfill failed; run POST /api/admin/stats/rollups/rebuild to retry", e);
+        }
+    }
+
+    @Scheduled(cron = "${app.stats.rollups.repair-cron:0 30 3 * * *}")
+    public void repairRecentDays() {
+        LocalDate today = LocalDate.now();
+        try {
+            statsRollupService.rebuild(today.minusDays(repairDays), today);
+        } catch (RuntimeException e) {
+            logger.error("Stats rollup repair failed; it will run again tomorrow", e);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.farmtrade.backend.component;
+
+import com.farmtrade.backend.service.StatsRollupService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Folds the rollup deltas appended by order and signup writes into the
+ * dashboard rollups. Each batch is its own transaction, and deltas are
+ * claimed with SKIP LOCKED, so several instances can share the work.
+ */
+@Component
+public class RollupDeltaFolder {
+
+    private static final Logger logger = LoggerFactory.getLogger(RollupDeltaFolder.class);
+
+    @Autowired
+    private StatsRollupService statsRollupService;
+
+    @Scheduled(fixedDelayString = "${app.stats.rollups.fold-interval-ms:5000}")
+    public void foldDeltas() {
+        int folded;
+        try {
+            do {
+                folded = statsRollupService.fold();
+            } while (folded == statsRollupService.getFoldBatchSize());
+        } catch (RuntimeException e) {
+            logger.error("Rollup fold failed; its deltas will be folded on the next run", e);
+        }
+    }
+}
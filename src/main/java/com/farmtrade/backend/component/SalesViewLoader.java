@@ -0,0 +1,51 @@
+package com.farmtrade.backend.component;
+
+import com.farmtrade.backend.service.SalesView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Loads the in-memory sales views, the leaderboards and the analytics cube,
+ * from order history when the application starts, and reloads them nightly
+ * to pick up category and region changes and sales written without an
+ * order event. Between rebuilds, sales committed since the last refresh are
+ * applied every refresh-ms.
+ */
+@Component
+public class SalesViewLoader {
+
+    private static final Logger logger = LoggerFactory.getLogger(SalesViewLoader.class);
+
+    @Autowired
+    private List<SalesView<?>> views;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        rebuild();
+    }
+
+    @Scheduled(cron = "${app.sales-views.rebuild-cron:0 15 4 * * *}")
+    public void rebuild() {
+        for (SalesView<?> view : views) {
+            String name = view.getClass().getSimpleName();
+            try {
+                int size = view.rebuild();
+                logger.info("Loaded {} from order history ({} entries)", name, size);
+            } catch (RuntimeException e) {
+                logger.error("{} rebuild failed; it keeps its current totals", name, e);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.sales-views.refresh-ms:5000}")
+    public void refresh() {
+        views.forEach(SalesView::refresh);
+    }
+}
@@ -0,0 +1,182 @@
+package com.farmtrade.backend.component;
+
+import com.farmtrade.backend.dto.OrderRequest;
+import com.farmtrade.backend.dto.StandingOrderRunStats;
+import com.farmtrade.backend.model.Order;
+import com.farmtrade.backend.model.StandingOrder;
+import com.farmtrade.backend.repository.StandingOrderRepository;
+import com.farmtrade.backend.service.OrderService;
+import com.farmtrade.backend.service.StandingOrderService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Turns due standing orders into real orders. Each poll claims due templates
+ * in batches (FOR UPDATE SKIP LOCKED, so several instances can run this) and
+ * moves their nextRunAt forward in the claiming transaction. The batch is then
+ * placed on a fixed worker pool, one OrderService.placeOrder transaction per
+ * template. Because nextRunAt is stored, templates that fell due while the
+ * application was down are picked up by the first poll after startup. Missed
+ * occurrences collapse into a single order rather than one per occurrence.
+ * A run stops after max-per-run templates and leaves the rest for the next
+ * poll, so a catch-up backlog is spread out too.
+ */
+@Component
+public class StandingOrderScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(StandingOrderScheduler.class);
+
+    @Autowired
+    private StandingOrderRepository standingOrderRepository;
+
+    @Autowired
+    private StandingOrderService standingOrderService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${app.standing-orders.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.standing-orders.batch-size:50}")
+    private int batchSize;
+
+    @Value("${app.standing-orders.parallelism:4}")
+    private int parallelism;
+
+    @Value("${app.standing-orders.max-per-run:1000}")
+    private int maxPerRun;
+
+    @Value("${app.standing-orders.max-failures:3}")
+    private int maxFailures;
+
+    private ExecutorService workers;
+
+    private final AtomicReference<StandingOrderRunStats> lastRun = new AtomicReference<>();
+
+    private record Claimed(Long id, String retailerEmail, OrderRequest orderRequest, LocalDateTime dueAt) {
+    }
+
+    @PostConstruct
+    public void startWorkers() {
+        workers = Executors.newFixedThreadPool(parallelism, new CustomizableThreadFactory("standing-orders-"));
+    }
+
+    @PreDestroy
+    public void stopWorkers() {
+        workers.shutdown();
+    }
+
+    public StandingOrderRunStats getLastRun() {
+        return lastRun.get();
+    }
+
+    @Scheduled(fixedDelayString = "${app.standing-orders.poll-interval-ms:60000}", initialDelayString = "${app.standing-orders.initial-delay-ms:30000}")
+    public void materializeDueOrders() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime startedAt = LocalDateTime.now();
+        int batches = 0;
+        int claimed = 0;
+        int placed = 0;
+        long maxLagSeconds = 0;
+
+        while (claimed < maxPerRun) {
+            LocalDateTime now = LocalDateTime.now();
+            List<Claimed> batch = claimBatch(now, Math.min(batchSize, maxPerRun - claimed));
+            if (batch.isEmpty()) {
+                break;
+            }
+            batches++;
+            claimed += batch.size();
+            for (Claimed template : batch) {
+                maxLagSeconds = Math.max(maxLagSeconds, Duration.between(template.dueAt(), now).getSeconds());
+            }
+            placed += placeBatch(batch, now);
+        }
+
+        StandingOrderRunStats stats = new StandingOrderRunStats(startedAt, LocalDateTime.now(), batches, claimed,
+                placed, claimed - placed, maxLagSeconds);
+        lastRun.set(stats);
+        if (claimed > 0) {
+            logger.info("Standing orders run: {} claimed in {} batches, {} placed, {} failed, max lag {}s",
+                    claimed, batches, placed, claimed - placed, maxLagSeconds);
+        }
+    }
+
+    // Advancing nextRunAt before placing means a crash mid-batch skips an occurrence
+    // instead of placing it twice
+    private List<Claimed> claimBatch(LocalDateTime now, int limit) {
+        return transactionTemplate.execute(status -> {
+            List<Long> ids = standingOrderRepository.claimDueIds(now, limit);
+            if (ids.isEmpty()) {
+                return Collections.<Claimed>emptyList();
+            }
+            List<Claimed> batch = new ArrayList<>(ids.size());
+            for (StandingOrder standingOrder : standingOrderRepository.findWithItemsByIdIn(ids)) {
+                batch.add(new Claimed(standingOrder.getId(), standingOrder.getRetailer().getEmail(),
+                        StandingOrderService.toOrderRequest(standingOrder), standingOrder.getNextRunAt()));
+                standingOrder.setNextRunAt(standingOrderService.nextRunAfter(standingOrder, now));
+            }
+            return batch;
+        });
+    }
+
+    private int placeBatch(List<Claimed> batch, LocalDateTime runAt) {
+        List<Callable<Boolean>> tasks = new ArrayList<>(batch.size());
+        for (Claimed template : batch) {
+            tasks.add(() -> place(template, runAt));
+        }
+        int placed = 0;
+        try {
+            for (Future<Boolean> result : workers.invokeAll(tasks)) {
+                if (result.get()) {
+                    placed++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.error("Standing order worker failed", e.getCause());
+        }
+        return placed;
+    }
+
+    private boolean place(Claimed template, LocalDateTime runAt) {
+        try {
+            Order order = orderService.placeOrder(template.orderRequest(), template.retailerEmail());
+            standingOrderRepository.recordSuccess(template.id(), runAt, order.getId());
+            return true;
+        } catch (RuntimeException e) {
+            logger.warn("Standing order {} could not be placed: {}", template.id(), e.getMessage());
+            String error = e.getMessage() != null && e.getMessage().length() > 512
+                    ? e.getMessage().substring(0, 512) : e.getMessage();
+            standingOrderRepository.recordFailure(template.id(), runAt, error, maxFailures);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.farmtrade.backend.component;
+
+import com.farmtrade.backend.service.UploadStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Nightly removal of uploaded files nothing has referenced for
+ * app.uploads.unused-grace-hours, e.g. replaced profile photos.
+ */
+@Component
+public class UploadSweeper {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadSweeper.class);
+
+    @Autowired
+    private UploadStore uploadStore;
+
+    @Scheduled(cron = "${app.uploads.sweep-cron:0 45 4 * * *}")
+    public void sweep() {
+        try {
+            int removed = uploadStore.sweep();
+            if (removed > 0) {
+                logger.info("Removed {} unreferenced uploads", removed);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Upload sweep failed", e);
+        }
+    }
+}
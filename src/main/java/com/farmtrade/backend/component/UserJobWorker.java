@@ -0,0 +1,32 @@
+package com.farmtrade.backend.component;
+
+import com.farmtrade.backend.service.UserJobService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs queued admin user jobs one after another, and picks up jobs a stopped
+ * instance left behind once their lease runs out.
+ */
+@Component
+public class UserJobWorker {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserJobWorker.class);
+
+    @Autowired
+    private UserJobService userJobService;
+
+    @Scheduled(fixedDelayString = "${app.users.jobs.poll-interval-ms:2000}")
+    public void drainQueue() {
+        try {
+            while (userJobService.processNext()) {
+                // Next job
+            }
+        } catch (RuntimeException e) {
+            logger.error("User job failed; it will be resumed once its lease runs out", e);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.farmtrade.backend.component;
+
+import com.farmtrade.backend.service.UserStatsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fills user_stats for every user the first time the application starts with
+ * an empty table, and every night checks all counters against the orders,
+ * fulfilments and products they summarise, correcting any that drifted.
+ */
+@Component
+public class UserStatsVerifier {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserStatsVerifier.class);
+
+    @Autowired
+    private UserStatsService userStatsService;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        try {
+            if (userStatsService.isEmpty()) {
+                userStatsService.verifyAll();
+                logger.info("Backfilled dashboard counters");
+            }
+        } catch (RuntimeException e) {
+            logger.error("Dashboard counter backfill failed; the nightly verification will retry", e);
+        }
+    }
+
+    @Scheduled(cron = "${app.stats.users.verify-cron:0 0 4 * * *}")
+    public void verify() {
+        try {
+            userStatsService.verifyAll();
+        } catch (RuntimeException e) {
+            logger.error("Dashboard counter verification failed; it will run again tomorrow", e);
+        }
+    }
+}
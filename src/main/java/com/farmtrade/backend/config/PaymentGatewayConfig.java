@@ -0,0 +1,51 @@
+package com.farmtrade.backend.config;
+
+import com.farmtrade.backend.service.GatewayGuard;
+import com.farmtrade.backend.service.PaymentGateway;
+import com.farmtrade.backend.service.RazorpayPaymentGateway;
+import com.farmtrade.backend.service.StubPaymentGateway;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+// app.payments.gateway picks the implementation: razorpay (default) or stub
+@Configuration
+public class PaymentGatewayConfig {
+
+    @Value("${app.payments.max-concurrent:20}")
+    private int maxConcurrent;
+
+    @Value("${app.payments.timeout-ms:5000}")
+    private long timeoutMs;
+
+    @Value("${app.payments.circuit.failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${app.payments.circuit.open-ms:30000}")
+    private long openMs;
+
+    @Bean
+    @ConditionalOnProperty(name = "app.payments.gateway", havingValue = "razorpay", matchIfMissing = true)
+    public PaymentGateway razorpayPaymentGateway(@Value("${razorpay.key.id}") String keyId,
+            @Value("${razorpay.key.secret}") String keySecret,
+            @Value("${app.payments.razorpay.connect-timeout-ms:2000}") long connectTimeoutMs,
+            @Value("${app.payments.razorpay.threads:4}") int threads) {
+        return new RazorpayPaymentGateway(keyId, keySecret, Duration.ofMillis(connectTimeoutMs),
+                Duration.ofMillis(timeoutMs), threads, guard("Razorpay"));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.payments.gateway", havingValue = "stub")
+    public PaymentGateway stubPaymentGateway(@Value("${app.payments.stub.latency-ms:200}") long latencyMs,
+            @Value("${app.payments.stub.error-rate:0}") double errorRate) {
+        return new StubPaymentGateway(Duration.ofMillis(latencyMs), errorRate, guard("Stub gateway"));
+    }
+
+    private GatewayGuard guard(String name) {
+        return new GatewayGuard(name, maxConcurrent, Duration.ofMillis(timeoutMs), failureThreshold,
+                Duration.ofMillis(openMs));
+    }
+}
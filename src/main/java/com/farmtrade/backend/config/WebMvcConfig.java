@@ -2,16 +2,30 @@ package com.farmtrade.backend.config;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import com.farmtrade.backend.service.UploadStore;
+
 @Configuration
 public class WebMvcConfig implements WebMvcConfigurer {
 
+    @Value("${app.uploads.dir:uploads}")
+    private String uploadsDir;
+
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
+        // Content-addressed uploads never change under their URL, so clients and CDNs may keep them for good
+        String contentPath = Paths.get(uploadsDir, UploadStore.CONTENT_DIR).toFile().getAbsolutePath();
+        registry.addResourceHandler(UploadStore.URL_PREFIX + UploadStore.CONTENT_DIR + "/**")
+                .addResourceLocations("file:" + contentPath + "/")
+                .setCacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable());
+
         exposeDirectory("uploads", registry);
     }
 
@@ -59,8 +59,11 @@ public class WebSecurityConfig {
                         .requestMatchers("/api/auth/**").permitAll()
                         .requestMatchers("/api/health").permitAll()
                         .requestMatchers("/api/public/**").permitAll()
+                        .requestMatchers("/api/payments/webhook").permitAll() // Signed by Razorpay
                         .requestMatchers("/uploads/**").permitAll() // Allow static resources
                         .requestMatchers("/error").permitAll() // Allow error page
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasAuthority("ADMIN")
                         .anyRequest().authenticated());
 
         http.authenticationProvider(authenticationProvider());
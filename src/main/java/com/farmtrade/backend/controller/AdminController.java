@@ -1,18 +1,34 @@
 
 package com.farmtrade.backend.controller;
 
+import com.farmtrade.backend.dto.AdminUserView;
+import com.farmtrade.backend.dto.CursorPage;
+import com.farmtrade.backend.dto.MessageResponse;
+import com.farmtrade.backend.dto.UserJobProgress;
+import com.farmtrade.backend.dto.UserJobRequest;
+import com.farmtrade.backend.dto.UserSearchCriteria;
+import com.farmtrade.backend.model.DailyRollup;
+import com.farmtrade.backend.model.HourlyRollup;
+import com.farmtrade.backend.model.Role;
 import com.farmtrade.backend.model.User;
+import com.farmtrade.backend.model.UserJob;
 import com.farmtrade.backend.model.UserStatus;
 import com.farmtrade.backend.repository.OrderRepository;
 import com.farmtrade.backend.repository.ProductRepository;
+import com.farmtrade.backend.repository.RollupRepository;
 import com.farmtrade.backend.repository.UserRepository;
+import com.farmtrade.backend.service.DashboardFanOut;
+import com.farmtrade.backend.service.StatsRollupService;
+import com.farmtrade.backend.service.UserAdminService;
+import com.farmtrade.backend.service.UserJobService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
-import jakarta.transaction.Transactional;
 
-import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -31,133 +47,165 @@ public class AdminController {
     @Autowired
     OrderRepository orderRepository;
 
+    @Autowired
+    StatsRollupService statsRollupService;
+
+    @Autowired
+    UserAdminService userAdminService;
+
+    @Autowired
+    UserJobService userJobService;
+
+    @Autowired
+    DashboardFanOut dashboardFanOut;
+
+    // Reads only the stats rollups and a few LIMIT queries, never whole tables. The reads are independent,
+    // so they run at once; any that miss the deadline are served empty and listed in "degraded".
     @GetMapping("/stats")
     @PreAuthorize("hasAuthority('ADMIN')")
     public ResponseEntity<Map<String, Object>> getStats() {
-        long userCount = userRepository.count();
-        long productCount = productRepository.count();
-        long orderCount = orderRepository.count();
-        BigDecimal totalRevenue = orderRepository.sumTotalRevenue();
-
-        // 1. Get Real Revenue Data for Graphs (Grouped by Date)
-        List<com.farmtrade.backend.model.Order> allOrders = orderRepository.findAll();
-        Map<String, BigDecimal> dailyRevenue = new HashMap<>();
-        java.time.format.DateTimeFormatter formatter = java.time.format.DateTimeFormatter.ofPattern("EEE");
-
-        // Initialize last 7 days with zero revenue
+        LocalDate today = LocalDate.now();
         java.time.LocalDateTime now = java.time.LocalDateTime.now();
-        for (int i = 6; i >= 0; i--) {
-            dailyRevenue.put(now.minusDays(i).format(formatter), BigDecimal.ZERO);
-        }
-
-        // Fill with actual data
-        for (com.farmtrade.backend.model.Order order : allOrders) {
-            if (order.getOrderDate() != null) {
-                String day = order.getOrderDate().format(formatter);
-                if (dailyRevenue.containsKey(day)) {
-                    dailyRevenue.put(day, dailyRevenue.get(day)
-                            .add(order.getTotalAmount() != null ? order.getTotalAmount() : BigDecimal.ZERO));
-                }
-            }
+        DashboardFanOut.Part<Long> userCount;
+        DashboardFanOut.Part<Long> farmerCount;
+        DashboardFanOut.Part<Long> retailerCount;
+        DashboardFanOut.Part<Long> productCount;
+        DashboardFanOut.Part<RollupRepository.Delta> totals;
+        DashboardFanOut.Part<List<DailyRollup>> days;
+        DashboardFanOut.Part<List<HourlyRollup>> hours;
+        DashboardFanOut.Part<List<User>> newestUsers;
+        DashboardFanOut.Part<List<com.farmtrade.backend.model.Order>> newestOrders;
+        List<String> degraded;
+        try (DashboardFanOut.Scope scope = dashboardFanOut.open()) {
+            userCount = scope.fork("users", userRepository::count, null);
+            farmerCount = scope.fork("farmers", () -> userRepository.countByRole(Role.FARMER), null);
+            retailerCount = scope.fork("retailers", () -> userRepository.countByRole(Role.RETAILER), null);
+            productCount = scope.fork("products", productRepository::count, null);
+            totals = scope.fork("totals", statsRollupService::getTotals, null);
+            days = scope.fork("revenueTrend",
+                    () -> statsRollupService.getDailyRollups(today.minusDays(6), today), List.of());
+            hours = scope.fork("hourlyTrend",
+                    () -> statsRollupService.getHourlyRollups(now.minusHours(23), now), List.of());
+            newestUsers = scope.fork("newestUsers", userRepository::findTop3ByOrderByIdDesc, List.of());
+            newestOrders = scope.fork("newestOrders", orderRepository::findTop2ByOrderByIdDesc, List.of());
+            scope.join();
+            degraded = scope.degraded();
         }
 
+        // Last 7 days by calendar date, so the same weekday in different weeks never shares a bucket
+        java.time.format.DateTimeFormatter dayName = java.time.format.DateTimeFormatter.ofPattern("EEE");
         List<Map<String, Object>> revenueTrend = new java.util.ArrayList<>();
-        // Maintain order of days
-        for (int i = 6; i >= 0; i--) {
-            String day = now.minusDays(i).format(formatter);
+        for (DailyRollup day : days.get()) {
             Map<String, Object> dayData = new HashMap<>();
-            dayData.put("name", day);
-            dayData.put("revenue", dailyRevenue.get(day));
+            dayData.put("name", day.getDay().format(dayName));
+            dayData.put("date", day.getDay());
+            dayData.put("revenue", day.getRevenue().toBigDecimal());
+            dayData.put("orders", day.getOrderCount());
+            dayData.put("newFarmers", day.getNewFarmers());
+            dayData.put("newRetailers", day.getNewRetailers());
             revenueTrend.add(dayData);
         }
 
-        // 2. Real Recent Activity
+        List<Map<String, Object>> hourlyTrend = new java.util.ArrayList<>();
+        for (HourlyRollup hour : hours.get()) {
+            Map<String, Object> hourData = new HashMap<>();
+            hourData.put("name", String.format("%02d:00", hour.getBucketStart().getHour()));
+            hourData.put("time", hour.getBucketStart());
+            hourData.put("revenue", hour.getRevenue().toBigDecimal());
+            hourData.put("orders", hour.getOrderCount());
+            hourlyTrend.add(hourData);
+        }
+
+        // Real Recent Activity
         List<Map<String, Object>> recentActivity = new java.util.ArrayList<>();
 
-        // Latest Users
-        List<User> latestUsers = userRepository.findAll(); // Simple, assuming ID order reflects recency
-        latestUsers.stream()
-                .sorted((u1, u2) -> u2.getId().compareTo(u1.getId()))
-                .limit(3)
-                .forEach(u -> {
-                    Map<String, Object> act = new HashMap<>();
-                    act.put("user", u.getFullName() != null ? u.getFullName() : u.getEmail());
-                    act.put("action", "Joined the Platform");
-                    act.put("time", "Recent");
-                    act.put("type", u.getRole() != null ? u.getRole().toString() : "FARMER");
-                    recentActivity.add(act);
-                });
-
-        // Latest Orders
-        allOrders.stream()
-                .sorted((o1, o2) -> o2.getOrderDate().compareTo(o1.getOrderDate()))
-                .limit(2)
-                .forEach(o -> {
-                    Map<String, Object> act = new HashMap<>();
-                    act.put("user",
-                            o.getRetailer() != null
-                                    ? (o.getRetailer().getFullName() != null ? o.getRetailer().getFullName()
-                                            : o.getRetailer().getEmail())
-                                    : "Unknown");
-                    act.put("action", "Placed Order #" + o.getId());
-                    act.put("time", "Order Sync");
-                    act.put("type", "RETAILER");
-                    recentActivity.add(act);
-                });
+        for (User u : newestUsers.get()) {
+            Map<String, Object> act = new HashMap<>();
+            act.put("user", u.getFullName() != null ? u.getFullName() : u.getEmail());
+            act.put("action", "Joined the Platform");
+            act.put("time", "Recent");
+            act.put("type", u.getRole() != null ? u.getRole().toString() : "FARMER");
+            recentActivity.add(act);
+        }
+
+        for (com.farmtrade.backend.model.Order o : newestOrders.get()) {
+            Map<String, Object> act = new HashMap<>();
+            act.put("user",
+                    o.getRetailer() != null
+                            ? (o.getRetailer().getFullName() != null ? o.getRetailer().getFullName()
+                                    : o.getRetailer().getEmail())
+                            : "Unknown");
+            act.put("action", "Placed Order #" + o.getId());
+            act.put("time", "Order Sync");
+            act.put("type", "RETAILER");
+            recentActivity.add(act);
+        }
 
         Map<String, Object> stats = new HashMap<>();
-        stats.put("users", userCount);
-        stats.put("products", productCount);
-        stats.put("orders", orderCount);
-        stats.put("revenue", totalRevenue != null ? totalRevenue : BigDecimal.ZERO);
+        stats.put("users", userCount.get());
+        stats.put("farmers", farmerCount.get());
+        stats.put("retailers", retailerCount.get());
+        stats.put("products", productCount.get());
+        // Cancelled orders are not counted
+        stats.put("orders", totals.get() != null ? totals.get().orders() : null);
+        stats.put("revenue", totals.get() != null ? totals.get().revenue() : null);
         stats.put("revenueTrend", revenueTrend);
+        stats.put("hourlyTrend", hourlyTrend);
         stats.put("recentActivity", recentActivity);
+        stats.put("degraded", degraded);
 
         return ResponseEntity.ok(stats);
     }
 
-    @GetMapping("/users")
+    // Recomputes the stats rollups of the given days from orders and users
+    @PostMapping("/stats/rollups/rebuild")
     @PreAuthorize("hasAuthority('ADMIN')")
-    public List<User> getAllUsers() {
-        return userRepository.findAll();
+    public ResponseEntity<MessageResponse> rebuildRollups(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LocalDate last = to != null ? to : LocalDate.now();
+        if (last.isBefore(from)) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: 'to' is before 'from'"));
+        }
+        int days = statsRollupService.rebuild(from, last);
+        return ResponseEntity.ok(new MessageResponse("Rebuilt rollups for " + days + " days"));
     }
 
-    @Autowired
-    private com.farmtrade.backend.repository.PasswordResetTokenRepository passwordResetTokenRepository;
+    // e.g. /api/admin/users?status=PENDING&role=FARMER or /api/admin/users?q=ravi, newest first
+    @GetMapping("/users")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public CursorPage<AdminUserView> getAllUsers(UserSearchCriteria criteria,
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return userAdminService.searchUsers(criteria, cursor, size);
+    }
 
+    // Deletes in the background; poll GET /api/admin/users/jobs/{jobId} for the outcome
     @DeleteMapping("/users/{id}")
     @PreAuthorize("hasAuthority('ADMIN')")
-    @Transactional
-    public ResponseEntity<?> deleteUser(@PathVariable Long id) {
-        try {
-            User user = userRepository.findById(id).orElse(null);
-            if (user == null) {
-                return ResponseEntity.badRequest().body("User not found");
-            }
-
-            // 1. Delete Password Reset Tokens
-            passwordResetTokenRepository.deleteByUser(user);
-
-            // 2. Delete Products (if Farmer)
-            if (user.getRole() == com.farmtrade.backend.model.Role.FARMER) {
-                List<com.farmtrade.backend.model.Product> products = productRepository.findByFarmer(user);
-                productRepository.deleteAll(products);
-                productRepository.flush(); // Force delete to DB
-            }
-
-            // 3. Delete Orders (if Retailer)
-            if (user.getRole() == com.farmtrade.backend.model.Role.RETAILER) {
-                List<com.farmtrade.backend.model.Order> orders = orderRepository.findByRetailer(user);
-                orderRepository.deleteAll(orders);
-                orderRepository.flush(); // Force delete to DB
-            }
-
-            userRepository.deleteById(id);
-            return ResponseEntity.ok("User deleted successfully");
-        } catch (Exception e) {
-            e.printStackTrace(); // Log stack trace
-            return ResponseEntity.badRequest().body("Error deleting user: " + e.getMessage());
-        }
+    public ResponseEntity<UserJob> deleteUser(@PathVariable Long id, Authentication authentication) {
+        return ResponseEntity.accepted()
+                .body(userJobService.submit(UserJob.Type.DELETE, List.of(id), authentication.getName()));
+    }
+
+    // Bulk delete, approve or reject, e.g. {"type": "APPROVE", "userIds": [12, 15, 19]}
+    @PostMapping("/users/jobs")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public ResponseEntity<UserJob> submitUserJob(@RequestBody UserJobRequest request, Authentication authentication) {
+        return ResponseEntity.accepted()
+                .body(userJobService.submit(request.getType(), request.getUserIds(), authentication.getName()));
+    }
+
+    @GetMapping("/users/jobs")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public List<UserJob> getUserJobs() {
+        return userJobService.getRecentJobs();
+    }
+
+    @GetMapping("/users/jobs/{jobId}")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public UserJobProgress getUserJob(@PathVariable Long jobId) {
+        return new UserJobProgress(userJobService.getJob(jobId), userJobService.getFailures(jobId));
     }
 
     @PutMapping("/users/{id}/status")
@@ -0,0 +1,40 @@
+package com.farmtrade.backend.controller;
+
+import com.farmtrade.backend.service.ExportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDate;
+
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RestController
+@RequestMapping("/api/admin/export")
+public class AdminExportController {
+
+    @Autowired
+    private ExportService exportService;
+
+    // e.g. /api/admin/export/orders?format=csv&from=2026-09-01&to=2026-09-30&status=DELIVERED
+    @GetMapping("/{dataset}")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> export(@PathVariable String dataset,
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String status) {
+        String copySql = exportService.prepareExport(dataset, format, from, to, status);
+        String fileName = dataset + "." + format.toLowerCase();
+
+        StreamingResponseBody body = out -> exportService.copyOut(copySql, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(ExportService.contentType(format)))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .body(body);
+    }
+}
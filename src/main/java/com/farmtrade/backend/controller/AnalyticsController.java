@@ -0,0 +1,24 @@
+package com.farmtrade.backend.controller;
+
+import com.farmtrade.backend.dto.AnalyticsQuery;
+import com.farmtrade.backend.dto.AnalyticsResult;
+import com.farmtrade.backend.service.AnalyticsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RestController
+@RequestMapping("/api/admin/analytics")
+public class AnalyticsController {
+
+    @Autowired
+    private AnalyticsService analyticsService;
+
+    // Answered from the in-memory cube; see AnalyticsQuery for the dimensions and filters
+    @PostMapping("/query")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public AnalyticsResult query(@RequestBody AnalyticsQuery query) {
+        return analyticsService.query(query);
+    }
+}
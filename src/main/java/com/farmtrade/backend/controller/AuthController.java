@@ -30,6 +30,7 @@ import com.farmtrade.backend.dto.SignupRequest;
 import com.farmtrade.backend.model.Role;
 import com.farmtrade.backend.model.User;
 import com.farmtrade.backend.repository.UserRepository;
+import com.farmtrade.backend.service.StatsRollupService;
 import com.farmtrade.backend.service.UserDetailsImpl;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
@@ -48,6 +49,9 @@ public class AuthController {
     @Autowired
     JwtUtils jwtUtils;
 
+    @Autowired
+    StatsRollupService statsRollupService;
+
     @org.springframework.beans.factory.annotation.Value("${app.frontend.url}")
     private String frontendUrl;
 
@@ -106,6 +110,7 @@ public class AuthController {
         user.setContactInfo(signUpRequest.getMobileNumber()); // for backward compatibility
         // user.setEmail already set above
         user.setAddress(signUpRequest.getAddress());
+        user.setRegion(signUpRequest.getRegion());
         user.setGender(signUpRequest.getGender());
         user.setDateOfBirth(signUpRequest.getDateOfBirth());
 
@@ -120,7 +125,7 @@ public class AuthController {
 
         user.setStatus(UserStatus.APPROVED); // Allow login immediately after signup
 
-        userRepository.save(user);
+        statsRollupService.recordNewUser(userRepository.save(user));
 
         return ResponseEntity.ok(new MessageResponse("User registered successfully!"));
 
@@ -1,64 +1,42 @@
 package com.farmtrade.backend.controller;
 
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
-import org.springframework.http.MediaType;
+import com.farmtrade.backend.model.StoredFile;
+import com.farmtrade.backend.service.ImageDerivativeService;
+import com.farmtrade.backend.service.UploadStore;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
-import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
-import java.util.Objects;
-import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/upload")
 @CrossOrigin(origins = "*", maxAge = 3600)
 public class FileUploadController {
 
-    private final Path fileStorageLocation;
+    @Autowired
+    private UploadStore uploadStore;
 
-    public FileUploadController() {
-        this.fileStorageLocation = Paths.get("uploads").toAbsolutePath().normalize();
-        try {
-            Files.createDirectories(this.fileStorageLocation);
-        } catch (Exception ex) {
-            throw new RuntimeException("Could not create the directory where the uploaded files will be stored.", ex);
-        }
-    }
+    @Autowired
+    private ImageDerivativeService imageDerivativeService;
 
+    // The URL names the content, so uploading the same photo twice returns the same URL
     @PostMapping
     public ResponseEntity<String> uploadFile(@RequestParam("file") MultipartFile file) {
-        // Normalize file name
-        String originalFileName = StringUtils.cleanPath(Objects.requireNonNull(file.getOriginalFilename()));
-        String fileName = UUID.randomUUID().toString() + "_" + originalFileName;
-
         try {
-            // Check if the file's name contains invalid characters
-            if (fileName.contains("..")) {
-                return ResponseEntity.badRequest().body("Sorry! Filename contains invalid path sequence " + fileName);
-            }
-
-            // Copy file to the target location (Replacing existing file with the same name)
-            Path targetLocation = this.fileStorageLocation.resolve(fileName);
-            Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
+            StoredFile stored = uploadStore.store(file);
+            imageDerivativeService.generate(stored.getPath());
 
             String fileDownloadUri = ServletUriComponentsBuilder.fromCurrentContextPath()
-                    .path("/uploads/")
-                    .path(fileName)
+                    .path(UploadStore.urlOf(stored))
                     .toUriString();
 
             return ResponseEntity.ok(fileDownloadUri);
         } catch (IOException ex) {
             return ResponseEntity.internalServerError()
-                    .body("Could not store file " + fileName + ". Please try again!");
+                    .body("Could not store file " + file.getOriginalFilename() + ". Please try again!");
         }
     }
 }
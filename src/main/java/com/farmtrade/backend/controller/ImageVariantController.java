@@ -0,0 +1,62 @@
+package com.farmtrade.backend.controller;
+
+import com.farmtrade.backend.service.ImageDerivativeService;
+import com.farmtrade.backend.service.UploadStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Serves /uploads/sha256/..?size=thumb|card|detail. Requests without a size
+ * go to the static upload handler as before.
+ */
+@RestController
+@CrossOrigin(origins = "*", maxAge = 3600)
+public class ImageVariantController {
+
+    private static final Pattern NAME = Pattern.compile("[0-9a-f]{64}(\\.[a-z0-9]{1,8})?");
+
+    @Autowired
+    private UploadStore uploadStore;
+
+    @Autowired
+    private ImageDerivativeService imageDerivativeService;
+
+    // Until the size is rendered the original is served, cached only briefly so clients come back for the size
+    @GetMapping(value = UploadStore.URL_PREFIX + UploadStore.CONTENT_DIR + "/{dir}/{name}", params = "size")
+    public ResponseEntity<Resource> getVariant(@PathVariable String dir, @PathVariable String name,
+            @RequestParam String size) {
+        ImageDerivativeService.Size variant = ImageDerivativeService.parseSize(size);
+        if (dir.length() != 2 || !NAME.matcher(name).matches() || !name.startsWith(dir)) {
+            return ResponseEntity.notFound().build();
+        }
+        String path = UploadStore.CONTENT_DIR + "/" + dir + "/" + name;
+        Path original = uploadStore.resolve(path);
+        if (!Files.isRegularFile(original)) {
+            return ResponseEntity.notFound().build();
+        }
+
+        Path derivative = uploadStore.resolve(ImageDerivativeService.derivativePath(path, variant));
+        if (Files.isRegularFile(derivative)) {
+            return ResponseEntity.ok()
+                    .cacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable())
+                    .contentType(MediaType.IMAGE_JPEG)
+                    .body(new FileSystemResource(derivative));
+        }
+        imageDerivativeService.generate(path);
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(60, TimeUnit.SECONDS).cachePublic())
+                .contentType(MediaTypeFactory.getMediaType(name).orElse(MediaType.APPLICATION_OCTET_STREAM))
+                .body(new FileSystemResource(original));
+    }
+}
@@ -0,0 +1,28 @@
+package com.farmtrade.backend.controller;
+
+import com.farmtrade.backend.dto.LeaderboardEntry;
+import com.farmtrade.backend.service.LeaderboardService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RestController
+@RequestMapping("/api/leaderboards")
+public class LeaderboardController {
+
+    @Autowired
+    private LeaderboardService leaderboardService;
+
+    // e.g. /api/leaderboards/products?window=week&limit=10; boards are products, farmers and categories
+    @GetMapping("/{board}")
+    @PreAuthorize("hasAuthority('RETAILER') or hasAuthority('ADMIN')")
+    public List<LeaderboardEntry> getLeaderboard(@PathVariable String board,
+            @RequestParam(defaultValue = "week") String window,
+            @RequestParam(defaultValue = "10") int limit) {
+        return leaderboardService.getLeaderboard(LeaderboardService.parseBoard(board),
+                LeaderboardService.parseWindow(window), limit);
+    }
+}
@@ -1,21 +1,30 @@
 package com.farmtrade.backend.controller;
 
+import com.farmtrade.backend.dto.BulkOrderRequest;
+import com.farmtrade.backend.dto.BulkOrderResult;
+import com.farmtrade.backend.dto.CursorPage;
+import com.farmtrade.backend.dto.FarmerOrderView;
 import com.farmtrade.backend.dto.OrderRequest;
+import com.farmtrade.backend.dto.OrderSearchCriteria;
+import com.farmtrade.backend.dto.OrderStatusUpdateRequest;
+import com.farmtrade.backend.dto.OrderStatusUpdateResult;
 import com.farmtrade.backend.model.Order;
 import com.farmtrade.backend.model.Role;
 import com.farmtrade.backend.model.User;
-import com.farmtrade.backend.repository.OrderRepository;
-import com.farmtrade.backend.repository.ProductRepository;
+import com.farmtrade.backend.model.UserStats;
 import com.farmtrade.backend.repository.UserRepository;
+import com.farmtrade.backend.service.DashboardFanOut;
 import com.farmtrade.backend.service.OrderService;
+import com.farmtrade.backend.service.UserStatsService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
-import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -29,13 +38,13 @@ public class OrderController {
     private OrderService orderService;
 
     @Autowired
-    private OrderRepository orderRepository;
+    private UserRepository userRepository;
 
     @Autowired
-    private ProductRepository productRepository;
+    private UserStatsService userStatsService;
 
     @Autowired
-    private UserRepository userRepository;
+    private DashboardFanOut dashboardFanOut;
 
     @PostMapping
     @PreAuthorize("hasAuthority('RETAILER')")
@@ -44,24 +53,45 @@ public class OrderController {
         return ResponseEntity.ok(orderService.placeOrder(orderRequest, auth.getName()));
     }
 
+    @PostMapping("/bulk")
+    @PreAuthorize("hasAuthority('RETAILER')")
+    public ResponseEntity<List<BulkOrderResult>> placeOrders(@RequestBody BulkOrderRequest request) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        return ResponseEntity.ok(orderService.placeOrders(request, auth.getName()));
+    }
+
     @GetMapping
     @PreAuthorize("hasAuthority('RETAILER')")
-    public List<Order> getMyOrders() {
+    public CursorPage<Order> getMyOrders(@RequestParam(required = false) Long cursor,
+            @RequestParam(defaultValue = "20") int size) {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        return orderService.getOrdersByRetailer(auth.getName());
+        return orderService.getOrdersByRetailer(auth.getName(), cursor, size);
     }
 
     @GetMapping("/farmer")
     @PreAuthorize("hasAuthority('FARMER')")
-    public List<Order> getMyOrdersFarmer() {
+    public CursorPage<FarmerOrderView> getMyOrdersFarmer(@RequestParam(required = false) Long cursor,
+            @RequestParam(defaultValue = "20") int size) {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        return orderService.getOrdersByFarmer(auth.getName());
+        return orderService.getOrdersByFarmer(auth.getName(), cursor, size);
     }
 
     @GetMapping("/all")
     @PreAuthorize("hasAuthority('ADMIN')")
-    public List<Order> getAllOrders() {
-        return orderService.getAllOrders();
+    public CursorPage<Order> getAllOrders(@RequestParam(required = false) Long cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return orderService.getAllOrders(cursor, size, from, to);
+    }
+
+    // e.g. /api/orders/search?status=SHIPPED&category=Vegetables&from=2026-09-01&minAmount=500
+    @GetMapping("/search")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public CursorPage<Order> searchOrders(OrderSearchCriteria criteria,
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return orderService.searchOrders(criteria, cursor, size);
     }
 
     @DeleteMapping("/{id}")
@@ -73,11 +103,20 @@ public class OrderController {
 
     @PatchMapping("/{id}/status")
     @PreAuthorize("hasAuthority('FARMER')")
-    public ResponseEntity<Order> updateOrderStatus(@PathVariable Long id, @RequestParam String status) {
+    public ResponseEntity<FarmerOrderView> updateOrderStatus(@PathVariable Long id, @RequestParam String status) {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         return ResponseEntity.ok(orderService.updateOrderStatus(id, status, auth.getName()));
     }
 
+    @PatchMapping("/status")
+    @PreAuthorize("hasAuthority('FARMER')")
+    public ResponseEntity<List<OrderStatusUpdateResult>> updateOrderStatuses(
+            @RequestBody OrderStatusUpdateRequest request) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        return ResponseEntity.ok(orderService.updateOrderStatuses(request.getOrderIds(), request.getStatus(),
+                auth.getName()));
+    }
+
     @GetMapping("/dashboard-stats")
     @PreAuthorize("hasAuthority('FARMER') or hasAuthority('RETAILER')")
     public ResponseEntity<Map<String, Object>> getDashboardStats() {
@@ -87,35 +126,34 @@ public class OrderController {
 
         Map<String, Object> stats = new HashMap<>();
 
-        if (currentUser.getRole() == Role.FARMER) {
-            long orderCount = orderRepository.countDistinctByItemsProductFarmer(currentUser);
-            BigDecimal totalRevenue = orderRepository.sumTotalAmountByFarmer(currentUser);
-            BigDecimal receivedPayments = orderRepository.sumCompletedAmountByFarmer(currentUser);
-            long activeListings = productRepository.findByFarmer(currentUser).size();
-            List<Order> recentOrders = orderRepository
-                    .findDistinctByItemsProductFarmerOrderByOrderDateDesc(currentUser);
-            // Limit to 5 most recent
-            if (recentOrders.size() > 5) {
-                recentOrders = recentOrders.subList(0, 5);
-            }
-
-            stats.put("orderCount", orderCount);
-            stats.put("totalRevenue", totalRevenue != null ? totalRevenue : BigDecimal.ZERO);
-            stats.put("receivedPayments", receivedPayments != null ? receivedPayments : BigDecimal.ZERO);
-            stats.put("activeListings", activeListings);
-            stats.put("recentOrders", recentOrders);
-        } else if (currentUser.getRole() == Role.RETAILER) {
-            long orderCount = orderRepository.countByRetailer(currentUser);
-            BigDecimal totalSpent = orderRepository.sumTotalAmountByRetailer(currentUser);
-            List<Order> recentOrders = orderRepository
-                    .findByRetailerOrderByOrderDateDesc(currentUser);
-            if (recentOrders.size() > 5) {
-                recentOrders = recentOrders.subList(0, 5);
+        // Counters come from the user's user_stats row; recent orders are an indexed top-5 read.
+        // Both run at once; one that misses the deadline is served empty and listed in "degraded".
+        try (DashboardFanOut.Scope scope = dashboardFanOut.open()) {
+            DashboardFanOut.Part<UserStats> counters = scope.fork("counters",
+                    () -> userStatsService.getStats(currentUser.getId()), new UserStats());
+            if (currentUser.getRole() == Role.FARMER) {
+                DashboardFanOut.Part<List<FarmerOrderView>> recentOrders = scope.fork("recentOrders",
+                        () -> orderService.getRecentOrdersByFarmer(currentUser, 5), List.of());
+                scope.join();
+
+                stats.put("orderCount", counters.get().getOrderCount());
+                // A farmer's order total is the sum of their own lines, not of whole orders
+                stats.put("totalRevenue", counters.get().getOrderTotal().toBigDecimal());
+                stats.put("receivedPayments", counters.get().getReceivedPayments().toBigDecimal());
+                stats.put("activeListings", counters.get().getActiveListings());
+                stats.put("recentOrders", recentOrders.get());
+            } else if (currentUser.getRole() == Role.RETAILER) {
+                DashboardFanOut.Part<List<Order>> recentOrders = scope.fork("recentOrders",
+                        () -> orderService.getRecentOrdersByRetailer(currentUser, 5), List.of());
+                scope.join();
+
+                stats.put("orderCount", counters.get().getOrderCount());
+                stats.put("totalSpent", counters.get().getOrderTotal().toBigDecimal());
+                stats.put("recentOrders", recentOrders.get());
+            } else {
+                scope.join();
             }
-
-            stats.put("orderCount", orderCount);
-            stats.put("totalSpent", totalSpent != null ? totalSpent : BigDecimal.ZERO);
-            stats.put("recentOrders", recentOrders);
+            stats.put("degraded", scope.degraded());
         }
 
         return ResponseEntity.ok(stats);
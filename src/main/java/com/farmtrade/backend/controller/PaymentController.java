@@ -1,18 +1,26 @@
 package com.farmtrade.backend.controller;
 
+import com.farmtrade.backend.component.PaymentReconciliationJob;
 import com.farmtrade.backend.dto.OrderRequest;
-import com.farmtrade.backend.dto.PaymentDetails;
+import com.farmtrade.backend.dto.PaymentReconciliationReport;
 import com.farmtrade.backend.dto.PaymentVerificationRequest;
-import com.farmtrade.backend.model.Order;
-import com.farmtrade.backend.service.OrderService;
+import com.farmtrade.backend.dto.RefundRequest;
+import com.farmtrade.backend.model.Refund;
+import com.farmtrade.backend.service.PaymentGatewayException;
 import com.farmtrade.backend.service.PaymentService;
-import com.razorpay.RazorpayException;
+import com.farmtrade.backend.service.PaymentWebhookService;
+import com.farmtrade.backend.service.RefundService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 @RestController
 @RequestMapping("/api/payments")
 @CrossOrigin(origins = "*", maxAge = 3600)
@@ -22,23 +30,40 @@ public class PaymentController {
     private PaymentService paymentService;
 
     @Autowired
-    private OrderService orderService;
+    private PaymentWebhookService paymentWebhookService;
+
+    @Autowired
+    private PaymentReconciliationJob paymentReconciliationJob;
+
+    @Autowired
+    private RefundService refundService;
 
+    // Returns a future so the servlet thread is released while the gateway call is in flight
     @PostMapping("/create-order")
     @PreAuthorize("hasAuthority('RETAILER')")
-    @org.springframework.transaction.annotation.Transactional(rollbackFor = Exception.class)
-    public ResponseEntity<?> createOrder(@RequestBody OrderRequest orderRequest, Authentication authentication) {
+    public CompletableFuture<ResponseEntity<?>> createOrder(@RequestBody OrderRequest orderRequest,
+            Authentication authentication) {
         try {
-            Order order = orderService.placeOrder(orderRequest, authentication.getName());
-            PaymentDetails paymentDetails = paymentService.createRazorpayOrder(order);
-            return ResponseEntity.ok(paymentDetails);
-        } catch (RazorpayException e) {
-            return ResponseEntity.badRequest().body("Failed to create Razorpay order: " + e.getMessage());
+            return paymentService.createPaymentOrder(orderRequest, authentication.getName())
+                    .<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+                    .exceptionally(PaymentController::gatewayFailure);
         } catch (Exception e) {
-            return ResponseEntity.internalServerError().body("Error: " + e.getMessage());
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.internalServerError().body("Error: " + e.getMessage()));
         }
     }
 
+    private static ResponseEntity<?> gatewayFailure(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof PaymentGatewayException gatewayException) {
+            HttpStatus status = gatewayException.getReason() == PaymentGatewayException.Reason.DECLINED
+                    ? HttpStatus.BAD_REQUEST
+                    : HttpStatus.SERVICE_UNAVAILABLE;
+            return ResponseEntity.status(status).body("Failed to create Razorpay order: " + cause.getMessage());
+        }
+        return ResponseEntity.internalServerError().body("Error: " + cause.getMessage());
+    }
+
     @PostMapping("/verify-payment")
     @PreAuthorize("hasAuthority('RETAILER')")
     public ResponseEntity<?> verifyPayment(@RequestBody PaymentVerificationRequest verificationRequest) {
@@ -49,4 +74,38 @@ public class PaymentController {
             return ResponseEntity.badRequest().body("Invalid payment signature");
         }
     }
+
+    // Called by Razorpay, authenticated by the body signature rather than a JWT
+    @PostMapping("/webhook")
+    public ResponseEntity<?> webhook(@RequestBody String body,
+            @RequestHeader(value = "X-Razorpay-Signature", required = false) String signature,
+            @RequestHeader(value = "X-Razorpay-Event-Id", required = false) String eventId) {
+        PaymentWebhookService.Receipt receipt = paymentWebhookService.receive(body, signature, eventId);
+        if (receipt == PaymentWebhookService.Receipt.INVALID_SIGNATURE) {
+            return ResponseEntity.badRequest().body("Invalid webhook signature");
+        }
+        return ResponseEntity.ok().build();
+    }
+
+    @GetMapping("/reconciliation/latest")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public ResponseEntity<PaymentReconciliationReport> getLatestReconciliation() {
+        PaymentReconciliationReport report = paymentReconciliationJob.getLastRun();
+        return report != null ? ResponseEntity.ok(report) : ResponseEntity.noContent().build();
+    }
+
+    // Queues a full refund; RefundWorker issues it shortly after
+    @PostMapping("/refunds")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public ResponseEntity<Refund> requestRefund(@RequestBody RefundRequest refundRequest,
+            Authentication authentication) {
+        return ResponseEntity.ok(refundService.requestRefund(refundRequest.getOrderId(), refundRequest.getReason(),
+                authentication.getName()));
+    }
+
+    @GetMapping("/refunds")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public ResponseEntity<List<Refund>> getRecentRefunds(@RequestParam(required = false) Refund.Status status) {
+        return ResponseEntity.ok(refundService.getRecentRefunds(status));
+    }
 }
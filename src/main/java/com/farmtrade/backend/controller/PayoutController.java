@@ -0,0 +1,64 @@
+package com.farmtrade.backend.controller;
+
+import com.farmtrade.backend.model.FarmerAccount;
+import com.farmtrade.backend.model.PayoutBatch;
+import com.farmtrade.backend.model.PayoutItem;
+import com.farmtrade.backend.model.User;
+import com.farmtrade.backend.repository.UserRepository;
+import com.farmtrade.backend.service.LedgerService;
+import com.farmtrade.backend.service.PayoutSettlementService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RestController
+@RequestMapping("/api/payouts")
+public class PayoutController {
+
+    @Autowired
+    private PayoutSettlementService payoutSettlementService;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    // Settles sales posted up to the end of the given day (default: yesterday)
+    @PostMapping("/settlements")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public ResponseEntity<PayoutBatch> settle(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate through) {
+        LocalDate lastDay = through != null ? through : LocalDate.now().minusDays(1);
+        return ResponseEntity.ok(payoutSettlementService.settle(lastDay.plusDays(1).atStartOfDay()));
+    }
+
+    @GetMapping("/batches")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public ResponseEntity<List<PayoutBatch>> getRecentBatches() {
+        return ResponseEntity.ok(payoutSettlementService.getRecentBatches());
+    }
+
+    @GetMapping("/batches/{id}/items")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public ResponseEntity<List<PayoutItem>> getBatchItems(@PathVariable Long id) {
+        return ResponseEntity.ok(payoutSettlementService.getBatchItems(id));
+    }
+
+    @GetMapping("/account")
+    @PreAuthorize("hasAuthority('FARMER')")
+    public ResponseEntity<FarmerAccount> getMyAccount() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        User farmer = userRepository.findByEmail(auth.getName())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        return ResponseEntity.ok(ledgerService.getAccount(farmer.getId()));
+    }
+}
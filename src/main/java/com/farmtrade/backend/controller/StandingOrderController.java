@@ -0,0 +1,64 @@
+package com.farmtrade.backend.controller;
+
+import com.farmtrade.backend.component.StandingOrderScheduler;
+import com.farmtrade.backend.dto.MessageResponse;
+import com.farmtrade.backend.dto.StandingOrderRequest;
+import com.farmtrade.backend.dto.StandingOrderRunStats;
+import com.farmtrade.backend.model.StandingOrder;
+import com.farmtrade.backend.service.StandingOrderService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RestController
+@RequestMapping("/api/standing-orders")
+public class StandingOrderController {
+
+    @Autowired
+    private StandingOrderService standingOrderService;
+
+    @Autowired
+    private StandingOrderScheduler standingOrderScheduler;
+
+    @PostMapping
+    @PreAuthorize("hasAuthority('RETAILER')")
+    public ResponseEntity<StandingOrder> createStandingOrder(@RequestBody StandingOrderRequest request) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        return ResponseEntity.ok(standingOrderService.createStandingOrder(request, auth.getName()));
+    }
+
+    @GetMapping
+    @PreAuthorize("hasAuthority('RETAILER')")
+    public List<StandingOrder> getMyStandingOrders() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        return standingOrderService.getStandingOrders(auth.getName());
+    }
+
+    @PatchMapping("/{id}/active")
+    @PreAuthorize("hasAuthority('RETAILER')")
+    public ResponseEntity<StandingOrder> setActive(@PathVariable Long id, @RequestParam boolean active) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        return ResponseEntity.ok(standingOrderService.setActive(id, active, auth.getName()));
+    }
+
+    @DeleteMapping("/{id}")
+    @PreAuthorize("hasAuthority('RETAILER')")
+    public ResponseEntity<MessageResponse> deleteStandingOrder(@PathVariable Long id) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        standingOrderService.deleteStandingOrder(id, auth.getName());
+        return ResponseEntity.ok(new MessageResponse("Standing order deleted"));
+    }
+
+    @GetMapping("/runs/latest")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public ResponseEntity<StandingOrderRunStats> getLatestRun() {
+        StandingOrderRunStats stats = standingOrderScheduler.getLastRun();
+        return stats != null ? ResponseEntity.ok(stats) : ResponseEntity.noContent().build();
+    }
+}
@@ -1,11 +1,5 @@
 package com.farmtrade.backend.controller;
 
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
-import java.util.UUID;
-
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -18,11 +12,13 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
-import org.springframework.util.StringUtils;
 
 import com.farmtrade.backend.dto.MessageResponse;
+import com.farmtrade.backend.model.StoredFile;
 import com.farmtrade.backend.model.User;
 import com.farmtrade.backend.repository.UserRepository;
+import com.farmtrade.backend.service.ImageDerivativeService;
+import com.farmtrade.backend.service.UploadStore;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
@@ -32,15 +28,11 @@ public class UserController {
     @Autowired
     UserRepository userRepository;
 
-    private final Path fileStorageLocation = Paths.get("uploads").toAbsolutePath().normalize();
+    @Autowired
+    UploadStore uploadStore;
 
-    public UserController() {
-        try {
-            Files.createDirectories(this.fileStorageLocation);
-        } catch (Exception ex) {
-            throw new RuntimeException("Could not create the directory where the uploaded files will be stored.", ex);
-        }
-    }
+    @Autowired
+    ImageDerivativeService imageDerivativeService;
 
     @PostMapping("/{id}/photo")
     @PreAuthorize("hasAuthority('FARMER') or hasAuthority('RETAILER') or hasAuthority('ADMIN')")
@@ -49,24 +41,16 @@ public class UserController {
                 .orElseThrow(() -> new RuntimeException("Error: User not found."));
 
         try {
-            // Normalize file name
-            String originalFileName = StringUtils.cleanPath(file.getOriginalFilename());
-            String fileExtension = "";
-            if (originalFileName.contains(".")) {
-                fileExtension = originalFileName.substring(originalFileName.lastIndexOf("."));
-            }
-
-            // Generate unique file name
-            String fileName = UUID.randomUUID().toString() + fileExtension;
-
-            // Copy file to the target location (Replacing existing file with the same name)
-            Path targetLocation = this.fileStorageLocation.resolve(fileName);
-            Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
+            StoredFile stored = uploadStore.store(file);
+            imageDerivativeService.generate(stored.getPath());
 
-            // Update user profile photo URL (relative path)
-            String fileUrl = "/uploads/" + fileName;
+            // Update user profile photo URL (relative path); the replaced photo gives its reference back
+            String fileUrl = UploadStore.urlOf(stored);
+            String previous = user.getProfilePhoto();
             user.setProfilePhoto(fileUrl);
             userRepository.save(user);
+            uploadStore.retain(fileUrl);
+            uploadStore.release(previous);
 
             return ResponseEntity.ok(new MessageResponse(fileUrl)); // Return the URL
         } catch (Exception ex) {
@@ -87,6 +71,8 @@ public class UserController {
             user.setMobileNumber(updatedUser.getMobileNumber());
         if (updatedUser.getAddress() != null)
             user.setAddress(updatedUser.getAddress());
+        if (updatedUser.getRegion() != null)
+            user.setRegion(updatedUser.getRegion());
         if (updatedUser.getGender() != null)
             user.setGender(updatedUser.getGender());
         if (updatedUser.getDateOfBirth() != null)
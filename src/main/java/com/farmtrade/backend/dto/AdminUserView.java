@@ -0,0 +1,23 @@
+package com.farmtrade.backend.dto;
+
+import com.farmtrade.backend.model.Role;
+import com.farmtrade.backend.model.UserStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// One row of the admin user directory; identity documents and credentials stay out of listings
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AdminUserView {
+    private Long id;
+    private String email;
+    private String fullName;
+    private String mobileNumber;
+    private Role role;
+    private UserStatus status;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,20 @@
+package com.farmtrade.backend.dto;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// e.g. {"groupBy": ["week", "category"], "regions": ["Punjab"], "from": "2026-07-01"}
+@Data
+public class AnalyticsQuery {
+    // Any of day, week or month (one at most), category, farmer, retailer, region; empty for the grand total
+    private List<String> groupBy;
+    private LocalDate from;
+    private LocalDate to;
+    private List<String> categories;
+    private List<Long> farmerIds;
+    private List<Long> retailerIds;
+    private List<String> regions;
+    private Integer limit;
+}
@@ -0,0 +1,16 @@
+package com.farmtrade.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalyticsResult {
+    // Groups before the limit was applied; rows are ordered by revenue, highest first
+    private int groups;
+    private List<AnalyticsRow> rows;
+}
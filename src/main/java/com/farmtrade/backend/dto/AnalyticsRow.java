@@ -0,0 +1,21 @@
+package com.farmtrade.backend.dto;
+
+import com.farmtrade.backend.model.Money;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalyticsRow {
+    // Dimension name to value; farmers and retailers by user id, weeks by their Monday
+    private Map<String, String> group;
+    private long quantity;
+    private Money revenue;
+    // Distinct orders, only when grouped by both category and farmer: an order with lines in several
+    // categories or farmers would otherwise be counted once per cell it spans. Null for other groupings.
+    private Long orders;
+}
@@ -0,0 +1,19 @@
+package com.farmtrade.backend.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BulkOrderRequest {
+
+    public enum Mode {
+        // Place every order or none of them
+        ALL_OR_NOTHING,
+        // Place the orders that validate and report the rest
+        BEST_EFFORT
+    }
+
+    private List<OrderRequest> orders;
+    private Mode mode = Mode.ALL_OR_NOTHING;
+}
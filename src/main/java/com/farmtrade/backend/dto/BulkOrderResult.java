@@ -0,0 +1,18 @@
+package com.farmtrade.backend.dto;
+
+import com.farmtrade.backend.model.Money;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkOrderResult {
+    // Position of the order in the request
+    private int index;
+    private boolean placed;
+    private Long orderId;
+    private Money totalAmount;
+    private String message;
+}
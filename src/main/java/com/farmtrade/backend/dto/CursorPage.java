@@ -0,0 +1,28 @@
+package com.farmtrade.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One keyset page of results. Pass {@code nextCursor} back as the
+ * {@code cursor} request parameter to fetch the following page; it is null
+ * on the last page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+
+    public static final int MAX_SIZE = 100;
+
+    private List<T> items;
+    private Long nextCursor;
+
+    // Requested page sizes are kept between 1 and MAX_SIZE
+    public static int clampSize(int size) {
+        return Math.max(1, Math.min(size, MAX_SIZE));
+    }
+}
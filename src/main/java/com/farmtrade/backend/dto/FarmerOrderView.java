@@ -0,0 +1,50 @@
+package com.farmtrade.backend.dto;
+
+import com.farmtrade.backend.model.Money;
+import com.farmtrade.backend.model.OrderFarmer;
+import com.farmtrade.backend.model.OrderItem;
+import com.farmtrade.backend.model.OrderStatus;
+import com.farmtrade.backend.model.PaymentStatus;
+import com.farmtrade.backend.model.User;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * A farmer's view of an order, built from their fulfilment only. Field names
+ * match Order so existing clients keep working: id is the order id, status is
+ * the farmer's own fulfilment status, totalAmount is their subtotal and items
+ * are just their lines. orderStatus is the derived status of the whole order.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FarmerOrderView {
+    private Long id;
+    private LocalDateTime orderDate;
+    private OrderStatus status;
+    private OrderStatus orderStatus;
+    private PaymentStatus paymentStatus;
+    private Money totalAmount;
+
+    @JsonIgnoreProperties({ "hibernateLazyInitializer", "handler" })
+    private User retailer;
+
+    private List<OrderItem> items;
+
+    public static FarmerOrderView of(OrderFarmer fulfilment) {
+        return new FarmerOrderView(
+                fulfilment.getOrder().getId(),
+                fulfilment.getOrderDate(),
+                fulfilment.getStatus(),
+                fulfilment.getOrder().getStatus(),
+                fulfilment.getPaymentStatus(),
+                fulfilment.getFarmerSubtotal(),
+                fulfilment.getOrder().getRetailer(),
+                fulfilment.getItems());
+    }
+}
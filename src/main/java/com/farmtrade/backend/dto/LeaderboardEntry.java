@@ -0,0 +1,17 @@
+package com.farmtrade.backend.dto;
+
+import com.farmtrade.backend.model.Money;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaderboardEntry {
+    // Product or farmer id; null on the categories board
+    private Long id;
+    private String name;
+    private long quantity;
+    private Money revenue;
+}
@@ -0,0 +1,25 @@
+package com.farmtrade.backend.dto;
+
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// Bound from query parameters; every field is optional and set fields are ANDed
+@Data
+public class OrderSearchCriteria {
+    private String status;
+    private String paymentStatus;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate from;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate to;
+    private BigDecimal minAmount;
+    private BigDecimal maxAmount;
+    private Long retailerId;
+    private Long farmerId;
+    private String category;
+    // Either a Razorpay order id (order_...) or payment id (pay_...)
+    private String razorpayId;
+}
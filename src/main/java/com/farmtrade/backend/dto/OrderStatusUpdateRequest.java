@@ -0,0 +1,11 @@
+package com.farmtrade.backend.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class OrderStatusUpdateRequest {
+    private List<Long> orderIds;
+    private String status;
+}
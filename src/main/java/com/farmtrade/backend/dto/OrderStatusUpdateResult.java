@@ -0,0 +1,16 @@
+package com.farmtrade.backend.dto;
+
+import com.farmtrade.backend.model.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderStatusUpdateResult {
+    private Long orderId;
+    private boolean updated;
+    private OrderStatus status;
+    private String message;
+}
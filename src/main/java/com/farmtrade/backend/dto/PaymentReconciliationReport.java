@@ -0,0 +1,23 @@
+package com.farmtrade.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class PaymentReconciliationReport {
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private int pages;
+    // Stale PENDING orders whose status was asked for
+    private int checked;
+    private int completed;
+    private int failed;
+    // The gateway has nothing final for these yet
+    private int stillPending;
+    // Settled by a webhook or verify call while the lookup was in flight
+    private int alreadySettled;
+    private int lookupErrors;
+}
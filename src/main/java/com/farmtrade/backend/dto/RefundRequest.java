@@ -0,0 +1,9 @@
+package com.farmtrade.backend.dto;
+
+import lombok.Data;
+
+@Data
+public class RefundRequest {
+    private Long orderId;
+    private String reason;
+}
@@ -25,6 +25,8 @@ public class SignupRequest {
     @NotBlank
     private String address;
 
+    private String region;
+
     private String gender;
 
     private java.time.LocalDate dateOfBirth;
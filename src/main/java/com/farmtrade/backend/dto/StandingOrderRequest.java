@@ -0,0 +1,13 @@
+package com.farmtrade.backend.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class StandingOrderRequest {
+    private String name;
+    // Spring cron expression, e.g. "0 0 6 * * MON" for every Monday at 06:00
+    private String schedule;
+    private List<OrderItemRequest> items;
+}
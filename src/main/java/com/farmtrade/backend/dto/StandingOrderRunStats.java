@@ -0,0 +1,19 @@
+package com.farmtrade.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class StandingOrderRunStats {
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private int batches;
+    private int claimed;
+    private int placed;
+    private int failed;
+    // How long the most overdue template waited past its due time
+    private long maxLagSeconds;
+}
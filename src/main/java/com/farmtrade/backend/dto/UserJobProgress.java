@@ -0,0 +1,18 @@
+package com.farmtrade.backend.dto;
+
+import com.farmtrade.backend.model.UserJob;
+import com.farmtrade.backend.model.UserJobItem;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserJobProgress {
+    private UserJob job;
+    // The first users that could not be changed, with the reason
+    private List<UserJobItem> failures;
+}
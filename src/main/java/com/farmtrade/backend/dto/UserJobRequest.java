@@ -0,0 +1,12 @@
+package com.farmtrade.backend.dto;
+
+import com.farmtrade.backend.model.UserJob;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class UserJobRequest {
+    private UserJob.Type type;
+    private List<Long> userIds;
+}
@@ -0,0 +1,20 @@
+package com.farmtrade.backend.dto;
+
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+
+// Bound from query parameters; every field is optional and set fields are ANDed
+@Data
+public class UserSearchCriteria {
+    private String role;
+    private String status;
+    // Signup date range, inclusive
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate from;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate to;
+    // Prefix of the email or full name, case-insensitive, or of the mobile number when all digits
+    private String q;
+}
@@ -0,0 +1,29 @@
+package com.farmtrade.backend.event;
+
+import com.farmtrade.backend.repository.SalesLineRepository;
+
+import java.util.List;
+
+/**
+ * Published by OrderEvents inside the transaction that cancels the orders,
+ * or removes them uncancelled, before their lines are changed or deleted.
+ * The lines are captured for listeners that run after the commit.
+ */
+public final class OrdersCancelled {
+
+    private final List<Long> orderIds;
+    private final List<SalesLineRepository.Line> lines;
+
+    public OrdersCancelled(List<Long> orderIds, List<SalesLineRepository.Line> lines) {
+        this.orderIds = orderIds;
+        this.lines = lines;
+    }
+
+    public List<Long> getOrderIds() {
+        return orderIds;
+    }
+
+    public List<SalesLineRepository.Line> getLines() {
+        return lines;
+    }
+}
@@ -0,0 +1,30 @@
+package com.farmtrade.backend.event;
+
+import com.farmtrade.backend.model.Order;
+import com.farmtrade.backend.repository.SalesLineRepository;
+
+import java.util.List;
+
+/**
+ * Published by OrderEvents inside the transaction that placed the orders.
+ * The orders are only safe to read there; the lines are captured for
+ * listeners that run after the commit.
+ */
+public final class OrdersPlaced {
+
+    private final List<Order> orders;
+    private final List<SalesLineRepository.Line> lines;
+
+    public OrdersPlaced(List<Order> orders, List<SalesLineRepository.Line> lines) {
+        this.orders = orders;
+        this.lines = lines;
+    }
+
+    public List<Order> getOrders() {
+        return orders;
+    }
+
+    public List<SalesLineRepository.Line> getLines() {
+        return lines;
+    }
+}
@@ -0,0 +1,21 @@
+package com.farmtrade.backend.event;
+
+import java.util.List;
+
+/**
+ * Published by OrderEvents inside the transaction that deletes the orders,
+ * before they are deleted. Orders removed uncancelled are also published
+ * as {@link OrdersCancelled}.
+ */
+public final class OrdersRemoved {
+
+    private final List<Long> orderIds;
+
+    public OrdersRemoved(List<Long> orderIds) {
+        this.orderIds = orderIds;
+    }
+
+    public List<Long> getOrderIds() {
+        return orderIds;
+    }
+}
@@ -0,0 +1,20 @@
+package com.farmtrade.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Entity
+@Table(name = "rollup_daily")
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+public class DailyRollup extends Rollup {
+
+    @Id
+    @Column(name = "bucket_day")
+    private LocalDate day;
+}
@@ -0,0 +1,40 @@
+package com.farmtrade.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Running totals of one farmer's FARMER_PAYABLE ledger account. Each posting
+ * adjusts these columns in place, in the same transaction as its
+ * {@link LedgerEntry} rows, so balance always equals totalEarned minus
+ * totalPaidOut and the sum of the farmer's entries.
+ */
+@Entity
+@Table(name = "farmer_accounts")
+@Data
+@NoArgsConstructor
+public class FarmerAccount {
+
+    @Id
+    @Column(name = "farmer_id")
+    private Long farmerId;
+
+    // Owed to the farmer and not yet in a payout batch; negative when a paid-out sale was refunded
+    @Convert(converter = MoneyConverter.class)
+    @Column(nullable = false)
+    private Money balance = Money.ZERO;
+
+    // Net of refunds
+    @Convert(converter = MoneyConverter.class)
+    @Column(nullable = false)
+    private Money totalEarned = Money.ZERO;
+
+    @Convert(converter = MoneyConverter.class)
+    @Column(nullable = false)
+    private Money totalPaidOut = Money.ZERO;
+
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,21 @@
+package com.farmtrade.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "rollup_hourly")
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+public class HourlyRollup extends Rollup {
+
+    // Start of the hour, in server local time like order dates
+    @Id
+    @Column(name = "bucket_start")
+    private LocalDateTime bucketStart;
+}
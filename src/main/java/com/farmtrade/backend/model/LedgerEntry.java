@@ -0,0 +1,79 @@
+package com.farmtrade.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One side of a double-entry posting. Each posting writes a debit and a
+ * credit of the same amount under one postingRef:
+ * a sale debits GATEWAY_CLEARING and credits the farmer's FARMER_PAYABLE,
+ * a refund reverses a sale, debiting FARMER_PAYABLE and crediting GATEWAY_CLEARING,
+ * a payout debits FARMER_PAYABLE and credits FARMER_PAYOUTS.
+ * Entries are never updated. Running farmer totals live in
+ * {@link FarmerAccount} and are adjusted in the same transaction as the
+ * entries, so balances never need a scan of this table.
+ */
+@Entity
+@Table(name = "ledger_entries", uniqueConstraints = @UniqueConstraint(name = "uk_ledger_entries_posting", columnNames = {
+        "posting_ref", "account" }), indexes = @Index(name = "idx_ledger_entries_farmer_posted", columnList = "farmer_id, posted_at"))
+@Data
+@NoArgsConstructor
+public class LedgerEntry {
+
+    public enum Account {
+        // Money collected through Razorpay and not yet paid out
+        GATEWAY_CLEARING,
+        // What the platform owes one farmer (farmerId is set)
+        FARMER_PAYABLE,
+        // Money sent to farmers' bank accounts
+        FARMER_PAYOUTS
+    }
+
+    public enum Side {
+        DEBIT,
+        CREDIT
+    }
+
+    public enum Type {
+        SALE,
+        REFUND,
+        PAYOUT
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // sale:<order farmer id>, refund:<order farmer id> or payout:<batch id>:<farmer id>; replaying a posting hits the unique key
+    @Column(name = "posting_ref", nullable = false, length = 64)
+    private String postingRef;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private Type type;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private Account account;
+
+    @Column(name = "farmer_id")
+    private Long farmerId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 8)
+    private Side side;
+
+    @Convert(converter = MoneyConverter.class)
+    @Column(nullable = false)
+    private Money amount;
+
+    private Long orderId;
+
+    private Long payoutBatchId;
+
+    @Column(name = "posted_at", nullable = false)
+    private LocalDateTime postedAt;
+}
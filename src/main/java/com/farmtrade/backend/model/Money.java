@@ -0,0 +1,80 @@
+package com.farmtrade.backend.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * An INR amount held as a whole number of paise. Arithmetic uses exact long
+ * operations and throws ArithmeticException on overflow instead of wrapping.
+ * Stored through {@link MoneyConverter} in the existing numeric columns and
+ * serialized as a plain rupee number, so the database and the API look the
+ * same as with BigDecimal.
+ */
+public final class Money implements Comparable<Money> {
+
+    public static final Money ZERO = new Money(0);
+
+    private final long paise;
+
+    private Money(long paise) {
+        this.paise = paise;
+    }
+
+    public static Money ofPaise(long paise) {
+        return paise == 0 ? ZERO : new Money(paise);
+    }
+
+    // Rupee amounts with more than two decimals are rounded half-up to the paisa
+    @JsonCreator
+    public static Money of(BigDecimal rupees) {
+        return ofPaise(rupees.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+    }
+
+    public Money plus(Money other) {
+        return ofPaise(Math.addExact(paise, other.paise));
+    }
+
+    public Money minus(Money other) {
+        return ofPaise(Math.subtractExact(paise, other.paise));
+    }
+
+    public Money times(long quantity) {
+        return ofPaise(Math.multiplyExact(paise, quantity));
+    }
+
+    public long toPaise() {
+        return paise;
+    }
+
+    @JsonValue
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(paise, 2);
+    }
+
+    public boolean isZero() {
+        return paise == 0;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(paise, other.paise);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Money other && other.paise == paise;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(paise);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
@@ -4,14 +4,19 @@ import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_retailer", columnList = "retailer_id, id DESC"),
+        @Index(name = "idx_orders_razorpay_order_id", columnList = "razorpay_order_id"),
+        @Index(name = "idx_orders_razorpay_payment_id", columnList = "razorpay_payment_id"),
+        @Index(name = "idx_orders_checkout_expires_at", columnList = "checkout_expires_at")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -31,15 +36,30 @@ public class Order {
     @Enumerated(EnumType.STRING)
     private OrderStatus status;
 
-    private BigDecimal totalAmount;
+    @Convert(converter = MoneyConverter.class)
+    private Money totalAmount;
 
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<OrderItem> items = new ArrayList<>();
 
+    @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true)
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    private List<OrderFarmer> farmers = new ArrayList<>();
+
     private String razorpayOrderId;
     private String razorpayPaymentId;
     private String razorpaySignature;
 
+    // Set while a checkout waits for its Razorpay order; cleared once the id is attached.
+    // Orders still carrying it after it passes are cancelled by CheckoutSweeper.
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    private LocalDateTime checkoutExpiresAt;
+
     @Enumerated(EnumType.STRING)
     private PaymentStatus paymentStatus = PaymentStatus.PENDING;
+
+    // Partition key: set by OrderPartitionMaintenance once a finished order goes cold
+    @ColumnDefault("false")
+    @Column(nullable = false)
+    private boolean archived;
 }
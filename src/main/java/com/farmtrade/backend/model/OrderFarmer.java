@@ -0,0 +1,73 @@
+package com.farmtrade.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A farmer's share of an order: their lines, their subtotal and their own
+ * fulfilment status. Farmers only ever update these rows; the parent order's
+ * status is derived from all of its fulfilments (see
+ * {@link OrderStatus#deriveFrom}). orderDate and paymentStatus are copies of
+ * the parent order's values, kept in sync by OrderService and PaymentService,
+ * so farmer views and revenue totals never join through order_items.
+ */
+@Entity
+@Table(name = "order_farmers", uniqueConstraints = @UniqueConstraint(name = "uk_order_farmers_farmer_order", columnNames = {
+        "farmer_id", "order_id" }), indexes = {
+                @Index(name = "idx_order_farmers_farmer_date", columnList = "farmer_id, order_date DESC"),
+                @Index(name = "idx_order_farmers_order", columnList = "order_id")
+        })
+@Data
+@NoArgsConstructor
+public class OrderFarmer {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "order_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Order order;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "farmer_id", nullable = false)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private User farmer;
+
+    // Sum of this farmer's lines only, not the whole order total
+    @Convert(converter = MoneyConverter.class)
+    private Money farmerSubtotal;
+
+    @Column(name = "order_date")
+    private LocalDateTime orderDate;
+
+    @Enumerated(EnumType.STRING)
+    private OrderStatus status;
+
+    @OneToMany(mappedBy = "orderFarmer")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private List<OrderItem> items = new ArrayList<>();
+
+    @Enumerated(EnumType.STRING)
+    private PaymentStatus paymentStatus;
+
+    public OrderFarmer(Order order, User farmer) {
+        this.order = order;
+        this.farmer = farmer;
+        this.farmerSubtotal = Money.ZERO;
+        this.orderDate = order.getOrderDate();
+        this.status = order.getStatus();
+        this.paymentStatus = order.getPaymentStatus();
+    }
+}
@@ -4,11 +4,14 @@ import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 
-import java.math.BigDecimal;
+import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "order_items")
+@Table(name = "order_items", indexes = {
+        @Index(name = "idx_order_items_order", columnList = "order_id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -19,15 +22,29 @@ public class OrderItem {
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "order_id", nullable = false)
+    @JoinColumn(name = "order_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     @com.fasterxml.jackson.annotation.JsonIgnore
     private Order order;
 
+    // The farmer fulfilment this line belongs to
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "order_farmer_id")
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    private OrderFarmer orderFarmer;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "product_id", nullable = false)
     @com.fasterxml.jackson.annotation.JsonIgnoreProperties({ "hibernateLazyInitializer", "handler" })
     private Product product;
 
     private Integer quantity;
-    private BigDecimal pricePerUnit;
+    @Convert(converter = MoneyConverter.class)
+    private Money pricePerUnit;
+
+    // Copies of the parent order's partition keys so lines are stored alongside their order
+    private LocalDateTime orderDate;
+
+    @ColumnDefault("false")
+    @Column(nullable = false)
+    private boolean archived;
 }
@@ -5,5 +5,30 @@ public enum OrderStatus {
     CONFIRMED,
     SHIPPED,
     DELIVERED,
-    CANCELLED
+    CANCELLED;
+
+    /**
+     * Status of an order as a whole, given its farmer fulfilments: the least
+     * advanced of the ones still active, or CANCELLED once every fulfilment
+     * is cancelled. Relies on the declaration order above.
+     */
+    public static OrderStatus deriveFrom(Iterable<OrderStatus> fulfilments) {
+        OrderStatus least = null;
+        for (OrderStatus status : fulfilments) {
+            if (status != CANCELLED && (least == null || status.ordinal() < least.ordinal())) {
+                least = status;
+            }
+        }
+        return least != null ? least : CANCELLED;
+    }
+
+    // Allowed lifecycle moves; DELIVERED and CANCELLED are terminal
+    public boolean canTransitionTo(OrderStatus next) {
+        return switch (this) {
+            case PENDING -> next == CONFIRMED || next == CANCELLED;
+            case CONFIRMED -> next == SHIPPED || next == CANCELLED;
+            case SHIPPED -> next == DELIVERED;
+            case DELIVERED, CANCELLED -> false;
+        };
+    }
 }
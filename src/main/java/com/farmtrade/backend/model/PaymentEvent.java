@@ -0,0 +1,66 @@
+package com.farmtrade.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Inbox row for a Razorpay webhook delivery. Razorpay retries deliveries,
+ * so rows are unique by eventId and a redelivery is acknowledged without
+ * being stored again. PaymentEventWorker applies unprocessed rows to orders
+ * and records what happened in outcome.
+ */
+@Entity
+@Table(name = "payment_events", uniqueConstraints = @UniqueConstraint(name = "uk_payment_events_event_id", columnNames = "event_id"), indexes = @Index(name = "idx_payment_events_pending", columnList = "processed_at, id"))
+@Data
+@NoArgsConstructor
+public class PaymentEvent {
+
+    public enum Outcome {
+        APPLIED,
+        // The order was already in the target payment state
+        DUPLICATE,
+        // The transition is not allowed from the order's current payment state
+        STALE,
+        // Event types we do not act on
+        IGNORED,
+        ORDER_NOT_FOUND,
+        // A refund of less than the order total; the payment status stays as it is
+        PARTIAL_REFUND
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "event_id", nullable = false, length = 128)
+    private String eventId;
+
+    private String eventType;
+
+    private String razorpayOrderId;
+
+    private String razorpayPaymentId;
+
+    @Column(columnDefinition = "TEXT")
+    private String payload;
+
+    private LocalDateTime receivedAt;
+
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+
+    private int attempts;
+
+    // Set while an event for an order we cannot find yet waits for its next try
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    // Paise refunded on the payment so far, for refund events
+    private Long refundedAmount;
+
+    @Enumerated(EnumType.STRING)
+    private Outcome outcome;
+}
@@ -4,5 +4,15 @@ public enum PaymentStatus {
     PENDING,
     COMPLETED,
     FAILED,
-    REFUNDED
+    REFUNDED;
+
+    // A failed attempt can still be followed by a successful one on the same Razorpay order
+    public boolean canTransitionTo(PaymentStatus next) {
+        return switch (this) {
+            case PENDING -> next == COMPLETED || next == FAILED;
+            case FAILED -> next == COMPLETED;
+            case COMPLETED -> next == REFUNDED;
+            case REFUNDED -> false;
+        };
+    }
 }
@@ -0,0 +1,46 @@
+package com.farmtrade.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One settlement run: what every farmer was owed for sales posted before
+ * periodEnd. A batch that ends FAILED keeps the items of the partitions that
+ * finished; settling the same period again pays only the farmers it missed.
+ */
+@Entity
+@Table(name = "payout_batches")
+@Data
+@NoArgsConstructor
+public class PayoutBatch {
+
+    public enum Status {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private LocalDateTime periodEnd;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime completedAt;
+
+    @Enumerated(EnumType.STRING)
+    private Status status;
+
+    private int partitions;
+
+    private int farmerCount;
+
+    @Convert(converter = MoneyConverter.class)
+    private Money totalAmount = Money.ZERO;
+}
@@ -0,0 +1,28 @@
+package com.farmtrade.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One farmer's transfer in a payout batch
+@Entity
+@Table(name = "payout_items", uniqueConstraints = @UniqueConstraint(name = "uk_payout_items_batch_farmer", columnNames = {
+        "batch_id", "farmer_id" }))
+@Data
+@NoArgsConstructor
+public class PayoutItem {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "batch_id", nullable = false)
+    private Long batchId;
+
+    @Column(name = "farmer_id", nullable = false)
+    private Long farmerId;
+
+    @Convert(converter = MoneyConverter.class)
+    @Column(nullable = false)
+    private Money amount;
+}
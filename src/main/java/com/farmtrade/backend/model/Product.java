@@ -11,7 +11,7 @@ import lombok.AllArgsConstructor;
 import java.math.BigDecimal;
 
 @Entity
-@Table(name = "products")
+@Table(name = "products", indexes = @Index(name = "idx_products_farmer", columnList = "farmer_id, id"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -0,0 +1,93 @@
+package com.farmtrade.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A full refund of one paid order, queued by a cancellation or an admin and
+ * issued by RefundService. Rows stay QUEUED until the gateway confirms the
+ * refund or it is given up on; nextAttemptAt both schedules retries and acts
+ * as the lease of the worker that claimed the row. idempotencyKey is sent
+ * with every attempt, so a retry after a lost response cannot refund twice.
+ */
+@Entity
+@Table(name = "refunds", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_refunds_order", columnNames = "order_id"),
+        @UniqueConstraint(name = "uk_refunds_idempotency_key", columnNames = "idempotency_key")
+}, indexes = @Index(name = "idx_refunds_due", columnList = "status, next_attempt_at, id"))
+@Data
+@NoArgsConstructor
+public class Refund {
+
+    public enum Source {
+        // The retailer cancelled an order they had already paid for
+        CANCELLATION,
+        ADMIN
+    }
+
+    public enum Status {
+        QUEUED,
+        SUCCEEDED,
+        // Declined by the gateway, or still failing after the last retry
+        FAILED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    @Column(nullable = false)
+    private String razorpayPaymentId;
+
+    @Convert(converter = MoneyConverter.class)
+    @Column(nullable = false)
+    private Money amount;
+
+    @Column(name = "idempotency_key", nullable = false, length = 64)
+    private String idempotencyKey;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Source source;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status;
+
+    private String reason;
+
+    private String requestedBy;
+
+    private int attempts;
+
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    private String lastError;
+
+    private String razorpayRefundId;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime completedAt;
+
+    public Refund(Order order, Source source, String reason, String requestedBy, LocalDateTime now) {
+        this.orderId = order.getId();
+        this.razorpayPaymentId = order.getRazorpayPaymentId();
+        this.amount = order.getTotalAmount();
+        // One refund per order, so the order id is a stable key across retries and restarts
+        this.idempotencyKey = "refund_order_" + order.getId();
+        this.source = source;
+        this.status = Status.QUEUED;
+        this.reason = reason;
+        this.requestedBy = requestedBy;
+        this.nextAttemptAt = now;
+        this.createdAt = now;
+    }
+}
@@ -0,0 +1,34 @@
+package com.farmtrade.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Admin dashboard totals for one time bucket, kept in {@link HourlyRollup}
+ * and {@link DailyRollup}. Order writes and signups append their changes as
+ * {@link RollupDelta} rows, which are folded into these counters in the
+ * background (see StatsRollupService); orders count towards the bucket they
+ * were placed in, and leave it again when cancelled.
+ */
+@MappedSuperclass
+@Data
+@NoArgsConstructor
+public abstract class Rollup {
+
+    @Column(nullable = false)
+    private long orderCount;
+
+    @Convert(converter = MoneyConverter.class)
+    @Column(nullable = false)
+    private Money revenue = Money.ZERO;
+
+    @Column(nullable = false)
+    private int newFarmers;
+
+    @Column(nullable = false)
+    private int newRetailers;
+
+    @Column(nullable = false)
+    private int newAdmins;
+}
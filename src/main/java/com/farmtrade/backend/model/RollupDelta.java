@@ -0,0 +1,29 @@
+package com.farmtrade.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A change to one hour's rollup counters, appended by the order or signup
+ * write that caused it and folded into {@link HourlyRollup} and
+ * {@link DailyRollup} shortly after (see StatsRollupService#fold). Rows are
+ * only ever inserted and deleted, so writers never wait on each other here.
+ */
+@Entity
+@Table(name = "rollup_deltas", indexes = @Index(name = "idx_rollup_deltas_bucket", columnList = "bucket_start"))
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+public class RollupDelta extends Rollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+}
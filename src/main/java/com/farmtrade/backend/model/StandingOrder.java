@@ -0,0 +1,64 @@
+package com.farmtrade.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A retailer's recurring basket. StandingOrderScheduler places it as a normal
+ * order whenever nextRunAt has passed, then moves nextRunAt to the next
+ * occurrence of the schedule. Prices are taken at placement time, not when the
+ * template is saved.
+ */
+@Entity
+@Table(name = "standing_orders", indexes = {
+        @Index(name = "idx_standing_orders_due", columnList = "active, next_run_at"),
+        @Index(name = "idx_standing_orders_retailer", columnList = "retailer_id")
+})
+@Data
+@NoArgsConstructor
+public class StandingOrder {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "retailer_id", nullable = false)
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private User retailer;
+
+    private String name;
+
+    // Spring cron expression (e.g. "0 0 6 * * MON"), evaluated in the server's time zone
+    @Column(nullable = false)
+    private String schedule;
+
+    @ElementCollection
+    @CollectionTable(name = "standing_order_items", joinColumns = @JoinColumn(name = "standing_order_id"))
+    private List<StandingOrderItem> items = new ArrayList<>();
+
+    private boolean active = true;
+
+    // Next occurrence of the schedule plus this template's offset in the spread window
+    @Column(name = "next_run_at")
+    private LocalDateTime nextRunAt;
+
+    private LocalDateTime lastRunAt;
+
+    private Long lastOrderId;
+
+    @Column(length = 512)
+    private String lastError;
+
+    // Templates are paused once this reaches app.standing-orders.max-failures
+    private int consecutiveFailures;
+}
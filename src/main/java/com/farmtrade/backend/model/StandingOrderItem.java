@@ -0,0 +1,15 @@
+package com.farmtrade.backend.model;
+
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StandingOrderItem {
+    private Long productId;
+    private Integer quantity;
+}
@@ -0,0 +1,39 @@
+package com.farmtrade.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One distinct upload, stored once under its SHA-256 however many times it
+ * is uploaded (see UploadStore). refCount counts the products and profiles
+ * using it; a file left at zero since releasedAt, which an upload also sets,
+ * is removed by UploadSweeper.
+ */
+@Entity
+@Table(name = "stored_files", indexes = @Index(name = "idx_stored_files_unused", columnList = "ref_count, released_at"))
+@Data
+@NoArgsConstructor
+public class StoredFile {
+
+    // Lowercase hex SHA-256 of the content
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    // Relative to the upload directory, e.g. "sha256/ab/ab12….jpg"
+    @Column(nullable = false)
+    private String path;
+
+    private long size;
+
+    @Column(name = "ref_count", nullable = false)
+    private int refCount;
+
+    private LocalDateTime createdAt;
+
+    @Column(name = "released_at")
+    private LocalDateTime releasedAt;
+}
@@ -8,9 +8,18 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.hibernate.annotations.CreationTimestamp;
 
+import java.time.LocalDateTime;
+
+// Prefix search on lower(email), lower(full_name) and mobile_number needs expression and
+// text_pattern_ops indexes JPA cannot declare; they are in db/users-search-indexes.sql.
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = {
+        @Index(name = "idx_users_status", columnList = "status, id DESC"),
+        @Index(name = "idx_users_role", columnList = "role, id DESC"),
+        @Index(name = "idx_users_created_at", columnList = "created_at")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -40,6 +49,8 @@ public class User {
     private String mobileNumber;
 
     private String address;
+    // State the user trades from, e.g. "Punjab"; the region dimension of admin analytics
+    private String region;
     private String gender;
 
     @Enumerated(EnumType.STRING)
@@ -53,4 +64,9 @@ public class User {
     private String contactInfo;
 
     private String profilePhoto;
+
+    // Null for accounts created before it was recorded
+    @CreationTimestamp
+    @Column(updatable = false)
+    private LocalDateTime createdAt;
 }
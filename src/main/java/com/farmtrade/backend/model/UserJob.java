@@ -0,0 +1,71 @@
+package com.farmtrade.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A background delete, approve or reject of one or more users, run by
+ * UserJobService. The users are its UserJobItem rows; processed and failed
+ * count the items finished so far. leaseUntil is pushed out by the worker
+ * holding the job, so a job left RUNNING by a stopped instance is picked up
+ * again once it lapses and carries on with the items still PENDING.
+ */
+@Entity
+@Table(name = "user_jobs", indexes = @Index(name = "idx_user_jobs_due", columnList = "status, lease_until, id"))
+@Data
+@NoArgsConstructor
+public class UserJob {
+
+    public enum Type {
+        DELETE,
+        APPROVE,
+        REJECT
+    }
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        COMPLETED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Type type;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status;
+
+    private String requestedBy;
+
+    private int total;
+
+    private int processed;
+
+    private int failed;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime startedAt;
+
+    private LocalDateTime completedAt;
+
+    @Column(name = "lease_until", nullable = false)
+    private LocalDateTime leaseUntil;
+
+    public UserJob(Type type, int total, String requestedBy, LocalDateTime now) {
+        this.type = type;
+        this.status = Status.QUEUED;
+        this.total = total;
+        this.requestedBy = requestedBy;
+        this.createdAt = now;
+        this.leaseUntil = now;
+    }
+}
@@ -0,0 +1,35 @@
+package com.farmtrade.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One user of a UserJob; error says why a FAILED user was left as it was
+@Entity
+@Table(name = "user_job_items", indexes = @Index(name = "idx_user_job_items_job", columnList = "job_id, status, id"))
+@Data
+@NoArgsConstructor
+public class UserJobItem {
+
+    public enum Status {
+        PENDING,
+        DONE,
+        FAILED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "job_id", nullable = false)
+    private Long jobId;
+
+    @Column(nullable = false)
+    private Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status;
+
+    private String error;
+}
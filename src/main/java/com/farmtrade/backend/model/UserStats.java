@@ -0,0 +1,43 @@
+package com.farmtrade.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Dashboard counters of one farmer or retailer, adjusted in place by the
+ * order, payment and product writes that change them (see UserStatsService)
+ * so the dashboard reads one row by primary key. Every order the user took
+ * part in counts, cancelled ones included, as the dashboard always did.
+ */
+@Entity
+@Table(name = "user_stats")
+@Data
+@NoArgsConstructor
+public class UserStats {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(nullable = false)
+    private long orderCount;
+
+    // What a retailer spent, or a farmer's share of their orders
+    @Convert(converter = MoneyConverter.class)
+    @Column(nullable = false)
+    private Money orderTotal = Money.ZERO;
+
+    // A farmer's share of orders whose payment completed
+    @Convert(converter = MoneyConverter.class)
+    @Column(nullable = false)
+    private Money receivedPayments = Money.ZERO;
+
+    @Column(nullable = false)
+    private long activeListings;
+
+    // Last time the counters were checked against the source tables
+    private LocalDateTime verifiedAt;
+}
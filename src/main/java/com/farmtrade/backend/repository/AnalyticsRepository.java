@@ -0,0 +1,43 @@
+package com.farmtrade.backend.repository;
+
+import com.farmtrade.backend.model.Money;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.function.Consumer;
+
+/**
+ * Reads the non-cancelled sales since a day for AnalyticsService, summed
+ * per cell of the cube. Revenue is in paise; region is the farmer's.
+ */
+@Repository
+public class AnalyticsRepository {
+
+    private static final String JOINS = "FROM order_items i JOIN orders o ON o.id = i.order_id "
+            + "JOIN products p ON p.id = i.product_id JOIN users f ON f.id = p.farmer_id ";
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    // orders counts the distinct orders behind the quantity and revenue
+    public record Cell(LocalDate day, String category, long farmerId, String region, long retailerId,
+            long quantity, long revenue, long orders) {
+    }
+
+    // The date range lets PostgreSQL prune order partitions
+    public void sumCellsSince(LocalDate from, Consumer<Cell> consumer) {
+        jdbcTemplate.query("SELECT CAST(o.order_date AS DATE), p.category, p.farmer_id, f.region, o.retailer_id, "
+                + "SUM(i.quantity), SUM(i.quantity * i.price_per_unit), COUNT(DISTINCT o.id) " + JOINS
+                + "WHERE o.order_date >= :from AND o.status <> 'CANCELLED' "
+                + "GROUP BY CAST(o.order_date AS DATE), p.category, p.farmer_id, f.region, o.retailer_id",
+                new MapSqlParameterSource("from", Timestamp.valueOf(from.atStartOfDay())), rs -> {
+                    consumer.accept(new Cell(rs.getDate(1).toLocalDate(), rs.getString(2), rs.getLong(3),
+                            rs.getString(4), rs.getLong(5), rs.getLong(6), Money.of(rs.getBigDecimal(7)).toPaise(),
+                            rs.getLong(8)));
+                });
+    }
+}
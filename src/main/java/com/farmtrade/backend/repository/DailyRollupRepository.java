@@ -0,0 +1,14 @@
+package com.farmtrade.backend.repository;
+
+import com.farmtrade.backend.model.DailyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface DailyRollupRepository extends JpaRepository<DailyRollup, LocalDate> {
+
+    List<DailyRollup> findByDayBetweenOrderByDay(LocalDate from, LocalDate to);
+}
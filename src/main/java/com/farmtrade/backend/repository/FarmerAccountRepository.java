@@ -0,0 +1,9 @@
+package com.farmtrade.backend.repository;
+
+import com.farmtrade.backend.model.FarmerAccount;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface FarmerAccountRepository extends JpaRepository<FarmerAccount, Long> {
+}
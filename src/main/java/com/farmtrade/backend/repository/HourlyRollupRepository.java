@@ -0,0 +1,14 @@
+package com.farmtrade.backend.repository;
+
+import com.farmtrade.backend.model.HourlyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface HourlyRollupRepository extends JpaRepository<HourlyRollup, LocalDateTime> {
+
+    List<HourlyRollup> findByBucketStartBetweenOrderByBucketStart(LocalDateTime from, LocalDateTime to);
+}
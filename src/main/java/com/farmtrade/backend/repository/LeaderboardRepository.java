@@ -0,0 +1,39 @@
+package com.farmtrade.backend.repository;
+
+import com.farmtrade.backend.model.Money;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.function.Consumer;
+
+/**
+ * Reads the non-cancelled sales since a day for LeaderboardService, summed
+ * per day and product. Amounts are in paise.
+ */
+@Repository
+public class LeaderboardRepository {
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    public record DayTotal(LocalDate day, long productId, long farmerId, String category, long quantity,
+            long amount) {
+    }
+
+    // One row per day, product, farmer and category; the date range lets PostgreSQL prune order partitions
+    public void sumSalesSince(LocalDate from, Consumer<DayTotal> consumer) {
+        jdbcTemplate.query("SELECT CAST(o.order_date AS DATE), i.product_id, p.farmer_id, p.category, "
+                + "SUM(i.quantity), SUM(i.quantity * i.price_per_unit) FROM order_items i "
+                + "JOIN orders o ON o.id = i.order_id JOIN products p ON p.id = i.product_id "
+                + "WHERE o.order_date >= :from AND o.status <> 'CANCELLED' "
+                + "GROUP BY CAST(o.order_date AS DATE), i.product_id, p.farmer_id, p.category",
+                new MapSqlParameterSource("from", Timestamp.valueOf(from.atStartOfDay())), rs -> {
+                    consumer.accept(new DayTotal(rs.getDate(1).toLocalDate(), rs.getLong(2), rs.getLong(3),
+                            rs.getString(4), rs.getLong(5), Money.of(rs.getBigDecimal(6)).toPaise()));
+                });
+    }
+}
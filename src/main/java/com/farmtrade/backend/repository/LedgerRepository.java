@@ -0,0 +1,160 @@
+package com.farmtrade.backend.repository;
+
+import com.farmtrade.backend.model.LedgerEntry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * JDBC access for the payout ledger: batched entry inserts, in-place
+ * adjustments of farmer_accounts totals and the few aggregate reads the
+ * settlement needs. Runs on the caller's transaction; column lists must
+ * follow the LedgerEntry, FarmerAccount and PayoutItem mappings.
+ */
+@Repository
+public class LedgerRepository {
+
+    private static final String INSERT_ENTRY = "INSERT INTO ledger_entries "
+            + "(posting_ref, type, account, farmer_id, side, amount, order_id, payout_batch_id, posted_at) "
+            + "VALUES (:postingRef, :type, :account, :farmerId, :side, :amount, :orderId, :payoutBatchId, :postedAt)";
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    // A farmer's share of one order, summed from its order_items lines
+    public record SaleLine(Long orderFarmerId, Long orderId, Long farmerId, BigDecimal amount) {
+    }
+
+    public List<SaleLine> findSaleLines(Collection<Long> orderIds) {
+        return jdbcTemplate.query("SELECT f.id, f.order_id, f.farmer_id, SUM(i.quantity * i.price_per_unit) "
+                + "FROM order_farmers f JOIN order_items i ON i.order_farmer_id = f.id "
+                + "WHERE f.order_id IN (:orderIds) GROUP BY f.id, f.order_id, f.farmer_id ORDER BY f.id",
+                new MapSqlParameterSource("orderIds", orderIds),
+                (rs, rowNum) -> new SaleLine(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getBigDecimal(4)));
+    }
+
+    public Set<String> findPostedRefs(Collection<String> postingRefs, LedgerEntry.Account account) {
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT posting_ref FROM ledger_entries WHERE posting_ref IN (:refs) AND account = :account",
+                new MapSqlParameterSource("refs", postingRefs).addValue("account", account.name()), String.class));
+    }
+
+    /**
+     * Creates zero accounts for farmers that have none. The farmers' user
+     * rows are locked first, so two transactions posting a farmer's first
+     * sale cannot both insert the account.
+     */
+    public void createMissingAccounts(Collection<Long> farmerIds, LocalDateTime now) {
+        MapSqlParameterSource params = new MapSqlParameterSource("ids", farmerIds);
+        String missing = "SELECT u.id FROM users u WHERE u.id IN (:ids) "
+                + "AND NOT EXISTS (SELECT 1 FROM farmer_accounts a WHERE a.farmer_id = u.id)";
+        if (jdbcTemplate.queryForList(missing, params, Long.class).isEmpty()) {
+            return;
+        }
+        jdbcTemplate.queryForList("SELECT id FROM users WHERE id IN (:ids) ORDER BY id FOR UPDATE", params, Long.class);
+        jdbcTemplate.update("INSERT INTO farmer_accounts (farmer_id, balance, total_earned, total_paid_out, updated_at) "
+                + "SELECT u.id, 0, 0, 0, :now FROM users u WHERE u.id IN (:ids) "
+                + "AND NOT EXISTS (SELECT 1 FROM farmer_accounts a WHERE a.farmer_id = u.id)",
+                params.addValue("now", Timestamp.valueOf(now)));
+    }
+
+    public void insertEntries(List<LedgerEntry> entries) {
+        SqlParameterSource[] batch = new SqlParameterSource[entries.size()];
+        for (int i = 0; i < batch.length; i++) {
+            LedgerEntry entry = entries.get(i);
+            batch[i] = new MapSqlParameterSource()
+                    .addValue("postingRef", entry.getPostingRef())
+                    .addValue("type", entry.getType().name())
+                    .addValue("account", entry.getAccount().name())
+                    .addValue("farmerId", entry.getFarmerId())
+                    .addValue("side", entry.getSide().name())
+                    .addValue("amount", entry.getAmount().toBigDecimal())
+                    .addValue("orderId", entry.getOrderId())
+                    .addValue("payoutBatchId", entry.getPayoutBatchId())
+                    .addValue("postedAt", Timestamp.valueOf(entry.getPostedAt()));
+        }
+        jdbcTemplate.batchUpdate(INSERT_ENTRY, batch);
+    }
+
+    // Applied in farmer id order so concurrent postings lock accounts in the same order
+    public void addEarnings(Map<Long, BigDecimal> amounts, LocalDateTime now) {
+        adjust("UPDATE farmer_accounts SET balance = balance + :amount, total_earned = total_earned + :amount, "
+                + "updated_at = :now WHERE farmer_id = :farmerId", amounts, now);
+    }
+
+    public void addRefunds(Map<Long, BigDecimal> amounts, LocalDateTime now) {
+        adjust("UPDATE farmer_accounts SET balance = balance - :amount, total_earned = total_earned - :amount, "
+                + "updated_at = :now WHERE farmer_id = :farmerId", amounts, now);
+    }
+
+    public void addPayouts(Map<Long, BigDecimal> amounts, LocalDateTime now) {
+        adjust("UPDATE farmer_accounts SET balance = balance - :amount, total_paid_out = total_paid_out + :amount, "
+                + "updated_at = :now WHERE farmer_id = :farmerId", amounts, now);
+    }
+
+    /**
+     * Locks and returns the positive balances of one partition of farmer
+     * accounts (farmer_id mod partitions), so postings for these farmers
+     * wait until the settling transaction commits.
+     */
+    public Map<Long, BigDecimal> lockPositiveBalances(int partitions, int partition) {
+        Map<Long, BigDecimal> balances = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT farmer_id, balance FROM farmer_accounts "
+                + "WHERE MOD(farmer_id, :partitions) = :partition AND balance > 0 ORDER BY farmer_id FOR UPDATE",
+                new MapSqlParameterSource("partitions", partitions).addValue("partition", partition),
+                rs -> {
+                    balances.put(rs.getLong(1), rs.getBigDecimal(2));
+                });
+        return balances;
+    }
+
+    /**
+     * Net non-payout movement on each farmer's payable account from
+     * postedFrom on. Subtracted from the running balance it gives the balance
+     * as of postedFrom, while reading only the entries after it.
+     */
+    public Map<Long, BigDecimal> sumPostedSince(Collection<Long> farmerIds, LocalDateTime postedFrom) {
+        Map<Long, BigDecimal> sums = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT farmer_id, SUM(CASE WHEN side = 'CREDIT' THEN amount ELSE -amount END) "
+                + "FROM ledger_entries WHERE farmer_id IN (:ids) AND posted_at >= :postedFrom "
+                + "AND account = 'FARMER_PAYABLE' AND type <> 'PAYOUT' GROUP BY farmer_id",
+                new MapSqlParameterSource("ids", farmerIds).addValue("postedFrom", Timestamp.valueOf(postedFrom)),
+                rs -> {
+                    sums.put(rs.getLong(1), rs.getBigDecimal(2));
+                });
+        return sums;
+    }
+
+    public void insertPayoutItems(Long batchId, Map<Long, BigDecimal> amounts) {
+        SqlParameterSource[] batch = amounts.entrySet().stream()
+                .map(e -> new MapSqlParameterSource("batchId", batchId)
+                        .addValue("farmerId", e.getKey())
+                        .addValue("amount", e.getValue()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate("INSERT INTO payout_items (batch_id, farmer_id, amount) "
+                + "VALUES (:batchId, :farmerId, :amount)", batch);
+    }
+
+    private void adjust(String sql, Map<Long, BigDecimal> amounts, LocalDateTime now) {
+        Timestamp updatedAt = Timestamp.valueOf(now);
+        SqlParameterSource[] batch = amounts.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .map(e -> new MapSqlParameterSource("farmerId", e.getKey())
+                        .addValue("amount", e.getValue())
+                        .addValue("now", updatedAt))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(sql, batch);
+    }
+}
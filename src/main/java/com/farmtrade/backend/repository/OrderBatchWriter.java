@@ -0,0 +1,192 @@
+package com.farmtrade.backend.repository;
+
+import com.farmtrade.backend.model.Order;
+import com.farmtrade.backend.model.OrderFarmer;
+import com.farmtrade.backend.model.OrderItem;
+import com.farmtrade.backend.model.PaymentStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * JDBC batch writes for bulk order placement, payment reconciliation and
+ * refunds. Hibernate cannot batch inserts into IDENTITY tables, so orders,
+ * fulfilments and lines are written here with one batched statement per
+ * table and the generated ids are read back from the batch. Runs on the
+ * caller's transaction, and the column lists must follow the Order,
+ * OrderFarmer and OrderItem mappings.
+ */
+@Repository
+public class OrderBatchWriter {
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final String RESERVE_STOCK = "UPDATE products SET quantity = quantity - ? "
+            + "WHERE id = ? AND quantity >= ?";
+    private static final String INSERT_ORDER = "INSERT INTO orders "
+            + "(retailer_id, order_date, status, total_amount, payment_status, archived) VALUES (?, ?, ?, ?, ?, false)";
+    private static final String INSERT_FULFILMENT = "INSERT INTO order_farmers "
+            + "(order_id, farmer_id, farmer_subtotal, order_date, status, payment_status) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_ITEM = "INSERT INTO order_items "
+            + "(order_id, order_farmer_id, product_id, quantity, price_per_unit, order_date, archived) "
+            + "VALUES (?, ?, ?, ?, ?, ?, false)";
+    private static final String RESTORE_STOCK = "UPDATE products SET quantity = quantity + ? WHERE id = ?";
+    private static final String MARK_REFUNDED = "UPDATE orders SET payment_status = 'REFUNDED' "
+            + "WHERE id = ? AND payment_status = 'COMPLETED'";
+    private static final String SETTLE_PENDING_PAYMENT = "UPDATE orders SET payment_status = ?, "
+            + "razorpay_payment_id = COALESCE(?, razorpay_payment_id) WHERE id = ? AND payment_status = 'PENDING'";
+
+    private static final String MOVE_PAYMENT = "UPDATE orders SET payment_status = ?, "
+            + "razorpay_payment_id = COALESCE(?, razorpay_payment_id) WHERE id = ? AND payment_status = ?";
+
+    public record PaymentUpdate(Long orderId, PaymentStatus status, String razorpayPaymentId) {
+    }
+
+    public record PaymentMove(Long orderId, PaymentStatus from, PaymentStatus to, String razorpayPaymentId) {
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Takes stock for many products in one batch. Each update is guarded on
+     * the remaining quantity, so a returned count of 0 means that product no
+     * longer has enough stock.
+     */
+    public int[] reserveStock(Map<Long, Integer> quantities) {
+        List<Object[]> args = new ArrayList<>(quantities.size());
+        quantities.forEach((productId, quantity) -> args.add(new Object[] { quantity, productId, quantity }));
+        return jdbcTemplate.batchUpdate(RESERVE_STOCK, args);
+    }
+
+    // Sorted by product id, so concurrent restores and reservations lock rows in the same order
+    public int[] restoreStock(Map<Long, Integer> quantities) {
+        List<Object[]> args = new ArrayList<>(quantities.size());
+        quantities.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(e -> args.add(new Object[] { e.getValue(), e.getKey() }));
+        return jdbcTemplate.batchUpdate(RESTORE_STOCK, args);
+    }
+
+    /**
+     * Marks many COMPLETED payments REFUNDED in one batch. A returned count
+     * of 0 means the payment was no longer COMPLETED, for example because a
+     * refund webhook got there first.
+     */
+    public int[] markRefunded(List<Long> orderIds) {
+        List<Object[]> args = new ArrayList<>(orderIds.size());
+        for (Long orderId : orderIds) {
+            args.add(new Object[] { orderId });
+        }
+        return jdbcTemplate.batchUpdate(MARK_REFUNDED, args);
+    }
+
+    /**
+     * Moves many PENDING payments to their final status in one batch. Each
+     * update is guarded on PENDING, so a returned count of 0 means a webhook
+     * or verify call settled that order first.
+     */
+    public int[] settlePendingPayments(List<PaymentUpdate> updates) {
+        List<Object[]> args = new ArrayList<>(updates.size());
+        for (PaymentUpdate update : updates) {
+            args.add(new Object[] { update.status().name(), update.razorpayPaymentId(), update.orderId() });
+        }
+        return jdbcTemplate.batchUpdate(SETTLE_PENDING_PAYMENT, args);
+    }
+
+    /**
+     * Moves many payments on from the status they were read in, in one batch.
+     * Only payment_status and a new payment id are written, and each update is
+     * guarded on the status read, so a returned count of 0 means the payment
+     * changed since it was read.
+     */
+    public int[] movePayments(List<PaymentMove> moves) {
+        List<Object[]> args = new ArrayList<>(moves.size());
+        for (PaymentMove move : moves) {
+            args.add(new Object[] { move.to().name(), move.razorpayPaymentId(), move.orderId(), move.from().name() });
+        }
+        return jdbcTemplate.batchUpdate(MOVE_PAYMENT, args);
+    }
+
+    /**
+     * Inserts the orders with their fulfilments and lines, and sets the
+     * generated ids on the passed entities.
+     */
+    public void insert(List<Order> orders) {
+        List<OrderFarmer> fulfilments = new ArrayList<>();
+        List<OrderItem> items = new ArrayList<>();
+        for (Order order : orders) {
+            fulfilments.addAll(order.getFarmers());
+            items.addAll(order.getItems());
+        }
+
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_ORDER, new String[] { "id" })) {
+                writeBatches(ps, orders, (order, statement) -> {
+                    statement.setLong(1, order.getRetailer().getId());
+                    statement.setTimestamp(2, Timestamp.valueOf(order.getOrderDate()));
+                    statement.setString(3, order.getStatus().name());
+                    statement.setBigDecimal(4, order.getTotalAmount().toBigDecimal());
+                    statement.setString(5, order.getPaymentStatus().name());
+                }, Order::setId);
+            }
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_FULFILMENT, new String[] { "id" })) {
+                writeBatches(ps, fulfilments, (fulfilment, statement) -> {
+                    statement.setLong(1, fulfilment.getOrder().getId());
+                    statement.setLong(2, fulfilment.getFarmer().getId());
+                    statement.setBigDecimal(3, fulfilment.getFarmerSubtotal().toBigDecimal());
+                    statement.setTimestamp(4, Timestamp.valueOf(fulfilment.getOrderDate()));
+                    statement.setString(5, fulfilment.getStatus().name());
+                    statement.setString(6, fulfilment.getPaymentStatus().name());
+                }, OrderFarmer::setId);
+            }
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_ITEM, new String[] { "id" })) {
+                writeBatches(ps, items, (item, statement) -> {
+                    statement.setLong(1, item.getOrder().getId());
+                    statement.setLong(2, item.getOrderFarmer().getId());
+                    statement.setLong(3, item.getProduct().getId());
+                    statement.setInt(4, item.getQuantity());
+                    statement.setBigDecimal(5, item.getPricePerUnit().toBigDecimal());
+                    statement.setTimestamp(6, Timestamp.valueOf(item.getOrderDate()));
+                }, OrderItem::setId);
+            }
+            return null;
+        });
+    }
+
+    @FunctionalInterface
+    private interface RowBinder<T> {
+        void bind(T row, PreparedStatement statement) throws SQLException;
+    }
+
+    private static <T> void writeBatches(PreparedStatement ps, List<T> rows, RowBinder<T> binder,
+            BiConsumer<T, Long> idSetter) throws SQLException {
+        for (int start = 0; start < rows.size(); start += BATCH_SIZE) {
+            List<T> chunk = rows.subList(start, Math.min(start + BATCH_SIZE, rows.size()));
+            for (T row : chunk) {
+                binder.bind(row, ps);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            // Keys come back in the order the rows were added to the batch
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                for (T row : chunk) {
+                    if (!keys.next()) {
+                        throw new SQLException("Missing generated key for batch insert");
+                    }
+                    idSetter.accept(row, keys.getLong(1));
+                }
+            }
+        }
+    }
+}
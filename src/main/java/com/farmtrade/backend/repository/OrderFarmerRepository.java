@@ -0,0 +1,76 @@
+package com.farmtrade.backend.repository;
+
+import com.farmtrade.backend.model.OrderFarmer;
+import com.farmtrade.backend.model.OrderStatus;
+import com.farmtrade.backend.model.PaymentStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OrderFarmerRepository extends JpaRepository<OrderFarmer, Long> {
+
+    interface FulfilmentStatusView {
+        Long getId();
+
+        Long getOrderId();
+
+        OrderStatus getStatus();
+    }
+
+    // Ownership check for many orders at once: only the farmer's own fulfilments come back
+    @Query("SELECT f.id AS id, f.order.id AS orderId, f.status AS status FROM OrderFarmer f "
+            + "WHERE f.farmer.email = :email AND f.order.id IN :orderIds")
+    List<FulfilmentStatusView> findStatusesForFarmer(String email, Collection<Long> orderIds);
+
+    @Query("SELECT f.id AS id, f.order.id AS orderId, f.status AS status FROM OrderFarmer f "
+            + "WHERE f.order.id IN :orderIds")
+    List<FulfilmentStatusView> findStatusesByOrderIdIn(Collection<Long> orderIds);
+
+    // Fetches everything FarmerOrderView serializes, since the dashboard reads it outside the request's session
+    @Query("SELECT DISTINCT f FROM OrderFarmer f JOIN FETCH f.order o JOIN FETCH o.retailer "
+            + "LEFT JOIN FETCH f.items i LEFT JOIN FETCH i.product p LEFT JOIN FETCH p.farmer "
+            + "WHERE f.farmer.email = :email AND o.id IN :orderIds ORDER BY o.id DESC")
+    List<OrderFarmer> findWithItemsForFarmer(String email, Collection<Long> orderIds);
+
+    // Guarded on the current status so a concurrent change is not overwritten
+    @Modifying
+    @Query("UPDATE OrderFarmer f SET f.status = :status WHERE f.id IN :ids AND f.status = :from")
+    int updateStatus(Collection<Long> ids, OrderStatus from, OrderStatus status);
+
+    @Modifying
+    @Query("UPDATE OrderFarmer f SET f.status = :status WHERE f.order.id IN :orderIds")
+    int updateStatusByOrderIdIn(Collection<Long> orderIds, OrderStatus status);
+
+    @Modifying
+    @Query("UPDATE OrderFarmer f SET f.paymentStatus = :paymentStatus WHERE f.order.id = :orderId")
+    int updatePaymentStatusByOrderId(Long orderId, PaymentStatus paymentStatus);
+
+    @Modifying
+    @Query("UPDATE OrderFarmer f SET f.paymentStatus = :paymentStatus WHERE f.order.id IN :orderIds")
+    int updatePaymentStatusByOrderIdIn(Collection<Long> orderIds, PaymentStatus paymentStatus);
+
+    // Creates link rows for orders placed before order_farmers existed.
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO order_farmers (order_id, farmer_id, farmer_subtotal, order_date, status, payment_status) "
+            + "SELECT o.id, p.farmer_id, SUM(i.quantity * i.price_per_unit), o.order_date, o.status, o.payment_status "
+            + "FROM orders o JOIN order_items i ON i.order_id = o.id JOIN products p ON p.id = i.product_id "
+            + "WHERE NOT EXISTS (SELECT 1 FROM order_farmers f WHERE f.order_id = o.id) "
+            + "GROUP BY o.id, p.farmer_id, o.order_date, o.status, o.payment_status", nativeQuery = true)
+    int backfillMissing();
+
+    // Points lines written before fulfilments existed at their farmer's fulfilment.
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE order_items SET order_farmer_id = (SELECT f.id FROM order_farmers f "
+            + "JOIN products p ON p.farmer_id = f.farmer_id "
+            + "WHERE f.order_id = order_items.order_id AND p.id = order_items.product_id) "
+            + "WHERE order_farmer_id IS NULL", nativeQuery = true)
+    int backfillItemLinks();
+}
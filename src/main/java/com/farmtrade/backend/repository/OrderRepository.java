@@ -1,23 +1,97 @@
 package com.farmtrade.backend.repository;
 
+import com.farmtrade.backend.model.Money;
 import com.farmtrade.backend.model.Order;
+import com.farmtrade.backend.model.OrderStatus;
+import com.farmtrade.backend.model.PaymentStatus;
 import com.farmtrade.backend.model.User;
+import org.springframework.data.domain.Pageable;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 import java.util.Optional;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
+
+    interface PaymentState {
+        Long getId();
+
+        PaymentStatus getPaymentStatus();
+
+        String getRazorpayPaymentId();
+    }
+
+    interface WebhookTarget {
+        Long getId();
+
+        String getRazorpayOrderId();
+
+        String getRazorpayPaymentId();
+
+        Money getTotalAmount();
+
+        PaymentStatus getPaymentStatus();
+    }
+
+    interface PendingPayment {
+        Long getId();
+
+        String getRazorpayOrderId();
+    }
+
+    interface ProductQuantity {
+        Long getProductId();
+
+        Long getQuantity();
+    }
+
     List<Order> findByRetailer(User retailer);
 
+    @EntityGraph(attributePaths = "retailer")
+    List<Order> findTop2ByOrderByIdDesc();
+
     Optional<Order> findByRazorpayOrderId(String razorpayOrderId);
 
-    List<Order> findDistinctByItemsProductFarmer(User farmer);
+    // Projections, not entities, so the webhook batch never flushes a stale order row over a concurrent change
+    @Query("SELECT o.id AS id, o.razorpayOrderId AS razorpayOrderId, o.razorpayPaymentId AS razorpayPaymentId, "
+            + "o.totalAmount AS totalAmount, o.paymentStatus AS paymentStatus FROM Order o "
+            + "WHERE o.razorpayOrderId IN :razorpayOrderIds")
+    List<WebhookTarget> findWebhookTargetsByRazorpayOrderIdIn(Collection<String> razorpayOrderIds);
+
+    @Query("SELECT o.id AS id, o.razorpayOrderId AS razorpayOrderId, o.razorpayPaymentId AS razorpayPaymentId, "
+            + "o.totalAmount AS totalAmount, o.paymentStatus AS paymentStatus FROM Order o "
+            + "WHERE o.razorpayPaymentId IN :razorpayPaymentIds")
+    List<WebhookTarget> findWebhookTargetsByRazorpayPaymentIdIn(Collection<String> razorpayPaymentIds);
+
+    @Query("SELECT o.id AS id, o.paymentStatus AS paymentStatus, o.razorpayPaymentId AS razorpayPaymentId "
+            + "FROM Order o WHERE o.razorpayOrderId = :razorpayOrderId")
+    Optional<PaymentState> findPaymentStateByRazorpayOrderId(String razorpayOrderId);
+
+    // Guarded so a verify call cannot overwrite a payment that was since refunded
+    @Modifying
+    @Query("UPDATE Order o SET o.paymentStatus = com.farmtrade.backend.model.PaymentStatus.COMPLETED, "
+            + "o.razorpayPaymentId = :razorpayPaymentId, o.razorpaySignature = :razorpaySignature "
+            + "WHERE o.id = :id AND o.paymentStatus IN (com.farmtrade.backend.model.PaymentStatus.PENDING, "
+            + "com.farmtrade.backend.model.PaymentStatus.FAILED)")
+    int completePayment(Long id, String razorpayPaymentId, String razorpaySignature);
+
+    // Keyset page in ascending id order, so settled orders dropping out of the filter do not shift later pages
+    @Query("SELECT o.id AS id, o.razorpayOrderId AS razorpayOrderId FROM Order o "
+            + "WHERE o.paymentStatus = com.farmtrade.backend.model.PaymentStatus.PENDING "
+            + "AND o.razorpayOrderId IS NOT NULL AND o.orderDate < :staleBefore AND o.id > :cursor ORDER BY o.id")
+    List<PendingPayment> findStalePendingPayments(LocalDateTime staleBefore, Long cursor, Pageable pageable);
 
     @Query("SELECT SUM(o.totalAmount) FROM Order o")
     BigDecimal sumTotalRevenue();
@@ -30,16 +104,70 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
 
     List<Order> findByRetailerOrderByOrderDateDesc(User retailer);
 
-    // Farmer stats
-    @Query("SELECT COUNT(DISTINCT o) FROM Order o JOIN o.items i WHERE i.product.farmer = :farmer")
-    long countDistinctByItemsProductFarmer(User farmer);
+    // Farmer stats, read from the order_farmers link so each order counts once
+    // and revenue only includes the farmer's own lines
+    @Query("SELECT COUNT(f) FROM OrderFarmer f WHERE f.farmer = :farmer")
+    long countByFarmer(User farmer);
 
-    @Query("SELECT COALESCE(SUM(o.totalAmount), 0) FROM Order o JOIN o.items i WHERE i.product.farmer = :farmer")
+    @Query("SELECT COALESCE(SUM(f.farmerSubtotal), 0) FROM OrderFarmer f WHERE f.farmer = :farmer")
     BigDecimal sumTotalAmountByFarmer(User farmer);
 
-    @Query("SELECT COALESCE(SUM(o.totalAmount), 0) FROM Order o JOIN o.items i WHERE i.product.farmer = :farmer AND o.paymentStatus = com.farmtrade.backend.model.PaymentStatus.COMPLETED")
+    @Query("SELECT COALESCE(SUM(f.farmerSubtotal), 0) FROM OrderFarmer f WHERE f.farmer = :farmer AND f.paymentStatus = com.farmtrade.backend.model.PaymentStatus.COMPLETED")
     BigDecimal sumCompletedAmountByFarmer(User farmer);
 
-    @Query("SELECT DISTINCT o FROM Order o JOIN o.items i WHERE i.product.farmer = :farmer ORDER BY o.orderDate DESC")
-    List<Order> findDistinctByItemsProductFarmerOrderByOrderDateDesc(User farmer);
+    // Keyset pages: select one page of ids first, then load the graph for
+    // just those ids so the page costs a fixed number of statements.
+    @Query("SELECT o.id FROM Order o WHERE o.retailer = :retailer AND o.id < :cursor ORDER BY o.id DESC")
+    List<Long> findIdPageByRetailer(User retailer, Long cursor, Pageable pageable);
+
+    @Query("SELECT f.order.id FROM OrderFarmer f WHERE f.farmer = :farmer AND f.order.id < :cursor ORDER BY f.order.id DESC")
+    List<Long> findIdPageByFarmer(User farmer, Long cursor, Pageable pageable);
+
+    @Query("SELECT o.id FROM Order o WHERE o.id < :cursor ORDER BY o.id DESC")
+    List<Long> findIdPage(Long cursor, Pageable pageable);
+
+    // The orderDate range lets PostgreSQL prune monthly partitions
+    @Query("SELECT o.id FROM Order o WHERE o.orderDate >= :from AND o.orderDate < :to AND o.id < :cursor ORDER BY o.id DESC")
+    List<Long> findIdPageBetween(LocalDateTime from, LocalDateTime to, Long cursor, Pageable pageable);
+
+    @Query("SELECT DISTINCT o FROM Order o JOIN FETCH o.retailer LEFT JOIN FETCH o.items i "
+            + "LEFT JOIN FETCH i.product p LEFT JOIN FETCH p.farmer WHERE o.id IN :ids ORDER BY o.id DESC")
+    List<Order> findWithItemsByIdIn(Collection<Long> ids);
+
+    // Guarded on the open checkout, so an order the sweeper already cancelled is not revived
+    @Modifying
+    @Transactional
+    @Query("UPDATE Order o SET o.razorpayOrderId = :razorpayOrderId, o.checkoutExpiresAt = NULL "
+            + "WHERE o.id = :id AND o.checkoutExpiresAt IS NOT NULL "
+            + "AND o.status = com.farmtrade.backend.model.OrderStatus.PENDING")
+    int attachRazorpayOrder(Long id, String razorpayOrderId);
+
+    @Query("SELECT o.id FROM Order o WHERE o.checkoutExpiresAt < :now ORDER BY o.checkoutExpiresAt")
+    List<Long> findExpiredCheckoutIds(LocalDateTime now, Pageable pageable);
+
+    // Lines of fulfilments a farmer already cancelled had their stock restored then, so they are left out
+    @Query("SELECT i.product.id AS productId, SUM(i.quantity) AS quantity FROM OrderItem i "
+            + "LEFT JOIN i.orderFarmer f WHERE i.order.id IN :orderIds "
+            + "AND (f IS NULL OR f.status <> com.farmtrade.backend.model.OrderStatus.CANCELLED) "
+            + "GROUP BY i.product.id")
+    List<ProductQuantity> sumQuantitiesByProduct(Collection<Long> orderIds);
+
+    @Query("SELECT i.product.id AS productId, SUM(i.quantity) AS quantity FROM OrderItem i "
+            + "WHERE i.orderFarmer.id IN :fulfilmentIds GROUP BY i.product.id")
+    List<ProductQuantity> sumQuantitiesByProductForFulfilments(Collection<Long> fulfilmentIds);
+
+    // Locked so a farmer cannot ship an order while it is being cancelled for a refund
+    @Query(value = "SELECT id FROM orders WHERE id IN (:ids) AND status IN ('PENDING', 'CONFIRMED') "
+            + "ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<Long> lockUnshippedIds(Collection<Long> ids);
+
+    @Modifying
+    @Query("UPDATE Order o SET o.status = :status WHERE o.id IN :ids")
+    int updateStatusByIdIn(Collection<Long> ids, OrderStatus status);
+
+    // Taken before deriving parent statuses so two farmers finishing at once both see each other's change
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    // In id order, so callers locking overlapping sets cannot deadlock
+    @Query("SELECT o FROM Order o WHERE o.id IN :ids ORDER BY o.id")
+    List<Order> lockByIdIn(Collection<Long> ids);
 }
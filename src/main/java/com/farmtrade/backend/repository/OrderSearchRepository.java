@@ -0,0 +1,116 @@
+package com.farmtrade.backend.repository;
+
+import com.farmtrade.backend.dto.OrderSearchCriteria;
+import com.farmtrade.backend.model.OrderStatus;
+import com.farmtrade.backend.model.PaymentStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Admin order search. Builds one id-page query from whichever filters are
+ * set, keyset-paged on id like the other order listings; the caller loads the
+ * page's graph with OrderRepository.findWithItemsByIdIn. Filters that other
+ * features already index are answered from those indexes:
+ * <ul>
+ * <li>retailer: (retailer_id, id DESC), which also gives the keyset order</li>
+ * <li>farmer: order_farmers (farmer_id, order_id)</li>
+ * <li>Razorpay id: the order id or payment id column, picked by prefix</li>
+ * <li>date range: on a partitioned orders table, order_date prunes partitions</li>
+ * </ul>
+ * Status, payment status, category and amount have no index of their own.
+ * They are checked while walking ids newest first, and can be indexed once
+ * PostgreSQL plans show the search needs it.
+ */
+@Repository
+public class OrderSearchRepository {
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    record SearchQuery(String sql, MapSqlParameterSource params) {
+    }
+
+    public List<Long> findIdPage(OrderSearchCriteria criteria, Long cursor, int limit) {
+        SearchQuery query = buildQuery(criteria, cursor, limit);
+        return jdbcTemplate.queryForList(query.sql(), query.params(), Long.class);
+    }
+
+    static SearchQuery buildQuery(OrderSearchCriteria criteria, Long cursor, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("cursor", cursor)
+                .addValue("limit", limit);
+        List<String> conditions = new ArrayList<>();
+        conditions.add("o.id < :cursor");
+
+        if (criteria.getStatus() != null) {
+            conditions.add("o.status = :status");
+            params.addValue("status", parseStatus(criteria.getStatus()).name());
+        }
+        if (criteria.getPaymentStatus() != null) {
+            conditions.add("o.payment_status = :paymentStatus");
+            params.addValue("paymentStatus", parsePaymentStatus(criteria.getPaymentStatus()).name());
+        }
+        if (criteria.getFrom() != null) {
+            conditions.add("o.order_date >= :from");
+            params.addValue("from", Timestamp.valueOf(criteria.getFrom().atStartOfDay()));
+        }
+        if (criteria.getTo() != null) {
+            conditions.add("o.order_date < :to");
+            params.addValue("to", Timestamp.valueOf(criteria.getTo().plusDays(1).atStartOfDay()));
+        }
+        if (criteria.getMinAmount() != null) {
+            conditions.add("o.total_amount >= :minAmount");
+            params.addValue("minAmount", criteria.getMinAmount());
+        }
+        if (criteria.getMaxAmount() != null) {
+            conditions.add("o.total_amount <= :maxAmount");
+            params.addValue("maxAmount", criteria.getMaxAmount());
+        }
+        if (criteria.getRetailerId() != null) {
+            conditions.add("o.retailer_id = :retailerId");
+            params.addValue("retailerId", criteria.getRetailerId());
+        }
+        if (criteria.getFarmerId() != null) {
+            conditions.add("o.id IN (SELECT f.order_id FROM order_farmers f WHERE f.farmer_id = :farmerId)");
+            params.addValue("farmerId", criteria.getFarmerId());
+        }
+        if (criteria.getCategory() != null) {
+            conditions.add("o.id IN (SELECT i.order_id FROM order_items i JOIN products p ON p.id = i.product_id "
+                    + "WHERE p.category = :category)");
+            params.addValue("category", criteria.getCategory());
+        }
+        if (criteria.getRazorpayId() != null) {
+            conditions.add(criteria.getRazorpayId().startsWith("pay_")
+                    ? "o.razorpay_payment_id = :razorpayId"
+                    : "o.razorpay_order_id = :razorpayId");
+            params.addValue("razorpayId", criteria.getRazorpayId());
+        }
+
+        String sql = "SELECT o.id FROM orders o WHERE " + String.join(" AND ", conditions)
+                + " ORDER BY o.id DESC LIMIT :limit";
+        return new SearchQuery(sql, params);
+    }
+
+    private static OrderStatus parseStatus(String status) {
+        try {
+            return OrderStatus.valueOf(status.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Invalid order status: " + status);
+        }
+    }
+
+    private static PaymentStatus parsePaymentStatus(String paymentStatus) {
+        try {
+            return PaymentStatus.valueOf(paymentStatus.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Invalid payment status: " + paymentStatus);
+        }
+    }
+}
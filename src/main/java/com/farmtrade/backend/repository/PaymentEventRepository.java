@@ -0,0 +1,22 @@
+package com.farmtrade.backend.repository;
+
+import com.farmtrade.backend.model.PaymentEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface PaymentEventRepository extends JpaRepository<PaymentEvent, Long> {
+
+    boolean existsByEventId(String eventId);
+
+    // Arrival order, so events for the same payment are applied in the order Razorpay sent them.
+    // Events waiting to be retried are left until their next attempt is due.
+    @Query(value = "SELECT * FROM payment_events WHERE processed_at IS NULL "
+            + "AND (next_attempt_at IS NULL OR next_attempt_at <= :now) ORDER BY id LIMIT :limit "
+            + "FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<PaymentEvent> claimUnprocessed(LocalDateTime now, int limit);
+}
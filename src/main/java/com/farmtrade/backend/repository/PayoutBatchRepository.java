@@ -0,0 +1,18 @@
+package com.farmtrade.backend.repository;
+
+import com.farmtrade.backend.model.PayoutBatch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface PayoutBatchRepository extends JpaRepository<PayoutBatch, Long> {
+
+    @Query("SELECT MAX(b.periodEnd) FROM PayoutBatch b")
+    LocalDateTime findLatestPeriodEnd();
+
+    List<PayoutBatch> findTop20ByOrderByIdDesc();
+}
@@ -0,0 +1,13 @@
+package com.farmtrade.backend.repository;
+
+import com.farmtrade.backend.model.PayoutItem;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface PayoutItemRepository extends JpaRepository<PayoutItem, Long> {
+
+    List<PayoutItem> findByBatchIdOrderByFarmerId(Long batchId);
+}
@@ -2,12 +2,21 @@ package com.farmtrade.backend.repository;
 
 import com.farmtrade.backend.model.Product;
 import com.farmtrade.backend.model.User;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Long> {
     List<Product> findByFarmer(User farmer);
+
+    // Locks in id order so concurrent bulk orders over overlapping products cannot deadlock
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Product p WHERE p.id IN :ids ORDER BY p.id")
+    List<Product> lockByIdIn(Collection<Long> ids);
 }
@@ -0,0 +1,27 @@
+package com.farmtrade.backend.repository;
+
+import com.farmtrade.backend.model.Refund;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface RefundRepository extends JpaRepository<Refund, Long> {
+
+    boolean existsByOrderId(Long orderId);
+
+    Optional<Refund> findByOrderId(Long orderId);
+
+    List<Refund> findTop100ByOrderByIdDesc();
+
+    List<Refund> findTop100ByStatusOrderByIdDesc(Refund.Status status);
+
+    // Queue order, skipping rows another worker holds
+    @Query(value = "SELECT * FROM refunds WHERE status = 'QUEUED' AND next_attempt_at <= :now ORDER BY id "
+            + "LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Refund> claimDue(LocalDateTime now, int limit);
+}
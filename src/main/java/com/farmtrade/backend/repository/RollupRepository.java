@@ -0,0 +1,194 @@
+package com.farmtrade.backend.repository;
+
+import com.farmtrade.backend.model.Role;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * JDBC access for the rollup_hourly, rollup_daily and rollup_deltas tables:
+ * appending and claiming deltas, folding them into the counters, and the
+ * aggregate reads and rewrites a backfill of one day needs. Runs on the
+ * caller's transaction; column lists must follow the Rollup mappings.
+ */
+@Repository
+public class RollupRepository {
+
+    private static final String COUNTERS = "order_count = order_count + :orders, revenue = revenue + :revenue, "
+            + "new_farmers = new_farmers + :farmers, new_retailers = new_retailers + :retailers, "
+            + "new_admins = new_admins + :admins";
+    private static final String COLUMNS = "order_count, revenue, new_farmers, new_retailers, new_admins";
+    private static final String VALUES = ":orders, :revenue, :farmers, :retailers, :admins";
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    // A change to one bucket's counters; negative when orders are cancelled
+    public record Delta(long orders, BigDecimal revenue, int farmers, int retailers, int admins) {
+
+        public static final Delta ZERO = new Delta(0, BigDecimal.ZERO, 0, 0, 0);
+
+        public static Delta ofUser(Role role) {
+            return new Delta(0, BigDecimal.ZERO, role == Role.FARMER ? 1 : 0, role == Role.RETAILER ? 1 : 0,
+                    role == Role.ADMIN ? 1 : 0);
+        }
+
+        public Delta plus(Delta other) {
+            return new Delta(orders + other.orders, revenue.add(other.revenue), farmers + other.farmers,
+                    retailers + other.retailers, admins + other.admins);
+        }
+    }
+
+    public record OrderTotal(LocalDateTime orderDate, BigDecimal totalAmount) {
+    }
+
+    public record PendingDelta(long id, LocalDateTime bucketStart, Delta delta) {
+    }
+
+    // One row per hour; the rows commit or roll back with the write they describe
+    public void appendDeltas(Map<LocalDateTime, Delta> byHour) {
+        SqlParameterSource[] rows = byHour.entrySet().stream()
+                .map(e -> params(e.getValue()).addValue("bucket", Timestamp.valueOf(e.getKey())))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate("INSERT INTO rollup_deltas (bucket_start, " + COLUMNS + ") VALUES (:bucket, "
+                + VALUES + ")", rows);
+    }
+
+    // Oldest first; deltas another instance is folding are skipped
+    public List<PendingDelta> claimDeltas(int limit) {
+        return jdbcTemplate.query("SELECT id, bucket_start, " + COLUMNS + " FROM rollup_deltas ORDER BY id "
+                + "LIMIT :limit FOR UPDATE SKIP LOCKED", new MapSqlParameterSource("limit", limit),
+                (rs, rowNum) -> new PendingDelta(rs.getLong(1), rs.getTimestamp(2).toLocalDateTime(),
+                        new Delta(rs.getLong(3), rs.getBigDecimal(4), rs.getInt(5), rs.getInt(6), rs.getInt(7))));
+    }
+
+    public void deleteDeltas(Collection<Long> ids) {
+        jdbcTemplate.update("DELETE FROM rollup_deltas WHERE id IN (:ids)", new MapSqlParameterSource("ids", ids));
+    }
+
+    // Both return 0 when the bucket has no row yet
+    public int addToHour(LocalDateTime bucketStart, Delta delta) {
+        return jdbcTemplate.update("UPDATE rollup_hourly SET " + COUNTERS + " WHERE bucket_start = :bucket",
+                params(delta).addValue("bucket", Timestamp.valueOf(bucketStart)));
+    }
+
+    public int addToDay(LocalDate day, Delta delta) {
+        return jdbcTemplate.update("UPDATE rollup_daily SET " + COUNTERS + " WHERE bucket_day = :bucket",
+                params(delta).addValue("bucket", Date.valueOf(day)));
+    }
+
+    public void createHour(LocalDateTime bucketStart) {
+        jdbcTemplate.update("INSERT INTO rollup_hourly (bucket_start, " + COLUMNS + ") SELECT :bucket, 0, 0, 0, 0, 0 "
+                + "WHERE NOT EXISTS (SELECT 1 FROM rollup_hourly WHERE bucket_start = :bucket)",
+                new MapSqlParameterSource("bucket", Timestamp.valueOf(bucketStart)));
+    }
+
+    public void createDay(LocalDate day) {
+        jdbcTemplate.update("INSERT INTO rollup_daily (bucket_day, " + COLUMNS + ") SELECT :bucket, 0, 0, 0, 0, 0 "
+                + "WHERE NOT EXISTS (SELECT 1 FROM rollup_daily WHERE bucket_day = :bucket)",
+                new MapSqlParameterSource("bucket", Date.valueOf(day)));
+    }
+
+    public List<OrderTotal> findOrderTotals(Collection<Long> orderIds) {
+        return jdbcTemplate.query("SELECT order_date, total_amount FROM orders WHERE id IN (:ids)",
+                new MapSqlParameterSource("ids", orderIds),
+                (rs, rowNum) -> new OrderTotal(rs.getTimestamp(1).toLocalDateTime(), rs.getBigDecimal(2)));
+    }
+
+    // False when the day has no row yet
+    public boolean lockDay(LocalDate day) {
+        return !jdbcTemplate.queryForList("SELECT bucket_day FROM rollup_daily WHERE bucket_day = :day FOR UPDATE",
+                new MapSqlParameterSource("day", Date.valueOf(day)), Date.class).isEmpty();
+    }
+
+    /**
+     * Recomputes one day's counters per hour of day from the orders and users
+     * tables, less the deltas for that day not folded yet: those are folded
+     * on top of the result later. One statement, so all three are read from
+     * the same snapshot. The date range lets PostgreSQL prune order partitions.
+     */
+    public Map<Integer, Delta> aggregateDay(LocalDate day) {
+        MapSqlParameterSource range = new MapSqlParameterSource("from", Timestamp.valueOf(day.atStartOfDay()))
+                .addValue("to", Timestamp.valueOf(day.plusDays(1).atStartOfDay()));
+        Map<Integer, Delta> hours = new TreeMap<>();
+        jdbcTemplate.query("SELECT hour_of_day, SUM(orders), SUM(revenue), SUM(farmers), SUM(retailers), SUM(admins) "
+                + "FROM (SELECT EXTRACT(HOUR FROM order_date) AS hour_of_day, COUNT(*) AS orders, "
+                + "SUM(total_amount) AS revenue, 0 AS farmers, 0 AS retailers, 0 AS admins FROM orders "
+                + "WHERE order_date >= :from AND order_date < :to AND status <> 'CANCELLED' "
+                + "GROUP BY EXTRACT(HOUR FROM order_date) "
+                + "UNION ALL SELECT EXTRACT(HOUR FROM created_at), 0, 0, "
+                + "SUM(CASE WHEN role = 'FARMER' THEN 1 ELSE 0 END), SUM(CASE WHEN role = 'RETAILER' THEN 1 ELSE 0 END), "
+                + "SUM(CASE WHEN role = 'ADMIN' THEN 1 ELSE 0 END) FROM users "
+                + "WHERE created_at >= :from AND created_at < :to AND role IS NOT NULL "
+                + "GROUP BY EXTRACT(HOUR FROM created_at) "
+                + "UNION ALL SELECT EXTRACT(HOUR FROM bucket_start), -SUM(order_count), -SUM(revenue), "
+                + "-SUM(new_farmers), -SUM(new_retailers), -SUM(new_admins) FROM rollup_deltas "
+                + "WHERE bucket_start >= :from AND bucket_start < :to GROUP BY EXTRACT(HOUR FROM bucket_start)) parts "
+                + "GROUP BY hour_of_day", range, rs -> {
+                    hours.put(rs.getInt(1), new Delta(rs.getLong(2), rs.getBigDecimal(3), rs.getInt(4), rs.getInt(5),
+                            rs.getInt(6)));
+                });
+        return hours;
+    }
+
+    /**
+     * Replaces the day's hourly rows and its daily row with the given per-hour
+     * counters. The daily row must exist and be locked (see {@link #lockDay}).
+     */
+    public void replaceDay(LocalDate day, Map<Integer, Delta> hours) {
+        MapSqlParameterSource range = new MapSqlParameterSource("from", Timestamp.valueOf(day.atStartOfDay()))
+                .addValue("to", Timestamp.valueOf(day.plusDays(1).atStartOfDay()));
+        jdbcTemplate.update("DELETE FROM rollup_hourly WHERE bucket_start >= :from AND bucket_start < :to", range);
+
+        SqlParameterSource[] rows = hours.entrySet().stream()
+                .map(e -> params(e.getValue()).addValue("bucket",
+                        Timestamp.valueOf(day.atTime(e.getKey(), 0))))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate("INSERT INTO rollup_hourly (bucket_start, " + COLUMNS + ") VALUES (:bucket, "
+                + VALUES + ")", rows);
+        Delta total = hours.values().stream().reduce(Delta.ZERO, Delta::plus);
+        jdbcTemplate.update("UPDATE rollup_daily SET order_count = :orders, revenue = :revenue, "
+                + "new_farmers = :farmers, new_retailers = :retailers, new_admins = :admins WHERE bucket_day = :bucket",
+                params(total).addValue("bucket", Date.valueOf(day)));
+    }
+
+    // Earliest day with an order or a dated signup, or null when there is none
+    public LocalDate findFirstActiveDay() {
+        Timestamp first = jdbcTemplate.queryForObject("SELECT MIN(t) FROM (SELECT MIN(order_date) AS t FROM orders "
+                + "UNION ALL SELECT MIN(created_at) FROM users) firsts", new MapSqlParameterSource(), Timestamp.class);
+        return first != null ? first.toLocalDateTime().toLocalDate() : null;
+    }
+
+    public boolean isEmpty() {
+        return !Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM rollup_daily)", new MapSqlParameterSource(), Boolean.class));
+    }
+
+    public Delta sumAllDays() {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(SUM(order_count), 0), COALESCE(SUM(revenue), 0), "
+                + "COALESCE(SUM(new_farmers), 0), COALESCE(SUM(new_retailers), 0), COALESCE(SUM(new_admins), 0) "
+                + "FROM rollup_daily", new MapSqlParameterSource(),
+                (rs, rowNum) -> new Delta(rs.getLong(1), rs.getBigDecimal(2), rs.getInt(3), rs.getInt(4),
+                        rs.getInt(5)));
+    }
+
+    private static MapSqlParameterSource params(Delta delta) {
+        return new MapSqlParameterSource("orders", delta.orders())
+                .addValue("revenue", delta.revenue())
+                .addValue("farmers", delta.farmers())
+                .addValue("retailers", delta.retailers())
+                .addValue("admins", delta.admins());
+    }
+}
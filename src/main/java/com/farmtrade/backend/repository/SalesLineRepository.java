@@ -0,0 +1,51 @@
+package com.farmtrade.backend.repository;
+
+import com.farmtrade.backend.model.Money;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads order lines for the in-memory sales views with every dimension
+ * they key on, and the status of given orders. Amounts are in paise;
+ * region is the farmer's.
+ */
+@Repository
+public class SalesLineRepository {
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    public record Line(long orderId, LocalDate day, long productId, String category, long farmerId, String region,
+            long retailerId, long quantity, long amount) {
+    }
+
+    public List<Line> findLines(Collection<Long> orderIds) {
+        return jdbcTemplate.query("SELECT o.id, o.order_date, i.product_id, p.category, p.farmer_id, f.region, "
+                + "o.retailer_id, i.quantity, i.price_per_unit FROM order_items i "
+                + "JOIN orders o ON o.id = i.order_id JOIN products p ON p.id = i.product_id "
+                + "JOIN users f ON f.id = p.farmer_id WHERE i.order_id IN (:ids)",
+                new MapSqlParameterSource("ids", orderIds),
+                (rs, rowNum) -> new Line(rs.getLong(1), rs.getTimestamp(2).toLocalDateTime().toLocalDate(),
+                        rs.getLong(3), rs.getString(4), rs.getLong(5), rs.getString(6), rs.getLong(7), rs.getLong(8),
+                        Money.of(rs.getBigDecimal(9)).times(rs.getLong(8)).toPaise()));
+    }
+
+    // Orders that do not exist (yet, or any more) are left out
+    public Map<Long, String> findStatuses(Collection<Long> orderIds) {
+        Map<Long, String> statuses = new HashMap<>();
+        jdbcTemplate.query("SELECT id, status FROM orders WHERE id IN (:ids)",
+                new MapSqlParameterSource("ids", orderIds),
+                rs -> {
+                    statuses.put(rs.getLong(1), rs.getString(2));
+                });
+        return statuses;
+    }
+}
@@ -0,0 +1,44 @@
+package com.farmtrade.backend.repository;
+
+import com.farmtrade.backend.model.StandingOrder;
+import com.farmtrade.backend.model.User;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface StandingOrderRepository extends JpaRepository<StandingOrder, Long> {
+
+    @Query("SELECT DISTINCT s FROM StandingOrder s LEFT JOIN FETCH s.items WHERE s.retailer = :retailer "
+            + "ORDER BY s.id DESC")
+    List<StandingOrder> findWithItemsByRetailer(User retailer);
+
+    // Oldest first so a backlog after downtime drains in schedule order; rows another
+    // instance has already claimed are skipped rather than waited on
+    @Query(value = "SELECT id FROM standing_orders WHERE active = true AND next_run_at <= :now "
+            + "ORDER BY next_run_at LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> claimDueIds(LocalDateTime now, int limit);
+
+    @Query("SELECT DISTINCT s FROM StandingOrder s JOIN FETCH s.retailer LEFT JOIN FETCH s.items WHERE s.id IN :ids")
+    List<StandingOrder> findWithItemsByIdIn(Collection<Long> ids);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE StandingOrder s SET s.lastRunAt = :runAt, s.lastOrderId = :orderId, s.lastError = null, "
+            + "s.consecutiveFailures = 0 WHERE s.id = :id")
+    int recordSuccess(Long id, LocalDateTime runAt, Long orderId);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE StandingOrder s SET s.lastRunAt = :runAt, s.lastError = :error, "
+            + "s.consecutiveFailures = s.consecutiveFailures + 1, "
+            + "s.active = CASE WHEN s.consecutiveFailures + 1 >= :maxFailures THEN false ELSE s.active END "
+            + "WHERE s.id = :id")
+    int recordFailure(Long id, LocalDateTime runAt, String error, int maxFailures);
+}
@@ -0,0 +1,43 @@
+package com.farmtrade.backend.repository;
+
+import com.farmtrade.backend.model.StoredFile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface StoredFileRepository extends JpaRepository<StoredFile, String> {
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE StoredFile f SET f.refCount = f.refCount + 1, f.releasedAt = null WHERE f.hash = :hash")
+    int retain(String hash);
+
+    // Uploaded again: an unreferenced file gets a new grace period
+    @Modifying
+    @Transactional
+    @Query("UPDATE StoredFile f SET f.releasedAt = CASE WHEN f.refCount = 0 THEN :now ELSE f.releasedAt END "
+            + "WHERE f.hash = :hash")
+    int touch(String hash, LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE StoredFile f SET f.refCount = f.refCount - 1, f.releasedAt = :now "
+            + "WHERE f.hash = :hash AND f.refCount > 0")
+    int release(String hash, LocalDateTime now);
+
+    // Only succeeds while nothing has retained or uploaded the file again
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM StoredFile f WHERE f.hash = :hash AND f.refCount = 0 AND f.releasedAt < :before")
+    int deleteIfUnused(String hash, LocalDateTime before);
+
+    @Query("SELECT f FROM StoredFile f WHERE f.refCount = 0 AND f.releasedAt < :before ORDER BY f.releasedAt")
+    List<StoredFile> findUnusedSince(LocalDateTime before, Pageable pageable);
+}
@@ -0,0 +1,155 @@
+package com.farmtrade.backend.repository;
+
+import com.farmtrade.backend.model.OrderStatus;
+import com.farmtrade.backend.model.PaymentStatus;
+import com.farmtrade.backend.model.UserJobItem;
+import com.farmtrade.backend.model.UserStatus;
+import com.farmtrade.backend.service.UploadStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Set-based writes for UserJobService: status changes for many users in one
+ * statement, and the deletion of a user with everything that references it,
+ * a bounded chunk of orders or products per call. Deleted product images
+ * and profile photos give their UploadStore references back. Runs on the
+ * caller's transaction.
+ */
+@Repository
+public class UserBatchWriter {
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UploadStore uploadStore;
+
+    public record OrderRef(Long id, OrderStatus status, PaymentStatus paymentStatus) {
+
+        // Unpaid and cancelled or delivered; anything else still has money or stock riding on it
+        public boolean isSettled() {
+            return (status == OrderStatus.CANCELLED || status == OrderStatus.DELIVERED)
+                    && paymentStatus != PaymentStatus.COMPLETED && paymentStatus != PaymentStatus.REFUNDED;
+        }
+    }
+
+    public void insertJobItems(Long jobId, Collection<Long> userIds) {
+        SqlParameterSource[] rows = userIds.stream()
+                .map(userId -> new MapSqlParameterSource("jobId", jobId).addValue("userId", userId)
+                        .addValue("status", UserJobItem.Status.PENDING.name()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate("INSERT INTO user_job_items (job_id, user_id, status) "
+                + "VALUES (:jobId, :userId, :status)", rows);
+    }
+
+    public void markItems(Collection<Long> itemIds, UserJobItem.Status status, String error) {
+        jdbcTemplate.update("UPDATE user_job_items SET status = :status, error = :error WHERE id IN (:ids)",
+                new MapSqlParameterSource("ids", itemIds).addValue("status", status.name()).addValue("error", error));
+    }
+
+    public List<Long> findExistingUserIds(Collection<Long> userIds) {
+        return jdbcTemplate.queryForList("SELECT id FROM users WHERE id IN (:ids)",
+                new MapSqlParameterSource("ids", userIds), Long.class);
+    }
+
+    public int updateStatus(Collection<Long> userIds, UserStatus status) {
+        return jdbcTemplate.update("UPDATE users SET status = :status WHERE id IN (:ids)",
+                new MapSqlParameterSource("ids", userIds).addValue("status", status.name()));
+    }
+
+    /**
+     * Locks the user's row, which also holds off new orders and products
+     * referencing it until the transaction ends. Returns false if the user
+     * no longer exists.
+     */
+    public boolean lockUser(Long userId) {
+        return !jdbcTemplate.queryForList("SELECT id FROM users WHERE id = :id FOR UPDATE",
+                new MapSqlParameterSource("id", userId), Long.class).isEmpty();
+    }
+
+    // The retailer's oldest orders, locked
+    public List<OrderRef> lockRetailerOrders(Long retailerId, int limit) {
+        return jdbcTemplate.query("SELECT id, status, payment_status FROM orders WHERE retailer_id = :retailerId "
+                + "ORDER BY id LIMIT :limit FOR UPDATE", new MapSqlParameterSource("retailerId", retailerId)
+                        .addValue("limit", limit),
+                (rs, rowNum) -> new OrderRef(rs.getLong(1),
+                        rs.getString(2) != null ? OrderStatus.valueOf(rs.getString(2)) : null,
+                        rs.getString(3) != null ? PaymentStatus.valueOf(rs.getString(3)) : null));
+    }
+
+    // Lines first, then fulfilments, then the orders themselves
+    public void deleteOrders(Collection<Long> orderIds) {
+        MapSqlParameterSource ids = new MapSqlParameterSource("ids", orderIds);
+        jdbcTemplate.update("DELETE FROM order_items WHERE order_id IN (:ids)", ids);
+        jdbcTemplate.update("DELETE FROM order_farmers WHERE order_id IN (:ids)", ids);
+        jdbcTemplate.update("DELETE FROM orders WHERE id IN (:ids)", ids);
+    }
+
+    // The chunk's images give their references back
+    public int deleteProducts(Long farmerId, int limit) {
+        List<Long> ids = new ArrayList<>();
+        List<String> images = new ArrayList<>();
+        jdbcTemplate.query("SELECT id, image_url FROM products WHERE farmer_id = :farmerId ORDER BY id LIMIT :limit",
+                new MapSqlParameterSource("farmerId", farmerId).addValue("limit", limit), rs -> {
+                    ids.add(rs.getLong(1));
+                    images.add(rs.getString(2));
+                });
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        int deleted = jdbcTemplate.update("DELETE FROM products WHERE id IN (:ids)",
+                new MapSqlParameterSource("ids", ids));
+        images.forEach(uploadStore::release);
+        return deleted;
+    }
+
+    public boolean hasOrders(Long retailerId) {
+        return exists("SELECT 1 FROM orders WHERE retailer_id = :id", retailerId);
+    }
+
+    /**
+     * Orders that refunds and ledger entries may point at, or that are still
+     * in progress: paid or refunded, not yet cancelled or delivered, or with
+     * a refund waiting at the gateway. The same test as OrderRef#isSettled.
+     */
+    public boolean hasUnsettledOrders(Long retailerId) {
+        return exists("SELECT 1 FROM orders WHERE retailer_id = :id AND (status NOT IN ('CANCELLED', 'DELIVERED') "
+                + "OR payment_status IN ('COMPLETED', 'REFUNDED') OR EXISTS (SELECT 1 FROM refunds r "
+                + "WHERE r.order_id = orders.id AND r.status = 'QUEUED'))", retailerId);
+    }
+
+    public boolean hasProducts(Long farmerId) {
+        return exists("SELECT 1 FROM products WHERE farmer_id = :id", farmerId);
+    }
+
+    // Orders other retailers placed with this farmer; they must outlive the farmer's account
+    public boolean hasFulfilments(Long farmerId) {
+        return exists("SELECT 1 FROM order_farmers WHERE farmer_id = :id", farmerId);
+    }
+
+    // Everything left that references the user, then the user, whose photo gives its reference back
+    public void deleteUser(Long userId) {
+        MapSqlParameterSource id = new MapSqlParameterSource("id", userId);
+        List<String> photos = jdbcTemplate.queryForList("SELECT profile_photo FROM users WHERE id = :id", id,
+                String.class);
+        jdbcTemplate.update("DELETE FROM standing_order_items WHERE standing_order_id IN "
+                + "(SELECT id FROM standing_orders WHERE retailer_id = :id)", id);
+        jdbcTemplate.update("DELETE FROM standing_orders WHERE retailer_id = :id", id);
+        jdbcTemplate.update("DELETE FROM password_reset_token WHERE user_id = :id", id);
+        jdbcTemplate.update("DELETE FROM user_stats WHERE user_id = :id", id);
+        jdbcTemplate.update("DELETE FROM users WHERE id = :id", id);
+        photos.forEach(uploadStore::release);
+    }
+
+    private boolean exists(String query, Long id) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT EXISTS (" + query + ")",
+                new MapSqlParameterSource("id", id), Boolean.class));
+    }
+}
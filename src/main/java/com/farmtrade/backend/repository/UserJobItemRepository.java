@@ -0,0 +1,14 @@
+package com.farmtrade.backend.repository;
+
+import com.farmtrade.backend.model.UserJobItem;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface UserJobItemRepository extends JpaRepository<UserJobItem, Long> {
+
+    List<UserJobItem> findByJobIdAndStatusOrderById(Long jobId, UserJobItem.Status status, Pageable pageable);
+}
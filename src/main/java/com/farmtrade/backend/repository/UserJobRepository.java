@@ -0,0 +1,27 @@
+package com.farmtrade.backend.repository;
+
+import com.farmtrade.backend.model.UserJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface UserJobRepository extends JpaRepository<UserJob, Long> {
+
+    List<UserJob> findTop20ByOrderByIdDesc();
+
+    // Oldest unfinished job whose lease has lapsed, skipping one another worker is claiming
+    @Query(value = "SELECT * FROM user_jobs WHERE status <> 'COMPLETED' AND lease_until <= :now ORDER BY id "
+            + "LIMIT 1 FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<UserJob> claimDue(LocalDateTime now);
+
+    // Counts finished items and renews the lease in the same statement
+    @Modifying
+    @Query("UPDATE UserJob j SET j.processed = j.processed + :processed, j.failed = j.failed + :failed, "
+            + "j.leaseUntil = :leaseUntil WHERE j.id = :id")
+    int recordProgress(Long id, int processed, int failed, LocalDateTime leaseUntil);
+}
@@ -1,9 +1,11 @@
 package com.farmtrade.backend.repository;
 
+import com.farmtrade.backend.model.Role;
 import com.farmtrade.backend.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -11,4 +13,8 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
 
     Boolean existsByEmail(String email);
+
+    List<User> findTop3ByOrderByIdDesc();
+
+    long countByRole(Role role);
 }
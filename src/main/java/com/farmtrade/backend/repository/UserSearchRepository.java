@@ -0,0 +1,109 @@
+package com.farmtrade.backend.repository;
+
+import com.farmtrade.backend.dto.AdminUserView;
+import com.farmtrade.backend.dto.UserSearchCriteria;
+import com.farmtrade.backend.model.Role;
+import com.farmtrade.backend.model.UserStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Admin user directory. Builds one query from whichever filters are set,
+ * keyset-paged on id newest first, and reads the listing columns straight
+ * into {@link AdminUserView} rows. Each filter can be answered from an index
+ * (see UserSearchRepositoryTests for the plans):
+ * <ul>
+ * <li>status, role: (column, id DESC), which also gives the keyset order</li>
+ * <li>signup date range: created_at</li>
+ * <li>prefix search: lower(email), lower(full_name) and mobile_number with
+ * text_pattern_ops, from db/users-search-indexes.sql on PostgreSQL</li>
+ * </ul>
+ */
+@Repository
+public class UserSearchRepository {
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    record SearchQuery(String sql, MapSqlParameterSource params) {
+    }
+
+    public List<AdminUserView> findPage(UserSearchCriteria criteria, Long cursor, int limit) {
+        SearchQuery query = buildQuery(criteria, cursor, limit);
+        return jdbcTemplate.query(query.sql(), query.params(), (rs, rowNum) -> {
+            Timestamp createdAt = rs.getTimestamp("created_at");
+            return new AdminUserView(rs.getLong("id"), rs.getString("email"), rs.getString("full_name"),
+                    rs.getString("mobile_number"),
+                    rs.getString("role") != null ? Role.valueOf(rs.getString("role")) : null,
+                    rs.getString("status") != null ? UserStatus.valueOf(rs.getString("status")) : null,
+                    createdAt != null ? createdAt.toLocalDateTime() : null);
+        });
+    }
+
+    static SearchQuery buildQuery(UserSearchCriteria criteria, Long cursor, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("cursor", cursor)
+                .addValue("limit", limit);
+        List<String> conditions = new ArrayList<>();
+        conditions.add("u.id < :cursor");
+
+        if (criteria.getRole() != null) {
+            conditions.add("u.role = :role");
+            params.addValue("role", parseRole(criteria.getRole()).name());
+        }
+        if (criteria.getStatus() != null) {
+            conditions.add("u.status = :status");
+            params.addValue("status", parseStatus(criteria.getStatus()).name());
+        }
+        if (criteria.getFrom() != null) {
+            conditions.add("u.created_at >= :from");
+            params.addValue("from", Timestamp.valueOf(criteria.getFrom().atStartOfDay()));
+        }
+        if (criteria.getTo() != null) {
+            conditions.add("u.created_at < :to");
+            params.addValue("to", Timestamp.valueOf(criteria.getTo().plusDays(1).atStartOfDay()));
+        }
+        String q = criteria.getQ() != null ? criteria.getQ().trim() : "";
+        if (!q.isEmpty()) {
+            if (q.matches("\\+?[0-9]+")) {
+                conditions.add("u.mobile_number LIKE :prefix ESCAPE '\\'");
+                params.addValue("prefix", q + "%");
+            } else {
+                conditions.add("(LOWER(u.email) LIKE :prefix ESCAPE '\\' "
+                        + "OR LOWER(u.full_name) LIKE :prefix ESCAPE '\\')");
+                params.addValue("prefix", escapeLike(q.toLowerCase(Locale.ROOT)) + "%");
+            }
+        }
+
+        String sql = "SELECT u.id, u.email, u.full_name, u.mobile_number, u.role, u.status, u.created_at "
+                + "FROM users u WHERE " + String.join(" AND ", conditions) + " ORDER BY u.id DESC LIMIT :limit";
+        return new SearchQuery(sql, params);
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static Role parseRole(String role) {
+        try {
+            return Role.valueOf(role.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Invalid role: " + role);
+        }
+    }
+
+    private static UserStatus parseStatus(String status) {
+        try {
+            return UserStatus.valueOf(status.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Invalid user status: " + status);
+        }
+    }
+}
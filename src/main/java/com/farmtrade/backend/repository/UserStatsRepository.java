@@ -0,0 +1,203 @@
+package com.farmtrade.backend.repository;
+
+import com.farmtrade.backend.model.Money;
+import com.farmtrade.backend.model.UserStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * JDBC access for the user_stats table: in-place counter adjustments, and
+ * the locked reads, aggregates and rewrites UserStatsService needs to verify
+ * a batch of users against the source tables. Runs on the caller's
+ * transaction; column lists must follow the UserStats mapping.
+ */
+@Repository
+public class UserStatsRepository {
+
+    private static final String COLUMNS = "order_count, order_total, received_payments, active_listings";
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    // A change to one user's counters; negative when orders are removed or payments refunded
+    public record Delta(long orders, BigDecimal orderTotal, BigDecimal received, long listings) {
+
+        public static final Delta ZERO = new Delta(0, BigDecimal.ZERO, BigDecimal.ZERO, 0);
+
+        // One order added (sign 1) or removed (sign -1)
+        public static Delta ofOrder(int sign, Money total) {
+            BigDecimal amount = total.toBigDecimal();
+            return new Delta(sign, sign > 0 ? amount : amount.negate(), BigDecimal.ZERO, 0);
+        }
+
+        public static Delta ofReceived(BigDecimal received) {
+            return new Delta(0, BigDecimal.ZERO, received, 0);
+        }
+
+        public static Delta ofListings(long listings) {
+            return new Delta(0, BigDecimal.ZERO, BigDecimal.ZERO, listings);
+        }
+
+        public Delta negate() {
+            return new Delta(-orders, orderTotal.negate(), received.negate(), -listings);
+        }
+
+        public Delta plus(Delta other) {
+            return new Delta(orders + other.orders, orderTotal.add(other.orderTotal), received.add(other.received),
+                    listings + other.listings);
+        }
+
+        // Amounts compare by value, so 10 and 10.00 match
+        public boolean sameAs(Delta other) {
+            return orders == other.orders && orderTotal.compareTo(other.orderTotal) == 0
+                    && received.compareTo(other.received) == 0 && listings == other.listings;
+        }
+    }
+
+    // Returns 0 when the user has no row yet
+    public int add(Long userId, Delta delta) {
+        return jdbcTemplate.update("UPDATE user_stats SET order_count = order_count + :orders, "
+                + "order_total = order_total + :orderTotal, received_payments = received_payments + :received, "
+                + "active_listings = active_listings + :listings WHERE user_id = :userId",
+                params(delta).addValue("userId", userId));
+    }
+
+    public void create(Long userId) {
+        jdbcTemplate.update("INSERT INTO user_stats (user_id, " + COLUMNS + ") SELECT :userId, 0, 0, 0, 0 "
+                + "WHERE NOT EXISTS (SELECT 1 FROM user_stats WHERE user_id = :userId)",
+                new MapSqlParameterSource("userId", userId));
+    }
+
+    public Optional<UserStats> findById(Long userId) {
+        return jdbcTemplate.query("SELECT user_id, " + COLUMNS + ", verified_at FROM user_stats "
+                + "WHERE user_id = :userId", new MapSqlParameterSource("userId", userId), (rs, rowNum) -> {
+                    UserStats stats = new UserStats();
+                    stats.setUserId(rs.getLong(1));
+                    stats.setOrderCount(rs.getLong(2));
+                    stats.setOrderTotal(Money.of(rs.getBigDecimal(3)));
+                    stats.setReceivedPayments(Money.of(rs.getBigDecimal(4)));
+                    stats.setActiveListings(rs.getLong(5));
+                    Timestamp verifiedAt = rs.getTimestamp(6);
+                    stats.setVerifiedAt(verifiedAt != null ? verifiedAt.toLocalDateTime() : null);
+                    return stats;
+                }).stream().findFirst();
+    }
+
+    /**
+     * Sums, per farmer, the subtotals of the orders' fulfilments whose payment
+     * is about to enter COMPLETED, or to leave it. Must run before the
+     * fulfilments' payment status is updated.
+     */
+    public Map<Long, BigDecimal> sumPaymentChanges(Collection<Long> orderIds, boolean completing) {
+        String changing = completing ? "(payment_status IS NULL OR payment_status <> 'COMPLETED')"
+                : "payment_status = 'COMPLETED'";
+        Map<Long, BigDecimal> byFarmer = new TreeMap<>();
+        jdbcTemplate.query("SELECT farmer_id, SUM(farmer_subtotal) FROM order_farmers WHERE order_id IN (:ids) AND "
+                + changing + " GROUP BY farmer_id", new MapSqlParameterSource("ids", orderIds),
+                rs -> {
+                    byFarmer.put(rs.getLong(1), rs.getBigDecimal(2));
+                });
+        return byFarmer;
+    }
+
+    // Per user, what the orders add to the retailer's and the farmers' counters
+    public Map<Long, Delta> sumOrders(Collection<Long> orderIds) {
+        MapSqlParameterSource ids = new MapSqlParameterSource("ids", orderIds);
+        Map<Long, Delta> byUser = new TreeMap<>();
+        jdbcTemplate.query("SELECT retailer_id, COUNT(*), COALESCE(SUM(total_amount), 0) FROM orders "
+                + "WHERE id IN (:ids) GROUP BY retailer_id", ids, rs -> {
+                    byUser.merge(rs.getLong(1), new Delta(rs.getLong(2), rs.getBigDecimal(3), BigDecimal.ZERO, 0),
+                            Delta::plus);
+                });
+        jdbcTemplate.query("SELECT farmer_id, COUNT(*), COALESCE(SUM(farmer_subtotal), 0), "
+                + "COALESCE(SUM(CASE WHEN payment_status = 'COMPLETED' THEN farmer_subtotal ELSE 0 END), 0) "
+                + "FROM order_farmers WHERE order_id IN (:ids) GROUP BY farmer_id", ids, rs -> {
+                    byUser.merge(rs.getLong(1), new Delta(rs.getLong(2), rs.getBigDecimal(3), rs.getBigDecimal(4), 0),
+                            Delta::plus);
+                });
+        return byUser;
+    }
+
+    public List<Long> findUserIdsAfter(long afterId, int limit) {
+        return jdbcTemplate.queryForList("SELECT id FROM users WHERE id > :after ORDER BY id LIMIT :limit",
+                new MapSqlParameterSource("after", afterId).addValue("limit", limit), Long.class);
+    }
+
+    // Creates zero rows for users that have none, then locks all of their rows in id order
+    public Map<Long, Delta> lockForVerification(Collection<Long> userIds) {
+        MapSqlParameterSource ids = new MapSqlParameterSource("ids", userIds);
+        jdbcTemplate.update("INSERT INTO user_stats (user_id, " + COLUMNS + ") SELECT u.id, 0, 0, 0, 0 FROM users u "
+                + "WHERE u.id IN (:ids) AND NOT EXISTS (SELECT 1 FROM user_stats s WHERE s.user_id = u.id)", ids);
+        Map<Long, Delta> stored = new TreeMap<>();
+        jdbcTemplate.query("SELECT user_id, " + COLUMNS + " FROM user_stats WHERE user_id IN (:ids) "
+                + "ORDER BY user_id FOR UPDATE", ids, rs -> {
+                    stored.put(rs.getLong(1), new Delta(rs.getLong(2), rs.getBigDecimal(3), rs.getBigDecimal(4),
+                            rs.getLong(5)));
+                });
+        return stored;
+    }
+
+    // Recomputes the users' counters from orders, order_farmers and products
+    public Map<Long, Delta> aggregate(Collection<Long> userIds) {
+        MapSqlParameterSource ids = new MapSqlParameterSource("ids", userIds);
+        Map<Long, Delta> actual = new TreeMap<>();
+        jdbcTemplate.query("SELECT retailer_id, COUNT(*), COALESCE(SUM(total_amount), 0) FROM orders "
+                + "WHERE retailer_id IN (:ids) GROUP BY retailer_id", ids, rs -> {
+                    actual.merge(rs.getLong(1), new Delta(rs.getLong(2), rs.getBigDecimal(3), BigDecimal.ZERO, 0),
+                            Delta::plus);
+                });
+        jdbcTemplate.query("SELECT farmer_id, COUNT(*), COALESCE(SUM(farmer_subtotal), 0), "
+                + "COALESCE(SUM(CASE WHEN payment_status = 'COMPLETED' THEN farmer_subtotal ELSE 0 END), 0) "
+                + "FROM order_farmers WHERE farmer_id IN (:ids) GROUP BY farmer_id", ids, rs -> {
+                    actual.merge(rs.getLong(1), new Delta(rs.getLong(2), rs.getBigDecimal(3), rs.getBigDecimal(4), 0),
+                            Delta::plus);
+                });
+        jdbcTemplate.query("SELECT farmer_id, COUNT(*) FROM products WHERE farmer_id IN (:ids) GROUP BY farmer_id",
+                ids, rs -> {
+                    actual.merge(rs.getLong(1), Delta.ofListings(rs.getLong(2)), Delta::plus);
+                });
+        return actual;
+    }
+
+    public void replace(Map<Long, Delta> corrected) {
+        SqlParameterSource[] rows = corrected.entrySet().stream()
+                .map(e -> params(e.getValue()).addValue("userId", e.getKey()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate("UPDATE user_stats SET order_count = :orders, order_total = :orderTotal, "
+                + "received_payments = :received, active_listings = :listings WHERE user_id = :userId", rows);
+    }
+
+    public void markVerified(Collection<Long> userIds, LocalDateTime verifiedAt) {
+        jdbcTemplate.update("UPDATE user_stats SET verified_at = :verifiedAt WHERE user_id IN (:ids)",
+                new MapSqlParameterSource("ids", userIds).addValue("verifiedAt", Timestamp.valueOf(verifiedAt)));
+    }
+
+    public void deleteById(Long userId) {
+        jdbcTemplate.update("DELETE FROM user_stats WHERE user_id = :userId",
+                new MapSqlParameterSource("userId", userId));
+    }
+
+    public boolean isEmpty() {
+        return !Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM user_stats)", new MapSqlParameterSource(), Boolean.class));
+    }
+
+    private static MapSqlParameterSource params(Delta delta) {
+        return new MapSqlParameterSource("orders", delta.orders())
+                .addValue("orderTotal", delta.orderTotal())
+                .addValue("received", delta.received())
+                .addValue("listings", delta.listings());
+    }
+}
@@ -0,0 +1,97 @@
+package com.farmtrade.backend.service;
+
+import java.util.Arrays;
+
+/**
+ * Column store behind AnalyticsService: one row per day, category, farmer
+ * and retailer, each dimension an int code in its own array with the
+ * measures alongside, so a query scans a few flat arrays. An open-addressed
+ * index over the four codes finds the row an order line updates in place.
+ * Not thread-safe; AnalyticsService guards its instances.
+ */
+final class AnalyticsCube {
+
+    int[] days;
+    int[] categories;
+    int[] farmers;
+    int[] retailers;
+    long[] quantities;
+    long[] revenues;
+    long[] orders;
+    int size;
+
+    // Row number + 1 per slot, 0 when empty
+    private int[] index;
+
+    AnalyticsCube() {
+        resizeColumns(64);
+        index = new int[128];
+    }
+
+    void add(int day, int category, int farmer, int retailer, long quantity, long revenue, long orderCount) {
+        int slot = slot(day, category, farmer, retailer);
+        int row = index[slot] - 1;
+        if (row < 0) {
+            if (size == days.length) {
+                resizeColumns(size * 2);
+            }
+            row = size++;
+            days[row] = day;
+            categories[row] = category;
+            farmers[row] = farmer;
+            retailers[row] = retailer;
+            index[slot] = row + 1;
+            if (size * 2 > index.length) {
+                rehash();
+            }
+        }
+        quantities[row] += quantity;
+        revenues[row] += revenue;
+        orders[row] += orderCount;
+    }
+
+    private int slot(int day, int category, int farmer, int retailer) {
+        int mask = index.length - 1;
+        int slot = hash(day, category, farmer, retailer) & mask;
+        while (index[slot] != 0) {
+            int row = index[slot] - 1;
+            if (days[row] == day && categories[row] == category && farmers[row] == farmer
+                    && retailers[row] == retailer) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        index = new int[index.length * 2];
+        int mask = index.length - 1;
+        for (int row = 0; row < size; row++) {
+            int slot = hash(days[row], categories[row], farmers[row], retailers[row]) & mask;
+            while (index[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            index[slot] = row + 1;
+        }
+    }
+
+    private void resizeColumns(int capacity) {
+        days = days == null ? new int[capacity] : Arrays.copyOf(days, capacity);
+        categories = categories == null ? new int[capacity] : Arrays.copyOf(categories, capacity);
+        farmers = farmers == null ? new int[capacity] : Arrays.copyOf(farmers, capacity);
+        retailers = retailers == null ? new int[capacity] : Arrays.copyOf(retailers, capacity);
+        quantities = quantities == null ? new long[capacity] : Arrays.copyOf(quantities, capacity);
+        revenues = revenues == null ? new long[capacity] : Arrays.copyOf(revenues, capacity);
+        orders = orders == null ? new long[capacity] : Arrays.copyOf(orders, capacity);
+    }
+
+    private static int hash(int day, int category, int farmer, int retailer) {
+        int h = day;
+        h = h * 31 + category;
+        h = h * 31 + farmer;
+        h = h * 31 + retailer;
+        h = (h ^ (h >>> 16)) * 0x45D9F3B;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,299 @@
+package com.farmtrade.backend.service;
+
+import com.farmtrade.backend.dto.AnalyticsQuery;
+import com.farmtrade.backend.dto.AnalyticsResult;
+import com.farmtrade.backend.dto.AnalyticsRow;
+import com.farmtrade.backend.model.Money;
+import com.farmtrade.backend.repository.AnalyticsRepository;
+import com.farmtrade.backend.repository.SalesLineRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Slice-and-dice sales analytics for admins, answered from memory. Sales
+ * are pre-aggregated into an {@link AnalyticsCube} by day, category, farmer
+ * and retailer; region hangs off the farmer dimension. Category, farmer,
+ * retailer and region values are coded as ints through per-dimension
+ * dictionaries. Orders placed and cancelled reach the cube on the scheduled
+ * refresh after their transaction commits, and {@link #rebuild} reloads it
+ * from the last horizon-days of orders at startup and nightly. A query
+ * filters and groups in one scan of the columns under a read lock, without
+ * touching the database.
+ */
+@Service
+public class AnalyticsService extends SalesView<AnalyticsService.State> {
+
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 1000;
+    private static final String UNKNOWN = "Unknown";
+    private static final String NO_CATEGORY = "Other";
+
+    public enum Dimension {
+        DAY,
+        WEEK,
+        MONTH,
+        CATEGORY,
+        FARMER,
+        RETAILER,
+        REGION;
+
+        boolean isTime() {
+            return this == DAY || this == WEEK || this == MONTH;
+        }
+    }
+
+    @Autowired
+    private AnalyticsRepository analyticsRepository;
+
+    @Value("${app.analytics.horizon-days:730}")
+    private int horizonDays;
+
+    // Codes for one dimension's values, assigned in order of first appearance
+    private static final class Codes<T> {
+        private final Map<T, Integer> codes = new HashMap<>();
+        private final List<T> values = new ArrayList<>();
+
+        int code(T value) {
+            return codes.computeIfAbsent(value, v -> {
+                values.add(v);
+                return values.size() - 1;
+            });
+        }
+
+        Integer find(T value) {
+            return codes.get(value);
+        }
+
+        T value(int code) {
+            return values.get(code);
+        }
+
+        int size() {
+            return values.size();
+        }
+    }
+
+    // Everything a rebuild replaces at once
+    static final class State {
+        private final AnalyticsCube cube = new AnalyticsCube();
+        private final Codes<String> categories = new Codes<>();
+        private final Codes<Long> farmers = new Codes<>();
+        private final Codes<Long> retailers = new Codes<>();
+        private final Codes<String> regions = new Codes<>();
+        // Region code per farmer code
+        private final List<Integer> farmerRegions = new ArrayList<>();
+
+        void add(LocalDate day, String category, long farmerId, String region, long retailerId, long quantity,
+                long revenue, long orders) {
+            int farmer = farmers.code(farmerId);
+            int regionCode = regions.code(region != null && !region.isBlank() ? region : UNKNOWN);
+            if (farmer == farmerRegions.size()) {
+                farmerRegions.add(regionCode);
+            } else {
+                farmerRegions.set(farmer, regionCode);
+            }
+            cube.add((int) day.toEpochDay(), categories.code(category != null && !category.isBlank() ? category
+                    : NO_CATEGORY), farmer, retailers.code(retailerId), quantity, revenue, orders);
+        }
+    }
+
+    private record GroupKey(int time, int category, int farmer, int retailer, int region) {
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // What queries read, guarded by lock; null until the first refresh or rebuild
+    private State state;
+
+    public AnalyticsService() {
+        super(new State());
+    }
+
+    public AnalyticsResult query(AnalyticsQuery query) {
+        Set<Dimension> groupBy = parseDimensions(query.getGroupBy());
+        Dimension time = groupBy.stream().filter(Dimension::isTime).findFirst().orElse(null);
+        int limit = query.getLimit() != null ? Math.max(1, Math.min(query.getLimit(), MAX_LIMIT)) : DEFAULT_LIMIT;
+        int fromDay = query.getFrom() != null ? (int) query.getFrom().toEpochDay() : Integer.MIN_VALUE;
+        int toDay = query.getTo() != null ? (int) query.getTo().toEpochDay() : Integer.MAX_VALUE;
+
+        Map<GroupKey, long[]> groups = new HashMap<>();
+        Map<Integer, Integer> periods = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            State current = state != null ? state : new State();
+            AnalyticsCube cube = current.cube;
+            boolean[] categoryOk = allowed(current.categories, query.getCategories());
+            boolean[] farmerOk = allowed(current.farmers, query.getFarmerIds());
+            boolean[] retailerOk = allowed(current.retailers, query.getRetailerIds());
+            boolean[] regionOk = allowed(current.regions, query.getRegions());
+            boolean category = groupBy.contains(Dimension.CATEGORY);
+            boolean farmer = groupBy.contains(Dimension.FARMER);
+            boolean retailer = groupBy.contains(Dimension.RETAILER);
+            boolean region = groupBy.contains(Dimension.REGION);
+            // Within a category and farmer an order has one day and retailer, so its cells never merge
+            boolean distinctOrders = category && farmer;
+
+            for (int row = 0; row < cube.size; row++) {
+                int day = cube.days[row];
+                int farmerCode = cube.farmers[row];
+                int regionCode = current.farmerRegions.get(farmerCode);
+                if (day < fromDay || day > toDay
+                        || (categoryOk != null && !categoryOk[cube.categories[row]])
+                        || (farmerOk != null && !farmerOk[farmerCode])
+                        || (retailerOk != null && !retailerOk[cube.retailers[row]])
+                        || (regionOk != null && !regionOk[regionCode])) {
+                    continue;
+                }
+                GroupKey key = new GroupKey(time != null ? periods.computeIfAbsent(day, d -> period(time, d)) : -1,
+                        category ? cube.categories[row] : -1, farmer ? farmerCode : -1,
+                        retailer ? cube.retailers[row] : -1, region ? regionCode : -1);
+                long[] measures = groups.computeIfAbsent(key, k -> new long[3]);
+                measures[0] += cube.quantities[row];
+                measures[1] += cube.revenues[row];
+                measures[2] += cube.orders[row];
+            }
+
+            List<Map.Entry<GroupKey, long[]>> sorted = new ArrayList<>();
+            groups.entrySet().stream()
+                    .filter(e -> e.getValue()[0] != 0 || e.getValue()[1] != 0 || e.getValue()[2] != 0)
+                    .forEach(sorted::add);
+            sorted.sort(Comparator.comparingLong((Map.Entry<GroupKey, long[]> e) -> e.getValue()[1]).reversed());
+            List<AnalyticsRow> rows = new ArrayList<>(Math.min(limit, sorted.size()));
+            for (Map.Entry<GroupKey, long[]> entry : sorted.subList(0, Math.min(limit, sorted.size()))) {
+                GroupKey key = entry.getKey();
+                Map<String, String> labels = new LinkedHashMap<>();
+                if (time != null) {
+                    LocalDate start = LocalDate.ofEpochDay(key.time());
+                    labels.put(name(time), time == Dimension.MONTH ? start.toString().substring(0, 7)
+                            : start.toString());
+                }
+                if (category) {
+                    labels.put(name(Dimension.CATEGORY), current.categories.value(key.category()));
+                }
+                if (farmer) {
+                    labels.put(name(Dimension.FARMER), String.valueOf(current.farmers.value(key.farmer())));
+                }
+                if (retailer) {
+                    labels.put(name(Dimension.RETAILER), String.valueOf(current.retailers.value(key.retailer())));
+                }
+                if (region) {
+                    labels.put(name(Dimension.REGION), current.regions.value(key.region()));
+                }
+                long[] measures = entry.getValue();
+                rows.add(new AnalyticsRow(labels, measures[0], Money.ofPaise(measures[1]),
+                        distinctOrders ? measures[2] : null));
+            }
+            return new AnalyticsResult(sorted.size(), rows);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    protected State load() {
+        State loaded = new State();
+        analyticsRepository.sumCellsSince(LocalDate.now().minusDays(horizonDays), cell -> loaded.add(cell.day(),
+                cell.category(), cell.farmerId(), cell.region(), cell.retailerId(), cell.quantity(), cell.revenue(),
+                cell.orders()));
+        return loaded;
+    }
+
+    // An order counts once per cell it has lines in
+    @Override
+    protected void apply(State target, List<SalesLineRepository.Line> lines, int sign) {
+        LocalDate oldest = LocalDate.now().minusDays(horizonDays);
+        Set<List<Object>> counted = new HashSet<>();
+        lock.writeLock().lock();
+        try {
+            for (SalesLineRepository.Line line : lines) {
+                if (line.day().isBefore(oldest)) {
+                    continue;
+                }
+                boolean firstInCell = counted.add(List.of(line.orderId(), line.day(), String.valueOf(line.category()),
+                        line.farmerId(), line.retailerId()));
+                target.add(line.day(), line.category(), line.farmerId(), line.region(), line.retailerId(),
+                        sign * line.quantity(), sign * line.amount(), firstInCell ? sign : 0);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected void publish(State current, boolean changed) {
+        if (state == current) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            state = current;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected int size(State loaded) {
+        return loaded.cube.size;
+    }
+
+    // Null when the dimension is not filtered; values the cube has never seen match nothing
+    private static <T> boolean[] allowed(Codes<T> codes, List<T> values) {
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        boolean[] allowed = new boolean[codes.size()];
+        for (T value : values) {
+            Integer code = codes.find(value);
+            if (code != null) {
+                allowed[code] = true;
+            }
+        }
+        return allowed;
+    }
+
+    // First day of the week (Monday) or month containing the day
+    private static int period(Dimension time, int day) {
+        return switch (time) {
+            case WEEK -> day - Math.floorMod(day + 3, 7);
+            case MONTH -> (int) LocalDate.ofEpochDay(day).withDayOfMonth(1).toEpochDay();
+            default -> day;
+        };
+    }
+
+    private static Set<Dimension> parseDimensions(List<String> names) {
+        Set<Dimension> dimensions = EnumSet.noneOf(Dimension.class);
+        if (names != null) {
+            for (String name : names) {
+                try {
+                    dimensions.add(Dimension.valueOf(name.toUpperCase(Locale.ROOT)));
+                } catch (IllegalArgumentException e) {
+                    throw new RuntimeException("Invalid dimension: " + name);
+                }
+            }
+        }
+        if (dimensions.stream().filter(Dimension::isTime).count() > 1) {
+            throw new RuntimeException("Group by at most one of day, week and month");
+        }
+        return dimensions;
+    }
+
+    private static String name(Dimension dimension) {
+        return dimension.name().toLowerCase(Locale.ROOT);
+    }
+}
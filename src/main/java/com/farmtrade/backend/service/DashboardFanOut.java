@@ -0,0 +1,137 @@
+package com.farmtrade.backend.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs the independent reads behind a dashboard at the same time instead of
+ * one after another. A request opens a {@link Scope}, forks each read onto
+ * its own virtual thread and joins them against one deadline; reads still
+ * running then are cancelled and their fallback is served instead, with the
+ * read's name listed as degraded. Closing the scope cancels anything left,
+ * so no read outlives its request.
+ *
+ * Every read borrows its own pooled connection, so a semaphore shared by all
+ * requests caps the reads in flight below the Hikari pool size, leaving
+ * connections for writes. A read that cannot get a slot before the deadline
+ * is degraded like a slow one.
+ */
+@Service
+public class DashboardFanOut {
+
+    private static final Logger logger = LoggerFactory.getLogger(DashboardFanOut.class);
+
+    // Keep below spring.datasource.hikari.maximum-pool-size (10 by default)
+    @Value("${app.dashboard.max-concurrent:4}")
+    private int maxConcurrent;
+
+    @Value("${app.dashboard.timeout-ms:1500}")
+    private long timeoutMs;
+
+    private Semaphore slots;
+
+    @PostConstruct
+    public void init() {
+        slots = new Semaphore(maxConcurrent);
+    }
+
+    public Scope open() {
+        return new Scope(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs));
+    }
+
+    // One read of a scope; its value is readable once the scope has joined
+    public static final class Part<T> {
+        private final String name;
+        private final T fallback;
+        private Future<T> future;
+        private T value;
+        private boolean done;
+
+        private Part(String name, T fallback) {
+            this.name = name;
+            this.fallback = fallback;
+        }
+
+        public T get() {
+            return done ? value : fallback;
+        }
+    }
+
+    public final class Scope implements AutoCloseable {
+
+        private final long deadline;
+        private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        private final List<Part<?>> parts = new ArrayList<>();
+        private final List<String> degraded = new ArrayList<>();
+
+        private Scope(long deadline) {
+            this.deadline = deadline;
+        }
+
+        public <T> Part<T> fork(String name, Callable<T> read, T fallback) {
+            Part<T> part = new Part<>(name, fallback);
+            part.future = executor.submit(() -> {
+                if (!slots.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    throw new TimeoutException("No free connection slot");
+                }
+                try {
+                    return read.call();
+                } finally {
+                    slots.release();
+                }
+            });
+            parts.add(part);
+            return part;
+        }
+
+        // Waits for the forked reads until the deadline and cancels the ones still running
+        public void join() {
+            for (Part<?> part : parts) {
+                collect(part);
+            }
+        }
+
+        // Names of the reads that timed out or failed, in fork order
+        public List<String> degraded() {
+            return degraded;
+        }
+
+        @Override
+        public void close() {
+            parts.forEach(part -> part.future.cancel(true));
+            executor.shutdownNow();
+        }
+
+        private <T> void collect(Part<T> part) {
+            try {
+                part.value = part.future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                part.done = true;
+                return;
+            } catch (TimeoutException | CancellationException e) {
+                part.future.cancel(true);
+                logger.warn("Dashboard read {} missed its {} ms deadline", part.name, timeoutMs);
+            } catch (ExecutionException e) {
+                logger.warn("Dashboard read {} failed: {}", part.name, e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                part.future.cancel(true);
+            }
+            degraded.add(part.name);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.farmtrade.backend.service;
+
+import com.farmtrade.backend.model.OrderStatus;
+import com.farmtrade.backend.model.UserStatus;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Streams admin data dumps straight out of PostgreSQL with COPY ... TO STDOUT,
+ * so rows go from the socket to the HTTP response without being materialized.
+ * COPY cannot take bind parameters, so every filter is parsed into a typed
+ * value (date or enum) before it is written into the statement.
+ */
+@Service
+public class ExportService {
+
+    public enum Format {
+        CSV,
+        NDJSON
+    }
+
+    private enum Dataset {
+        ORDERS("SELECT o.id, o.order_date, o.retailer_id, o.status, o.payment_status, o.total_amount, "
+                + "o.razorpay_order_id, o.razorpay_payment_id FROM orders o", "o.order_date", "o.status"),
+        ORDER_ITEMS("SELECT i.id, i.order_id, o.order_date, o.status, i.product_id, p.farmer_id, i.quantity, "
+                + "i.price_per_unit FROM order_items i JOIN orders o ON o.id = i.order_id "
+                + "JOIN products p ON p.id = i.product_id", "o.order_date", "o.status"),
+        USERS("SELECT u.id, u.email, u.full_name, u.role, u.status, u.mobile_number, u.address FROM users u",
+                null, "u.status"),
+        PRODUCTS("SELECT p.id, p.name, p.category, p.unit, p.price, p.quantity, p.farmer_id FROM products p",
+                null, null);
+
+        private final String query;
+        private final String dateColumn;
+        private final String statusColumn;
+
+        Dataset(String query, String dateColumn, String statusColumn) {
+            this.query = query;
+            this.dateColumn = dateColumn;
+            this.statusColumn = statusColumn;
+        }
+    }
+
+    @Autowired
+    private DataSource dataSource;
+
+    /**
+     * Validates the request and returns the COPY statement to run. Called
+     * before the response starts streaming so bad filters still get a 400.
+     */
+    public String prepareExport(String dataset, String format, LocalDate from, LocalDate to, String status) {
+        Dataset source = parseDataset(dataset);
+        Format outputFormat = parseFormat(format);
+
+        List<String> conditions = new ArrayList<>();
+        if (from != null || to != null) {
+            if (source.dateColumn == null) {
+                throw new RuntimeException("Date filters are not supported for " + dataset);
+            }
+            if (from != null) {
+                conditions.add(source.dateColumn + " >= DATE '" + from + "'");
+            }
+            if (to != null) {
+                conditions.add(source.dateColumn + " < DATE '" + to.plusDays(1) + "'");
+            }
+        }
+        if (status != null) {
+            if (source.statusColumn == null) {
+                throw new RuntimeException("Status filter is not supported for " + dataset);
+            }
+            conditions.add(source.statusColumn + " = '" + parseStatus(source, status) + "'");
+        }
+
+        String query = source.query + (conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions));
+        if (outputFormat == Format.CSV) {
+            return "COPY (" + query + ") TO STDOUT WITH (FORMAT csv, HEADER)";
+        }
+        // CSV mode with quote and delimiter characters that JSON always escapes, so each
+        // row_to_json value is written verbatim (text mode would double every backslash)
+        return "COPY (SELECT row_to_json(t) FROM (" + query + ") t) TO STDOUT "
+                + "WITH (FORMAT csv, QUOTE E'\\x01', DELIMITER E'\\x02')";
+    }
+
+    /**
+     * Runs a statement from {@link #prepareExport} on its own connection. If
+     * the client disconnects, the failed write makes the driver cancel the
+     * COPY on the server, and the connection goes back to the pool.
+     */
+    public long copyOut(String copySql, OutputStream out) throws IOException {
+        try (Connection connection = dataSource.getConnection()) {
+            CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+            BufferedOutputStream buffered = new BufferedOutputStream(out, 64 * 1024);
+            long rows = copyManager.copyOut(copySql, buffered);
+            buffered.flush();
+            return rows;
+        } catch (SQLException e) {
+            throw new IOException("Export failed: " + e.getMessage(), e);
+        }
+    }
+
+    public static String contentType(String format) {
+        return parseFormat(format) == Format.CSV ? "text/csv" : "application/x-ndjson";
+    }
+
+    private static Dataset parseDataset(String dataset) {
+        try {
+            return Dataset.valueOf(dataset.toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Unknown export: " + dataset);
+        }
+    }
+
+    private static Format parseFormat(String format) {
+        try {
+            return Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Unsupported export format: " + format);
+        }
+    }
+
+    private static String parseStatus(Dataset source, String status) {
+        try {
+            return source == Dataset.USERS
+                    ? UserStatus.valueOf(status.toUpperCase(Locale.ROOT)).name()
+                    : OrderStatus.valueOf(status.toUpperCase(Locale.ROOT)).name();
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Invalid status value: " + status);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.farmtrade.backend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Bulkhead, timeout and circuit breaker around one remote dependency.
+ * At most maxConcurrent calls are in flight; further calls fail at once
+ * with BUSY instead of queueing. After failureThreshold consecutive
+ * failures the circuit opens and calls fail with UNAVAILABLE for
+ * openDuration. After that a single trial call is let through, and its
+ * result closes or re-opens the circuit. DECLINED responses mean the
+ * provider is up, so they count as successes here.
+ */
+public class GatewayGuard {
+
+    private static final Logger logger = LoggerFactory.getLogger(GatewayGuard.class);
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String name;
+    private final Semaphore permits;
+    private final Duration timeout;
+    private final int failureThreshold;
+    private final Duration openDuration;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openUntilNanos;
+
+    public GatewayGuard(String name, int maxConcurrent, Duration timeout, int failureThreshold,
+            Duration openDuration) {
+        this.name = name;
+        this.permits = new Semaphore(maxConcurrent);
+        this.timeout = timeout;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+    }
+
+    public <T> CompletableFuture<T> call(Supplier<CompletableFuture<T>> operation) {
+        if (!tryEnter()) {
+            return CompletableFuture.failedFuture(new PaymentGatewayException(
+                    PaymentGatewayException.Reason.UNAVAILABLE, name + " is unavailable, try again shortly"));
+        }
+        if (!permits.tryAcquire()) {
+            abandonTrial();
+            return CompletableFuture.failedFuture(new PaymentGatewayException(
+                    PaymentGatewayException.Reason.BUSY, name + " is busy, try again shortly"));
+        }
+
+        CompletableFuture<T> call;
+        try {
+            call = operation.get();
+        } catch (RuntimeException e) {
+            call = CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        call.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS).whenComplete((value, error) -> {
+            permits.release();
+            if (error == null) {
+                onSuccess();
+                result.complete(value);
+                return;
+            }
+            PaymentGatewayException failure = translate(error);
+            if (failure.getReason() == PaymentGatewayException.Reason.DECLINED) {
+                onSuccess();
+            } else {
+                onFailure();
+            }
+            result.completeExceptionally(failure);
+        });
+        return result;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public int getAvailablePermits() {
+        return permits.availablePermits();
+    }
+
+    private synchronized boolean tryEnter() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.OPEN && System.nanoTime() - openUntilNanos >= 0) {
+            // This caller becomes the trial; everyone else keeps failing fast until it finishes
+            state = State.HALF_OPEN;
+            return true;
+        }
+        return false;
+    }
+
+    // The trial never reached the provider, so let the next caller try instead
+    private synchronized void abandonTrial() {
+        if (state == State.HALF_OPEN) {
+            state = State.OPEN;
+            openUntilNanos = System.nanoTime();
+        }
+    }
+
+    private synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            logger.info("{} circuit closed", name);
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+    }
+
+    private synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            if (state != State.OPEN) {
+                logger.warn("{} circuit opened after {} consecutive failures", name, consecutiveFailures);
+            }
+            state = State.OPEN;
+            openUntilNanos = System.nanoTime() + openDuration.toNanos();
+        }
+    }
+
+    private PaymentGatewayException translate(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof PaymentGatewayException gatewayException) {
+            return gatewayException;
+        }
+        if (cause instanceof TimeoutException || cause instanceof HttpTimeoutException) {
+            return new PaymentGatewayException(PaymentGatewayException.Reason.TIMEOUT,
+                    name + " did not respond within " + timeout.toMillis() + " ms", cause);
+        }
+        return new PaymentGatewayException(PaymentGatewayException.Reason.ERROR,
+                name + " call failed: " + cause.getMessage(), cause);
+    }
+}
@@ -0,0 +1,49 @@
+package com.farmtrade.backend.service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Locale;
+
+/**
+ * HMAC-SHA256 signature check with the key set up once. Mac instances are
+ * not thread-safe, so each thread gets its own clone of a keyed prototype
+ * instead of a new Mac and key per request.
+ */
+public class HmacVerifier {
+
+    private final ThreadLocal<Mac> macs;
+
+    public HmacVerifier(String secret) {
+        Mac prototype;
+        try {
+            prototype = Mac.getInstance("HmacSHA256");
+            prototype.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                return (Mac) prototype.clone();
+            } catch (CloneNotSupportedException e) {
+                throw new IllegalStateException("HmacSHA256 Mac cannot be cloned", e);
+            }
+        });
+    }
+
+    public String sign(String message) {
+        return HexFormat.of().formatHex(macs.get().doFinal(message.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // Constant-time comparison of hex signatures
+    public boolean matches(String message, String signature) {
+        if (signature == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(sign(message).getBytes(StandardCharsets.US_ASCII),
+                signature.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,247 @@
+package com.farmtrade.backend.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resized JPEG copies of uploaded photos, so product cards and avatars do
+ * not download the full camera original. After an upload its thumb, card
+ * and detail sizes are rendered in the background with ImageIO on a small
+ * fixed pool with a bounded queue; when the queue is full the upload is
+ * skipped and rendered later, the first time one of its sizes is asked for.
+ *
+ * A derivative sits next to its content-addressed original as
+ * <hash>-<size>.jpg, so it is as immutable as the original and goes when
+ * UploadStore sweeps the original. Large originals are subsampled while
+ * decoding, which keeps a worker's memory near that of the detail size
+ * rather than the full camera resolution. EXIF orientation is not applied.
+ */
+@Service
+public class ImageDerivativeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageDerivativeService.class);
+
+    public enum Size {
+        THUMB(160),
+        CARD(480),
+        DETAIL(1080);
+
+        // Longest edge in pixels; smaller images are re-encoded but never enlarged
+        private final int maxEdge;
+
+        Size(int maxEdge) {
+            this.maxEdge = maxEdge;
+        }
+
+        public int maxEdge() {
+            return maxEdge;
+        }
+    }
+
+    @Autowired
+    private UploadStore uploadStore;
+
+    @Value("${app.uploads.derivatives.threads:2}")
+    private int threads;
+
+    @Value("${app.uploads.derivatives.queue-capacity:200}")
+    private int queueCapacity;
+
+    @Value("${app.uploads.derivatives.quality:0.8}")
+    private float quality;
+
+    private ThreadPoolExecutor workers;
+
+    // Originals queued or being rendered, so repeated requests queue them once
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void startWorkers() {
+        workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("image-derivatives-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void stopWorkers() {
+        workers.shutdownNow();
+    }
+
+    public static Size parseSize(String size) {
+        try {
+            return Size.valueOf(size.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Invalid size: " + size);
+        }
+    }
+
+    // "sha256/ab/ab12….png" becomes "sha256/ab/ab12…-thumb.jpg"
+    public static String derivativePath(String path, Size size) {
+        return StringUtils.stripFilenameExtension(path) + "-" + size.name().toLowerCase(Locale.ROOT) + ".jpg";
+    }
+
+    /**
+     * Queues the sizes of a stored original that are not rendered yet.
+     * Returns false when the file is not an image ImageIO reads, or the
+     * queue is full.
+     */
+    public boolean generate(String path) {
+        String extension = StringUtils.getFilenameExtension(path);
+        if (extension == null || !ImageIO.getImageReadersBySuffix(extension).hasNext() || !pending.add(path)) {
+            return false;
+        }
+        try {
+            workers.execute(() -> {
+                try {
+                    render(path);
+                } finally {
+                    pending.remove(path);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            pending.remove(path);
+            logger.warn("Image derivative queue is full; {} is rendered when first requested", path);
+            return false;
+        }
+    }
+
+    // Renders the missing sizes of one original, largest first, each scaled from the one before
+    void render(String path) {
+        Path original = uploadStore.resolve(path);
+        try {
+            boolean missing = false;
+            for (Size size : Size.values()) {
+                missing |= !Files.exists(uploadStore.resolve(derivativePath(path, size)));
+            }
+            if (!missing || !Files.isRegularFile(original)) {
+                return;
+            }
+            BufferedImage image = decode(original);
+            if (image == null) {
+                logger.warn("Could not decode {} as an image", path);
+                return;
+            }
+            // Sizes are declared smallest first
+            Size[] sizes = Size.values();
+            for (int i = sizes.length - 1; i >= 0; i--) {
+                image = scale(image, sizes[i].maxEdge());
+                Path target = uploadStore.resolve(derivativePath(path, sizes[i]));
+                if (!Files.exists(target)) {
+                    write(image, target);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not render derivatives of {}: {}", path, e.getMessage());
+        }
+    }
+
+    // Subsamples while reading so the decoded image is no more than twice the detail size
+    private static BufferedImage decode(Path file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            if (in == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int longest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, longest / (2 * Size.DETAIL.maxEdge()));
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Halves until within twice the target, then one bilinear pass, which keeps edges smooth
+    private static BufferedImage scale(BufferedImage image, int maxEdge) {
+        BufferedImage current = image;
+        int longest = Math.max(current.getWidth(), current.getHeight());
+        while (longest > 2 * maxEdge) {
+            current = draw(current, current.getWidth() / 2, current.getHeight() / 2);
+            longest = Math.max(current.getWidth(), current.getHeight());
+        }
+        if (longest <= maxEdge) {
+            return current.getType() == BufferedImage.TYPE_INT_RGB ? current
+                    : draw(current, current.getWidth(), current.getHeight());
+        }
+        double ratio = (double) maxEdge / longest;
+        return draw(current, Math.max(1, (int) Math.round(current.getWidth() * ratio)),
+                Math.max(1, (int) Math.round(current.getHeight() * ratio)));
+    }
+
+    // JPEG has no alpha, so transparent areas become white
+    private static BufferedImage draw(BufferedImage source, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    // Written to a temp file and moved into place, so a reader never sees half a JPEG
+    private void write(BufferedImage image, Path target) throws IOException {
+        Path temp = uploadStore.createTempFile();
+        try {
+            ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+            try (ImageOutputStream out = ImageIO.createImageOutputStream(temp.toFile())) {
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(quality);
+                writer.setOutput(out);
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.farmtrade.backend.service;
+
+import com.farmtrade.backend.dto.LeaderboardEntry;
+import com.farmtrade.backend.model.Money;
+import com.farmtrade.backend.repository.LeaderboardRepository;
+import com.farmtrade.backend.repository.ProductRepository;
+import com.farmtrade.backend.repository.SalesLineRepository;
+import com.farmtrade.backend.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Top products, farmers and categories over the last day, week and month,
+ * kept in memory. Sales are summed per calendar day into primitive-keyed
+ * totals as orders are placed and cancelled. Only the days of the longest
+ * window are kept, so memory grows with the catalogue rather than with
+ * order history. When a scheduled refresh has applied new sales, or the day
+ * has turned, the day totals are folded, newest first, into each window and
+ * the top entries picked with a bounded heap; reads then copy at most size
+ * entries from that snapshot without taking a lock. {@link #rebuild}
+ * reloads the days from order history at startup and nightly, correcting
+ * anything missed in between.
+ */
+@Service
+public class LeaderboardService extends SalesView<TreeMap<LocalDate, LeaderboardService.DayTotals>> {
+
+    private static final String NO_CATEGORY = "Other";
+
+    public enum Board {
+        // Ranked by units sold
+        PRODUCTS,
+        // Ranked by revenue
+        FARMERS,
+        CATEGORIES
+    }
+
+    public enum Window {
+        DAY(1),
+        WEEK(7),
+        MONTH(30);
+
+        private final int days;
+
+        Window(int days) {
+            this.days = days;
+        }
+    }
+
+    @Autowired
+    private LeaderboardRepository leaderboardRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    // Entries kept per board and window; the most a read can ask for
+    @Value("${app.leaderboards.size:50}")
+    private int size;
+
+    private record Ranked(long id, long quantity, long amount) {
+    }
+
+    private record Snapshot(LocalDate today, Map<Window, Map<Board, List<Ranked>>> boards) {
+    }
+
+    static final class DayTotals {
+        private final Map<Board, LongTotals> boards = new EnumMap<>(Board.class);
+
+        DayTotals() {
+            for (Board board : Board.values()) {
+                boards.put(board, new LongTotals());
+            }
+        }
+    }
+
+    private final Map<String, Long> categoryIds = new ConcurrentHashMap<>();
+    private final Map<Long, String> categoryNames = new ConcurrentHashMap<>();
+    private final AtomicLong nextCategoryId = new AtomicLong(1);
+
+    // Null until the first refresh or rebuild
+    private volatile Snapshot snapshot;
+
+    public LeaderboardService() {
+        super(new TreeMap<>());
+    }
+
+    public List<LeaderboardEntry> getLeaderboard(Board board, Window window, int limit) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return List.of();
+        }
+        List<Ranked> ranked = current.boards().get(window).get(board);
+        List<Ranked> top = ranked.subList(0, Math.max(0, Math.min(limit, ranked.size())));
+        Map<Long, String> names = names(board, top.stream().map(Ranked::id).toList());
+        List<LeaderboardEntry> entries = new ArrayList<>(top.size());
+        for (Ranked entry : top) {
+            entries.add(new LeaderboardEntry(board == Board.CATEGORIES ? null : entry.id(), names.get(entry.id()),
+                    entry.quantity(), Money.ofPaise(entry.amount())));
+        }
+        return entries;
+    }
+
+    public static Board parseBoard(String board) {
+        try {
+            return Board.valueOf(board.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Invalid leaderboard: " + board);
+        }
+    }
+
+    public static Window parseWindow(String window) {
+        try {
+            return Window.valueOf(window.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Invalid window: " + window);
+        }
+    }
+
+    @Override
+    protected TreeMap<LocalDate, DayTotals> load() {
+        TreeMap<LocalDate, DayTotals> loaded = new TreeMap<>();
+        leaderboardRepository.sumSalesSince(firstDay(), total -> add(loaded, total.day(), total.productId(),
+                total.farmerId(), total.category(), total.quantity(), total.amount()));
+        return loaded;
+    }
+
+    @Override
+    protected void apply(TreeMap<LocalDate, DayTotals> target, List<SalesLineRepository.Line> lines, int sign) {
+        LocalDate first = firstDay();
+        for (SalesLineRepository.Line line : lines) {
+            if (!line.day().isBefore(first)) {
+                add(target, line.day(), line.productId(), line.farmerId(), line.category(), sign * line.quantity(),
+                        sign * line.amount());
+            }
+        }
+    }
+
+    @Override
+    protected void publish(TreeMap<LocalDate, DayTotals> current, boolean changed) {
+        LocalDate today = LocalDate.now();
+        if (changed || snapshot == null || !snapshot.today().equals(today)) {
+            snapshot = build(current, today);
+        }
+    }
+
+    @Override
+    protected int size(TreeMap<LocalDate, DayTotals> loaded) {
+        return loaded.size();
+    }
+
+    private static LocalDate firstDay() {
+        return LocalDate.now().minusDays(Window.MONTH.days - 1);
+    }
+
+    private void add(TreeMap<LocalDate, DayTotals> target, LocalDate day, long productId, long farmerId,
+            String category, long quantity, long amount) {
+        DayTotals totals = target.computeIfAbsent(day, d -> new DayTotals());
+        totals.boards.get(Board.PRODUCTS).add(productId, quantity, amount);
+        totals.boards.get(Board.FARMERS).add(farmerId, quantity, amount);
+        totals.boards.get(Board.CATEGORIES).add(categoryId(category), quantity, amount);
+    }
+
+    private long categoryId(String category) {
+        String name = category != null && !category.isBlank() ? category : NO_CATEGORY;
+        return categoryIds.computeIfAbsent(name, n -> {
+            long id = nextCategoryId.getAndIncrement();
+            categoryNames.put(id, n);
+            return id;
+        });
+    }
+
+    // Folds the days into each window, newest first; called holding the view's lock
+    private Snapshot build(TreeMap<LocalDate, DayTotals> days, LocalDate today) {
+        days.headMap(today.minusDays(Window.MONTH.days - 1)).clear();
+        Map<Board, LongTotals> running = new EnumMap<>(Board.class);
+        for (Board board : Board.values()) {
+            running.put(board, new LongTotals());
+        }
+        Map<Window, Map<Board, List<Ranked>>> boards = new EnumMap<>(Window.class);
+        List<Map.Entry<LocalDate, DayTotals>> newestFirst = new ArrayList<>(days.descendingMap().entrySet());
+        int next = 0;
+        for (Window window : Window.values()) {
+            // Each day is added once; a longer window carries on from the shorter one's totals
+            LocalDate first = today.minusDays(window.days - 1);
+            for (; next < newestFirst.size() && !newestFirst.get(next).getKey().isBefore(first); next++) {
+                if (!newestFirst.get(next).getKey().isAfter(today)) {
+                    newestFirst.get(next).getValue().boards
+                            .forEach((board, dayTotals) -> running.get(board).addAll(dayTotals));
+                }
+            }
+            Map<Board, List<Ranked>> tops = new EnumMap<>(Board.class);
+            running.forEach((board, totals) -> tops.put(board, top(board, totals)));
+            boards.put(window, tops);
+        }
+        return new Snapshot(today, boards);
+    }
+
+    private List<Ranked> top(Board board, LongTotals totals) {
+        Comparator<Ranked> order = board == Board.PRODUCTS
+                ? Comparator.comparingLong(Ranked::quantity).thenComparingLong(Ranked::amount)
+                : Comparator.comparingLong(Ranked::amount).thenComparingLong(Ranked::quantity);
+        order = order.thenComparing(Comparator.comparingLong(Ranked::id).reversed());
+        // Min-heap of the best size entries seen so far
+        PriorityQueue<Ranked> heap = new PriorityQueue<>(size + 1, order);
+        totals.forEach((id, quantity, amount) -> {
+            if (quantity > 0 || amount > 0) {
+                heap.add(new Ranked(id, quantity, amount));
+                if (heap.size() > size) {
+                    heap.poll();
+                }
+            }
+        });
+        List<Ranked> top = new ArrayList<>(heap);
+        top.sort(order.reversed());
+        return top;
+    }
+
+    private Map<Long, String> names(Board board, List<Long> ids) {
+        Map<Long, String> names = new HashMap<>();
+        switch (board) {
+            case PRODUCTS -> productRepository.findAllById(ids).forEach(p -> names.put(p.getId(), p.getName()));
+            case FARMERS -> userRepository.findAllById(ids).forEach(
+                    u -> names.put(u.getId(), u.getFullName() != null ? u.getFullName() : u.getEmail()));
+            case CATEGORIES -> ids.forEach(id -> names.put(id, categoryNames.get(id)));
+        }
+        return names;
+    }
+}
@@ -0,0 +1,158 @@
+package com.farmtrade.backend.service;
+
+import com.farmtrade.backend.model.FarmerAccount;
+import com.farmtrade.backend.model.LedgerEntry;
+import com.farmtrade.backend.model.Money;
+import com.farmtrade.backend.repository.FarmerAccountRepository;
+import com.farmtrade.backend.repository.LedgerRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Posts to the farmer payout ledger. Sales are posted when an order's
+ * payment becomes COMPLETED, by whichever path completed it (verify call,
+ * webhook or reconciliation), inside that path's transaction. Refunds are
+ * posted the same way when a payment becomes REFUNDED.
+ */
+@Service
+public class LedgerService {
+
+    @Autowired
+    private LedgerRepository ledgerRepository;
+
+    @Autowired
+    private FarmerAccountRepository farmerAccountRepository;
+
+    /**
+     * Credits each farmer with their lines of the given orders and debits
+     * gateway clearing by the same amount, one posting per fulfilment.
+     * Fulfilments that were already posted are skipped, so calling this
+     * twice for an order is harmless.
+     */
+    @Transactional
+    public int recordSales(Collection<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return 0;
+        }
+        List<LedgerRepository.SaleLine> lines = ledgerRepository.findSaleLines(orderIds);
+        if (lines.isEmpty()) {
+            return 0;
+        }
+        Set<String> posted = ledgerRepository.findPostedRefs(
+                lines.stream().map(line -> saleRef(line.orderFarmerId())).toList(),
+                LedgerEntry.Account.FARMER_PAYABLE);
+
+        LocalDateTime now = LocalDateTime.now();
+        List<LedgerEntry> entries = new ArrayList<>();
+        Map<Long, BigDecimal> earnings = new HashMap<>();
+        for (LedgerRepository.SaleLine line : lines) {
+            String ref = saleRef(line.orderFarmerId());
+            if (posted.contains(ref) || line.amount().signum() == 0) {
+                continue;
+            }
+            Money amount = Money.of(line.amount());
+            entries.add(entry(ref, LedgerEntry.Type.SALE, LedgerEntry.Account.GATEWAY_CLEARING, null,
+                    LedgerEntry.Side.DEBIT, amount, now, line.orderId(), null));
+            entries.add(entry(ref, LedgerEntry.Type.SALE, LedgerEntry.Account.FARMER_PAYABLE, line.farmerId(),
+                    LedgerEntry.Side.CREDIT, amount, now, line.orderId(), null));
+            earnings.merge(line.farmerId(), amount.toBigDecimal(), BigDecimal::add);
+        }
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        ledgerRepository.createMissingAccounts(earnings.keySet(), now);
+        ledgerRepository.insertEntries(entries);
+        ledgerRepository.addEarnings(earnings, now);
+        return entries.size() / 2;
+    }
+
+    /**
+     * Reverses the sale postings of the given orders, one refund posting per
+     * fulfilment that was posted as a sale and not refunded yet. A farmer who
+     * was already paid for the sale is left with a negative balance, which
+     * later sales pay down before the next payout.
+     */
+    @Transactional
+    public int recordRefunds(Collection<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return 0;
+        }
+        List<LedgerRepository.SaleLine> lines = ledgerRepository.findSaleLines(orderIds);
+        if (lines.isEmpty()) {
+            return 0;
+        }
+        Set<String> sold = ledgerRepository.findPostedRefs(
+                lines.stream().map(line -> saleRef(line.orderFarmerId())).toList(),
+                LedgerEntry.Account.FARMER_PAYABLE);
+        Set<String> refunded = ledgerRepository.findPostedRefs(
+                lines.stream().map(line -> refundRef(line.orderFarmerId())).toList(),
+                LedgerEntry.Account.FARMER_PAYABLE);
+
+        LocalDateTime now = LocalDateTime.now();
+        List<LedgerEntry> entries = new ArrayList<>();
+        Map<Long, BigDecimal> reversals = new HashMap<>();
+        for (LedgerRepository.SaleLine line : lines) {
+            String ref = refundRef(line.orderFarmerId());
+            if (!sold.contains(saleRef(line.orderFarmerId())) || refunded.contains(ref)) {
+                continue;
+            }
+            Money amount = Money.of(line.amount());
+            entries.add(entry(ref, LedgerEntry.Type.REFUND, LedgerEntry.Account.FARMER_PAYABLE, line.farmerId(),
+                    LedgerEntry.Side.DEBIT, amount, now, line.orderId(), null));
+            entries.add(entry(ref, LedgerEntry.Type.REFUND, LedgerEntry.Account.GATEWAY_CLEARING, null,
+                    LedgerEntry.Side.CREDIT, amount, now, line.orderId(), null));
+            reversals.merge(line.farmerId(), amount.toBigDecimal(), BigDecimal::add);
+        }
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        ledgerRepository.insertEntries(entries);
+        ledgerRepository.addRefunds(reversals, now);
+        return entries.size() / 2;
+    }
+
+    public FarmerAccount getAccount(Long farmerId) {
+        return farmerAccountRepository.findById(farmerId).orElseGet(() -> {
+            FarmerAccount empty = new FarmerAccount();
+            empty.setFarmerId(farmerId);
+            return empty;
+        });
+    }
+
+    static String saleRef(Long orderFarmerId) {
+        return "sale:" + orderFarmerId;
+    }
+
+    static String refundRef(Long orderFarmerId) {
+        return "refund:" + orderFarmerId;
+    }
+
+    static String payoutRef(Long batchId, Long farmerId) {
+        return "payout:" + batchId + ":" + farmerId;
+    }
+
+    static LedgerEntry entry(String ref, LedgerEntry.Type type, LedgerEntry.Account account, Long farmerId,
+            LedgerEntry.Side side, Money amount, LocalDateTime postedAt, Long orderId, Long payoutBatchId) {
+        LedgerEntry entry = new LedgerEntry();
+        entry.setPostingRef(ref);
+        entry.setType(type);
+        entry.setAccount(account);
+        entry.setFarmerId(farmerId);
+        entry.setSide(side);
+        entry.setAmount(amount);
+        entry.setPostedAt(postedAt);
+        entry.setOrderId(orderId);
+        entry.setPayoutBatchId(payoutBatchId);
+        return entry;
+    }
+}
@@ -0,0 +1,101 @@
+package com.farmtrade.backend.service;
+
+import java.util.Arrays;
+
+/**
+ * Quantity and amount totals keyed by a long id, in open-addressed primitive
+ * arrays: about 24 bytes per key, against well over 100 for a HashMap of
+ * boxed values. Not thread-safe; LeaderboardService guards its instances.
+ */
+final class LongTotals {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    @FunctionalInterface
+    interface Visitor {
+        void visit(long key, long quantity, long amount);
+    }
+
+    private long[] keys;
+    private long[] quantities;
+    private long[] amounts;
+    private int size;
+
+    LongTotals() {
+        this(16);
+    }
+
+    LongTotals(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(expected, 8) * 2 - 1) << 1;
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        quantities = new long[capacity];
+        amounts = new long[capacity];
+    }
+
+    void add(long key, long quantity, long amount) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Reserved key");
+        }
+        int slot = slot(key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            if (++size * 4 > keys.length * 3) {
+                grow();
+                slot = slot(key);
+            }
+        }
+        quantities[slot] += quantity;
+        amounts[slot] += amount;
+    }
+
+    void addAll(LongTotals other) {
+        other.forEach(this::add);
+    }
+
+    void forEach(Visitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                visitor.visit(keys[i], quantities[i], amounts[i]);
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Linear probing from the mixed hash; the table is never more than 3/4 full
+    private int slot(long key) {
+        int mask = keys.length - 1;
+        int slot = (int) (mix(key) & mask);
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldQuantities = quantities;
+        long[] oldAmounts = amounts;
+        keys = new long[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        quantities = new long[keys.length];
+        amounts = new long[keys.length];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                quantities[slot] = oldQuantities[i];
+                amounts[slot] = oldAmounts[i];
+            }
+        }
+    }
+
+    // Sequential ids would otherwise fill runs of adjacent slots
+    private static long mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+}
@@ -0,0 +1,65 @@
+package com.farmtrade.backend.service;
+
+import com.farmtrade.backend.event.OrdersCancelled;
+import com.farmtrade.backend.event.OrdersPlaced;
+import com.farmtrade.backend.event.OrdersRemoved;
+import com.farmtrade.backend.model.Order;
+import com.farmtrade.backend.model.OrderItem;
+import com.farmtrade.backend.model.Product;
+import com.farmtrade.backend.repository.SalesLineRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Tells the data derived from orders that orders were placed, cancelled or
+ * removed, so the services writing orders do not call each consumer. Call
+ * inside the transaction making the change. The stats rollups and user
+ * stats listen synchronously and write in that transaction; the
+ * leaderboards and analytics cube take the change once it commits.
+ */
+@Service
+public class OrderEvents {
+
+    @Autowired
+    private ApplicationEventPublisher publisher;
+
+    @Autowired
+    private SalesLineRepository salesLineRepository;
+
+    // Orders must have their retailer, fulfilments, lines and products loaded
+    public void placed(Collection<Order> orders) {
+        if (orders.isEmpty()) {
+            return;
+        }
+        List<SalesLineRepository.Line> lines = new ArrayList<>();
+        for (Order order : orders) {
+            for (OrderItem item : order.getItems()) {
+                Product product = item.getProduct();
+                lines.add(new SalesLineRepository.Line(order.getId(), order.getOrderDate().toLocalDate(),
+                        product.getId(), product.getCategory(), product.getFarmer().getId(),
+                        product.getFarmer().getRegion(), order.getRetailer().getId(), item.getQuantity(),
+                        item.getPricePerUnit().times(item.getQuantity()).toPaise()));
+            }
+        }
+        publisher.publishEvent(new OrdersPlaced(List.copyOf(orders), lines));
+    }
+
+    // Call before the orders' status or lines change
+    public void cancelled(Collection<Long> orderIds) {
+        if (!orderIds.isEmpty()) {
+            publisher.publishEvent(new OrdersCancelled(List.copyOf(orderIds), salesLineRepository.findLines(orderIds)));
+        }
+    }
+
+    // Call before the orders are deleted
+    public void removed(Collection<Long> orderIds) {
+        if (!orderIds.isEmpty()) {
+            publisher.publishEvent(new OrdersRemoved(List.copyOf(orderIds)));
+        }
+    }
+}
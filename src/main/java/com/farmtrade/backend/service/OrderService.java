@@ -1,23 +1,46 @@
 package com.farmtrade.backend.service;
 
+import com.farmtrade.backend.dto.BulkOrderRequest;
+import com.farmtrade.backend.dto.BulkOrderResult;
+import com.farmtrade.backend.dto.CursorPage;
+import com.farmtrade.backend.dto.FarmerOrderView;
 import com.farmtrade.backend.dto.OrderItemRequest;
 import com.farmtrade.backend.dto.OrderRequest;
+import com.farmtrade.backend.dto.OrderSearchCriteria;
+import com.farmtrade.backend.dto.OrderStatusUpdateResult;
 import com.farmtrade.backend.model.*;
+import com.farmtrade.backend.repository.OrderBatchWriter;
+import com.farmtrade.backend.repository.OrderFarmerRepository;
 import com.farmtrade.backend.repository.OrderRepository;
+import com.farmtrade.backend.repository.OrderSearchRepository;
 import com.farmtrade.backend.repository.ProductRepository;
+import com.farmtrade.backend.repository.RefundRepository;
 import com.farmtrade.backend.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 @Service
 public class OrderService {
 
+    private static final int MAX_BULK_ORDERS = 200;
+    private static final LocalDateTime EARLIEST_ORDER_DATE = LocalDateTime.of(2000, 1, 1, 0, 0);
+
     @Autowired
     private OrderRepository orderRepository;
 
@@ -27,6 +50,21 @@ public class OrderService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private OrderFarmerRepository orderFarmerRepository;
+
+    @Autowired
+    private OrderBatchWriter orderBatchWriter;
+
+    @Autowired
+    private OrderSearchRepository orderSearchRepository;
+
+    @Autowired
+    private RefundRepository refundRepository;
+
+    @Autowired
+    private OrderEvents orderEvents;
+
     @Transactional
     public Order placeOrder(OrderRequest orderRequest, String email) {
         User retailer = userRepository.findByEmail(email)
@@ -40,9 +78,9 @@ public class OrderService {
         order.setRetailer(retailer);
         order.setOrderDate(LocalDateTime.now());
         order.setStatus(OrderStatus.PENDING);
+        order.setTotalAmount(Money.ZERO);
 
-        List<OrderItem> orderItems = new ArrayList<>();
-        BigDecimal totalAmount = BigDecimal.ZERO;
+        Map<Long, OrderFarmer> farmerLinks = new LinkedHashMap<>();
 
         for (OrderItemRequest itemRequest : orderRequest.getItems()) {
             Product product = productRepository.findById(itemRequest.getProductId())
@@ -56,38 +94,248 @@ public class OrderService {
             product.setQuantity(product.getQuantity() - itemRequest.getQuantity());
             productRepository.save(product);
 
-            OrderItem orderItem = new OrderItem();
-            orderItem.setOrder(order);
-            orderItem.setProduct(product);
-            orderItem.setQuantity(itemRequest.getQuantity());
-            orderItem.setPricePerUnit(product.getPrice());
+            addLine(order, farmerLinks, product, itemRequest.getQuantity());
+        }
+
+        order.setFarmers(new ArrayList<>(farmerLinks.values()));
+
+        Order saved = orderRepository.save(order);
+        orderEvents.placed(List.of(saved));
+        return saved;
+    }
+
+    /**
+     * Places many orders for one retailer in a single transaction. Every
+     * referenced product is read and locked once, and all orders are validated
+     * against that snapshot in request order, so earlier orders take stock
+     * before later ones. Stock is then reserved in one batched UPDATE and the
+     * orders, fulfilments and lines are written with JDBC batches. In
+     * ALL_OR_NOTHING mode one invalid order means nothing is placed; in
+     * BEST_EFFORT mode the valid orders are placed and the rest reported.
+     */
+    @Transactional
+    public List<BulkOrderResult> placeOrders(BulkOrderRequest request, String email) {
+        User retailer = userRepository.findByEmail(email)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+
+        if (retailer.getRole() != Role.RETAILER) {
+            throw new RuntimeException("Only retailers can place orders");
+        }
+
+        List<OrderRequest> orderRequests = request.getOrders();
+        if (orderRequests == null || orderRequests.isEmpty()) {
+            throw new RuntimeException("No orders to place");
+        }
+        if (orderRequests.size() > MAX_BULK_ORDERS) {
+            throw new RuntimeException("At most " + MAX_BULK_ORDERS + " orders can be placed at once");
+        }
+        BulkOrderRequest.Mode mode = request.getMode() != null ? request.getMode()
+                : BulkOrderRequest.Mode.ALL_OR_NOTHING;
+
+        Set<Long> productIds = new HashSet<>();
+        for (OrderRequest orderRequest : orderRequests) {
+            if (orderRequest != null && orderRequest.getItems() != null) {
+                for (OrderItemRequest itemRequest : orderRequest.getItems()) {
+                    if (itemRequest != null && itemRequest.getProductId() != null) {
+                        productIds.add(itemRequest.getProductId());
+                    }
+                }
+            }
+        }
+        Map<Long, Product> products = new HashMap<>();
+        Map<Long, Integer> available = new HashMap<>();
+        if (!productIds.isEmpty()) {
+            for (Product product : productRepository.lockByIdIn(productIds)) {
+                products.put(product.getId(), product);
+                available.put(product.getId(), product.getQuantity());
+            }
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<BulkOrderResult> results = new ArrayList<>(orderRequests.size());
+        List<Order> accepted = new ArrayList<>();
+        // Sorted so the stock updates touch rows in the same order as the lock query
+        Map<Long, Integer> reserved = new TreeMap<>();
+        boolean anyFailed = false;
+
+        for (int index = 0; index < orderRequests.size(); index++) {
+            OrderRequest orderRequest = orderRequests.get(index);
+            Map<Long, Integer> demand = new LinkedHashMap<>();
+            String error = checkOrder(orderRequest, products, available, demand);
+            if (error != null) {
+                anyFailed = true;
+                results.add(new BulkOrderResult(index, false, null, null, error));
+                continue;
+            }
 
-            orderItems.add(orderItem);
+            Order order = new Order();
+            order.setRetailer(retailer);
+            order.setOrderDate(now);
+            order.setStatus(OrderStatus.PENDING);
+            order.setTotalAmount(Money.ZERO);
+            Map<Long, OrderFarmer> farmerLinks = new LinkedHashMap<>();
+            for (OrderItemRequest itemRequest : orderRequest.getItems()) {
+                addLine(order, farmerLinks, products.get(itemRequest.getProductId()), itemRequest.getQuantity());
+            }
+            order.setFarmers(new ArrayList<>(farmerLinks.values()));
+
+            demand.forEach((productId, quantity) -> {
+                available.merge(productId, -quantity, Integer::sum);
+                reserved.merge(productId, quantity, Integer::sum);
+            });
+            accepted.add(order);
+            results.add(new BulkOrderResult(index, true, null, order.getTotalAmount(), "Order placed"));
+        }
 
-            BigDecimal itemTotal = product.getPrice().multiply(new BigDecimal(itemRequest.getQuantity()));
-            totalAmount = totalAmount.add(itemTotal);
+        if (anyFailed && mode == BulkOrderRequest.Mode.ALL_OR_NOTHING) {
+            for (BulkOrderResult result : results) {
+                if (result.isPlaced()) {
+                    result.setPlaced(false);
+                    result.setMessage("Not placed because another order in the request failed");
+                }
+            }
+            return results;
+        }
+        if (accepted.isEmpty()) {
+            return results;
         }
 
-        order.setItems(orderItems);
-        order.setTotalAmount(totalAmount);
+        // The products are locked, so the guards only trip if stock was changed outside JPA
+        int[] updated = orderBatchWriter.reserveStock(reserved);
+        for (int count : updated) {
+            if (count == 0) {
+                throw new RuntimeException("Stock changed while placing orders, please retry");
+            }
+        }
+        orderBatchWriter.insert(accepted);
+        orderEvents.placed(accepted);
 
-        return orderRepository.save(order);
+        int next = 0;
+        for (BulkOrderResult result : results) {
+            if (result.isPlaced()) {
+                result.setOrderId(accepted.get(next++).getId());
+            }
+        }
+        return results;
+    }
+
+    // Returns why the order cannot be placed, or null after filling in its per-product demand
+    private static String checkOrder(OrderRequest orderRequest, Map<Long, Product> products,
+            Map<Long, Integer> available, Map<Long, Integer> demand) {
+        if (orderRequest == null || orderRequest.getItems() == null || orderRequest.getItems().isEmpty()) {
+            return "Order has no items";
+        }
+        for (OrderItemRequest itemRequest : orderRequest.getItems()) {
+            if (itemRequest == null || itemRequest.getQuantity() == null || itemRequest.getQuantity() <= 0) {
+                return "Item quantity must be positive";
+            }
+            Product product = products.get(itemRequest.getProductId());
+            if (product == null) {
+                return "Product not found: " + itemRequest.getProductId();
+            }
+            demand.merge(product.getId(), itemRequest.getQuantity(), Integer::sum);
+        }
+        for (Map.Entry<Long, Integer> entry : demand.entrySet()) {
+            if (available.get(entry.getKey()) < entry.getValue()) {
+                return "Insufficient stock for product: " + products.get(entry.getKey()).getName();
+            }
+        }
+        return null;
+    }
+
+    // Adds a line at the product's current price to the order and to its farmer's fulfilment
+    private static void addLine(Order order, Map<Long, OrderFarmer> farmerLinks, Product product, int quantity) {
+        OrderItem orderItem = new OrderItem();
+        orderItem.setOrder(order);
+        orderItem.setProduct(product);
+        orderItem.setQuantity(quantity);
+        Money unitPrice = Money.of(product.getPrice());
+        orderItem.setPricePerUnit(unitPrice);
+        orderItem.setOrderDate(order.getOrderDate());
+        order.getItems().add(orderItem);
+
+        Money itemTotal = unitPrice.times(quantity);
+        order.setTotalAmount(order.getTotalAmount().plus(itemTotal));
+
+        OrderFarmer fulfilment = farmerLinks.computeIfAbsent(product.getFarmer().getId(),
+                id -> new OrderFarmer(order, product.getFarmer()));
+        fulfilment.setFarmerSubtotal(fulfilment.getFarmerSubtotal().plus(itemTotal));
+        fulfilment.getItems().add(orderItem);
+        orderItem.setOrderFarmer(fulfilment);
     }
 
-    public List<Order> getOrdersByRetailer(String email) {
+    public CursorPage<Order> getOrdersByRetailer(String email, Long cursor, int size) {
         User retailer = userRepository.findByEmail(email)
                 .orElseThrow(() -> new RuntimeException("User not found"));
-        return orderRepository.findByRetailer(retailer);
+        int limit = CursorPage.clampSize(size);
+        return toPage(orderRepository.findIdPageByRetailer(retailer, startAfter(cursor), PageRequest.of(0, limit + 1)),
+                limit);
     }
 
-    public List<Order> getOrdersByFarmer(String email) {
+    public CursorPage<FarmerOrderView> getOrdersByFarmer(String email, Long cursor, int size) {
         User farmer = userRepository.findByEmail(email)
                 .orElseThrow(() -> new RuntimeException("User not found"));
-        return orderRepository.findDistinctByItemsProductFarmer(farmer);
+        int limit = CursorPage.clampSize(size);
+        List<Long> ids = orderRepository.findIdPageByFarmer(farmer, startAfter(cursor), PageRequest.of(0, limit + 1));
+        boolean hasMore = ids.size() > limit;
+        List<Long> pageIds = hasMore ? ids.subList(0, limit) : ids;
+        return new CursorPage<>(fetchFarmerViews(email, pageIds),
+                hasMore ? pageIds.get(pageIds.size() - 1) : null);
     }
 
-    public List<Order> getAllOrders() {
-        return orderRepository.findAll();
+    public CursorPage<Order> getAllOrders(Long cursor, int size, LocalDate from, LocalDate to) {
+        int limit = CursorPage.clampSize(size);
+        PageRequest pageRequest = PageRequest.of(0, limit + 1);
+        if (from == null && to == null) {
+            return toPage(orderRepository.findIdPage(startAfter(cursor), pageRequest), limit);
+        }
+        LocalDateTime start = from != null ? from.atStartOfDay() : EARLIEST_ORDER_DATE;
+        LocalDateTime end = to != null ? to.plusDays(1).atStartOfDay() : LocalDateTime.now().plusDays(1);
+        return toPage(orderRepository.findIdPageBetween(start, end, startAfter(cursor), pageRequest), limit);
+    }
+
+    public CursorPage<Order> searchOrders(OrderSearchCriteria criteria, Long cursor, int size) {
+        int limit = CursorPage.clampSize(size);
+        return toPage(orderSearchRepository.findIdPage(criteria, startAfter(cursor), limit + 1), limit);
+    }
+
+    public List<Order> getRecentOrdersByRetailer(User retailer, int limit) {
+        return fetchOrders(orderRepository.findIdPageByRetailer(retailer, Long.MAX_VALUE, PageRequest.of(0, limit)));
+    }
+
+    public List<FarmerOrderView> getRecentOrdersByFarmer(User farmer, int limit) {
+        return fetchFarmerViews(farmer.getEmail(),
+                orderRepository.findIdPageByFarmer(farmer, Long.MAX_VALUE, PageRequest.of(0, limit)));
+    }
+
+    // Ids are handed out in placement order, so "id < cursor" walks orders newest first.
+    private static Long startAfter(Long cursor) {
+        return cursor != null ? cursor : Long.MAX_VALUE;
+    }
+
+    // The id query asks for one extra row so we know whether another page exists.
+    private CursorPage<Order> toPage(List<Long> ids, int limit) {
+        boolean hasMore = ids.size() > limit;
+        List<Long> pageIds = hasMore ? ids.subList(0, limit) : ids;
+        Long nextCursor = hasMore ? pageIds.get(pageIds.size() - 1) : null;
+        return new CursorPage<>(fetchOrders(pageIds), nextCursor);
+    }
+
+    private List<Order> fetchOrders(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return orderRepository.findWithItemsByIdIn(ids);
+    }
+
+    // Farmers only see their own fulfilment of each order: their lines and their subtotal
+    private List<FarmerOrderView> fetchFarmerViews(String email, List<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return orderFarmerRepository.findWithItemsForFarmer(email, orderIds).stream()
+                .map(FarmerOrderView::of)
+                .toList();
     }
 
     @Transactional
@@ -95,7 +343,8 @@ public class OrderService {
         User retailer = userRepository.findByEmail(email)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
-        Order order = orderRepository.findById(orderId)
+        // Locked, so a webhook batch moving the payment meanwhile is seen rather than overwritten
+        Order order = orderRepository.lockByIdIn(List.of(orderId)).stream().findFirst()
                 .orElseThrow(() -> new RuntimeException("Order not found: " + orderId));
 
         // Only the retailer who placed the order can cancel it
@@ -108,39 +357,159 @@ public class OrderService {
             throw new RuntimeException("Only PENDING orders can be cancelled");
         }
 
-        // Restore stock for each item
+        // A paid order is refunded in full by RefundWorker, unless an admin already asked for it
+        if (order.getPaymentStatus() == PaymentStatus.COMPLETED && !refundRepository.existsByOrderId(orderId)) {
+            refundRepository.save(new Refund(order, Refund.Source.CANCELLATION, "Cancelled by retailer", email,
+                    LocalDateTime.now()));
+        }
+        return cancel(order);
+    }
+
+    /**
+     * Cancels an order whose checkout never got a Razorpay order, releasing
+     * its stock. Used as compensation when the gateway call fails and by
+     * CheckoutSweeper for checkouts that were abandoned mid-way. Returns
+     * false if the checkout completed or was cancelled in the meantime.
+     */
+    @Transactional
+    public boolean cancelUnfinishedCheckout(Long orderId) {
+        List<Order> locked = orderRepository.lockByIdIn(List.of(orderId));
+        if (locked.isEmpty()) {
+            return false;
+        }
+        Order order = locked.get(0);
+        if (order.getStatus() != OrderStatus.PENDING || order.getCheckoutExpiresAt() == null) {
+            return false;
+        }
+        order.setCheckoutExpiresAt(null);
+        cancel(order);
+        return true;
+    }
+
+    private Order cancel(Order order) {
+        // Restore stock for each item, except those of fulfilments whose farmer cancelled and restocked them
         for (OrderItem item : order.getItems()) {
+            if (item.getOrderFarmer() != null && item.getOrderFarmer().getStatus() == OrderStatus.CANCELLED) {
+                continue;
+            }
             Product product = item.getProduct();
             product.setQuantity(product.getQuantity() + item.getQuantity());
             productRepository.save(product);
         }
 
         order.setStatus(OrderStatus.CANCELLED);
+        orderFarmerRepository.updateStatusByOrderIdIn(List.of(order.getId()), OrderStatus.CANCELLED);
+        orderEvents.cancelled(List.of(order.getId()));
         return orderRepository.save(order);
     }
 
     @Transactional
-    public Order updateOrderStatus(Long orderId, String newStatus, String email) {
-        User farmer = userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        Order order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new RuntimeException("Order not found: " + orderId));
-
-        // Verify the farmer has at least one product in this order
-        boolean isFarmerOrder = order.getItems().stream()
-                .anyMatch(item -> item.getProduct().getFarmer().getId().equals(farmer.getId()));
-        if (!isFarmerOrder) {
-            throw new RuntimeException("You are not authorized to update this order");
+    public FarmerOrderView updateOrderStatus(Long orderId, String newStatus, String email) {
+        OrderStatusUpdateResult result = updateOrderStatuses(List.of(orderId), newStatus, email).get(0);
+        if (!result.isUpdated()) {
+            throw new RuntimeException(result.getMessage());
         }
+        return fetchFarmerViews(email, List.of(orderId)).get(0);
+    }
 
+    /**
+     * Moves a farmer's fulfilments of many orders to one status. Ownership and
+     * current status come from a single order_farmers query, and only the
+     * farmer's own fulfilment rows are updated, one UPDATE per source status.
+     * Orders that are not the farmer's, or whose fulfilment cannot move to the
+     * target, are reported and left untouched. Cancelled fulfilments give
+     * their lines' stock back. The parent orders' statuses are then re-derived
+     * from all of their fulfilments.
+     */
+    @Transactional
+    public List<OrderStatusUpdateResult> updateOrderStatuses(List<Long> orderIds, String newStatus, String email) {
+        OrderStatus target;
         try {
-            OrderStatus status = OrderStatus.valueOf(newStatus);
-            order.setStatus(status);
-        } catch (IllegalArgumentException e) {
+            target = OrderStatus.valueOf(newStatus);
+        } catch (IllegalArgumentException | NullPointerException e) {
             throw new RuntimeException("Invalid order status: " + newStatus);
         }
+        if (orderIds == null || orderIds.isEmpty()) {
+            return Collections.emptyList();
+        }
 
-        return orderRepository.save(order);
+        Map<Long, OrderFarmerRepository.FulfilmentStatusView> owned = new HashMap<>();
+        for (OrderFarmerRepository.FulfilmentStatusView view : orderFarmerRepository.findStatusesForFarmer(email,
+                orderIds)) {
+            owned.put(view.getOrderId(), view);
+        }
+
+        List<OrderStatusUpdateResult> results = new ArrayList<>(orderIds.size());
+        Map<OrderStatus, List<Long>> bySource = new EnumMap<>(OrderStatus.class);
+        List<Long> movedOrderIds = new ArrayList<>();
+        for (Long orderId : new LinkedHashSet<>(orderIds)) {
+            OrderFarmerRepository.FulfilmentStatusView fulfilment = owned.get(orderId);
+            if (fulfilment == null) {
+                results.add(new OrderStatusUpdateResult(orderId, false, null,
+                        "Order not found or not assigned to you"));
+            } else if (!fulfilment.getStatus().canTransitionTo(target)) {
+                results.add(new OrderStatusUpdateResult(orderId, false, fulfilment.getStatus(),
+                        "Cannot change status from " + fulfilment.getStatus() + " to " + target));
+            } else {
+                bySource.computeIfAbsent(fulfilment.getStatus(), s -> new ArrayList<>()).add(fulfilment.getId());
+                movedOrderIds.add(orderId);
+                results.add(new OrderStatusUpdateResult(orderId, true, target, "Status updated"));
+            }
+        }
+
+        for (Map.Entry<OrderStatus, List<Long>> group : bySource.entrySet()) {
+            int updated = orderFarmerRepository.updateStatus(group.getValue(), group.getKey(), target);
+            if (updated != group.getValue().size()) {
+                throw new RuntimeException("Some orders changed while updating, please retry");
+            }
+        }
+        if (target == OrderStatus.CANCELLED && !bySource.isEmpty()) {
+            List<Long> fulfilmentIds = bySource.values().stream().flatMap(List::stream).toList();
+            Map<Long, Integer> quantities = new HashMap<>();
+            for (OrderRepository.ProductQuantity line : orderRepository
+                    .sumQuantitiesByProductForFulfilments(fulfilmentIds)) {
+                quantities.put(line.getProductId(), line.getQuantity().intValue());
+            }
+            orderBatchWriter.restoreStock(quantities);
+        }
+        if (!movedOrderIds.isEmpty()) {
+            refreshOrderStatuses(movedOrderIds, email);
+        }
+        return results;
+    }
+
+    /**
+     * Re-derives parent order statuses from their fulfilments. The parent rows
+     * are locked first, so the fulfilment read afterwards includes any change
+     * another farmer committed on the same order while we waited. A paid order
+     * whose fulfilments are now all cancelled is queued for a full refund, as
+     * a retailer cancellation would be.
+     */
+    private void refreshOrderStatuses(List<Long> orderIds, String email) {
+        List<Order> orders = orderRepository.lockByIdIn(orderIds);
+        Map<Long, List<OrderStatus>> fulfilmentStatuses = new HashMap<>();
+        for (OrderFarmerRepository.FulfilmentStatusView view : orderFarmerRepository
+                .findStatusesByOrderIdIn(orderIds)) {
+            fulfilmentStatuses.computeIfAbsent(view.getOrderId(), id -> new ArrayList<>()).add(view.getStatus());
+        }
+        List<Order> cancelled = new ArrayList<>();
+        for (Order order : orders) {
+            OrderStatus derived = OrderStatus.deriveFrom(
+                    fulfilmentStatuses.getOrDefault(order.getId(), Collections.emptyList()));
+            if (order.getStatus() != derived) {
+                if (derived == OrderStatus.CANCELLED) {
+                    cancelled.add(order);
+                    if (order.getPaymentStatus() == PaymentStatus.COMPLETED
+                            && !refundRepository.existsByOrderId(order.getId())) {
+                        refundRepository.save(new Refund(order, Refund.Source.CANCELLATION,
+                                "Cancelled by farmers", email, LocalDateTime.now()));
+                    }
+                }
+                order.setStatus(derived);
+            }
+        }
+        if (!cancelled.isEmpty()) {
+            orderEvents.cancelled(cancelled.stream().map(Order::getId).toList());
+        }
     }
 }
@@ -0,0 +1,38 @@
+package com.farmtrade.backend.service;
+
+import com.farmtrade.backend.model.Money;
+import com.farmtrade.backend.model.PaymentStatus;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Calls to the payment provider. Implementations never block the caller:
+ * results and failures arrive through the returned future, and failures are
+ * always a {@link PaymentGatewayException}. The live implementation is
+ * {@link RazorpayPaymentGateway}; {@link StubPaymentGateway} stands in for it
+ * locally and in tests (app.payments.gateway=stub).
+ */
+public interface PaymentGateway {
+
+    // Completes with the provider's order id (order_...)
+    CompletableFuture<String> createOrder(Money amount, String receipt);
+
+    /**
+     * What the provider knows about payments against one of its orders:
+     * COMPLETED with the captured payment id, FAILED when every attempt
+     * failed, or PENDING when nothing has been paid or decided yet.
+     */
+    CompletableFuture<OrderPayment> fetchOrderPayment(String razorpayOrderId);
+
+    /**
+     * Refunds amount of a captured payment and completes with the provider's
+     * refund id (rfnd_...). Calls with the same idempotencyKey refund at most
+     * once; a repeat completes with the id of the refund already issued.
+     */
+    CompletableFuture<String> refund(String razorpayPaymentId, Money amount, String idempotencyKey);
+
+    record OrderPayment(PaymentStatus status, String razorpayPaymentId) {
+
+        public static final OrderPayment PENDING = new OrderPayment(PaymentStatus.PENDING, null);
+    }
+}
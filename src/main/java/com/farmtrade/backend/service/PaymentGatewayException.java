@@ -0,0 +1,32 @@
+package com.farmtrade.backend.service;
+
+public class PaymentGatewayException extends RuntimeException {
+
+    public enum Reason {
+        // Circuit breaker is open, the call was not attempted
+        UNAVAILABLE,
+        // Every bulkhead slot was in use, the call was not attempted
+        BUSY,
+        TIMEOUT,
+        // Network failure or 5xx from the provider
+        ERROR,
+        // The provider rejected the request (4xx); retrying will not help
+        DECLINED
+    }
+
+    private final Reason reason;
+
+    public PaymentGatewayException(Reason reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+
+    public PaymentGatewayException(Reason reason, String message, Throwable cause) {
+        super(message, cause);
+        this.reason = reason;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,204 @@
+package com.farmtrade.backend.service;
+
+import com.farmtrade.backend.dto.PaymentReconciliationReport;
+import com.farmtrade.backend.model.PaymentStatus;
+import com.farmtrade.backend.repository.OrderBatchWriter;
+import com.farmtrade.backend.repository.OrderFarmerRepository;
+import com.farmtrade.backend.repository.OrderRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Settles orders left in PENDING because a webhook or verify call never
+ * arrived. Stale pending orders are read a page at a time and their status is
+ * asked of the gateway, one virtual thread per lookup. A semaphore caps the
+ * calls in flight and a {@link RateLimiter} caps how fast they start, so a
+ * large backlog cannot eat into the gateway quota that checkout needs. Each
+ * page's corrections are written in one short transaction, and no transaction
+ * is open while lookups are in flight.
+ */
+@Service
+public class PaymentReconciliationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentReconciliationService.class);
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderFarmerRepository orderFarmerRepository;
+
+    @Autowired
+    private OrderBatchWriter orderBatchWriter;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private UserStatsService userStatsService;
+
+    @Autowired
+    private PaymentGateway paymentGateway;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // Younger orders are most likely still being paid for, so they are left alone
+    @Value("${app.payments.reconcile.stale-minutes:30}")
+    private long staleMinutes;
+
+    @Value("${app.payments.reconcile.page-size:100}")
+    private int pageSize;
+
+    @Value("${app.payments.reconcile.max-per-run:2000}")
+    private int maxPerRun;
+
+    // Keep below app.payments.max-concurrent, or lookups are turned away as BUSY
+    @Value("${app.payments.reconcile.concurrency:8}")
+    private int concurrency;
+
+    @Value("${app.payments.reconcile.rate-per-second:10}")
+    private double ratePerSecond;
+
+    private RateLimiter rateLimiter;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private static class Tally {
+        int pages;
+        int checked;
+        int completed;
+        int failed;
+        int stillPending;
+        int alreadySettled;
+        int lookupErrors;
+    }
+
+    @PostConstruct
+    public void init() {
+        rateLimiter = new RateLimiter(ratePerSecond);
+    }
+
+    public PaymentReconciliationReport reconcile() {
+        if (!running.compareAndSet(false, true)) {
+            throw new RuntimeException("Payment reconciliation is already running");
+        }
+        try {
+            return runReconciliation();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private PaymentReconciliationReport runReconciliation() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        LocalDateTime staleBefore = startedAt.minusMinutes(staleMinutes);
+        Semaphore inFlight = new Semaphore(concurrency);
+        Tally tally = new Tally();
+        long cursor = 0;
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            while (tally.checked < maxPerRun && !Thread.currentThread().isInterrupted()) {
+                int limit = Math.min(pageSize, maxPerRun - tally.checked);
+                List<OrderRepository.PendingPayment> page = orderRepository.findStalePendingPayments(staleBefore,
+                        cursor, PageRequest.of(0, limit));
+                if (page.isEmpty()) {
+                    break;
+                }
+                tally.pages++;
+                tally.checked += page.size();
+                cursor = page.get(page.size() - 1).getId();
+
+                List<OrderBatchWriter.PaymentUpdate> updates = lookUp(page, executor, inFlight, tally);
+                if (!updates.isEmpty()) {
+                    transactionTemplate.executeWithoutResult(status -> apply(updates, tally));
+                }
+                if (page.size() < limit) {
+                    break;
+                }
+            }
+        }
+
+        return new PaymentReconciliationReport(startedAt, LocalDateTime.now(), tally.pages, tally.checked,
+                tally.completed, tally.failed, tally.stillPending, tally.alreadySettled, tally.lookupErrors);
+    }
+
+    private List<OrderBatchWriter.PaymentUpdate> lookUp(List<OrderRepository.PendingPayment> page,
+            ExecutorService executor, Semaphore inFlight, Tally tally) {
+        List<Future<PaymentGateway.OrderPayment>> lookups = new ArrayList<>(page.size());
+        for (OrderRepository.PendingPayment pending : page) {
+            lookups.add(executor.submit(() -> {
+                inFlight.acquire();
+                try {
+                    rateLimiter.acquire();
+                    return paymentGateway.fetchOrderPayment(pending.getRazorpayOrderId()).join();
+                } finally {
+                    inFlight.release();
+                }
+            }));
+        }
+
+        List<OrderBatchWriter.PaymentUpdate> updates = new ArrayList<>();
+        for (int i = 0; i < page.size(); i++) {
+            OrderRepository.PendingPayment pending = page.get(i);
+            try {
+                PaymentGateway.OrderPayment payment = lookups.get(i).get();
+                if (payment.status() == PaymentStatus.PENDING) {
+                    tally.stillPending++;
+                } else {
+                    updates.add(new OrderBatchWriter.PaymentUpdate(pending.getId(), payment.status(),
+                            payment.razorpayPaymentId()));
+                }
+            } catch (ExecutionException e) {
+                tally.lookupErrors++;
+                logger.warn("Payment lookup for order {} failed: {}", pending.getId(), e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                lookups.forEach(lookup -> lookup.cancel(true));
+                break;
+            }
+        }
+        return updates;
+    }
+
+    private void apply(List<OrderBatchWriter.PaymentUpdate> updates, Tally tally) {
+        int[] counts = orderBatchWriter.settlePendingPayments(updates);
+        Map<PaymentStatus, List<Long>> settled = new EnumMap<>(PaymentStatus.class);
+        for (int i = 0; i < counts.length; i++) {
+            OrderBatchWriter.PaymentUpdate update = updates.get(i);
+            if (counts[i] == 0) {
+                tally.alreadySettled++;
+                continue;
+            }
+            settled.computeIfAbsent(update.status(), s -> new ArrayList<>()).add(update.orderId());
+            if (update.status() == PaymentStatus.COMPLETED) {
+                tally.completed++;
+            } else {
+                tally.failed++;
+            }
+        }
+        settled.forEach((status, orderIds) -> {
+            userStatsService.recordPaymentStatus(orderIds, status);
+            orderFarmerRepository.updatePaymentStatusByOrderIdIn(orderIds, status);
+        });
+        ledgerService.recordSales(settled.getOrDefault(PaymentStatus.COMPLETED, List.of()));
+    }
+}
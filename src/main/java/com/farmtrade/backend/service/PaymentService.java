@@ -1,22 +1,39 @@
 package com.farmtrade.backend.service;
 
+import com.farmtrade.backend.dto.OrderRequest;
 import com.farmtrade.backend.dto.PaymentDetails;
 import com.farmtrade.backend.dto.PaymentVerificationRequest;
+import com.farmtrade.backend.model.Money;
 import com.farmtrade.backend.model.Order;
 import com.farmtrade.backend.model.PaymentStatus;
+import com.farmtrade.backend.repository.OrderFarmerRepository;
 import com.farmtrade.backend.repository.OrderRepository;
-import com.razorpay.RazorpayClient;
-import com.razorpay.RazorpayException;
-import com.razorpay.Utils;
-import org.json.JSONObject;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class PaymentService {
 
+    private static final Logger logger = LoggerFactory.getLogger(PaymentService.class);
+
     @Value("${razorpay.key.id}")
     private String razorpayKeyId;
 
@@ -26,52 +43,158 @@ public class PaymentService {
     @Autowired
     private OrderRepository orderRepository;
 
-    public PaymentDetails createRazorpayOrder(Order order) throws RazorpayException {
-        RazorpayClient client = new RazorpayClient(razorpayKeyId, razorpayKeySecret);
+    @Autowired
+    private OrderFarmerRepository orderFarmerRepository;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private PaymentGateway paymentGateway;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private UserStatsService userStatsService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.payments.checkout.expiry-minutes:15}")
+    private long checkoutExpiryMinutes;
+
+    // Runs the database steps after the gateway call, off the gateway client's own threads
+    @Value("${app.payments.checkout.threads:4}")
+    private int checkoutThreads;
 
-        JSONObject orderRequest = new JSONObject();
-        // Razorpay expects amount in paise (1 INR = 100 paise)
-        orderRequest.put("amount", order.getTotalAmount().multiply(new java.math.BigDecimal(100)).intValue());
-        orderRequest.put("currency", "INR");
-        orderRequest.put("receipt", "order_rcptid_" + order.getId());
+    private HmacVerifier paymentSignatureVerifier;
 
-        com.razorpay.Order razorpayOrder = client.orders.create(orderRequest);
+    private Timer gatewayWait;
 
-        order.setRazorpayOrderId(razorpayOrder.get("id"));
-        order.setPaymentStatus(PaymentStatus.PENDING);
-        orderRepository.save(order);
+    private ExecutorService checkoutExecutor;
 
-        return new PaymentDetails(
-                order.getId().toString(),
-                razorpayOrder.get("id"),
-                order.getTotalAmount(),
-                "INR",
-                razorpayKeyId);
+    @PostConstruct
+    public void init() {
+        paymentSignatureVerifier = new HmacVerifier(razorpayKeySecret);
+        gatewayWait = Timer.builder("payments.checkout.gateway.wait")
+                .description("Time a checkout waits for the gateway to create the payment order")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        checkoutExecutor = Executors.newFixedThreadPool(checkoutThreads, new CustomizableThreadFactory("checkout-"));
     }
 
+    @PreDestroy
+    public void shutdown() {
+        checkoutExecutor.shutdown();
+    }
+
+    /**
+     * Checkout in three steps, none of which holds a connection or row locks
+     * across the network call. A short transaction places the order, reserving
+     * stock, and opens the checkout. The gateway call then runs with no
+     * transaction, and a second short transaction records the Razorpay order id
+     * and closes the checkout, on the checkout pool rather than the thread the
+     * gateway client completed on. If the gateway call or the second step fails,
+     * the order is cancelled to release its stock; if the process dies in
+     * between, CheckoutSweeper cancels it once the checkout expires. Time spent
+     * inside the transactions is recorded as payments.checkout.connection.hold.
+     */
+    public CompletableFuture<PaymentDetails> createPaymentOrder(OrderRequest orderRequest, String email) {
+        long placeStarted = System.nanoTime();
+        Order order = transactionTemplate.execute(status -> {
+            Order placed = orderService.placeOrder(orderRequest, email);
+            placed.setCheckoutExpiresAt(LocalDateTime.now().plusMinutes(checkoutExpiryMinutes));
+            return placed;
+        });
+        AtomicLong heldNanos = new AtomicLong(System.nanoTime() - placeStarted);
+        Long orderId = order.getId();
+        Money amount = order.getTotalAmount();
+
+        long gatewayStarted = System.nanoTime();
+        return paymentGateway.createOrder(amount, "order_rcptid_" + orderId)
+                .whenComplete((razorpayOrderId, error) -> gatewayWait.record(System.nanoTime() - gatewayStarted,
+                        TimeUnit.NANOSECONDS))
+                .thenApplyAsync(razorpayOrderId -> {
+                    long recordStarted = System.nanoTime();
+                    int attached = orderRepository.attachRazorpayOrder(orderId, razorpayOrderId);
+                    heldNanos.addAndGet(System.nanoTime() - recordStarted);
+                    if (attached == 0) {
+                        throw new RuntimeException("Checkout for order " + orderId + " expired, please order again");
+                    }
+                    return new PaymentDetails(orderId.toString(), razorpayOrderId, amount.toBigDecimal(), "INR",
+                            razorpayKeyId);
+                }, checkoutExecutor)
+                .whenCompleteAsync((details, error) -> {
+                    if (error != null) {
+                        long cancelStarted = System.nanoTime();
+                        releaseUnpaidOrder(orderId);
+                        heldNanos.addAndGet(System.nanoTime() - cancelStarted);
+                    }
+                    recordConnectionHold(heldNanos.get(), error == null ? "created" : "failed");
+                }, checkoutExecutor);
+    }
+
+    private void releaseUnpaidOrder(Long orderId) {
+        try {
+            orderService.cancelUnfinishedCheckout(orderId);
+        } catch (RuntimeException e) {
+            logger.error("Could not cancel order {} after payment order creation failed; "
+                    + "it will be swept when its checkout expires", orderId, e);
+        }
+    }
+
+    private void recordConnectionHold(long nanos, String outcome) {
+        Timer.builder("payments.checkout.connection.hold")
+                .description("Time one checkout spends inside database transactions")
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Confirms a payment reported by the browser. Orders that are already
+     * COMPLETED with this payment id, from an earlier call or the webhook,
+     * are answered from their stored state without checking the signature
+     * again or loading the order. False when the signature does not match,
+     * or the order was refunded or cancelled before the payment could be
+     * recorded.
+     */
     @Transactional
     public boolean verifyPayment(PaymentVerificationRequest verificationRequest) {
-        try {
-            JSONObject attributes = new JSONObject();
-            attributes.put("razorpay_order_id", verificationRequest.getRazorpayOrderId());
-            attributes.put("razorpay_payment_id", verificationRequest.getRazorpayPaymentId());
-            attributes.put("razorpay_signature", verificationRequest.getRazorpaySignature());
-
-            boolean isValid = Utils.verifyPaymentSignature(attributes, razorpayKeySecret);
-
-            if (isValid) {
-                Order order = orderRepository.findByRazorpayOrderId(verificationRequest.getRazorpayOrderId())
-                        .orElseThrow(() -> new RuntimeException("Order not found with Razorpay Order ID"));
-
-                order.setRazorpayPaymentId(verificationRequest.getRazorpayPaymentId());
-                order.setRazorpaySignature(verificationRequest.getRazorpaySignature());
-                order.setPaymentStatus(PaymentStatus.COMPLETED);
-                orderRepository.save(order);
-                return true;
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
+        OrderRepository.PaymentState state = orderRepository
+                .findPaymentStateByRazorpayOrderId(verificationRequest.getRazorpayOrderId())
+                .orElse(null);
+        if (state == null) {
+            return false;
+        }
+        if (state.getPaymentStatus() == PaymentStatus.COMPLETED && verificationRequest.getRazorpayPaymentId() != null
+                && verificationRequest.getRazorpayPaymentId().equals(state.getRazorpayPaymentId())) {
+            return true;
+        }
+
+        // Razorpay signs "<order id>|<payment id>" with the key secret
+        boolean isValid = paymentSignatureVerifier.matches(
+                verificationRequest.getRazorpayOrderId() + "|" + verificationRequest.getRazorpayPaymentId(),
+                verificationRequest.getRazorpaySignature());
+        if (!isValid) {
+            return false;
+        }
+        if (orderRepository.completePayment(state.getId(), verificationRequest.getRazorpayPaymentId(),
+                verificationRequest.getRazorpaySignature()) == 0) {
+            // Refunded or cancelled meanwhile, unless the webhook completed this same payment first
+            return orderRepository.findPaymentStateByRazorpayOrderId(verificationRequest.getRazorpayOrderId())
+                    .filter(current -> current.getPaymentStatus() == PaymentStatus.COMPLETED
+                            && verificationRequest.getRazorpayPaymentId().equals(current.getRazorpayPaymentId()))
+                    .isPresent();
         }
-        return false;
+        userStatsService.recordPaymentStatus(List.of(state.getId()), PaymentStatus.COMPLETED);
+        orderFarmerRepository.updatePaymentStatusByOrderId(state.getId(), PaymentStatus.COMPLETED);
+        ledgerService.recordSales(List.of(state.getId()));
+        return true;
     }
 }
@@ -0,0 +1,279 @@
+package com.farmtrade.backend.service;
+
+import com.farmtrade.backend.model.PaymentEvent;
+import com.farmtrade.backend.model.PaymentStatus;
+import com.farmtrade.backend.repository.OrderBatchWriter;
+import com.farmtrade.backend.repository.OrderFarmerRepository;
+import com.farmtrade.backend.repository.OrderRepository;
+import com.farmtrade.backend.repository.PaymentEventRepository;
+import jakarta.annotation.PostConstruct;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Razorpay webhook handling in two steps. {@link #receive} only checks the
+ * signature and appends the event to the payment_events inbox, so Razorpay
+ * gets its 2xx quickly. {@link #processBatch}, driven by PaymentEventWorker,
+ * later applies a batch of inbox rows to their orders in one transaction.
+ */
+@Service
+public class PaymentWebhookService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentWebhookService.class);
+
+    public enum Receipt {
+        ACCEPTED,
+        DUPLICATE,
+        INVALID_SIGNATURE
+    }
+
+    @Autowired
+    private PaymentEventRepository paymentEventRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderBatchWriter orderBatchWriter;
+
+    @Autowired
+    private OrderFarmerRepository orderFarmerRepository;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private UserStatsService userStatsService;
+
+    @Value("${razorpay.webhook.secret:}")
+    private String webhookSecret;
+
+    @Value("${app.payments.webhook.batch-size:200}")
+    private int batchSize;
+
+    // Events for orders we cannot find yet are retried this many times before giving up
+    @Value("${app.payments.webhook.max-attempts:5}")
+    private int maxAttempts;
+
+    // Wait before the first retry; each later retry waits this much longer again
+    @Value("${app.payments.webhook.retry-delay-ms:30000}")
+    private long retryDelayMs;
+
+    private HmacVerifier signatureVerifier;
+
+    @PostConstruct
+    public void init() {
+        if (webhookSecret == null || webhookSecret.isBlank()) {
+            logger.warn("razorpay.webhook.secret is not set; webhook deliveries will be rejected");
+        } else {
+            signatureVerifier = new HmacVerifier(webhookSecret);
+        }
+    }
+
+    public Receipt receive(String body, String signature, String eventId) {
+        if (signatureVerifier == null || !signatureVerifier.matches(body, signature)) {
+            return Receipt.INVALID_SIGNATURE;
+        }
+        // Razorpay sends the event id as a header; the signature identifies the body just as well
+        String id = eventId != null && !eventId.isBlank() ? eventId : signature.toLowerCase(Locale.ROOT);
+        if (paymentEventRepository.existsByEventId(id)) {
+            return Receipt.DUPLICATE;
+        }
+
+        PaymentEvent event = new PaymentEvent();
+        event.setEventId(id);
+        event.setPayload(body);
+        event.setReceivedAt(LocalDateTime.now());
+        try {
+            JSONObject json = new JSONObject(body);
+            event.setEventType(json.optString("event", null));
+            JSONObject payload = json.optJSONObject("payload");
+            JSONObject payment = entity(payload, "payment");
+            JSONObject refund = entity(payload, "refund");
+            if (payment != null) {
+                event.setRazorpayOrderId(payment.optString("order_id", null));
+                event.setRazorpayPaymentId(payment.optString("id", null));
+            } else if (refund != null) {
+                event.setRazorpayPaymentId(refund.optString("payment_id", null));
+            }
+            // The payment's running total covers earlier partial refunds; a lone refund entity only itself
+            if (payment != null && payment.has("amount_refunded")) {
+                event.setRefundedAmount(payment.getLong("amount_refunded"));
+            } else if (refund != null && refund.has("amount")) {
+                event.setRefundedAmount(refund.getLong("amount"));
+            }
+        } catch (JSONException e) {
+            // Signed but unreadable: keep it for inspection, the worker will ignore it
+            logger.warn("Could not parse webhook event {}: {}", id, e.getMessage());
+        }
+
+        try {
+            paymentEventRepository.save(event);
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent redelivery of the same event won the insert
+            return Receipt.DUPLICATE;
+        }
+        return Receipt.ACCEPTED;
+    }
+
+    /**
+     * Applies up to batch-size unprocessed events. Order payment states for the
+     * whole batch are read with at most two queries, and each order's payment
+     * is then moved with one UPDATE guarded on the status read, so a retailer
+     * cancellation or verify call committing meanwhile is never overwritten.
+     * Events of an order whose payment changed under the batch are left for
+     * the next one. Fulfilment payment statuses are synced with one UPDATE per
+     * resulting status. Returns the number of events claimed.
+     */
+    @Transactional
+    public int processBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<PaymentEvent> events = paymentEventRepository.claimUnprocessed(now, batchSize);
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        Set<String> razorpayOrderIds = new HashSet<>();
+        Set<String> paymentIdsWithoutOrder = new HashSet<>();
+        for (PaymentEvent event : events) {
+            if (event.getRazorpayOrderId() != null) {
+                razorpayOrderIds.add(event.getRazorpayOrderId());
+            } else if (event.getRazorpayPaymentId() != null) {
+                paymentIdsWithoutOrder.add(event.getRazorpayPaymentId());
+            }
+        }
+        Map<String, OrderRepository.WebhookTarget> byRazorpayOrderId = new HashMap<>();
+        Map<String, OrderRepository.WebhookTarget> byPaymentId = new HashMap<>();
+        if (!razorpayOrderIds.isEmpty()) {
+            orderRepository.findWebhookTargetsByRazorpayOrderIdIn(razorpayOrderIds)
+                    .forEach(order -> byRazorpayOrderId.put(order.getRazorpayOrderId(), order));
+        }
+        if (!paymentIdsWithoutOrder.isEmpty()) {
+            orderRepository.findWebhookTargetsByRazorpayPaymentIdIn(paymentIdsWithoutOrder)
+                    .forEach(order -> byPaymentId.put(order.getRazorpayPaymentId(), order));
+        }
+
+        // Per order: its status as the batch's events move it, the payment id to record, and the events judged on it
+        Map<Long, PaymentStatus> current = new HashMap<>();
+        Map<Long, String> paymentIds = new HashMap<>();
+        Map<Long, List<PaymentEvent>> judged = new HashMap<>();
+        for (PaymentEvent event : events) {
+            PaymentStatus target = targetStatus(event.getEventType());
+            if (target == null) {
+                finish(event, PaymentEvent.Outcome.IGNORED, now);
+                continue;
+            }
+            OrderRepository.WebhookTarget order = event.getRazorpayOrderId() != null
+                    ? byRazorpayOrderId.get(event.getRazorpayOrderId())
+                    : byPaymentId.get(event.getRazorpayPaymentId());
+            if (order == null) {
+                event.setAttempts(event.getAttempts() + 1);
+                if (event.getAttempts() >= maxAttempts) {
+                    finish(event, PaymentEvent.Outcome.ORDER_NOT_FOUND, now);
+                } else {
+                    event.setNextAttemptAt(now.plus(Duration.ofMillis(retryDelayMs * event.getAttempts())));
+                }
+                continue;
+            }
+            PaymentStatus status = current.getOrDefault(order.getId(), order.getPaymentStatus());
+            if (target == PaymentStatus.REFUNDED && event.getRefundedAmount() != null
+                    && event.getRefundedAmount() < order.getTotalAmount().toPaise()) {
+                logger.warn("Partial refund of {} paise on order {} left for manual settlement",
+                        event.getRefundedAmount(), order.getId());
+                finish(event, PaymentEvent.Outcome.PARTIAL_REFUND, now);
+                continue;
+            }
+            judged.computeIfAbsent(order.getId(), id -> new ArrayList<>()).add(event);
+            if (status == target) {
+                finish(event, PaymentEvent.Outcome.DUPLICATE, now);
+            } else if (status.canTransitionTo(target)) {
+                current.put(order.getId(), target);
+                if (target == PaymentStatus.COMPLETED) {
+                    paymentIds.put(order.getId(), event.getRazorpayPaymentId());
+                }
+                finish(event, PaymentEvent.Outcome.APPLIED, now);
+            } else {
+                finish(event, PaymentEvent.Outcome.STALE, now);
+            }
+        }
+
+        Map<Long, PaymentStatus> read = new LinkedHashMap<>();
+        byRazorpayOrderId.values().forEach(order -> read.put(order.getId(), order.getPaymentStatus()));
+        byPaymentId.values().forEach(order -> read.put(order.getId(), order.getPaymentStatus()));
+        List<OrderBatchWriter.PaymentMove> moves = new ArrayList<>();
+        current.forEach((orderId, status) -> {
+            if (status != read.get(orderId)) {
+                moves.add(new OrderBatchWriter.PaymentMove(orderId, read.get(orderId), status,
+                        paymentIds.get(orderId)));
+            }
+        });
+        int[] moved = orderBatchWriter.movePayments(moves);
+        Map<PaymentStatus, List<Long>> byStatus = new EnumMap<>(PaymentStatus.class);
+        for (int i = 0; i < moves.size(); i++) {
+            OrderBatchWriter.PaymentMove move = moves.get(i);
+            if (moved[i] == 0) {
+                // Judged on a status that has since changed; the next batch looks again
+                for (PaymentEvent event : judged.get(move.orderId())) {
+                    event.setOutcome(null);
+                    event.setProcessedAt(null);
+                    event.setNextAttemptAt(now);
+                }
+                continue;
+            }
+            byStatus.computeIfAbsent(move.to(), s -> new ArrayList<>()).add(move.orderId());
+        }
+        byStatus.forEach((status, orderIds) -> {
+            userStatsService.recordPaymentStatus(orderIds, status);
+            orderFarmerRepository.updatePaymentStatusByOrderIdIn(orderIds, status);
+        });
+        ledgerService.recordSales(byStatus.getOrDefault(PaymentStatus.COMPLETED, List.of()));
+        // Refunds issued from the Razorpay dashboard arrive only this way
+        ledgerService.recordRefunds(byStatus.getOrDefault(PaymentStatus.REFUNDED, List.of()));
+        return events.size();
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    static PaymentStatus targetStatus(String eventType) {
+        if (eventType == null) {
+            return null;
+        }
+        return switch (eventType) {
+            case "payment.captured", "order.paid" -> PaymentStatus.COMPLETED;
+            case "payment.failed" -> PaymentStatus.FAILED;
+            case "refund.processed", "payment.refunded" -> PaymentStatus.REFUNDED;
+            default -> null;
+        };
+    }
+
+    private static void finish(PaymentEvent event, PaymentEvent.Outcome outcome, LocalDateTime now) {
+        event.setOutcome(outcome);
+        event.setProcessedAt(now);
+    }
+
+    private static JSONObject entity(JSONObject payload, String name) {
+        JSONObject wrapper = payload != null ? payload.optJSONObject(name) : null;
+        return wrapper != null ? wrapper.optJSONObject("entity") : null;
+    }
+}
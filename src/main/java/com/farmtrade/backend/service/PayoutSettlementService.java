@@ -0,0 +1,173 @@
+package com.farmtrade.backend.service;
+
+import com.farmtrade.backend.model.LedgerEntry;
+import com.farmtrade.backend.model.Money;
+import com.farmtrade.backend.model.PayoutBatch;
+import com.farmtrade.backend.model.PayoutItem;
+import com.farmtrade.backend.repository.LedgerRepository;
+import com.farmtrade.backend.repository.PayoutBatchRepository;
+import com.farmtrade.backend.repository.PayoutItemRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Turns farmer payable balances into payout batches. Farmer accounts are split
+ * into partitions by farmer id, and each partition is settled in parallel in
+ * its own transaction. A partition locks its accounts and reads their running
+ * balances; only entries posted after the period end are read from the ledger,
+ * to take back what was earned since. It then writes a payout item and a payout
+ * posting per farmer and lowers their balances. A partition that fails rolls
+ * back on its own. Settling the same period again pays only the farmers still
+ * owed, because paid farmers' balances are already down.
+ */
+@Service
+public class PayoutSettlementService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PayoutSettlementService.class);
+
+    @Autowired
+    private LedgerRepository ledgerRepository;
+
+    @Autowired
+    private PayoutBatchRepository payoutBatchRepository;
+
+    @Autowired
+    private PayoutItemRepository payoutItemRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${app.payouts.partitions:4}")
+    private int partitions;
+
+    private ExecutorService workers;
+
+    private record PartitionResult(int farmers, Money total) {
+    }
+
+    @PostConstruct
+    public void startWorkers() {
+        workers = Executors.newFixedThreadPool(partitions, new CustomizableThreadFactory("payout-settlement-"));
+    }
+
+    @PreDestroy
+    public void stopWorkers() {
+        workers.shutdown();
+    }
+
+    public PayoutBatch settle(LocalDateTime requestedEnd) {
+        // Compare at the precision period_end is stored with, so settling the same end again is not refused
+        LocalDateTime periodEnd = requestedEnd.truncatedTo(ChronoUnit.MICROS);
+        LocalDateTime now = LocalDateTime.now();
+        if (periodEnd.isAfter(now)) {
+            throw new RuntimeException("A payout period cannot end in the future");
+        }
+        LocalDateTime latest = payoutBatchRepository.findLatestPeriodEnd();
+        if (latest != null && periodEnd.isBefore(latest)) {
+            throw new RuntimeException("Payouts were already settled up to " + latest);
+        }
+
+        PayoutBatch batch = new PayoutBatch();
+        batch.setPeriodEnd(periodEnd);
+        batch.setCreatedAt(now);
+        batch.setStatus(PayoutBatch.Status.RUNNING);
+        batch.setPartitions(partitions);
+        Long batchId = payoutBatchRepository.save(batch).getId();
+
+        List<Callable<PartitionResult>> tasks = new ArrayList<>(partitions);
+        for (int partition = 0; partition < partitions; partition++) {
+            int current = partition;
+            tasks.add(() -> transactionTemplate.execute(status -> settlePartition(batchId, periodEnd, current)));
+        }
+
+        int farmers = 0;
+        Money total = Money.ZERO;
+        boolean failed = false;
+        try {
+            for (Future<PartitionResult> result : workers.invokeAll(tasks)) {
+                try {
+                    farmers += result.get().farmers();
+                    total = total.plus(result.get().total());
+                } catch (ExecutionException e) {
+                    failed = true;
+                    logger.error("Payout batch {} partition failed", batchId, e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed = true;
+        }
+
+        batch.setFarmerCount(farmers);
+        batch.setTotalAmount(total);
+        batch.setStatus(failed ? PayoutBatch.Status.FAILED : PayoutBatch.Status.COMPLETED);
+        batch.setCompletedAt(LocalDateTime.now());
+        return payoutBatchRepository.save(batch);
+    }
+
+    public List<PayoutBatch> getRecentBatches() {
+        return payoutBatchRepository.findTop20ByOrderByIdDesc();
+    }
+
+    public List<PayoutItem> getBatchItems(Long batchId) {
+        if (!payoutBatchRepository.existsById(batchId)) {
+            throw new RuntimeException("Payout batch not found: " + batchId);
+        }
+        return payoutItemRepository.findByBatchIdOrderByFarmerId(batchId);
+    }
+
+    private PartitionResult settlePartition(Long batchId, LocalDateTime periodEnd, int partition) {
+        Map<Long, BigDecimal> balances = ledgerRepository.lockPositiveBalances(partitions, partition);
+        if (balances.isEmpty()) {
+            return new PartitionResult(0, Money.ZERO);
+        }
+        Map<Long, BigDecimal> sincePeriodEnd = ledgerRepository.sumPostedSince(balances.keySet(), periodEnd);
+
+        LocalDateTime now = LocalDateTime.now();
+        Map<Long, BigDecimal> payouts = new LinkedHashMap<>();
+        List<LedgerEntry> entries = new ArrayList<>();
+        Money total = Money.ZERO;
+        for (Map.Entry<Long, BigDecimal> balance : balances.entrySet()) {
+            Long farmerId = balance.getKey();
+            BigDecimal payable = balance.getValue().subtract(sincePeriodEnd.getOrDefault(farmerId, BigDecimal.ZERO));
+            if (payable.signum() <= 0) {
+                continue;
+            }
+            Money amount = Money.of(payable);
+            String ref = LedgerService.payoutRef(batchId, farmerId);
+            entries.add(LedgerService.entry(ref, LedgerEntry.Type.PAYOUT, LedgerEntry.Account.FARMER_PAYABLE, farmerId,
+                    LedgerEntry.Side.DEBIT, amount, now, null, batchId));
+            entries.add(LedgerService.entry(ref, LedgerEntry.Type.PAYOUT, LedgerEntry.Account.FARMER_PAYOUTS, null,
+                    LedgerEntry.Side.CREDIT, amount, now, null, batchId));
+            payouts.put(farmerId, amount.toBigDecimal());
+            total = total.plus(amount);
+        }
+        if (payouts.isEmpty()) {
+            return new PartitionResult(0, Money.ZERO);
+        }
+        ledgerRepository.insertPayoutItems(batchId, payouts);
+        ledgerRepository.insertEntries(entries);
+        ledgerRepository.addPayouts(payouts, now);
+        return new PartitionResult(payouts.size(), total);
+    }
+}
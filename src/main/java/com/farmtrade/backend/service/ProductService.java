@@ -9,6 +9,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Objects;
 
 @Service
 public class ProductService {
@@ -18,11 +19,21 @@ public class ProductService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserStatsService userStatsService;
+
+    @Autowired
+    private UploadStore uploadStore;
+
+    @Transactional
     public Product addProduct(Product product, String email) {
         User farmer = userRepository.findByEmail(email)
                 .orElseThrow(() -> new RuntimeException("Farmer not found"));
         product.setFarmer(farmer);
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        userStatsService.recordListingsAdded(farmer.getId(), 1);
+        uploadStore.retain(saved.getImageUrl());
+        return saved;
     }
 
     public List<Product> getProductsByFarmer(String email) {
@@ -54,6 +65,10 @@ public class ProductService {
         product.setQuantity(productDetails.getQuantity());
         product.setUnit(productDetails.getUnit());
         product.setCategory(productDetails.getCategory());
+        if (!Objects.equals(product.getImageUrl(), productDetails.getImageUrl())) {
+            uploadStore.retain(productDetails.getImageUrl());
+            uploadStore.release(product.getImageUrl());
+        }
         product.setImageUrl(productDetails.getImageUrl());
 
         return productRepository.save(product);
@@ -68,5 +83,7 @@ public class ProductService {
         }
 
         productRepository.delete(product);
+        userStatsService.recordListingsRemoved(product.getFarmer().getId(), 1);
+        uploadStore.release(product.getImageUrl());
     }
 }
@@ -0,0 +1,36 @@
+package com.farmtrade.backend.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spaces calls evenly so no more than permitsPerSecond start in any second.
+ * {@link #acquire} sleeps until the caller's slot comes up, so it is meant for
+ * virtual threads or other workers that can afford to block.
+ */
+public class RateLimiter {
+
+    private final long intervalNanos;
+    private long nextFreeNanos = System.nanoTime();
+
+    public RateLimiter(double permitsPerSecond) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive");
+        }
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+    }
+
+    public void acquire() throws InterruptedException {
+        long waitNanos = reserve();
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    // Idle time is not banked, so a quiet spell cannot turn into a burst
+    private synchronized long reserve() {
+        long now = System.nanoTime();
+        long slot = Math.max(now, nextFreeNanos);
+        nextFreeNanos = slot + intervalNanos;
+        return slot - now;
+    }
+}
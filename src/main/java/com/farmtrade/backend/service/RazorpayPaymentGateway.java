@@ -0,0 +1,179 @@
+package com.farmtrade.backend.service;
+
+import com.farmtrade.backend.model.Money;
+import com.farmtrade.backend.model.PaymentStatus;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Razorpay REST client shared by the whole application. It talks to the
+ * Orders and Payments APIs over one pooled, keep-alive HttpClient with connect and request
+ * timeouts. The SDK's RazorpayClient is not used for calls, because it
+ * rebuilds its static OkHttp client on every construction and its timeouts
+ * cannot be configured. Response handling runs on a small fixed pool, and
+ * every call goes through a {@link GatewayGuard}.
+ */
+public class RazorpayPaymentGateway implements PaymentGateway, AutoCloseable {
+
+    private static final URI ORDERS_URI = URI.create("https://api.razorpay.com/v1/orders");
+    private static final URI PAYMENTS_URI = URI.create("https://api.razorpay.com/v1/payments");
+
+    private final String authorization;
+    private final Duration requestTimeout;
+    private final GatewayGuard guard;
+    private final ExecutorService executor;
+    private final HttpClient httpClient;
+
+    public RazorpayPaymentGateway(String keyId, String keySecret, Duration connectTimeout, Duration requestTimeout,
+            int threads, GatewayGuard guard) {
+        this.authorization = "Basic " + Base64.getEncoder()
+                .encodeToString((keyId + ":" + keySecret).getBytes(StandardCharsets.UTF_8));
+        this.requestTimeout = requestTimeout;
+        this.guard = guard;
+        this.executor = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("razorpay-"));
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .executor(executor)
+                .build();
+    }
+
+    @Override
+    public CompletableFuture<String> createOrder(Money amount, String receipt) {
+        JSONObject body = new JSONObject();
+        // Razorpay expects amount in paise (1 INR = 100 paise)
+        body.put("amount", amount.toPaise());
+        body.put("currency", "INR");
+        body.put("receipt", receipt);
+
+        HttpRequest request = HttpRequest.newBuilder(ORDERS_URI)
+                .timeout(requestTimeout)
+                .header("Authorization", authorization)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+        return guard.call(() -> httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> readJson(response).getString("id")));
+    }
+
+    @Override
+    public CompletableFuture<OrderPayment> fetchOrderPayment(String razorpayOrderId) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(ORDERS_URI + "/" + razorpayOrderId + "/payments"))
+                .timeout(requestTimeout)
+                .header("Authorization", authorization)
+                .GET()
+                .build();
+        return guard.call(() -> httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> toOrderPayment(readJson(response).optJSONArray("items"))));
+    }
+
+    /**
+     * The idempotency key is sent as the refund receipt. The payment's
+     * existing refunds are listed first, and a refund already carrying the
+     * receipt is returned instead of issuing another, so a retry after a lost
+     * response is safe.
+     */
+    @Override
+    public CompletableFuture<String> refund(String razorpayPaymentId, Money amount, String idempotencyKey) {
+        URI paymentUri = URI.create(PAYMENTS_URI + "/" + razorpayPaymentId);
+        HttpRequest lookup = HttpRequest.newBuilder(URI.create(paymentUri + "/refunds"))
+                .timeout(requestTimeout)
+                .header("Authorization", authorization)
+                .GET()
+                .build();
+
+        JSONObject body = new JSONObject();
+        body.put("amount", amount.toPaise());
+        body.put("receipt", idempotencyKey);
+        HttpRequest create = HttpRequest.newBuilder(URI.create(paymentUri + "/refund"))
+                .timeout(requestTimeout)
+                .header("Authorization", authorization)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+
+        return guard.call(() -> httpClient.sendAsync(lookup, HttpResponse.BodyHandlers.ofString())
+                .thenCompose(response -> {
+                    String existing = findRefund(readJson(response).optJSONArray("items"), idempotencyKey);
+                    if (existing != null) {
+                        return CompletableFuture.completedFuture(existing);
+                    }
+                    return httpClient.sendAsync(create, HttpResponse.BodyHandlers.ofString())
+                            .thenApply(created -> readJson(created).getString("id"));
+                }));
+    }
+
+    public GatewayGuard getGuard() {
+        return guard;
+    }
+
+    @Override
+    public void close() {
+        httpClient.close();
+        executor.shutdown();
+    }
+
+    // A captured payment wins; otherwise the order is only failed once every attempt failed
+    private static OrderPayment toOrderPayment(JSONArray payments) {
+        if (payments == null || payments.length() == 0) {
+            return OrderPayment.PENDING;
+        }
+        boolean allFailed = true;
+        for (int i = 0; i < payments.length(); i++) {
+            JSONObject payment = payments.optJSONObject(i);
+            String status = payment != null ? payment.optString("status") : "";
+            if ("captured".equals(status)) {
+                return new OrderPayment(PaymentStatus.COMPLETED, payment.optString("id"));
+            }
+            allFailed &= "failed".equals(status);
+        }
+        return allFailed ? new OrderPayment(PaymentStatus.FAILED, null) : OrderPayment.PENDING;
+    }
+
+    private static String findRefund(JSONArray refunds, String receipt) {
+        if (refunds == null) {
+            return null;
+        }
+        for (int i = 0; i < refunds.length(); i++) {
+            JSONObject refund = refunds.optJSONObject(i);
+            if (refund != null && receipt.equals(refund.optString("receipt"))
+                    && !"failed".equals(refund.optString("status"))) {
+                return refund.optString("id");
+            }
+        }
+        return null;
+    }
+
+    private static JSONObject readJson(HttpResponse<String> response) {
+        int status = response.statusCode();
+        if (status >= 500) {
+            throw new PaymentGatewayException(PaymentGatewayException.Reason.ERROR,
+                    "Razorpay returned HTTP " + status);
+        }
+        JSONObject json;
+        try {
+            json = new JSONObject(response.body());
+        } catch (JSONException e) {
+            throw new PaymentGatewayException(PaymentGatewayException.Reason.ERROR,
+                    "Razorpay returned an unreadable response (HTTP " + status + ")", e);
+        }
+        if (status >= 400) {
+            JSONObject error = json.optJSONObject("error");
+            String description = error != null ? error.optString("description", "HTTP " + status) : "HTTP " + status;
+            throw new PaymentGatewayException(PaymentGatewayException.Reason.DECLINED, description);
+        }
+        return json;
+    }
+}
@@ -0,0 +1,226 @@
+package com.farmtrade.backend.service;
+
+import com.farmtrade.backend.model.Order;
+import com.farmtrade.backend.model.OrderStatus;
+import com.farmtrade.backend.model.PaymentStatus;
+import com.farmtrade.backend.model.Refund;
+import com.farmtrade.backend.repository.OrderBatchWriter;
+import com.farmtrade.backend.repository.OrderFarmerRepository;
+import com.farmtrade.backend.repository.OrderRepository;
+import com.farmtrade.backend.repository.RefundRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Issues queued refunds in batches, in three steps. A short transaction
+ * claims due refunds and pushes their nextAttemptAt out by a lease, so a
+ * worker that dies mid-batch only delays them. The gateway calls then run
+ * with no transaction open, started no faster than rate-per-second. A second
+ * transaction records every outcome and, for the refunds that went through,
+ * marks the orders REFUNDED, cancels those not yet shipped with their stock
+ * restored in one batch, and reverses the farmers' ledger credits. Failed
+ * calls are retried with exponential backoff; declined ones are not.
+ */
+@Service
+public class RefundService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RefundService.class);
+
+    @Autowired
+    private RefundRepository refundRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderFarmerRepository orderFarmerRepository;
+
+    @Autowired
+    private OrderBatchWriter orderBatchWriter;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private UserStatsService userStatsService;
+
+    @Autowired
+    private OrderEvents orderEvents;
+
+    @Autowired
+    private PaymentGateway paymentGateway;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${app.payments.refunds.batch-size:50}")
+    private int batchSize;
+
+    @Value("${app.payments.refunds.rate-per-second:5}")
+    private double ratePerSecond;
+
+    @Value("${app.payments.refunds.max-attempts:6}")
+    private int maxAttempts;
+
+    // Doubled after every failed attempt
+    @Value("${app.payments.refunds.retry-base-ms:30000}")
+    private long retryBaseMs;
+
+    // How long a claimed refund is hidden from other workers; must outlast one batch
+    @Value("${app.payments.refunds.lease-ms:300000}")
+    private long leaseMs;
+
+    private RateLimiter rateLimiter;
+
+    private record Outcome(String razorpayRefundId, PaymentGatewayException error) {
+    }
+
+    @PostConstruct
+    public void init() {
+        rateLimiter = new RateLimiter(ratePerSecond);
+    }
+
+    @Transactional
+    public Refund requestRefund(Long orderId, String reason, String email) {
+        List<Order> locked = orderRepository.lockByIdIn(List.of(orderId));
+        if (locked.isEmpty()) {
+            throw new RuntimeException("Order not found: " + orderId);
+        }
+        Order order = locked.get(0);
+        if (order.getPaymentStatus() != PaymentStatus.COMPLETED || order.getRazorpayPaymentId() == null) {
+            throw new RuntimeException("Only paid orders can be refunded");
+        }
+        if (refundRepository.existsByOrderId(orderId)) {
+            throw new RuntimeException("A refund for order " + orderId + " was already requested");
+        }
+        return refundRepository.save(new Refund(order, Refund.Source.ADMIN, reason, email, LocalDateTime.now()));
+    }
+
+    public List<Refund> getRecentRefunds(Refund.Status status) {
+        return status != null ? refundRepository.findTop100ByStatusOrderByIdDesc(status)
+                : refundRepository.findTop100ByOrderByIdDesc();
+    }
+
+    /**
+     * Issues up to batch-size due refunds and records the results. Returns
+     * the number of refunds claimed.
+     */
+    public int processBatch() {
+        List<Refund> claimed = transactionTemplate.execute(status -> claim());
+        if (claimed == null || claimed.isEmpty()) {
+            return 0;
+        }
+
+        List<CompletableFuture<String>> calls = new ArrayList<>(claimed.size());
+        for (Refund refund : claimed) {
+            try {
+                rateLimiter.acquire();
+            } catch (InterruptedException e) {
+                // The rest keep their lease and are picked up again once it runs out
+                Thread.currentThread().interrupt();
+                break;
+            }
+            calls.add(paymentGateway.refund(refund.getRazorpayPaymentId(), refund.getAmount(),
+                    refund.getIdempotencyKey()));
+        }
+
+        Map<Long, Outcome> outcomes = new HashMap<>();
+        for (int i = 0; i < calls.size(); i++) {
+            try {
+                outcomes.put(claimed.get(i).getId(), new Outcome(calls.get(i).join(), null));
+            } catch (CompletionException e) {
+                // The gateway always fails with a PaymentGatewayException
+                outcomes.put(claimed.get(i).getId(), new Outcome(null, (PaymentGatewayException) e.getCause()));
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> record(outcomes));
+        return claimed.size();
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    private List<Refund> claim() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Refund> due = refundRepository.claimDue(now, batchSize);
+        for (Refund refund : due) {
+            refund.setAttempts(refund.getAttempts() + 1);
+            refund.setNextAttemptAt(now.plus(Duration.ofMillis(leaseMs)));
+        }
+        return due;
+    }
+
+    private void record(Map<Long, Outcome> outcomes) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> refundedOrderIds = new ArrayList<>();
+        for (Refund refund : refundRepository.findAllById(outcomes.keySet())) {
+            Outcome outcome = outcomes.get(refund.getId());
+            if (outcome.error() == null) {
+                refund.setStatus(Refund.Status.SUCCEEDED);
+                refund.setRazorpayRefundId(outcome.razorpayRefundId());
+                refund.setLastError(null);
+                refund.setCompletedAt(now);
+                refundedOrderIds.add(refund.getOrderId());
+                continue;
+            }
+            refund.setLastError(outcome.error().getMessage());
+            if (outcome.error().getReason() == PaymentGatewayException.Reason.DECLINED
+                    || refund.getAttempts() >= maxAttempts) {
+                refund.setStatus(Refund.Status.FAILED);
+                refund.setCompletedAt(now);
+                logger.warn("Refund {} for order {} failed after {} attempts: {}", refund.getId(),
+                        refund.getOrderId(), refund.getAttempts(), outcome.error().getMessage());
+            } else {
+                refund.setNextAttemptAt(now.plus(backoff(refund.getAttempts())));
+            }
+        }
+        if (!refundedOrderIds.isEmpty()) {
+            applyRefunds(refundedOrderIds);
+        }
+    }
+
+    /**
+     * Writes the effects of refunds the gateway confirmed. Every step is
+     * guarded or idempotent, so orders already marked REFUNDED by a webhook
+     * are still cancelled and restocked, but nothing is applied twice.
+     */
+    private void applyRefunds(List<Long> orderIds) {
+        orderBatchWriter.markRefunded(orderIds);
+        userStatsService.recordPaymentStatus(orderIds, PaymentStatus.REFUNDED);
+        orderFarmerRepository.updatePaymentStatusByOrderIdIn(orderIds, PaymentStatus.REFUNDED);
+
+        // Refunds from cancellations find their order cancelled and restocked already
+        List<Long> unshipped = orderRepository.lockUnshippedIds(orderIds);
+        if (!unshipped.isEmpty()) {
+            Map<Long, Integer> quantities = new HashMap<>();
+            for (OrderRepository.ProductQuantity line : orderRepository.sumQuantitiesByProduct(unshipped)) {
+                quantities.put(line.getProductId(), line.getQuantity().intValue());
+            }
+            orderBatchWriter.restoreStock(quantities);
+            orderEvents.cancelled(unshipped);
+            orderRepository.updateStatusByIdIn(unshipped, OrderStatus.CANCELLED);
+            orderFarmerRepository.updateStatusByOrderIdIn(unshipped, OrderStatus.CANCELLED);
+        }
+        ledgerService.recordRefunds(orderIds);
+    }
+
+    private Duration backoff(int attempts) {
+        return Duration.ofMillis(retryBaseMs << Math.min(attempts - 1, 16));
+    }
+}
@@ -0,0 +1,219 @@
+package com.farmtrade.backend.service;
+
+import com.farmtrade.backend.event.OrdersCancelled;
+import com.farmtrade.backend.event.OrdersPlaced;
+import com.farmtrade.backend.model.OrderStatus;
+import com.farmtrade.backend.repository.SalesLineRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Base of the sales views kept in memory, LeaderboardService and
+ * AnalyticsService. The lines of OrdersPlaced and OrdersCancelled events
+ * are queued once the publishing transaction commits; queuing takes no
+ * lock, so a commit never waits on a view. {@link #refresh}, run on a schedule, applies the
+ * queued changes to the view's state and publishes it for reads.
+ *
+ * {@link #rebuild} reloads the state from order history in a read-only
+ * repeatable-read transaction. Changes applied while it reads are also kept
+ * aside, and before the rebuilt state is swapped in they are replayed onto
+ * it only where the history read did not see them: a placement when its
+ * order is missing from the snapshot, a cancellation when the snapshot has
+ * the order uncancelled or its placement was replayed. Transactions still
+ * committing when the history has been read are waited for, so none of
+ * their changes can arrive after the swap and be counted twice.
+ */
+public abstract class SalesView<S> {
+
+    @Autowired
+    private SalesLineRepository salesLineRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.sales-views.rebuild-wait-ms:60000}")
+    private long rebuildWaitMs;
+
+    // Lines of orders placed (sign 1) or cancelled (sign -1)
+    private record Change(List<SalesLineRepository.Line> lines, int sign) {
+    }
+
+    private final Queue<Change> committed = new ConcurrentLinkedQueue<>();
+
+    // Events published in transactions that have not completed yet
+    private final Set<Object> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final Object lock = new Object();
+
+    // Guarded by lock
+    private S state;
+
+    // Changes applied while a rebuild runs, null otherwise; guarded by lock
+    private List<Change> missed;
+
+    protected SalesView(S initial) {
+        this.state = initial;
+    }
+
+    // Reads the state from order history; runs in the rebuild's snapshot
+    protected abstract S load();
+
+    // Lines outside the view's window are skipped
+    protected abstract void apply(S target, List<SalesLineRepository.Line> lines, int sign);
+
+    // Makes the state readable; called holding the lock after every refresh and rebuild
+    protected abstract void publish(S current, boolean changed);
+
+    protected abstract int size(S loaded);
+
+    // Runs as the event is published, before the transaction can commit
+    @EventListener({ OrdersPlaced.class, OrdersCancelled.class })
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onPublished(Object event) {
+        inFlight.add(event);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrdersPlaced(OrdersPlaced event) {
+        committed(event, event.getLines(), 1);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrdersCancelled(OrdersCancelled event) {
+        committed(event, event.getLines(), -1);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_ROLLBACK,
+            classes = { OrdersPlaced.class, OrdersCancelled.class })
+    public void onRolledBack(Object event) {
+        inFlight.remove(event);
+    }
+
+    public void refresh() {
+        synchronized (lock) {
+            publish(state, drain());
+        }
+    }
+
+    /**
+     * Replaces the state with one read from order history, reconciled with
+     * the changes that committed meanwhile. Returns the size of the state
+     * loaded.
+     */
+    public int rebuild() {
+        synchronized (lock) {
+            drain();
+            missed = new ArrayList<>();
+        }
+        try {
+            TransactionTemplate snapshotRead = new TransactionTemplate(transactionManager);
+            snapshotRead.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+            snapshotRead.setReadOnly(true);
+            return snapshotRead.execute(status -> {
+                S rebuilt = load();
+                awaitCompletion(Set.copyOf(inFlight));
+                Set<Long> replayed = new HashSet<>();
+                while (true) {
+                    List<Change> batch;
+                    synchronized (lock) {
+                        drain();
+                        if (missed.isEmpty()) {
+                            state = rebuilt;
+                            publish(rebuilt, true);
+                            return size(rebuilt);
+                        }
+                        batch = missed;
+                        missed = new ArrayList<>();
+                    }
+                    replay(rebuilt, batch, replayed);
+                }
+            });
+        } finally {
+            synchronized (lock) {
+                missed = null;
+            }
+        }
+    }
+
+    // Queued before the event leaves inFlight, so a rebuild waiting on it then finds its change
+    private void committed(Object event, List<SalesLineRepository.Line> lines, int sign) {
+        if (!lines.isEmpty()) {
+            committed.add(new Change(lines, sign));
+        }
+        inFlight.remove(event);
+    }
+
+    // Applies the queued changes, keeping them for a running rebuild; called holding the lock
+    private boolean drain() {
+        boolean changed = false;
+        for (Change change = committed.poll(); change != null; change = committed.poll()) {
+            apply(state, change.lines(), change.sign());
+            if (missed != null) {
+                missed.add(change);
+            }
+            changed = true;
+        }
+        return changed;
+    }
+
+    // Transactions open once the history is read may have committed before its snapshot
+    private void awaitCompletion(Set<Object> pending) {
+        long deadline = System.currentTimeMillis() + rebuildWaitMs;
+        while (pending.stream().anyMatch(inFlight::contains)) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new RuntimeException("Transactions recording sales did not complete in time");
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted waiting for transactions recording sales", e);
+            }
+        }
+    }
+
+    // Looks the orders up in the rebuild's snapshot and applies only what it did not see
+    private void replay(S rebuilt, List<Change> batch, Set<Long> replayed) {
+        Set<Long> orderIds = new HashSet<>();
+        batch.forEach(change -> change.lines().forEach(line -> orderIds.add(line.orderId())));
+        Map<Long, String> seen = salesLineRepository.findStatuses(orderIds);
+        for (Change change : batch) {
+            Map<Long, List<SalesLineRepository.Line>> byOrder = new LinkedHashMap<>();
+            change.lines().forEach(line -> byOrder.computeIfAbsent(line.orderId(), id -> new ArrayList<>()).add(line));
+            List<SalesLineRepository.Line> unseen = new ArrayList<>();
+            byOrder.forEach((orderId, lines) -> {
+                String status = seen.get(orderId);
+                boolean apply = change.sign() > 0 ? status == null
+                        : (status != null && !OrderStatus.CANCELLED.name().equals(status))
+                                || replayed.contains(orderId);
+                if (apply) {
+                    unseen.addAll(lines);
+                    if (change.sign() > 0) {
+                        replayed.add(orderId);
+                    }
+                }
+            });
+            if (!unseen.isEmpty()) {
+                apply(rebuilt, unseen, change.sign());
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.farmtrade.backend.service;
+
+import com.farmtrade.backend.dto.OrderItemRequest;
+import com.farmtrade.backend.dto.OrderRequest;
+import com.farmtrade.backend.dto.StandingOrderRequest;
+import com.farmtrade.backend.model.Role;
+import com.farmtrade.backend.model.StandingOrder;
+import com.farmtrade.backend.model.StandingOrderItem;
+import com.farmtrade.backend.model.User;
+import com.farmtrade.backend.repository.ProductRepository;
+import com.farmtrade.backend.repository.StandingOrderRepository;
+import com.farmtrade.backend.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+@Service
+public class StandingOrderService {
+
+    @Autowired
+    private StandingOrderRepository standingOrderRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${app.standing-orders.spread-minutes:60}")
+    private int spreadMinutes;
+
+    @Transactional
+    public StandingOrder createStandingOrder(StandingOrderRequest request, String email) {
+        User retailer = userRepository.findByEmail(email)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+
+        if (retailer.getRole() != Role.RETAILER) {
+            throw new RuntimeException("Only retailers can create standing orders");
+        }
+
+        CronExpression schedule = parseSchedule(request.getSchedule());
+        if (request.getItems() == null || request.getItems().isEmpty()) {
+            throw new RuntimeException("A standing order needs at least one item");
+        }
+        Set<Long> productIds = new HashSet<>();
+        List<StandingOrderItem> items = new ArrayList<>();
+        for (OrderItemRequest itemRequest : request.getItems()) {
+            if (itemRequest.getProductId() == null || itemRequest.getQuantity() == null
+                    || itemRequest.getQuantity() <= 0) {
+                throw new RuntimeException("Each item needs a product and a positive quantity");
+            }
+            productIds.add(itemRequest.getProductId());
+            items.add(new StandingOrderItem(itemRequest.getProductId(), itemRequest.getQuantity()));
+        }
+        if (productRepository.findAllById(productIds).size() != productIds.size()) {
+            throw new RuntimeException("One or more products were not found");
+        }
+
+        StandingOrder standingOrder = new StandingOrder();
+        standingOrder.setRetailer(retailer);
+        standingOrder.setName(request.getName());
+        standingOrder.setSchedule(request.getSchedule());
+        standingOrder.setItems(items);
+        // The id picks the template's slot in the spread window, so it has to exist first
+        standingOrderRepository.save(standingOrder);
+        standingOrder.setNextRunAt(nextRunAt(schedule, LocalDateTime.now(), standingOrder.getId(), spreadMinutes));
+        return standingOrder;
+    }
+
+    public List<StandingOrder> getStandingOrders(String email) {
+        User retailer = userRepository.findByEmail(email)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        return standingOrderRepository.findWithItemsByRetailer(retailer);
+    }
+
+    @Transactional
+    public StandingOrder setActive(Long id, boolean active, String email) {
+        StandingOrder standingOrder = findOwned(id, email);
+        if (active && !standingOrder.isActive()) {
+            // Resuming starts from the next occurrence instead of replaying the paused period
+            standingOrder.setConsecutiveFailures(0);
+            standingOrder.setNextRunAt(nextRunAfter(standingOrder, LocalDateTime.now()));
+        }
+        standingOrder.setActive(active);
+        return standingOrder;
+    }
+
+    @Transactional
+    public void deleteStandingOrder(Long id, String email) {
+        standingOrderRepository.delete(findOwned(id, email));
+    }
+
+    public LocalDateTime nextRunAfter(StandingOrder standingOrder, LocalDateTime now) {
+        return nextRunAt(parseSchedule(standingOrder.getSchedule()), now, standingOrder.getId(), spreadMinutes);
+    }
+
+    public static OrderRequest toOrderRequest(StandingOrder standingOrder) {
+        List<OrderItemRequest> items = new ArrayList<>(standingOrder.getItems().size());
+        for (StandingOrderItem item : standingOrder.getItems()) {
+            OrderItemRequest itemRequest = new OrderItemRequest();
+            itemRequest.setProductId(item.getProductId());
+            itemRequest.setQuantity(item.getQuantity());
+            items.add(itemRequest);
+        }
+        OrderRequest orderRequest = new OrderRequest();
+        orderRequest.setItems(items);
+        return orderRequest;
+    }
+
+    /**
+     * First run time after now: the next occurrence of the schedule shifted by
+     * a fixed per-template offset within the spread window. Templates that all
+     * say "Monday 06:00" are spread over 06:00 to 06:00 + window instead of
+     * landing in the same minute, and each template keeps the same slot every
+     * week.
+     */
+    static LocalDateTime nextRunAt(CronExpression schedule, LocalDateTime now, long id, int spreadMinutes) {
+        long offsetSeconds = spreadMinutes > 0 ? Math.floorMod(id * 0x9E3779B97F4A7C15L, spreadMinutes * 60L) : 0;
+        LocalDateTime occurrence = schedule.next(now.minusSeconds(offsetSeconds));
+        if (occurrence == null) {
+            throw new RuntimeException("Schedule never fires again");
+        }
+        return occurrence.plusSeconds(offsetSeconds);
+    }
+
+    private StandingOrder findOwned(Long id, String email) {
+        StandingOrder standingOrder = standingOrderRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Standing order not found: " + id));
+        if (!standingOrder.getRetailer().getEmail().equals(email)) {
+            throw new RuntimeException("You are not authorized to change this standing order");
+        }
+        return standingOrder;
+    }
+
+    private static CronExpression parseSchedule(String schedule) {
+        if (schedule == null) {
+            throw new RuntimeException("Schedule is required");
+        }
+        try {
+            return CronExpression.parse(schedule);
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Invalid schedule: " + e.getMessage());
+        }
+    }
+}
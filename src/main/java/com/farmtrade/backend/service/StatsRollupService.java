@@ -0,0 +1,246 @@
+package com.farmtrade.backend.service;
+
+import com.farmtrade.backend.event.OrdersCancelled;
+import com.farmtrade.backend.event.OrdersPlaced;
+import com.farmtrade.backend.model.DailyRollup;
+import com.farmtrade.backend.model.HourlyRollup;
+import com.farmtrade.backend.model.User;
+import com.farmtrade.backend.repository.DailyRollupRepository;
+import com.farmtrade.backend.repository.HourlyRollupRepository;
+import com.farmtrade.backend.repository.RollupRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps the hourly and daily admin dashboard rollups current, so the
+ * dashboard never aggregates the orders table. Order events (see
+ * OrderEvents) and signups reach here inside the writing transaction and
+ * only append rollup_deltas rows, which take no lock a checkout could queue
+ * behind. {@link #fold} adds those deltas to the bucket rows in the
+ * background (see RollupDeltaFolder), so the dashboard lags writes by up to
+ * the fold interval. A bucket's row is created on its first fold, in a
+ * separate short transaction so two folds racing to create it cannot fail
+ * each other.
+ *
+ * Anything that changes orders without coming through here is repaired by
+ * {@link #rebuild}, which recomputes whole days from the source tables (see
+ * RollupBackfillJob). Folds and rebuilds both lock a day's row before
+ * touching its hours, so they take turns on a day, and a rebuild leaves out
+ * the deltas still waiting to be folded.
+ */
+@Service
+public class StatsRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatsRollupService.class);
+
+    @Autowired
+    private RollupRepository rollupRepository;
+
+    @Autowired
+    private HourlyRollupRepository hourlyRollupRepository;
+
+    @Autowired
+    private DailyRollupRepository dailyRollupRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.stats.rollups.fold-batch-size:1000}")
+    private int foldBatchSize;
+
+    private TransactionTemplate newTransaction;
+
+    @PostConstruct
+    public void init() {
+        newTransaction = new TransactionTemplate(transactionManager);
+        newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @EventListener
+    @Transactional
+    public void onOrdersPlaced(OrdersPlaced event) {
+        apply(orderDeltas(event.getOrders().stream()
+                .map(order -> new RollupRepository.OrderTotal(order.getOrderDate(),
+                        order.getTotalAmount().toBigDecimal()))
+                .toList(), 1));
+    }
+
+    @EventListener
+    @Transactional
+    public void onOrdersCancelled(OrdersCancelled event) {
+        apply(orderDeltas(rollupRepository.findOrderTotals(event.getOrderIds()), -1));
+    }
+
+    @Transactional
+    public void recordNewUser(User user) {
+        if (user.getCreatedAt() != null && user.getRole() != null) {
+            apply(Map.of(hourOf(user.getCreatedAt()), RollupRepository.Delta.ofUser(user.getRole())));
+        }
+    }
+
+    /**
+     * Recomputes the rollups of every day from {@code from} to {@code to},
+     * inclusive, one transaction per day. Returns the number of days rebuilt.
+     */
+    public int rebuild(LocalDate from, LocalDate to) {
+        int days = 0;
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            LocalDate current = day;
+            newTransaction.executeWithoutResult(status -> {
+                if (!rollupRepository.lockDay(current)) {
+                    createBucket(() -> rollupRepository.createDay(current));
+                    rollupRepository.lockDay(current);
+                }
+                rollupRepository.replaceDay(current, rollupRepository.aggregateDay(current));
+            });
+            days++;
+        }
+        logger.info("Rebuilt stats rollups from {} to {}", from, to);
+        return days;
+    }
+
+    // Rebuilds everything from the first order or signup up to today
+    public int rebuildAll() {
+        LocalDate first = rollupRepository.findFirstActiveDay();
+        return first != null ? rebuild(first, LocalDate.now()) : 0;
+    }
+
+    /**
+     * Adds up to fold-batch-size of the oldest deltas to their hour and day
+     * rows and deletes them. Returns the number of deltas folded.
+     */
+    @Transactional
+    public int fold() {
+        List<RollupRepository.PendingDelta> pending = rollupRepository.claimDeltas(foldBatchSize);
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        Map<LocalDateTime, RollupRepository.Delta> byHour = new TreeMap<>();
+        List<Long> ids = new ArrayList<>();
+        for (RollupRepository.PendingDelta delta : pending) {
+            byHour.merge(delta.bucketStart(), delta.delta(), RollupRepository.Delta::plus);
+            ids.add(delta.id());
+        }
+        addToBuckets(byHour);
+        rollupRepository.deleteDeltas(ids);
+        return pending.size();
+    }
+
+    public int getFoldBatchSize() {
+        return foldBatchSize;
+    }
+
+    public boolean isEmpty() {
+        return rollupRepository.isEmpty();
+    }
+
+    public RollupRepository.Delta getTotals() {
+        return rollupRepository.sumAllDays();
+    }
+
+    // One row per day, with zero rows for days nothing happened
+    public List<DailyRollup> getDailyRollups(LocalDate from, LocalDate to) {
+        Map<LocalDate, DailyRollup> stored = new HashMap<>();
+        dailyRollupRepository.findByDayBetweenOrderByDay(from, to).forEach(r -> stored.put(r.getDay(), r));
+        List<DailyRollup> days = new ArrayList<>();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            DailyRollup rollup = stored.get(day);
+            if (rollup == null) {
+                rollup = new DailyRollup();
+                rollup.setDay(day);
+            }
+            days.add(rollup);
+        }
+        return days;
+    }
+
+    // One row per hour from the hour of {@code from} to the hour of {@code to}, inclusive
+    public List<HourlyRollup> getHourlyRollups(LocalDateTime from, LocalDateTime to) {
+        LocalDateTime first = hourOf(from);
+        LocalDateTime last = hourOf(to);
+        Map<LocalDateTime, HourlyRollup> stored = new HashMap<>();
+        hourlyRollupRepository.findByBucketStartBetweenOrderByBucketStart(first, last)
+                .forEach(r -> stored.put(r.getBucketStart(), r));
+        List<HourlyRollup> hours = new ArrayList<>();
+        for (LocalDateTime hour = first; !hour.isAfter(last); hour = hour.plusHours(1)) {
+            HourlyRollup rollup = stored.get(hour);
+            if (rollup == null) {
+                rollup = new HourlyRollup();
+                rollup.setBucketStart(hour);
+            }
+            hours.add(rollup);
+        }
+        return hours;
+    }
+
+    private static Map<LocalDateTime, RollupRepository.Delta> orderDeltas(List<RollupRepository.OrderTotal> orders,
+            int sign) {
+        Map<LocalDateTime, RollupRepository.Delta> byHour = new HashMap<>();
+        for (RollupRepository.OrderTotal order : orders) {
+            if (order.orderDate() == null) {
+                continue;
+            }
+            RollupRepository.Delta delta = new RollupRepository.Delta(sign,
+                    sign > 0 ? order.totalAmount() : order.totalAmount().negate(), 0, 0, 0);
+            byHour.merge(hourOf(order.orderDate()), delta, RollupRepository.Delta::plus);
+        }
+        return byHour;
+    }
+
+    private void apply(Map<LocalDateTime, RollupRepository.Delta> byHour) {
+        if (!byHour.isEmpty()) {
+            rollupRepository.appendDeltas(byHour);
+        }
+    }
+
+    // Days before hours, each in time order, so folds and rebuilds lock rows in the same order
+    private void addToBuckets(Map<LocalDateTime, RollupRepository.Delta> byHour) {
+        Map<LocalDate, RollupRepository.Delta> byDay = new TreeMap<>();
+        byHour.forEach((hour, delta) -> byDay.merge(hour.toLocalDate(), delta, RollupRepository.Delta::plus));
+        for (Map.Entry<LocalDate, RollupRepository.Delta> day : byDay.entrySet()) {
+            LocalDate bucket = day.getKey();
+            if (rollupRepository.addToDay(bucket, day.getValue()) == 0) {
+                createBucket(() -> rollupRepository.createDay(bucket));
+                rollupRepository.addToDay(bucket, day.getValue());
+            }
+        }
+        for (Map.Entry<LocalDateTime, RollupRepository.Delta> hour : byHour.entrySet()) {
+            LocalDateTime bucket = hour.getKey();
+            if (rollupRepository.addToHour(bucket, hour.getValue()) == 0) {
+                createBucket(() -> rollupRepository.createHour(bucket));
+                rollupRepository.addToHour(bucket, hour.getValue());
+            }
+        }
+    }
+
+    private void createBucket(Runnable insert) {
+        try {
+            newTransaction.executeWithoutResult(status -> insert.run());
+        } catch (DataIntegrityViolationException e) {
+            // Another writer created it first
+        }
+    }
+
+    private static LocalDateTime hourOf(LocalDateTime time) {
+        return time.truncatedTo(ChronoUnit.HOURS);
+    }
+}
@@ -0,0 +1,110 @@
+package com.farmtrade.backend.service;
+
+import com.farmtrade.backend.model.Money;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * In-process stand-in for Razorpay. Each call answers after the configured
+ * latency and fails with probability errorRate, going through the same
+ * {@link GatewayGuard} as the live gateway, so timeouts, the bulkhead and the
+ * circuit breaker can be exercised without network access. Payment lookups
+ * answer PENDING unless an outcome was recorded with {@link #setOrderPayment}.
+ * Refunds are remembered by idempotency key, and a payment set with
+ * {@link #declineRefunds} has its refunds declined.
+ */
+public class StubPaymentGateway implements PaymentGateway {
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong refundCalls = new AtomicLong();
+    private final Map<String, OrderPayment> orderPayments = new ConcurrentHashMap<>();
+    private final Map<String, String> refunds = new ConcurrentHashMap<>();
+    private final Set<String> declinedRefunds = ConcurrentHashMap.newKeySet();
+    private final GatewayGuard guard;
+    private volatile Duration latency;
+    private volatile double errorRate;
+
+    public StubPaymentGateway(Duration latency, double errorRate, GatewayGuard guard) {
+        this.latency = latency;
+        this.errorRate = errorRate;
+        this.guard = guard;
+    }
+
+    @Override
+    public CompletableFuture<String> createOrder(Money amount, String receipt) {
+        return guard.call(() -> respond(() -> "order_stub" + sequence.incrementAndGet()));
+    }
+
+    @Override
+    public CompletableFuture<OrderPayment> fetchOrderPayment(String razorpayOrderId) {
+        return guard.call(() -> respond(() -> {
+            lookups.incrementAndGet();
+            return orderPayments.getOrDefault(razorpayOrderId, OrderPayment.PENDING);
+        }));
+    }
+
+    @Override
+    public CompletableFuture<String> refund(String razorpayPaymentId, Money amount, String idempotencyKey) {
+        return guard.call(() -> respond(() -> {
+            refundCalls.incrementAndGet();
+            if (declinedRefunds.contains(razorpayPaymentId)) {
+                throw new PaymentGatewayException(PaymentGatewayException.Reason.DECLINED,
+                        "The payment cannot be refunded");
+            }
+            return refunds.computeIfAbsent(idempotencyKey, key -> "rfnd_stub" + sequence.incrementAndGet());
+        }));
+    }
+
+    public void setOrderPayment(String razorpayOrderId, OrderPayment orderPayment) {
+        orderPayments.put(razorpayOrderId, orderPayment);
+    }
+
+    public long getLookups() {
+        return lookups.get();
+    }
+
+    public void declineRefunds(String razorpayPaymentId) {
+        declinedRefunds.add(razorpayPaymentId);
+    }
+
+    public long getRefundCalls() {
+        return refundCalls.get();
+    }
+
+    // Distinct refunds issued, however many times each was requested
+    public int getRefundsIssued() {
+        return refunds.size();
+    }
+
+    public GatewayGuard getGuard() {
+        return guard;
+    }
+
+    // Adjustable at runtime so a test can simulate an outage and a recovery
+    public void setLatency(Duration latency) {
+        this.latency = latency;
+    }
+
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    private <T> CompletableFuture<T> respond(Supplier<T> result) {
+        boolean fail = ThreadLocalRandom.current().nextDouble() < errorRate;
+        return CompletableFuture.supplyAsync(() -> {
+            if (fail) {
+                throw new PaymentGatewayException(PaymentGatewayException.Reason.ERROR, "Stub gateway error");
+            }
+            return result.get();
+        }, CompletableFuture.delayedExecutor(latency.toMillis(), TimeUnit.MILLISECONDS));
+    }
+}
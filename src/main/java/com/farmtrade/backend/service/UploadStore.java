@@ -0,0 +1,228 @@
+package com.farmtrade.backend.service;
+
+import com.farmtrade.backend.model.StoredFile;
+import com.farmtrade.backend.repository.StoredFileRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed store behind uploads. An upload is streamed to a temp
+ * file while its SHA-256 is computed in the same pass, then moved into
+ * sha256/<first two hex digits>/<hash>.<ext> under the upload directory.
+ * Identical content is stored once: a repeat upload finds the stored_files
+ * row and its temp file is dropped. Since a URL names its content, it never
+ * changes meaning and is served as immutable.
+ *
+ * An upload starts unreferenced. A product or profile takes a reference
+ * with {@link #retain} when it starts using the URL and gives it back with
+ * {@link #release} when the image is replaced or deleted, so uploads that
+ * are never attached are treated like released ones. Files left
+ * unreferenced for the grace period are removed by {@link #sweep}. Storing
+ * and removing a hash happen under the same striped lock, and an upload of
+ * content already stored restarts its grace period, so a sweep cannot
+ * delete a file that has just been uploaded. Files derived from an
+ * original, named <hash>-*, are removed with it.
+ */
+@Service
+public class UploadStore {
+
+    public static final String URL_PREFIX = "/uploads/";
+    public static final String CONTENT_DIR = "sha256";
+
+    private static final Pattern EXTENSION = Pattern.compile("[a-z0-9]{1,8}");
+    private static final Pattern STORED_URL = Pattern.compile(
+            "(?:.*/)?uploads/" + CONTENT_DIR + "/[0-9a-f]{2}/([0-9a-f]{64})(?:\\.[a-z0-9]{1,8})?");
+    private static final int SWEEP_BATCH = 500;
+
+    @Autowired
+    private StoredFileRepository storedFileRepository;
+
+    @Value("${app.uploads.dir:uploads}")
+    private String dir;
+
+    @Value("${app.uploads.unused-grace-hours:24}")
+    private long unusedGraceHours;
+
+    private Path root;
+    private Path tmp;
+
+    private final Object[] stripes = new Object[64];
+
+    @PostConstruct
+    public void init() {
+        root = Paths.get(dir).toAbsolutePath().normalize();
+        tmp = root.resolve("tmp");
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    /**
+     * Stores the upload, unreferenced, or finds identical content stored
+     * before. Returns the stored file, whose path may carry the extension of
+     * the first upload of that content.
+     */
+    public StoredFile store(MultipartFile file) throws IOException {
+        Path temp = createTempFile();
+        try {
+            MessageDigest digest = sha256();
+            long size;
+            try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+                size = Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+
+            synchronized (stripe(hash)) {
+                LocalDateTime now = LocalDateTime.now();
+                if (storedFileRepository.touch(hash, now) > 0) {
+                    StoredFile existing = storedFileRepository.findById(hash).orElseThrow();
+                    // Put back content lost from disk
+                    if (!Files.exists(root.resolve(existing.getPath()))) {
+                        moveIntoPlace(temp, existing.getPath());
+                    }
+                    return existing;
+                }
+                StoredFile stored = new StoredFile();
+                stored.setHash(hash);
+                stored.setPath(CONTENT_DIR + "/" + hash.substring(0, 2) + "/" + hash
+                        + extension(file.getOriginalFilename()));
+                stored.setSize(size);
+                stored.setRefCount(0);
+                stored.setCreatedAt(now);
+                stored.setReleasedAt(now);
+                moveIntoPlace(temp, stored.getPath());
+                return storedFileRepository.save(stored);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Under the upload directory, so moving it into place is a rename
+    public Path createTempFile() throws IOException {
+        Files.createDirectories(tmp);
+        return Files.createTempFile(tmp, "upload-", ".part");
+    }
+
+    public Path resolve(String path) {
+        return root.resolve(path);
+    }
+
+    public static String urlOf(StoredFile file) {
+        return URL_PREFIX + file.getPath();
+    }
+
+    // Takes one reference; URLs from before the store, or from elsewhere, are ignored
+    public void retain(String url) {
+        String hash = hashOf(url);
+        if (hash != null) {
+            storedFileRepository.retain(hash);
+        }
+    }
+
+    // Gives back one reference taken by retain
+    public void release(String url) {
+        String hash = hashOf(url);
+        if (hash != null) {
+            storedFileRepository.release(hash, LocalDateTime.now());
+        }
+    }
+
+    // Removes files unreferenced for the grace period. Returns the number removed.
+    public int sweep() {
+        LocalDateTime before = LocalDateTime.now().minusHours(unusedGraceHours);
+        int removed = 0;
+        List<StoredFile> unused;
+        do {
+            unused = storedFileRepository.findUnusedSince(before, PageRequest.of(0, SWEEP_BATCH));
+            for (StoredFile file : unused) {
+                synchronized (stripe(file.getHash())) {
+                    if (storedFileRepository.deleteIfUnused(file.getHash(), before) == 0) {
+                        continue;
+                    }
+                    try {
+                        Path original = root.resolve(file.getPath());
+                        Files.deleteIfExists(original);
+                        deleteDerived(original.getParent(), file.getHash());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Could not delete " + file.getPath(), e);
+                    }
+                    removed++;
+                }
+            }
+        } while (unused.size() == SWEEP_BATCH);
+        return removed;
+    }
+
+    private static String hashOf(String url) {
+        if (url == null) {
+            return null;
+        }
+        Matcher matcher = STORED_URL.matcher(url);
+        return matcher.matches() ? matcher.group(1) : null;
+    }
+
+    // Files made from an original, such as resized images, are named <hash>-*
+    private static void deleteDerived(Path dir, String hash) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (DirectoryStream<Path> derived = Files.newDirectoryStream(dir, hash + "-*")) {
+            for (Path file : derived) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private void moveIntoPlace(Path temp, String path) throws IOException {
+        Path target = root.resolve(path);
+        Files.createDirectories(target.getParent());
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Object stripe(String hash) {
+        return stripes[Math.floorMod(hash.hashCode(), stripes.length)];
+    }
+
+    // ".jpg" for "Photo.JPG"; nothing when the name has no short alphanumeric extension
+    private static String extension(String originalFilename) {
+        String ext = StringUtils.getFilenameExtension(StringUtils.cleanPath(
+                originalFilename != null ? originalFilename : ""));
+        if (ext == null) {
+            return "";
+        }
+        ext = ext.toLowerCase(Locale.ROOT);
+        return EXTENSION.matcher(ext).matches() ? "." + ext : "";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.farmtrade.backend.service;
+
+import com.farmtrade.backend.dto.AdminUserView;
+import com.farmtrade.backend.dto.CursorPage;
+import com.farmtrade.backend.dto.UserSearchCriteria;
+import com.farmtrade.backend.repository.UserSearchRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+@Service
+public class UserAdminService {
+
+    @Autowired
+    private UserSearchRepository userSearchRepository;
+
+    // The query asks for one extra row so we know whether another page exists
+    public CursorPage<AdminUserView> searchUsers(UserSearchCriteria criteria, Long cursor, int size) {
+        int limit = CursorPage.clampSize(size);
+        List<AdminUserView> rows = userSearchRepository.findPage(criteria,
+                cursor != null ? cursor : Long.MAX_VALUE, limit + 1);
+        boolean hasMore = rows.size() > limit;
+        List<AdminUserView> page = hasMore ? rows.subList(0, limit) : rows;
+        return new CursorPage<>(page, hasMore ? page.get(page.size() - 1).getId() : null);
+    }
+}
@@ -0,0 +1,257 @@
+package com.farmtrade.backend.service;
+
+import com.farmtrade.backend.model.OrderStatus;
+import com.farmtrade.backend.model.UserJob;
+import com.farmtrade.backend.model.UserJobItem;
+import com.farmtrade.backend.model.UserStatus;
+import com.farmtrade.backend.repository.UserBatchWriter;
+import com.farmtrade.backend.repository.UserJobItemRepository;
+import com.farmtrade.backend.repository.UserJobRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Runs admin user jobs in the background. Approving or rejecting takes one
+ * UPDATE per chunk of users. Deleting a user takes a series of short
+ * transactions: each removes one chunk of the retailer's orders, with their
+ * lines, fulfilments and counters, or one chunk of the farmer's products, and
+ * the last locks the user, checks nothing is left and deletes the rest.
+ * Only unpaid, cancelled or delivered orders are deleted: refunds and the
+ * ledger point at paid ones, so a retailer with any other order fails, as
+ * a farmer with fulfilments does, and should be rejected instead. Every
+ * step finishes its items and renews the job's lease in the same
+ * transaction, so a job interrupted by a restart resumes from its PENDING
+ * items once the lease lapses, and a half-deleted user simply carries on
+ * from the orders and products still there.
+ */
+@Service
+public class UserJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserJobService.class);
+
+    private static final int MAX_FAILURES_SHOWN = 100;
+    private static final int MAX_ERROR_LENGTH = 255;
+    private static final String UNSETTLED_ORDERS =
+            "Retailer has paid, refunded or open orders; reject the account instead";
+
+    @Autowired
+    private UserJobRepository userJobRepository;
+
+    @Autowired
+    private UserJobItemRepository userJobItemRepository;
+
+    @Autowired
+    private UserBatchWriter userBatchWriter;
+
+    @Autowired
+    private OrderEvents orderEvents;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // Users per status UPDATE, and orders or products per delete step
+    @Value("${app.users.jobs.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${app.users.jobs.max-users:1000}")
+    private int maxUsers;
+
+    // How long a claimed job is hidden from other workers; must outlast one step
+    @Value("${app.users.jobs.lease-ms:300000}")
+    private long leaseMs;
+
+    @Transactional
+    public UserJob submit(UserJob.Type type, List<Long> userIds, String requestedBy) {
+        if (type == null) {
+            throw new RuntimeException("Job type is required");
+        }
+        Set<Long> distinct = new LinkedHashSet<>();
+        if (userIds != null) {
+            userIds.stream().filter(id -> id != null).forEach(distinct::add);
+        }
+        if (distinct.isEmpty()) {
+            throw new RuntimeException("No users given");
+        }
+        if (distinct.size() > maxUsers) {
+            throw new RuntimeException("A job can include at most " + maxUsers + " users");
+        }
+        UserJob job = userJobRepository.save(new UserJob(type, distinct.size(), requestedBy, LocalDateTime.now()));
+        userBatchWriter.insertJobItems(job.getId(), distinct);
+        return job;
+    }
+
+    public UserJob getJob(Long jobId) {
+        return userJobRepository.findById(jobId).orElseThrow(() -> new RuntimeException("Job not found: " + jobId));
+    }
+
+    public List<UserJobItem> getFailures(Long jobId) {
+        return userJobItemRepository.findByJobIdAndStatusOrderById(jobId, UserJobItem.Status.FAILED,
+                PageRequest.of(0, MAX_FAILURES_SHOWN));
+    }
+
+    public List<UserJob> getRecentJobs() {
+        return userJobRepository.findTop20ByOrderByIdDesc();
+    }
+
+    /**
+     * Claims the oldest due job and runs it to completion. Returns false
+     * when there was none.
+     */
+    public boolean processNext() {
+        UserJob job = transactionTemplate.execute(status -> claim());
+        if (job == null) {
+            return false;
+        }
+        if (job.getType() == UserJob.Type.DELETE) {
+            runDeletes(job);
+        } else {
+            runStatusChanges(job, job.getType() == UserJob.Type.APPROVE ? UserStatus.APPROVED : UserStatus.REJECTED);
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            UserJob finished = getJob(job.getId());
+            finished.setStatus(UserJob.Status.COMPLETED);
+            finished.setCompletedAt(LocalDateTime.now());
+        });
+        logger.info("User job {} ({}) completed", job.getId(), job.getType());
+        return true;
+    }
+
+    private UserJob claim() {
+        LocalDateTime now = LocalDateTime.now();
+        List<UserJob> due = userJobRepository.claimDue(now);
+        if (due.isEmpty()) {
+            return null;
+        }
+        UserJob job = due.get(0);
+        if (job.getStatus() == UserJob.Status.RUNNING) {
+            logger.warn("Resuming user job {} after its lease ran out", job.getId());
+        }
+        job.setStatus(UserJob.Status.RUNNING);
+        if (job.getStartedAt() == null) {
+            job.setStartedAt(now);
+        }
+        job.setLeaseUntil(now.plus(Duration.ofMillis(leaseMs)));
+        return job;
+    }
+
+    private void runStatusChanges(UserJob job, UserStatus target) {
+        List<UserJobItem> items;
+        while (!(items = pending(job, chunkSize)).isEmpty()) {
+            List<UserJobItem> chunk = items;
+            transactionTemplate.executeWithoutResult(status -> {
+                Set<Long> existing = new LinkedHashSet<>(userBatchWriter.findExistingUserIds(
+                        chunk.stream().map(UserJobItem::getUserId).toList()));
+                List<Long> done = new ArrayList<>();
+                List<Long> missing = new ArrayList<>();
+                for (UserJobItem item : chunk) {
+                    (existing.contains(item.getUserId()) ? done : missing).add(item.getId());
+                }
+                if (!existing.isEmpty()) {
+                    userBatchWriter.updateStatus(existing, target);
+                    userBatchWriter.markItems(done, UserJobItem.Status.DONE, null);
+                }
+                if (!missing.isEmpty()) {
+                    userBatchWriter.markItems(missing, UserJobItem.Status.FAILED, "User not found");
+                }
+                recordProgress(job, chunk.size(), missing.size());
+            });
+        }
+    }
+
+    private void runDeletes(UserJob job) {
+        List<UserJobItem> items;
+        while (!(items = pending(job, 1)).isEmpty()) {
+            UserJobItem item = items.get(0);
+            try {
+                Boolean deleted;
+                do {
+                    deleted = transactionTemplate.execute(status -> deleteStep(job, item));
+                } while (!Boolean.TRUE.equals(deleted));
+            } catch (RuntimeException e) {
+                logger.warn("User job {} could not delete user {}: {}", job.getId(), item.getUserId(),
+                        e.getMessage());
+                transactionTemplate.executeWithoutResult(status -> {
+                    userBatchWriter.markItems(List.of(item.getId()), UserJobItem.Status.FAILED,
+                            truncate(e.getMessage()));
+                    recordProgress(job, 1, 1);
+                });
+            }
+        }
+    }
+
+    /**
+     * One bounded step of deleting a user. Returns true once the user is
+     * gone and the item is DONE, false while orders or products remain.
+     */
+    private boolean deleteStep(UserJob job, UserJobItem item) {
+        Long userId = item.getUserId();
+        // Checked before any order goes, and again on the locked chunk in case one was paid meanwhile
+        if (userBatchWriter.hasUnsettledOrders(userId)) {
+            throw new RuntimeException(UNSETTLED_ORDERS);
+        }
+        List<UserBatchWriter.OrderRef> orders = userBatchWriter.lockRetailerOrders(userId, chunkSize);
+        if (orders.stream().anyMatch(order -> !order.isSettled())) {
+            throw new RuntimeException(UNSETTLED_ORDERS);
+        }
+        if (!orders.isEmpty()) {
+            List<Long> orderIds = orders.stream().map(UserBatchWriter.OrderRef::id).toList();
+            List<Long> uncancelled = orders.stream()
+                    .filter(order -> order.status() != OrderStatus.CANCELLED)
+                    .map(UserBatchWriter.OrderRef::id)
+                    .toList();
+            orderEvents.cancelled(uncancelled);
+            orderEvents.removed(orderIds);
+            userBatchWriter.deleteOrders(orderIds);
+            recordProgress(job, 0, 0);
+            return false;
+        }
+        if (userBatchWriter.hasFulfilments(userId)) {
+            throw new RuntimeException("Farmer has orders from retailers; reject the account instead");
+        }
+        if (userBatchWriter.deleteProducts(userId, chunkSize) > 0) {
+            recordProgress(job, 0, 0);
+            return false;
+        }
+        if (!userBatchWriter.lockUser(userId)) {
+            throw new RuntimeException("User not found");
+        }
+        // Anything added since the last step goes round again
+        if (userBatchWriter.hasOrders(userId) || userBatchWriter.hasProducts(userId)) {
+            return false;
+        }
+        userBatchWriter.deleteUser(userId);
+        userBatchWriter.markItems(List.of(item.getId()), UserJobItem.Status.DONE, null);
+        recordProgress(job, 1, 0);
+        return true;
+    }
+
+    private List<UserJobItem> pending(UserJob job, int limit) {
+        return userJobItemRepository.findByJobIdAndStatusOrderById(job.getId(), UserJobItem.Status.PENDING,
+                PageRequest.of(0, limit));
+    }
+
+    private void recordProgress(UserJob job, int processed, int failed) {
+        userJobRepository.recordProgress(job.getId(), processed, failed,
+                LocalDateTime.now().plus(Duration.ofMillis(leaseMs)));
+    }
+
+    private static String truncate(String message) {
+        if (message == null) {
+            return "Unknown error";
+        }
+        return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+}
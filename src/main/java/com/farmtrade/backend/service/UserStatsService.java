@@ -0,0 +1,197 @@
+package com.farmtrade.backend.service;
+
+import com.farmtrade.backend.event.OrdersPlaced;
+import com.farmtrade.backend.event.OrdersRemoved;
+import com.farmtrade.backend.model.Order;
+import com.farmtrade.backend.model.OrderFarmer;
+import com.farmtrade.backend.model.PaymentStatus;
+import com.farmtrade.backend.model.UserStats;
+import com.farmtrade.backend.repository.UserStatsRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps the per-user dashboard counters in user_stats current. Order
+ * events (see OrderEvents), payment and product writes reach here inside
+ * their own transaction and the affected rows are adjusted in place; a
+ * user's row is created on its first write, in a separate short
+ * transaction, as with the stats rollups.
+ * {@link #verifyAll} checks every user against the source tables in batches
+ * and corrects drift from writes that bypass this service. It locks a
+ * batch's rows before aggregating, so a concurrent write either lands before
+ * the check and is counted, or waits and is applied on top of it.
+ */
+@Service
+public class UserStatsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserStatsService.class);
+
+    @Autowired
+    private UserStatsRepository userStatsRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.stats.users.verify-batch-size:500}")
+    private int verifyBatchSize;
+
+    private TransactionTemplate newTransaction;
+
+    @PostConstruct
+    public void init() {
+        newTransaction = new TransactionTemplate(transactionManager);
+        newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @EventListener
+    @Transactional
+    public void onOrdersPlaced(OrdersPlaced event) {
+        apply(orderDeltas(event.getOrders(), 1));
+    }
+
+    @Transactional
+    public void recordOrdersRemoved(Collection<Order> orders) {
+        apply(orderDeltas(orders, -1));
+    }
+
+    @EventListener
+    @Transactional
+    public void onOrdersRemoved(OrdersRemoved event) {
+        Map<Long, UserStatsRepository.Delta> byUser = new TreeMap<>();
+        userStatsRepository.sumOrders(event.getOrderIds()).forEach((userId, delta) -> byUser.put(userId, delta.negate()));
+        apply(byUser);
+    }
+
+    /**
+     * Moves the farmers' received payments for orders whose payment status
+     * is about to be set to {@code target}. Call before updating the
+     * fulfilments' payment status, under the same order locks.
+     */
+    @Transactional
+    public void recordPaymentStatus(Collection<Long> orderIds, PaymentStatus target) {
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        boolean completing = target == PaymentStatus.COMPLETED;
+        Map<Long, UserStatsRepository.Delta> byUser = new TreeMap<>();
+        userStatsRepository.sumPaymentChanges(orderIds, completing).forEach((farmerId, amount) -> byUser.put(farmerId,
+                UserStatsRepository.Delta.ofReceived(completing ? amount : amount.negate())));
+        apply(byUser);
+    }
+
+    @Transactional
+    public void recordListingsAdded(Long farmerId, int count) {
+        apply(Map.of(farmerId, UserStatsRepository.Delta.ofListings(count)));
+    }
+
+    @Transactional
+    public void recordListingsRemoved(Long farmerId, int count) {
+        apply(Map.of(farmerId, UserStatsRepository.Delta.ofListings(-count)));
+    }
+
+    @Transactional
+    public void deleteStats(Long userId) {
+        userStatsRepository.deleteById(userId);
+    }
+
+    // Zero counters for users nothing has been recorded for yet
+    public UserStats getStats(Long userId) {
+        return userStatsRepository.findById(userId).orElseGet(() -> {
+            UserStats empty = new UserStats();
+            empty.setUserId(userId);
+            return empty;
+        });
+    }
+
+    public boolean isEmpty() {
+        return userStatsRepository.isEmpty();
+    }
+
+    /**
+     * Checks every user's counters against the source tables, one
+     * transaction per batch, and rewrites the ones that drifted. Returns the
+     * number of users corrected.
+     */
+    public int verifyAll() {
+        int checked = 0;
+        int corrected = 0;
+        long after = 0;
+        List<Long> userIds;
+        while (!(userIds = userStatsRepository.findUserIdsAfter(after, verifyBatchSize)).isEmpty()) {
+            List<Long> batch = userIds;
+            Integer fixed = newTransaction.execute(status -> verifyBatch(batch));
+            corrected += fixed != null ? fixed : 0;
+            checked += batch.size();
+            after = batch.get(batch.size() - 1);
+        }
+        if (corrected > 0) {
+            logger.warn("Corrected dashboard counters of {} of {} users", corrected, checked);
+        }
+        return corrected;
+    }
+
+    private int verifyBatch(List<Long> userIds) {
+        Map<Long, UserStatsRepository.Delta> stored = userStatsRepository.lockForVerification(userIds);
+        Map<Long, UserStatsRepository.Delta> actual = userStatsRepository.aggregate(userIds);
+        Map<Long, UserStatsRepository.Delta> corrected = new TreeMap<>();
+        for (Map.Entry<Long, UserStatsRepository.Delta> row : stored.entrySet()) {
+            UserStatsRepository.Delta expected = actual.getOrDefault(row.getKey(), UserStatsRepository.Delta.ZERO);
+            if (!row.getValue().sameAs(expected)) {
+                corrected.put(row.getKey(), expected);
+            }
+        }
+        if (!corrected.isEmpty()) {
+            userStatsRepository.replace(corrected);
+        }
+        userStatsRepository.markVerified(stored.keySet(), LocalDateTime.now());
+        return corrected.size();
+    }
+
+    private static Map<Long, UserStatsRepository.Delta> orderDeltas(Collection<Order> orders, int sign) {
+        Map<Long, UserStatsRepository.Delta> byUser = new TreeMap<>();
+        for (Order order : orders) {
+            byUser.merge(order.getRetailer().getId(),
+                    UserStatsRepository.Delta.ofOrder(sign, order.getTotalAmount()), UserStatsRepository.Delta::plus);
+            for (OrderFarmer fulfilment : order.getFarmers()) {
+                UserStatsRepository.Delta delta = UserStatsRepository.Delta.ofOrder(sign,
+                        fulfilment.getFarmerSubtotal());
+                if (fulfilment.getPaymentStatus() == PaymentStatus.COMPLETED) {
+                    delta = delta.plus(UserStatsRepository.Delta.ofReceived(delta.orderTotal()));
+                }
+                byUser.merge(fulfilment.getFarmer().getId(), delta, UserStatsRepository.Delta::plus);
+            }
+        }
+        return byUser;
+    }
+
+    // Rows are adjusted in user id order, so concurrent writers lock them in the same order
+    private void apply(Map<Long, UserStatsRepository.Delta> byUser) {
+        for (Map.Entry<Long, UserStatsRepository.Delta> user : new TreeMap<>(byUser).entrySet()) {
+            Long userId = user.getKey();
+            if (userStatsRepository.add(userId, user.getValue()) == 0) {
+                try {
+                    newTransaction.executeWithoutResult(status -> userStatsRepository.create(userId));
+                } catch (DataIntegrityViolationException e) {
+                    // Another writer created it first
+                }
+                userStatsRepository.add(userId, user.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+-- Drops the order search indexes that were declared on Order, OrderItem and Product and have
+-- since been removed (PostgreSQL). Hibernate's ddl-auto=update adds indexes but never drops
+-- them, so databases that ran the earlier entities still have these.
+--
+-- Each index slows every order, line or product write. None had a PostgreSQL plan showing the
+-- search needed it. Re-add one only with such a plan.
+--
+-- CONCURRENTLY keeps orders flowing while the indexes go. It cannot run inside a transaction,
+-- so run each statement on its own, e.g. psql -f without --single-transaction. After
+-- db/orders-partitioning.sql the orders and order_items indexes belong to partitioned tables,
+-- which PostgreSQL cannot drop concurrently; drop those two without CONCURRENTLY.
+
+DROP INDEX CONCURRENTLY IF EXISTS idx_orders_status;
+DROP INDEX CONCURRENTLY IF EXISTS idx_orders_payment_status;
+DROP INDEX CONCURRENTLY IF EXISTS idx_orders_order_date;
+DROP INDEX CONCURRENTLY IF EXISTS idx_order_items_product;
+DROP INDEX CONCURRENTLY IF EXISTS idx_products_category;
@@ -0,0 +1,108 @@
+-- One-time conversion of orders and order_items into partitioned tables (PostgreSQL 13+).
+--
+-- Both tables get the same two-level layout, so an order and its lines always land in
+-- matching partitions:
+--
+--   orders / order_items            PARTITION BY LIST (archived)
+--     *_hot      archived = false   PARTITION BY RANGE (order_date), one partition per month
+--     *_archive  archived = true    PARTITION BY RANGE (order_date), one partition per year
+--
+-- Run it once in a maintenance window, after this version of the application has started at
+-- least once so Hibernate has added the archived and order_items.order_date columns. Then set
+-- app.orders.partitioning.enabled=true so OrderPartitionMaintenance creates future partitions
+-- and moves cold orders into the archive partitions.
+--
+-- A partitioned table cannot back a single-column foreign key, so the keys that point at
+-- orders and order_items are dropped here. The entity mappings already declare them as
+-- NO_CONSTRAINT, so Hibernate will not try to put them back.
+
+BEGIN;
+
+LOCK TABLE orders, order_items IN ACCESS EXCLUSIVE MODE;
+
+DO $$
+DECLARE
+    fk record;
+BEGIN
+    FOR fk IN SELECT conrelid::regclass AS tbl, conname FROM pg_constraint
+              WHERE contype = 'f' AND confrelid IN ('orders'::regclass, 'order_items'::regclass)
+    LOOP
+        EXECUTE format('ALTER TABLE %s DROP CONSTRAINT %I', fk.tbl, fk.conname);
+    END LOOP;
+END $$;
+
+UPDATE order_items i SET order_date = o.order_date, archived = o.archived
+FROM orders o WHERE o.id = i.order_id;
+
+ALTER TABLE orders RENAME TO orders_legacy;
+ALTER TABLE order_items RENAME TO order_items_legacy;
+
+-- Identity columns are not allowed on partitioned tables before PostgreSQL 17; plain
+-- sequences keep Hibernate's IDENTITY inserts working unchanged.
+CREATE SEQUENCE orders_part_id_seq;
+SELECT setval('orders_part_id_seq', COALESCE((SELECT MAX(id) FROM orders_legacy), 0) + 1, false);
+CREATE SEQUENCE order_items_part_id_seq;
+SELECT setval('order_items_part_id_seq', COALESCE((SELECT MAX(id) FROM order_items_legacy), 0) + 1, false);
+
+CREATE TABLE orders (LIKE orders_legacy INCLUDING DEFAULTS INCLUDING CONSTRAINTS) PARTITION BY LIST (archived);
+ALTER TABLE orders ALTER COLUMN id SET DEFAULT nextval('orders_part_id_seq');
+ALTER TABLE orders ALTER COLUMN order_date SET NOT NULL;
+ALTER SEQUENCE orders_part_id_seq OWNED BY orders.id;
+ALTER TABLE orders ADD PRIMARY KEY (id, archived, order_date);
+
+CREATE TABLE order_items (LIKE order_items_legacy INCLUDING DEFAULTS INCLUDING CONSTRAINTS) PARTITION BY LIST (archived);
+ALTER TABLE order_items ALTER COLUMN id SET DEFAULT nextval('order_items_part_id_seq');
+ALTER TABLE order_items ALTER COLUMN order_date SET NOT NULL;
+ALTER SEQUENCE order_items_part_id_seq OWNED BY order_items.id;
+ALTER TABLE order_items ADD PRIMARY KEY (id, archived, order_date);
+
+CREATE TABLE orders_hot PARTITION OF orders FOR VALUES IN (false) PARTITION BY RANGE (order_date);
+CREATE TABLE orders_archive PARTITION OF orders FOR VALUES IN (true) PARTITION BY RANGE (order_date);
+CREATE TABLE order_items_hot PARTITION OF order_items FOR VALUES IN (false) PARTITION BY RANGE (order_date);
+CREATE TABLE order_items_archive PARTITION OF order_items FOR VALUES IN (true) PARTITION BY RANGE (order_date);
+
+-- Safety nets; the maintenance job creates partitions ahead of time so these stay empty
+CREATE TABLE orders_hot_default PARTITION OF orders_hot DEFAULT;
+CREATE TABLE orders_archive_default PARTITION OF orders_archive DEFAULT;
+CREATE TABLE order_items_hot_default PARTITION OF order_items_hot DEFAULT;
+CREATE TABLE order_items_archive_default PARTITION OF order_items_archive DEFAULT;
+
+-- Partitions covering existing history; later months and years come from the maintenance job
+DO $$
+DECLARE
+    first_month date := date_trunc('month', COALESCE((SELECT MIN(order_date) FROM orders_legacy), now()));
+    month date;
+    tbl text;
+BEGIN
+    FOREACH tbl IN ARRAY ARRAY['orders', 'order_items'] LOOP
+        month := first_month;
+        WHILE month <= date_trunc('month', now()) LOOP
+            EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                    tbl || '_hot_p' || to_char(month, 'YYYY_MM'), tbl || '_hot', month, month + interval '1 month');
+            month := month + interval '1 month';
+        END LOOP;
+        FOR year IN extract(year FROM first_month)::int .. extract(year FROM now())::int LOOP
+            EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L) WITH (fillfactor = 100)',
+                    tbl || '_archive_p' || year, tbl || '_archive', make_date(year, 1, 1), make_date(year + 1, 1, 1));
+        END LOOP;
+    END LOOP;
+END $$;
+
+INSERT INTO orders SELECT * FROM orders_legacy;
+INSERT INTO order_items SELECT * FROM order_items_legacy;
+
+ALTER TABLE orders ADD FOREIGN KEY (retailer_id) REFERENCES users (id);
+ALTER TABLE order_items ADD FOREIGN KEY (product_id) REFERENCES products (id);
+
+DROP TABLE order_items_legacy;
+DROP TABLE orders_legacy;
+
+-- Same names and columns as the @Index declarations on Order and OrderItem. Created after
+-- the legacy tables are dropped, since their indexes still hold these names.
+CREATE INDEX idx_orders_retailer ON orders (retailer_id, id DESC);
+CREATE INDEX idx_orders_razorpay_order_id ON orders (razorpay_order_id);
+CREATE INDEX idx_orders_razorpay_payment_id ON orders (razorpay_payment_id);
+CREATE INDEX idx_orders_checkout_expires_at ON orders (checkout_expires_at);
+CREATE INDEX idx_order_items_order ON order_items (order_id);
+
+COMMIT;
@@ -0,0 +1,14 @@
+-- Prefix-search indexes for the admin user directory (PostgreSQL).
+--
+-- UserSearchRepository matches LOWER(email) LIKE 'abc%', LOWER(full_name) LIKE 'abc%' and
+-- mobile_number LIKE '98%'. Under a non-C collation a plain b-tree cannot serve LIKE, so these
+-- use text_pattern_ops. JPA cannot declare expression or operator-class indexes, so they are
+-- kept here. The status, role and created_at indexes are declared on User and created by
+-- Hibernate.
+--
+-- CONCURRENTLY keeps signups and logins running while the indexes build. It cannot run inside
+-- a transaction, so run each statement on its own, e.g. psql -f without --single-transaction.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_email_lower ON users (LOWER(email) text_pattern_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_full_name_lower ON users (LOWER(full_name) text_pattern_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_mobile_number ON users (mobile_number text_pattern_ops);
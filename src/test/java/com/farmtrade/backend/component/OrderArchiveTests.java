@@ -0,0 +1,113 @@
+package com.farmtrade.backend.component;
+
+import com.farmtrade.backend.model.*;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The archive pass of OrderPartitionMaintenance, run against H2's plain
+ * orders and order_items tables. Without partitions nothing moves, but the
+ * flags it flips are what PostgreSQL routes rows by.
+ */
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+class OrderArchiveTests {
+
+    // 180 days before this is 2026-05-19 12:00
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 11, 15, 12, 0);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private final OrderPartitionMaintenance maintenance = new OrderPartitionMaintenance();
+
+    private User retailer;
+
+    private Product product;
+
+    @BeforeEach
+    void configure() {
+        ReflectionTestUtils.setField(maintenance, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(maintenance, "transactionTemplate", new TransactionTemplate(transactionManager));
+        ReflectionTestUtils.setField(maintenance, "archiveHorizonDays", 180);
+        // Smaller than the number of cold orders, so the pass takes more than one batch
+        ReflectionTestUtils.setField(maintenance, "archiveBatchSize", 2);
+
+        User farmer = user("farmer@test.com", Role.FARMER);
+        retailer = user("retailer@test.com", Role.RETAILER);
+        product = new Product();
+        product.setName("Rice");
+        product.setPrice(BigDecimal.TEN);
+        product.setQuantity(100);
+        product.setFarmer(farmer);
+        entityManager.persist(product);
+    }
+
+    @Test
+    void onlyFinishedOrdersPastTheHorizonAreArchivedWithTheirLines() {
+        Long delivered = persistOrder(OrderStatus.DELIVERED, LocalDateTime.of(2026, 1, 10, 9, 0), 2);
+        Long cancelled = persistOrder(OrderStatus.CANCELLED, LocalDateTime.of(2026, 3, 1, 9, 0), 1);
+        Long lastCold = persistOrder(OrderStatus.DELIVERED, LocalDateTime.of(2026, 5, 19, 11, 59), 1);
+        persistOrder(OrderStatus.PENDING, LocalDateTime.of(2026, 1, 5, 9, 0), 1);
+        persistOrder(OrderStatus.SHIPPED, LocalDateTime.of(2026, 2, 5, 9, 0), 1);
+        persistOrder(OrderStatus.DELIVERED, LocalDateTime.of(2026, 5, 19, 12, 0), 1);
+        persistOrder(OrderStatus.DELIVERED, LocalDateTime.of(2026, 10, 1, 9, 0), 1);
+        entityManager.flush();
+
+        assertThat(maintenance.archiveColdOrders(NOW)).isEqualTo(3);
+
+        assertThat(jdbcTemplate.queryForList("SELECT id FROM orders WHERE archived", Long.class))
+                .containsExactlyInAnyOrder(delivered, cancelled, lastCold);
+        assertThat(jdbcTemplate.queryForList("SELECT order_id FROM order_items WHERE archived", Long.class))
+                .containsExactlyInAnyOrder(delivered, delivered, cancelled, lastCold);
+        // A second pass finds nothing left to move
+        assertThat(maintenance.archiveColdOrders(NOW)).isZero();
+    }
+
+    private Long persistOrder(OrderStatus status, LocalDateTime orderDate, int lines) {
+        Order order = new Order();
+        order.setRetailer(retailer);
+        order.setOrderDate(orderDate);
+        order.setStatus(status);
+        order.setTotalAmount(Money.of(BigDecimal.TEN));
+        entityManager.persist(order);
+        for (int i = 0; i < lines; i++) {
+            OrderItem item = new OrderItem();
+            item.setOrder(order);
+            item.setProduct(product);
+            item.setQuantity(1);
+            item.setPricePerUnit(Money.of(product.getPrice()));
+            item.setOrderDate(orderDate);
+            entityManager.persist(item);
+        }
+        return order.getId();
+    }
+
+    private User user(String email, Role role) {
+        User user = new User();
+        user.setEmail(email);
+        user.setPassword("secret");
+        user.setFullName(email);
+        user.setRole(role);
+        user.setStatus(UserStatus.APPROVED);
+        entityManager.persist(user);
+        return user;
+    }
+}
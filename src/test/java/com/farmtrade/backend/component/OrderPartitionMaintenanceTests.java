@@ -0,0 +1,77 @@
+package com.farmtrade.backend.component;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrderPartitionMaintenanceTests {
+
+    private final OrderPartitionMaintenance maintenance = new OrderPartitionMaintenance();
+
+    // DDL is recorded rather than run, since H2 has no declarative partitioning
+    private final List<String> statements = new ArrayList<>();
+
+    @BeforeEach
+    void configure() {
+        ReflectionTestUtils.setField(maintenance, "jdbcTemplate", new JdbcTemplate() {
+            @Override
+            public void execute(String sql) {
+                statements.add(sql);
+            }
+        });
+        ReflectionTestUtils.setField(maintenance, "monthsAhead", 2);
+        ReflectionTestUtils.setField(maintenance, "archiveHorizonDays", 400);
+    }
+
+    @Test
+    void hotMonthsAheadAndArchiveYearsBackToTheHorizonAreCreated() {
+        // 400 days before 15 Nov 2026 is 11 Oct 2025
+        maintenance.createUpcomingPartitions(LocalDateTime.of(2026, 11, 15, 2, 30));
+
+        assertThat(statements).containsExactly(
+                "CREATE TABLE IF NOT EXISTS orders_hot_p2026_11 PARTITION OF orders_hot "
+                        + "FOR VALUES FROM ('2026-11-01') TO ('2026-12-01')",
+                "CREATE TABLE IF NOT EXISTS orders_hot_p2026_12 PARTITION OF orders_hot "
+                        + "FOR VALUES FROM ('2026-12-01') TO ('2027-01-01')",
+                "CREATE TABLE IF NOT EXISTS orders_hot_p2027_01 PARTITION OF orders_hot "
+                        + "FOR VALUES FROM ('2027-01-01') TO ('2027-02-01')",
+                "CREATE TABLE IF NOT EXISTS orders_archive_p2025 PARTITION OF orders_archive "
+                        + "FOR VALUES FROM ('2025-01-01') TO ('2026-01-01') WITH (fillfactor = 100)",
+                "CREATE TABLE IF NOT EXISTS orders_archive_p2026 PARTITION OF orders_archive "
+                        + "FOR VALUES FROM ('2026-01-01') TO ('2027-01-01') WITH (fillfactor = 100)",
+                "CREATE TABLE IF NOT EXISTS order_items_hot_p2026_11 PARTITION OF order_items_hot "
+                        + "FOR VALUES FROM ('2026-11-01') TO ('2026-12-01')",
+                "CREATE TABLE IF NOT EXISTS order_items_hot_p2026_12 PARTITION OF order_items_hot "
+                        + "FOR VALUES FROM ('2026-12-01') TO ('2027-01-01')",
+                "CREATE TABLE IF NOT EXISTS order_items_hot_p2027_01 PARTITION OF order_items_hot "
+                        + "FOR VALUES FROM ('2027-01-01') TO ('2027-02-01')",
+                "CREATE TABLE IF NOT EXISTS order_items_archive_p2025 PARTITION OF order_items_archive "
+                        + "FOR VALUES FROM ('2025-01-01') TO ('2026-01-01') WITH (fillfactor = 100)",
+                "CREATE TABLE IF NOT EXISTS order_items_archive_p2026 PARTITION OF order_items_archive "
+                        + "FOR VALUES FROM ('2026-01-01') TO ('2027-01-01') WITH (fillfactor = 100)");
+    }
+
+    @Test
+    void monthlyBoundsAreContiguousAcrossTheYearEnd() {
+        ReflectionTestUtils.setField(maintenance, "monthsAhead", 13);
+
+        maintenance.createUpcomingPartitions(LocalDateTime.of(2026, 11, 15, 2, 30));
+
+        List<String> hotOrders = statements.stream().filter(sql -> sql.contains(" orders_hot ")).toList();
+        assertThat(hotOrders).hasSize(14);
+        assertThat(hotOrders.get(0)).contains("FROM ('2026-11-01')");
+        assertThat(hotOrders.get(13)).endsWith("TO ('2028-01-01')");
+        for (int i = 1; i < hotOrders.size(); i++) {
+            // Each month starts where the one before ends
+            String previousEnd = hotOrders.get(i - 1).replaceAll(".* TO \\('([^']+)'\\)$", "$1");
+            assertThat(hotOrders.get(i)).contains("FROM ('" + previousEnd + "')");
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.farmtrade.backend.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MoneyTests {
+
+    @Test
+    void convertsRupeesToPaiseAndBack() {
+        Money price = Money.of(new BigDecimal("180.50"));
+
+        assertThat(price.toPaise()).isEqualTo(18050);
+        assertThat(price.times(3).toBigDecimal()).isEqualByComparingTo("541.50");
+        assertThat(Money.of(new BigDecimal("0.005")).toPaise()).isEqualTo(1);
+    }
+
+    @Test
+    void wholesaleTotalsAboveIntRangeStayExact() {
+        // About ₹50 crore; the old intValue() paise conversion wrapped anything above ~₹2.1 crore
+        Money total = Money.of(new BigDecimal("1200")).times(416_667);
+
+        assertThat(total.toPaise()).isEqualTo(50_000_040_000L);
+        assertThat(total.toPaise()).isGreaterThan(Integer.MAX_VALUE);
+    }
+
+    @Test
+    void overflowThrowsInsteadOfWrapping() {
+        Money huge = Money.ofPaise(Long.MAX_VALUE / 2 + 1);
+
+        assertThatThrownBy(() -> huge.times(2)).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> huge.plus(huge)).isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void converterRoundTripsThroughNumericColumn() {
+        MoneyConverter converter = new MoneyConverter();
+        Money amount = Money.ofPaise(123_456);
+
+        assertThat(converter.convertToDatabaseColumn(amount)).isEqualByComparingTo("1234.56");
+        assertThat(converter.convertToEntityAttribute(new BigDecimal("1234.56"))).isEqualTo(amount);
+        assertThat(converter.convertToEntityAttribute(null)).isNull();
+    }
+}
@@ -0,0 +1,89 @@
+package com.farmtrade.backend.repository;
+
+import com.farmtrade.backend.model.*;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The date-bounded id page behind /api/orders/all?from=&to=. OrderService
+ * turns the dates into [from 00:00, day after to 00:00), so the bounds
+ * here are built the same way.
+ */
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+class OrderRepositoryTests {
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private final List<Long> april = new ArrayList<>();
+
+    @BeforeEach
+    void seed() {
+        User retailer = new User();
+        retailer.setEmail("retailer@test.com");
+        retailer.setPassword("secret");
+        retailer.setFullName("Retailer");
+        retailer.setRole(Role.RETAILER);
+        retailer.setStatus(UserStatus.APPROVED);
+        entityManager.persist(retailer);
+
+        persistOrder(retailer, LocalDateTime.of(2026, 3, 31, 23, 59, 59));
+        april.add(persistOrder(retailer, LocalDateTime.of(2026, 4, 1, 0, 0)));
+        for (int day = 2; day <= 29; day++) {
+            april.add(persistOrder(retailer, LocalDateTime.of(2026, 4, day, 12, 0)));
+        }
+        april.add(persistOrder(retailer, LocalDateTime.of(2026, 4, 30, 23, 59, 59)));
+        persistOrder(retailer, LocalDateTime.of(2026, 5, 1, 0, 0));
+        entityManager.flush();
+    }
+
+    @Test
+    void rangeIncludesBothDatesAndPagesNewestFirst() {
+        LocalDateTime from = LocalDate.of(2026, 4, 1).atStartOfDay();
+        LocalDateTime to = LocalDate.of(2026, 4, 30).plusDays(1).atStartOfDay();
+
+        List<Long> found = new ArrayList<>();
+        Long cursor = Long.MAX_VALUE;
+        List<Long> page;
+        do {
+            page = orderRepository.findIdPageBetween(from, to, cursor, PageRequest.of(0, 7));
+            found.addAll(page);
+            cursor = page.isEmpty() ? null : page.get(page.size() - 1);
+        } while (page.size() == 7);
+
+        assertThat(found).containsExactlyElementsOf(april.reversed());
+    }
+
+    @Test
+    void singleDayRangeHoldsOnlyThatDay() {
+        LocalDate day = LocalDate.of(2026, 4, 30);
+
+        assertThat(orderRepository.findIdPageBetween(day.atStartOfDay(), day.plusDays(1).atStartOfDay(),
+                Long.MAX_VALUE, PageRequest.of(0, 10))).containsExactly(april.get(april.size() - 1));
+    }
+
+    private Long persistOrder(User retailer, LocalDateTime orderDate) {
+        Order order = new Order();
+        order.setRetailer(retailer);
+        order.setOrderDate(orderDate);
+        order.setStatus(OrderStatus.DELIVERED);
+        order.setTotalAmount(Money.of(BigDecimal.TEN));
+        entityManager.persist(order);
+        return order.getId();
+    }
+}
@@ -0,0 +1,155 @@
+package com.farmtrade.backend.repository;
+
+import com.farmtrade.backend.dto.OrderSearchCriteria;
+import com.farmtrade.backend.model.*;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the search filters against a seeded dataset and captures the H2 plan
+ * of the filters that reuse another feature's index, so a dropped or renamed
+ * index shows up here.
+ */
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+@Import(OrderSearchRepository.class)
+class OrderSearchRepositoryTests {
+
+    private static final String[] CATEGORIES = { "Grains", "Vegetables", "Fruits", "Dairy", "Spices" };
+    private static final LocalDateTime START = LocalDateTime.of(2026, 1, 1, 9, 0);
+
+    @Autowired
+    private OrderSearchRepository orderSearchRepository;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private final List<Order> seeded = new ArrayList<>();
+    private final List<User> retailers = new ArrayList<>();
+    private final List<User> farmers = new ArrayList<>();
+
+    @BeforeEach
+    void seed() {
+        for (int i = 0; i < 10; i++) {
+            retailers.add(persistUser("retailer" + i + "@test.com", Role.RETAILER));
+            farmers.add(persistUser("farmer" + i + "@test.com", Role.FARMER));
+        }
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Product product = new Product();
+            product.setName("Product " + i);
+            product.setCategory(CATEGORIES[i % CATEGORIES.length]);
+            product.setPrice(BigDecimal.valueOf(10 + i));
+            product.setQuantity(1000);
+            product.setFarmer(farmers.get(i % farmers.size()));
+            entityManager.persist(product);
+            products.add(product);
+        }
+
+        OrderStatus[] statuses = OrderStatus.values();
+        PaymentStatus[] paymentStatuses = PaymentStatus.values();
+        for (int i = 0; i < 2000; i++) {
+            Order order = new Order();
+            order.setRetailer(retailers.get(i % retailers.size()));
+            order.setOrderDate(START.plusHours(3L * i));
+            order.setStatus(statuses[(i / 7) % statuses.length]);
+            order.setPaymentStatus(paymentStatuses[(i / 3) % paymentStatuses.length]);
+            order.setRazorpayOrderId("order_" + i);
+            order.setRazorpayPaymentId("pay_" + i);
+            Product product = products.get((i * 7) % products.size());
+            OrderItem item = new OrderItem();
+            item.setOrder(order);
+            item.setProduct(product);
+            item.setQuantity(1 + i % 5);
+            item.setPricePerUnit(Money.of(product.getPrice()));
+            item.setOrderDate(order.getOrderDate());
+            order.getItems().add(item);
+            order.setTotalAmount(item.getPricePerUnit().times(item.getQuantity()));
+            OrderFarmer fulfilment = new OrderFarmer(order, product.getFarmer());
+            fulfilment.setFarmerSubtotal(order.getTotalAmount());
+            order.getFarmers().add(fulfilment);
+            item.setOrderFarmer(fulfilment);
+            entityManager.persist(order);
+            seeded.add(order);
+        }
+        entityManager.flush();
+    }
+
+    @Test
+    void filtersReuseExistingIndexes() {
+        assertThat(plan(c -> c.setRetailerId(retailers.get(3).getId()))).contains("IDX_ORDERS_RETAILER: ID < ?1");
+        assertThat(plan(c -> c.setFarmerId(farmers.get(3).getId()))).contains("UK_ORDER_FARMERS_FARMER_ORDER");
+        assertThat(plan(c -> c.setRazorpayId("order_42"))).contains("IDX_ORDERS_RAZORPAY_ORDER_ID");
+        assertThat(plan(c -> c.setRazorpayId("pay_42"))).contains("IDX_ORDERS_RAZORPAY_PAYMENT_ID");
+        // No index of their own: checked while walking ids newest first
+        assertThat(plan(c -> c.setStatus("SHIPPED"))).contains("PRIMARY_KEY").doesNotContain("IDX_");
+        assertThat(plan(c -> c.setMinAmount(BigDecimal.valueOf(200)))).contains("PRIMARY_KEY").doesNotContain("IDX_");
+    }
+
+    @Test
+    void combinedFiltersMatchAFullScanAcrossKeysetPages() {
+        OrderSearchCriteria criteria = new OrderSearchCriteria();
+        criteria.setStatus("shipped");
+        criteria.setCategory("Dairy");
+        criteria.setFrom(LocalDate.of(2026, 2, 1));
+        criteria.setMinAmount(BigDecimal.valueOf(100));
+
+        List<Long> expected = seeded.stream()
+                .filter(o -> o.getStatus() == OrderStatus.SHIPPED)
+                .filter(o -> o.getItems().get(0).getProduct().getCategory().equals("Dairy"))
+                .filter(o -> !o.getOrderDate().isBefore(LocalDateTime.of(2026, 2, 1, 0, 0)))
+                .filter(o -> o.getTotalAmount().toBigDecimal().compareTo(BigDecimal.valueOf(100)) >= 0)
+                .map(Order::getId)
+                .sorted(Comparator.reverseOrder())
+                .toList();
+
+        List<Long> found = new ArrayList<>();
+        Long cursor = Long.MAX_VALUE;
+        List<Long> page;
+        do {
+            page = orderSearchRepository.findIdPage(criteria, cursor, 10);
+            found.addAll(page);
+            cursor = page.isEmpty() ? null : page.get(page.size() - 1);
+        } while (page.size() == 10);
+
+        assertThat(expected).hasSizeGreaterThan(10);
+        assertThat(found).containsExactlyElementsOf(expected);
+    }
+
+    // EXPLAIN of exactly the statement findIdPage runs
+    private String plan(Consumer<OrderSearchCriteria> filter) {
+        OrderSearchCriteria criteria = new OrderSearchCriteria();
+        filter.accept(criteria);
+        OrderSearchRepository.SearchQuery query = OrderSearchRepository.buildQuery(criteria, Long.MAX_VALUE, 21);
+        return String.join("\n",
+                namedJdbcTemplate.queryForList("EXPLAIN " + query.sql(), query.params(), String.class));
+    }
+
+    private User persistUser(String email, Role role) {
+        User user = new User();
+        user.setEmail(email);
+        user.setPassword("secret");
+        user.setFullName(email);
+        user.setRole(role);
+        user.setStatus(UserStatus.APPROVED);
+        entityManager.persist(user);
+        return user;
+    }
+}
@@ -0,0 +1,147 @@
+package com.farmtrade.backend.repository;
+
+import com.farmtrade.backend.dto.AdminUserView;
+import com.farmtrade.backend.dto.UserSearchCriteria;
+import com.farmtrade.backend.model.Role;
+import com.farmtrade.backend.model.User;
+import com.farmtrade.backend.model.UserStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Checks the directory filters against a seeded set of users and captures the
+ * H2 plan of the indexed single-filter queries. The prefix-search indexes
+ * only exist on PostgreSQL (db/users-search-indexes.sql). H2 cannot cost the
+ * signup date range without its bound values and walks ids instead, so that
+ * plan is not checked here; PostgreSQL plans with the values.
+ */
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+@Import(UserSearchRepository.class)
+class UserSearchRepositoryTests {
+
+    private static final String[] NAMES = { "Ravi Kumar", "Priya Singh", "Anil_Patel", "Ravindra Rao" };
+    private static final LocalDateTime START = LocalDateTime.of(2026, 1, 1, 9, 0);
+
+    @Autowired
+    private UserSearchRepository userSearchRepository;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<User> seeded = new ArrayList<>();
+
+    // Inserted with JDBC so created_at can be set
+    @BeforeEach
+    void seed() {
+        Role[] roles = Role.values();
+        UserStatus[] statuses = UserStatus.values();
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            User user = new User();
+            user.setEmail("User" + i + "@test.com");
+            user.setFullName(NAMES[i % NAMES.length] + " " + i);
+            user.setMobileNumber("98" + String.format("%08d", i));
+            user.setRole(roles[i % roles.length]);
+            user.setStatus(statuses[(i / 4) % statuses.length]);
+            user.setCreatedAt(START.plusHours(i));
+            seeded.add(user);
+            rows.add(new Object[] { user.getEmail(), "secret", user.getFullName(), user.getMobileNumber(),
+                    user.getRole().name(), user.getStatus().name(), user.getCreatedAt() });
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO users (email, password, full_name, mobile_number, role, status, "
+                + "created_at) VALUES (?, ?, ?, ?, ?, ?, ?)", rows);
+        Map<String, Long> ids = new HashMap<>();
+        jdbcTemplate.query("SELECT id, email FROM users", rs -> {
+            ids.put(rs.getString(2), rs.getLong(1));
+        });
+        seeded.forEach(user -> user.setId(ids.get(user.getEmail())));
+    }
+
+    @Test
+    void indexedFiltersUseTheirIndexes() {
+        assertThat(plan(c -> c.setStatus("PENDING"))).contains("IDX_USERS_STATUS");
+        assertThat(plan(c -> c.setRole("FARMER"))).contains("IDX_USERS_ROLE");
+    }
+
+    @Test
+    void combinedFiltersMatchAFullScanAcrossKeysetPages() {
+        UserSearchCriteria criteria = new UserSearchCriteria();
+        criteria.setRole("farmer");
+        criteria.setStatus("pending");
+        criteria.setFrom(LocalDate.of(2026, 1, 5));
+        criteria.setQ("RAVI");
+
+        List<Long> expected = seeded.stream()
+                .filter(u -> u.getRole() == Role.FARMER && u.getStatus() == UserStatus.PENDING)
+                .filter(u -> !u.getCreatedAt().isBefore(LocalDateTime.of(2026, 1, 5, 0, 0)))
+                .filter(u -> u.getFullName().toLowerCase().startsWith("ravi"))
+                .map(User::getId)
+                .sorted(Comparator.reverseOrder())
+                .toList();
+
+        List<Long> found = new ArrayList<>();
+        Long cursor = Long.MAX_VALUE;
+        List<AdminUserView> page;
+        do {
+            page = userSearchRepository.findPage(criteria, cursor, 3);
+            page.forEach(row -> found.add(row.getId()));
+            cursor = page.isEmpty() ? null : page.get(page.size() - 1).getId();
+        } while (page.size() == 3);
+
+        assertThat(expected).hasSizeGreaterThan(3);
+        assertThat(found).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void prefixSearchMatchesEmailNameOrMobileLiterally() {
+        assertThat(search("user199")).extracting(AdminUserView::getEmail)
+                .containsExactly("User1999@test.com", "User1998@test.com", "User1997@test.com", "User1996@test.com",
+                        "User1995@test.com", "User1994@test.com", "User1993@test.com", "User1992@test.com",
+                        "User1991@test.com", "User1990@test.com", "User199@test.com");
+        assertThat(search("9800000042")).extracting(AdminUserView::getId).containsExactly(seeded.get(42).getId());
+        // _ and % are matched as themselves, not as wildcards
+        assertThat(search("anil_")).isNotEmpty()
+                .allSatisfy(row -> assertThat(row.getFullName()).startsWith("Anil_Patel"));
+        assertThat(search("anil%")).isEmpty();
+        assertThatThrownBy(() -> search(c -> c.setStatus("ACTIVE"))).hasMessageContaining("Invalid user status");
+    }
+
+    private List<AdminUserView> search(String q) {
+        return search(c -> c.setQ(q));
+    }
+
+    private List<AdminUserView> search(Consumer<UserSearchCriteria> filter) {
+        UserSearchCriteria criteria = new UserSearchCriteria();
+        filter.accept(criteria);
+        return userSearchRepository.findPage(criteria, Long.MAX_VALUE, 100);
+    }
+
+    // EXPLAIN of exactly the statement findPage runs
+    private String plan(Consumer<UserSearchCriteria> filter) {
+        UserSearchCriteria criteria = new UserSearchCriteria();
+        filter.accept(criteria);
+        UserSearchRepository.SearchQuery query = UserSearchRepository.buildQuery(criteria, Long.MAX_VALUE, 21);
+        return String.join("\n",
+                namedJdbcTemplate.queryForList("EXPLAIN " + query.sql(), query.params(), String.class));
+    }
+}
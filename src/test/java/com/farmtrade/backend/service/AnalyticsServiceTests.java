@@ -0,0 +1,187 @@
+package com.farmtrade.backend.service;
+
+import com.farmtrade.backend.dto.AnalyticsQuery;
+import com.farmtrade.backend.dto.AnalyticsResult;
+import com.farmtrade.backend.dto.AnalyticsRow;
+import com.farmtrade.backend.dto.OrderItemRequest;
+import com.farmtrade.backend.dto.OrderRequest;
+import com.farmtrade.backend.model.*;
+import com.farmtrade.backend.repository.AnalyticsRepository;
+import com.farmtrade.backend.repository.LeaderboardRepository;
+import com.farmtrade.backend.repository.OrderBatchWriter;
+import com.farmtrade.backend.repository.OrderSearchRepository;
+import com.farmtrade.backend.repository.ProductRepository;
+import com.farmtrade.backend.repository.RollupRepository;
+import com.farmtrade.backend.repository.SalesLineRepository;
+import com.farmtrade.backend.repository.UserRepository;
+import com.farmtrade.backend.repository.UserStatsRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs without a test transaction, since sales reach the cube only once the
+ * order's transaction commits, on the next refresh.
+ */
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ AnalyticsService.class, AnalyticsRepository.class, OrderService.class, OrderBatchWriter.class,
+        OrderSearchRepository.class, StatsRollupService.class, RollupRepository.class, UserStatsService.class,
+        UserStatsRepository.class, LeaderboardService.class, LeaderboardRepository.class, SalesLineRepository.class,
+        OrderEvents.class })
+class AnalyticsServiceTests {
+
+    @Autowired
+    private AnalyticsService analyticsService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Product rice;
+    private Product wheat;
+    private Product mango;
+
+    @BeforeEach
+    void seed() {
+        User grower = userRepository.save(user("grower@test.com", Role.FARMER, "Punjab"));
+        User orchard = userRepository.save(user("orchard@test.com", Role.FARMER, "Haryana"));
+        userRepository.save(user("retailer@test.com", Role.RETAILER, "Maharashtra"));
+        rice = productRepository.save(product("Rice", "Grain", 10, grower));
+        wheat = productRepository.save(product("Wheat", "Grain", 10, grower));
+        mango = productRepository.save(product("Mango", "Fruit", 50, orchard));
+        analyticsService.rebuild();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        for (String table : List.of("user_stats", "rollup_hourly", "rollup_daily", "order_items", "order_farmers",
+                "orders", "products", "users")) {
+            jdbcTemplate.update("DELETE FROM " + table);
+        }
+    }
+
+    @Test
+    void ordersAndCancellationsAreSlicedByAnyDimensionAndARebuildAgrees() {
+        orderService.placeOrder(request(rice, 5, wheat, 3), "retailer@test.com");
+        orderService.placeOrder(request(mango, 1, rice, 2), "retailer@test.com");
+        Long cancelled = orderService.placeOrder(request(mango, 4), "retailer@test.com").getId();
+        orderService.cancelOrder(cancelled, "retailer@test.com");
+        analyticsService.refresh();
+
+        AnalyticsResult byCategoryAndRegion = analyticsService.query(query(List.of("category", "region")));
+        assertThat(byCategoryAndRegion.getGroups()).isEqualTo(2);
+        assertThat(byCategoryAndRegion.getRows()).extracting(AnalyticsRow::getGroup).containsExactly(
+                Map.of("category", "Grain", "region", "Punjab"), Map.of("category", "Fruit", "region", "Haryana"));
+        AnalyticsRow grain = byCategoryAndRegion.getRows().get(0);
+        assertThat(grain.getQuantity()).isEqualTo(10);
+        assertThat(grain.getRevenue()).isEqualTo(Money.of(BigDecimal.valueOf(100)));
+        assertThat(grain.getOrders()).isNull();
+
+        // Orders are only counted where no order can fall into a group twice
+        AnalyticsResult byCategoryAndFarmer = analyticsService.query(query(List.of("category", "farmer")));
+        assertThat(byCategoryAndFarmer.getRows()).extracting(AnalyticsRow::getOrders).containsExactly(2L, 1L);
+
+        AnalyticsQuery haryana = query(List.of());
+        haryana.setRegions(List.of("Haryana"));
+        assertThat(analyticsService.query(haryana).getRows()).singleElement()
+                .satisfies(row -> assertThat(row.getQuantity()).isEqualTo(1));
+
+        AnalyticsResult byWeek = analyticsService.query(query(List.of("week")));
+        String monday = LocalDate.now().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).toString();
+        assertThat(byWeek.getRows()).singleElement().satisfies(row -> {
+            assertThat(row.getGroup()).isEqualTo(Map.of("week", monday));
+            assertThat(row.getRevenue()).isEqualTo(Money.of(BigDecimal.valueOf(150)));
+            assertThat(row.getOrders()).isNull();
+        });
+
+        analyticsService.rebuild();
+        assertThat(analyticsService.query(query(List.of("category", "region")))).isEqualTo(byCategoryAndRegion);
+        assertThat(analyticsService.query(query(List.of("week")))).isEqualTo(byWeek);
+        assertThat(analyticsService.query(query(List.of("category", "farmer")))).isEqualTo(byCategoryAndFarmer);
+    }
+
+    @Test
+    void dateRangeFiltersTheCubeAndBadDimensionsAreRejected() {
+        orderService.placeOrder(request(rice, 5), "retailer@test.com");
+        Long older = orderService.placeOrder(request(mango, 2), "retailer@test.com").getId();
+        jdbcTemplate.update("UPDATE orders SET order_date = ? WHERE id = ?", LocalDateTime.now().minusDays(40), older);
+        analyticsService.rebuild();
+
+        AnalyticsQuery recent = query(List.of("month", "category"));
+        recent.setFrom(LocalDate.now().minusDays(30));
+        assertThat(analyticsService.query(recent).getRows()).extracting(AnalyticsRow::getGroup).containsExactly(
+                Map.of("month", LocalDate.now().toString().substring(0, 7), "category", "Grain"));
+
+        assertThatThrownBy(() -> analyticsService.query(query(List.of("season"))))
+                .hasMessage("Invalid dimension: season");
+        assertThatThrownBy(() -> analyticsService.query(query(List.of("day", "week"))))
+                .hasMessage("Group by at most one of day, week and month");
+    }
+
+    private static AnalyticsQuery query(List<String> groupBy) {
+        AnalyticsQuery query = new AnalyticsQuery();
+        query.setGroupBy(groupBy);
+        return query;
+    }
+
+    // Alternating product and quantity
+    private static OrderRequest request(Object... productsAndQuantities) {
+        List<OrderItemRequest> items = new ArrayList<>();
+        for (int i = 0; i < productsAndQuantities.length; i += 2) {
+            OrderItemRequest item = new OrderItemRequest();
+            item.setProductId(((Product) productsAndQuantities[i]).getId());
+            item.setQuantity((Integer) productsAndQuantities[i + 1]);
+            items.add(item);
+        }
+        OrderRequest request = new OrderRequest();
+        request.setItems(items);
+        return request;
+    }
+
+    private static Product product(String name, String category, int price, User farmer) {
+        Product product = new Product();
+        product.setName(name);
+        product.setCategory(category);
+        product.setPrice(BigDecimal.valueOf(price));
+        product.setQuantity(100);
+        product.setFarmer(farmer);
+        return product;
+    }
+
+    private static User user(String email, Role role, String region) {
+        User user = new User();
+        user.setEmail(email);
+        user.setPassword("secret");
+        user.setRole(role);
+        user.setRegion(region);
+        user.setStatus(UserStatus.APPROVED);
+        return user;
+    }
+}
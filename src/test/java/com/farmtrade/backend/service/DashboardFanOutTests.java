@@ -0,0 +1,81 @@
+package com.farmtrade.backend.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DashboardFanOutTests {
+
+    private final DashboardFanOut fanOut = new DashboardFanOut();
+
+    @BeforeEach
+    void configure() {
+        ReflectionTestUtils.setField(fanOut, "maxConcurrent", 2);
+        ReflectionTestUtils.setField(fanOut, "timeoutMs", 300L);
+        fanOut.init();
+    }
+
+    @Test
+    void readsRunTogetherAndSlowOrFailingOnesAreDegradedAndCancelled() throws InterruptedException {
+        CountDownLatch cancelled = new CountDownLatch(1);
+        long started = System.nanoTime();
+        try (DashboardFanOut.Scope scope = fanOut.open()) {
+            DashboardFanOut.Part<Integer> fast = scope.fork("fast", () -> sleepThen(100, 1), 0);
+            DashboardFanOut.Part<Integer> alsoFast = scope.fork("alsoFast", () -> sleepThen(100, 2), 0);
+            DashboardFanOut.Part<Integer> slow = scope.fork("slow", () -> {
+                try {
+                    return sleepThen(5_000, 3);
+                } catch (InterruptedException e) {
+                    cancelled.countDown();
+                    throw e;
+                }
+            }, -1);
+            DashboardFanOut.Part<List<String>> broken = scope.fork("broken", () -> {
+                throw new IllegalStateException("boom");
+            }, List.of());
+            scope.join();
+
+            assertThat(fast.get()).isEqualTo(1);
+            assertThat(alsoFast.get()).isEqualTo(2);
+            assertThat(slow.get()).isEqualTo(-1);
+            assertThat(broken.get()).isEmpty();
+            assertThat(scope.degraded()).containsExactly("slow", "broken");
+        }
+        // The reads overlapped and the slow one was cut off at the deadline
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)).isLessThan(1_000);
+        assertThat(cancelled.await(1, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void readsInFlightNeverExceedTheCap() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        try (DashboardFanOut.Scope scope = fanOut.open()) {
+            for (int i = 0; i < 4; i++) {
+                scope.fork("read" + i, () -> {
+                    peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    try {
+                        return sleepThen(50, 0);
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                }, null);
+            }
+            scope.join();
+            assertThat(scope.degraded()).isEmpty();
+        }
+        assertThat(peak.get()).isEqualTo(2);
+    }
+
+    private static int sleepThen(long millis, int value) throws InterruptedException {
+        Thread.sleep(millis);
+        return value;
+    }
+}
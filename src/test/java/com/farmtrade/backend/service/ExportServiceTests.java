@@ -0,0 +1,42 @@
+package com.farmtrade.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ExportServiceTests {
+
+    private final ExportService exportService = new ExportService();
+
+    @Test
+    void ordersCsvAppliesDateRangeAndStatus() {
+        String sql = exportService.prepareExport("orders", "csv", LocalDate.of(2026, 9, 1),
+                LocalDate.of(2026, 9, 30), "delivered");
+
+        assertThat(sql).startsWith("COPY (SELECT o.id")
+                .contains("o.order_date >= DATE '2026-09-01'")
+                .contains("o.order_date < DATE '2026-10-01'")
+                .contains("o.status = 'DELIVERED'")
+                .endsWith("WITH (FORMAT csv, HEADER)");
+    }
+
+    @Test
+    void ndjsonWrapsRowsInRowToJson() {
+        String sql = exportService.prepareExport("order-items", "ndjson", null, null, null);
+
+        assertThat(sql).contains("SELECT row_to_json(t) FROM (SELECT i.id").doesNotContain("WHERE");
+    }
+
+    @Test
+    void filtersAreParsedBeforeTheyReachTheStatement() {
+        assertThatThrownBy(() -> exportService.prepareExport("orders", "csv", null, null, "x' OR '1'='1"))
+                .hasMessageContaining("Invalid status value");
+        assertThatThrownBy(() -> exportService.prepareExport("products", "csv", LocalDate.now(), null, null))
+                .hasMessageContaining("not supported");
+        assertThatThrownBy(() -> exportService.prepareExport("passwords", "csv", null, null, null))
+                .hasMessageContaining("Unknown export");
+    }
+}
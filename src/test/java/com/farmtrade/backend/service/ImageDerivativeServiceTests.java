@@ -0,0 +1,86 @@
+package com.farmtrade.backend.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImageDerivativeServiceTests {
+
+    private static final String PHOTO = "sha256/ab/ab" + "0".repeat(62) + ".png";
+
+    @TempDir
+    Path uploads;
+
+    private final UploadStore uploadStore = new UploadStore();
+    private final ImageDerivativeService derivatives = new ImageDerivativeService();
+
+    @BeforeEach
+    void configure() throws IOException {
+        ReflectionTestUtils.setField(uploadStore, "dir", uploads.toString());
+        uploadStore.init();
+        ReflectionTestUtils.setField(derivatives, "uploadStore", uploadStore);
+        ReflectionTestUtils.setField(derivatives, "threads", 1);
+        ReflectionTestUtils.setField(derivatives, "queueCapacity", 1);
+        ReflectionTestUtils.setField(derivatives, "quality", 0.8f);
+        derivatives.startWorkers();
+        Files.createDirectories(uploads.resolve(PHOTO).getParent());
+    }
+
+    @AfterEach
+    void stop() {
+        derivatives.stopWorkers();
+    }
+
+    @Test
+    void everySizeIsRenderedWithinItsLongestEdgeAndSmallImagesAreNotEnlarged() throws IOException {
+        ImageIO.write(new BufferedImage(3000, 1500, BufferedImage.TYPE_INT_ARGB), "png",
+                uploads.resolve(PHOTO).toFile());
+
+        derivatives.render(PHOTO);
+
+        assertThat(ImageDerivativeService.derivativePath(PHOTO, ImageDerivativeService.Size.THUMB))
+                .isEqualTo("sha256/ab/ab" + "0".repeat(62) + "-thumb.jpg");
+        assertThat(dimensions(ImageDerivativeService.Size.THUMB)).containsExactly(160, 80);
+        assertThat(dimensions(ImageDerivativeService.Size.CARD)).containsExactly(480, 240);
+        assertThat(dimensions(ImageDerivativeService.Size.DETAIL)).containsExactly(1080, 540);
+
+        String small = "sha256/ab/ab" + "1".repeat(62) + ".png";
+        ImageIO.write(new BufferedImage(300, 200, BufferedImage.TYPE_INT_RGB), "png",
+                uploads.resolve(small).toFile());
+        derivatives.render(small);
+        BufferedImage detail = ImageIO.read(uploadStore.resolve(
+                ImageDerivativeService.derivativePath(small, ImageDerivativeService.Size.DETAIL)).toFile());
+        assertThat(detail.getWidth()).isEqualTo(300);
+    }
+
+    @Test
+    void filesThatAreNotImagesAreLeftAlone() throws IOException {
+        String document = "sha256/ab/ab" + "2".repeat(62) + ".pdf";
+        Files.writeString(uploads.resolve(document), "%PDF-1.4");
+        String mislabelled = "sha256/ab/ab" + "3".repeat(62) + ".jpg";
+        Files.writeString(uploads.resolve(mislabelled), "not a jpeg");
+
+        assertThat(derivatives.generate(document)).isFalse();
+        derivatives.render(mislabelled);
+
+        try (var files = Files.list(uploads.resolve(PHOTO).getParent())) {
+            assertThat(files).hasSize(2);
+        }
+    }
+
+    private int[] dimensions(ImageDerivativeService.Size size) throws IOException {
+        BufferedImage image = ImageIO.read(
+                uploadStore.resolve(ImageDerivativeService.derivativePath(PHOTO, size)).toFile());
+        return new int[] { image.getWidth(), image.getHeight() };
+    }
+}
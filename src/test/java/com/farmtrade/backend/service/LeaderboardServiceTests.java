@@ -0,0 +1,209 @@
+package com.farmtrade.backend.service;
+
+import com.farmtrade.backend.dto.LeaderboardEntry;
+import com.farmtrade.backend.dto.OrderItemRequest;
+import com.farmtrade.backend.dto.OrderRequest;
+import com.farmtrade.backend.model.*;
+import com.farmtrade.backend.repository.AnalyticsRepository;
+import com.farmtrade.backend.repository.LeaderboardRepository;
+import com.farmtrade.backend.repository.OrderBatchWriter;
+import com.farmtrade.backend.repository.OrderSearchRepository;
+import com.farmtrade.backend.repository.ProductRepository;
+import com.farmtrade.backend.repository.RollupRepository;
+import com.farmtrade.backend.repository.SalesLineRepository;
+import com.farmtrade.backend.repository.UserRepository;
+import com.farmtrade.backend.repository.UserStatsRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs without a test transaction, since sales reach the leaderboards only
+ * once the order's transaction commits. Boards keep two entries and are
+ * re-ranked by calling refresh, as the scheduler would.
+ */
+@DataJpaTest(properties = { "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "app.leaderboards.size=2" })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ LeaderboardService.class, LeaderboardRepository.class, SalesLineRepository.class, OrderEvents.class,
+        OrderService.class, OrderBatchWriter.class, OrderSearchRepository.class, StatsRollupService.class,
+        RollupRepository.class, UserStatsService.class, UserStatsRepository.class, AnalyticsService.class,
+        AnalyticsRepository.class })
+class LeaderboardServiceTests {
+
+    @Autowired
+    private LeaderboardService leaderboardService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private User grower;
+    private User orchard;
+    private Product rice;
+    private Product wheat;
+    private Product mango;
+
+    @BeforeEach
+    void seed() {
+        grower = userRepository.save(user("grower@test.com", "Grower", Role.FARMER));
+        orchard = userRepository.save(user("orchard@test.com", "Orchard", Role.FARMER));
+        userRepository.save(user("retailer@test.com", "Retailer", Role.RETAILER));
+        rice = productRepository.save(product("Rice", "Grain", 10, grower));
+        wheat = productRepository.save(product("Wheat", "Grain", 10, grower));
+        mango = productRepository.save(product("Mango", "Fruit", 50, orchard));
+        leaderboardService.rebuild();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        for (String table : List.of("user_stats", "rollup_hourly", "rollup_daily", "order_items", "order_farmers",
+                "orders", "products", "users")) {
+            jdbcTemplate.update("DELETE FROM " + table);
+        }
+    }
+
+    @Test
+    void salesAndCancellationsMoveTheBoardsAndARebuildAgrees() {
+        orderService.placeOrder(request(rice, 5), "retailer@test.com");
+        orderService.placeOrder(request(wheat, 3), "retailer@test.com");
+        orderService.placeOrder(request(mango, 1), "retailer@test.com");
+        Long cancelled = orderService.placeOrder(request(mango, 4), "retailer@test.com").getId();
+        orderService.cancelOrder(cancelled, "retailer@test.com");
+        assertThat(board(LeaderboardService.Board.PRODUCTS, LeaderboardService.Window.WEEK)).isEmpty();
+        leaderboardService.refresh();
+
+        List<LeaderboardEntry> products = board(LeaderboardService.Board.PRODUCTS, LeaderboardService.Window.WEEK);
+        assertThat(products).extracting(LeaderboardEntry::getName).containsExactly("Rice", "Wheat");
+        assertThat(products).extracting(LeaderboardEntry::getQuantity).containsExactly(5L, 3L);
+        List<LeaderboardEntry> farmers = board(LeaderboardService.Board.FARMERS, LeaderboardService.Window.DAY);
+        assertThat(farmers).extracting(LeaderboardEntry::getId).containsExactly(grower.getId(), orchard.getId());
+        assertThat(farmers.get(0).getRevenue()).isEqualTo(Money.of(BigDecimal.valueOf(80)));
+        List<LeaderboardEntry> categories = board(LeaderboardService.Board.CATEGORIES,
+                LeaderboardService.Window.MONTH);
+        assertThat(categories).extracting(LeaderboardEntry::getName).containsExactly("Grain", "Fruit");
+        assertThat(categories.get(1).getRevenue()).isEqualTo(Money.of(BigDecimal.valueOf(50)));
+
+        leaderboardService.rebuild();
+        assertThat(board(LeaderboardService.Board.PRODUCTS, LeaderboardService.Window.WEEK)).isEqualTo(products);
+        assertThat(board(LeaderboardService.Board.FARMERS, LeaderboardService.Window.DAY)).isEqualTo(farmers);
+        assertThat(board(LeaderboardService.Board.CATEGORIES, LeaderboardService.Window.MONTH))
+                .isEqualTo(categories);
+    }
+
+    @Test
+    void olderSalesOnlyCountInTheWindowsThatCoverThem() {
+        orderService.placeOrder(request(rice, 5), "retailer@test.com");
+        Long older = orderService.placeOrder(request(wheat, 9), "retailer@test.com").getId();
+        orderService.placeOrder(request(mango, 1), "retailer@test.com");
+        jdbcTemplate.update("UPDATE orders SET order_date = ? WHERE id = ?", LocalDateTime.now().minusDays(10), older);
+        leaderboardService.rebuild();
+
+        assertThat(board(LeaderboardService.Board.PRODUCTS, LeaderboardService.Window.WEEK))
+                .extracting(LeaderboardEntry::getName).containsExactly("Rice", "Mango");
+        assertThat(board(LeaderboardService.Board.PRODUCTS, LeaderboardService.Window.MONTH))
+                .extracting(LeaderboardEntry::getName).containsExactly("Wheat", "Rice");
+        assertThat(leaderboardService.getLeaderboard(LeaderboardService.Board.PRODUCTS,
+                LeaderboardService.Window.MONTH, 1)).hasSize(1);
+    }
+
+    @Test
+    void salesCommittedWhileARebuildReadsHistoryAreCountedOnce() throws Exception {
+        Long cancelled = orderService.placeOrder(request(mango, 4), "retailer@test.com").getId();
+        CountDownLatch recorded = new CountDownLatch(1);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        try {
+            // Commits after the rebuild has taken its snapshot, while it waits for open transactions
+            Future<?> committed = writer.submit(() -> transaction.executeWithoutResult(status -> {
+                orderService.placeOrder(request(rice, 5), "retailer@test.com");
+                orderService.cancelOrder(cancelled, "retailer@test.com");
+                recorded.countDown();
+                pause(300);
+            }));
+            assertThat(recorded.await(5, TimeUnit.SECONDS)).isTrue();
+            leaderboardService.rebuild();
+            committed.get(5, TimeUnit.SECONDS);
+        } finally {
+            writer.shutdownNow();
+        }
+        leaderboardService.refresh();
+
+        List<LeaderboardEntry> products = board(LeaderboardService.Board.PRODUCTS, LeaderboardService.Window.WEEK);
+        assertThat(products).extracting(LeaderboardEntry::getName).containsExactly("Rice");
+        assertThat(products).extracting(LeaderboardEntry::getQuantity).containsExactly(5L);
+        leaderboardService.rebuild();
+        assertThat(board(LeaderboardService.Board.PRODUCTS, LeaderboardService.Window.WEEK)).isEqualTo(products);
+    }
+
+    private List<LeaderboardEntry> board(LeaderboardService.Board board, LeaderboardService.Window window) {
+        return leaderboardService.getLeaderboard(board, window, 10);
+    }
+
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static OrderRequest request(Product product, int quantity) {
+        OrderItemRequest item = new OrderItemRequest();
+        item.setProductId(product.getId());
+        item.setQuantity(quantity);
+        OrderRequest request = new OrderRequest();
+        request.setItems(List.of(item));
+        return request;
+    }
+
+    private static Product product(String name, String category, int price, User farmer) {
+        Product product = new Product();
+        product.setName(name);
+        product.setCategory(category);
+        product.setPrice(BigDecimal.valueOf(price));
+        product.setQuantity(100);
+        product.setFarmer(farmer);
+        return product;
+    }
+
+    private static User user(String email, String name, Role role) {
+        User user = new User();
+        user.setEmail(email);
+        user.setPassword("secret");
+        user.setFullName(name);
+        user.setRole(role);
+        user.setStatus(UserStatus.APPROVED);
+        return user;
+    }
+}
@@ -0,0 +1,362 @@
+package com.farmtrade.backend.service;
+
+import com.farmtrade.backend.dto.BulkOrderRequest;
+import com.farmtrade.backend.dto.BulkOrderResult;
+import com.farmtrade.backend.dto.CursorPage;
+import com.farmtrade.backend.dto.FarmerOrderView;
+import com.farmtrade.backend.dto.OrderItemRequest;
+import com.farmtrade.backend.dto.OrderRequest;
+import com.farmtrade.backend.dto.OrderStatusUpdateResult;
+import com.farmtrade.backend.model.*;
+import com.farmtrade.backend.repository.AnalyticsRepository;
+import com.farmtrade.backend.repository.LeaderboardRepository;
+import com.farmtrade.backend.repository.OrderBatchWriter;
+import com.farmtrade.backend.repository.OrderFarmerRepository;
+import com.farmtrade.backend.repository.OrderRepository;
+import com.farmtrade.backend.repository.OrderSearchRepository;
+import com.farmtrade.backend.repository.RollupRepository;
+import com.farmtrade.backend.repository.SalesLineRepository;
+import com.farmtrade.backend.repository.UserStatsRepository;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({ OrderService.class, OrderBatchWriter.class, OrderSearchRepository.class, StatsRollupService.class,
+        RollupRepository.class, UserStatsService.class, UserStatsRepository.class, LeaderboardService.class,
+        LeaderboardRepository.class, SalesLineRepository.class, OrderEvents.class, AnalyticsService.class,
+        AnalyticsRepository.class })
+class OrderServiceTests {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderFarmerRepository orderFarmerRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private User retailer;
+    private User farmer;
+    private User otherFarmer;
+    private Product rice;
+    private Product dal;
+
+    @BeforeEach
+    void seedOrders() {
+        farmer = persistUser("farmer@test.com", Role.FARMER);
+        otherFarmer = persistUser("other@test.com", Role.FARMER);
+        retailer = persistUser("retailer@test.com", Role.RETAILER);
+        rice = persistProduct("Rice", farmer);
+        dal = persistProduct("Dal", otherFarmer);
+
+        for (int i = 0; i < 25; i++) {
+            Order order = new Order();
+            order.setRetailer(retailer);
+            order.setOrderDate(LocalDateTime.now().minusMinutes(25 - i));
+            order.setStatus(OrderStatus.PENDING);
+            order.setTotalAmount(Money.of(BigDecimal.valueOf(30)));
+            order.getItems().add(item(order, rice));
+            if (i % 2 == 0) {
+                order.getItems().add(item(order, dal));
+            }
+            entityManager.persist(order);
+        }
+        entityManager.flush();
+        orderFarmerRepository.backfillMissing();
+        orderFarmerRepository.backfillItemLinks();
+        entityManager.clear();
+    }
+
+    @Test
+    void retailerPageLoadsWholeGraphInBoundedStatements() {
+        Statistics statistics = statistics();
+
+        CursorPage<Order> page = orderService.getOrdersByRetailer(retailer.getEmail(), null, 10);
+        touchGraph(page.getItems());
+
+        // user lookup + id page + fetch-join, regardless of items per order
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+        assertThat(page.getItems()).hasSize(10);
+        assertThat(page.getNextCursor()).isEqualTo(page.getItems().get(9).getId());
+    }
+
+    @Test
+    void cursorWalksOrdersNewestFirstWithoutOverlap() {
+        CursorPage<Order> first = orderService.getOrdersByRetailer(retailer.getEmail(), null, 10);
+        CursorPage<Order> second = orderService.getOrdersByRetailer(retailer.getEmail(), first.getNextCursor(), 10);
+        CursorPage<Order> last = orderService.getOrdersByRetailer(retailer.getEmail(), second.getNextCursor(), 10);
+
+        assertThat(first.getItems().get(0).getId()).isGreaterThan(first.getItems().get(9).getId());
+        assertThat(second.getItems().get(0).getId()).isLessThan(first.getNextCursor());
+        assertThat(last.getItems()).hasSize(5);
+        assertThat(last.getNextCursor()).isNull();
+    }
+
+    @Test
+    void farmerPageOnlyContainsTheirFulfilments() {
+        Statistics statistics = statistics();
+
+        CursorPage<FarmerOrderView> page = orderService.getOrdersByFarmer(otherFarmer.getEmail(), null, 50);
+        for (FarmerOrderView view : page.getItems()) {
+            view.getRetailer().getFullName();
+            view.getItems().forEach(item -> item.getProduct().getName());
+        }
+
+        // user lookup + id page + fulfilment fetch-join
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+        assertThat(page.getItems()).hasSize(13);
+        assertThat(page.getNextCursor()).isNull();
+        assertThat(page.getItems()).allSatisfy(view -> {
+            assertThat(view.getItems()).extracting(item -> item.getProduct().getName()).containsExactly("Dal");
+            assertThat(view.getTotalAmount()).isEqualTo(Money.ofPaise(1000));
+        });
+    }
+
+    @Test
+    void farmerTotalsCountOnlyTheirOwnLines() {
+        assertThat(orderRepository.countByFarmer(otherFarmer)).isEqualTo(13);
+        assertThat(orderRepository.sumTotalAmountByFarmer(otherFarmer)).isEqualByComparingTo("130");
+        assertThat(orderRepository.countByFarmer(farmer)).isEqualTo(25);
+        assertThat(orderRepository.sumTotalAmountByFarmer(farmer)).isEqualByComparingTo("250");
+    }
+
+    @Test
+    void placeOrderWritesOneLinkPerFarmer() {
+        OrderRequest request = new OrderRequest();
+        request.setItems(List.of(itemRequest(rice, 2), itemRequest(rice, 3), itemRequest(dal, 1)));
+
+        Order order = orderService.placeOrder(request, retailer.getEmail());
+
+        assertThat(order.getFarmers()).hasSize(2);
+        assertThat(order.getFarmers())
+                .filteredOn(link -> link.getFarmer().getId().equals(farmer.getId()))
+                .singleElement()
+                .satisfies(link -> {
+                    assertThat(link.getFarmerSubtotal()).isEqualTo(Money.ofPaise(5000));
+                    assertThat(link.getItems()).hasSize(2);
+                });
+        assertThat(order.getItems()).allSatisfy(item -> assertThat(item.getOrderFarmer()).isNotNull());
+    }
+
+    @Test
+    void bestEffortBulkPlacementTakesStockInRequestOrder() {
+        List<BulkOrderResult> results = orderService.placeOrders(
+                bulkRequest(BulkOrderRequest.Mode.BEST_EFFORT), retailer.getEmail());
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(results).extracting(BulkOrderResult::isPlaced).containsExactly(true, false, false, true);
+        assertThat(results.get(1).getMessage()).isEqualTo("Insufficient stock for product: Rice");
+        assertThat(results.get(0).getTotalAmount()).isEqualTo(Money.ofPaise(610000));
+        assertThat(entityManager.find(Product.class, rice.getId()).getQuantity()).isZero();
+        assertThat(entityManager.find(Product.class, dal.getId()).getQuantity()).isEqualTo(980);
+
+        List<Order> placed = orderRepository.findWithItemsByIdIn(
+                List.of(results.get(0).getOrderId(), results.get(3).getOrderId()));
+        assertThat(placed).hasSize(2).allSatisfy(order -> {
+            assertThat(order.getStatus()).isEqualTo(OrderStatus.PENDING);
+            assertThat(order.getItems()).allSatisfy(item -> assertThat(item.getOrderFarmer()).isNotNull());
+        });
+        assertThat(orderFarmerRepository.findStatusesForFarmer(otherFarmer.getEmail(),
+                List.of(results.get(3).getOrderId()))).hasSize(1);
+    }
+
+    @Test
+    void allOrNothingBulkPlacementWritesNothingWhenOneOrderFails() {
+        long before = orderRepository.count();
+
+        List<BulkOrderResult> results = orderService.placeOrders(
+                bulkRequest(BulkOrderRequest.Mode.ALL_OR_NOTHING), retailer.getEmail());
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(results).extracting(BulkOrderResult::isPlaced).containsOnly(false);
+        assertThat(results).extracting(BulkOrderResult::getOrderId).containsOnlyNulls();
+        assertThat(orderRepository.count()).isEqualTo(before);
+        assertThat(entityManager.find(Product.class, rice.getId()).getQuantity()).isEqualTo(1000);
+    }
+
+    @Test
+    void bulkStatusUpdateAppliesOnlyValidOwnedTransitions() {
+        // newest first: ids[0] also has a Dal line from otherFarmer, ids[1] is Rice only
+        List<Long> ids = orderService.getOrdersByRetailer(retailer.getEmail(), null, 3).getItems().stream()
+                .map(Order::getId).toList();
+        orderService.updateOrderStatuses(List.of(ids.get(0), ids.get(1)), "CONFIRMED", farmer.getEmail());
+        entityManager.flush();
+        entityManager.clear();
+        Statistics statistics = statistics();
+
+        List<OrderStatusUpdateResult> results = orderService.updateOrderStatuses(
+                List.of(ids.get(0), ids.get(1), ids.get(2), -1L), "SHIPPED", farmer.getEmail());
+        entityManager.flush();
+
+        // ownership lookup + one guarded UPDATE for the CONFIRMED group + parent lock + fulfilment
+        // read + one UPDATE for the single parent whose derived status changed
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(5);
+        assertThat(results).extracting(OrderStatusUpdateResult::isUpdated).containsExactly(true, true, false, false);
+        assertThat(results.get(2).getStatus()).isEqualTo(OrderStatus.PENDING);
+        entityManager.clear();
+        assertThat(orderRepository.findById(ids.get(0)).orElseThrow().getStatus()).isEqualTo(OrderStatus.PENDING);
+        assertThat(orderRepository.findById(ids.get(1)).orElseThrow().getStatus()).isEqualTo(OrderStatus.SHIPPED);
+    }
+
+    @Test
+    void parentStatusFollowsTheLeastAdvancedActiveFulfilment() {
+        Long mixedOrder = orderService.getOrdersByRetailer(retailer.getEmail(), null, 1).getItems().get(0).getId();
+
+        orderService.updateOrderStatus(mixedOrder, "CONFIRMED", farmer.getEmail());
+        orderService.updateOrderStatus(mixedOrder, "CANCELLED", otherFarmer.getEmail());
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(orderRepository.findById(mixedOrder).orElseThrow().getStatus()).isEqualTo(OrderStatus.CONFIRMED);
+        assertThat(OrderStatus.deriveFrom(List.of(OrderStatus.CANCELLED, OrderStatus.CANCELLED)))
+                .isEqualTo(OrderStatus.CANCELLED);
+        assertThat(OrderStatus.deriveFrom(List.of(OrderStatus.DELIVERED, OrderStatus.SHIPPED)))
+                .isEqualTo(OrderStatus.SHIPPED);
+    }
+
+    @Test
+    void cancelledFulfilmentsRestockTheirLinesOnce() {
+        Long mixedOrder = orderService.getOrdersByRetailer(retailer.getEmail(), null, 1).getItems().get(0).getId();
+
+        orderService.updateOrderStatuses(List.of(mixedOrder), "CANCELLED", otherFarmer.getEmail());
+        entityManager.flush();
+        entityManager.clear();
+        assertThat(entityManager.find(Product.class, dal.getId()).getQuantity()).isEqualTo(1001);
+        assertThat(entityManager.find(Product.class, rice.getId()).getQuantity()).isEqualTo(1000);
+
+        // The retailer's cancellation restocks the remaining lines, not the Dal again
+        entityManager.clear();
+        orderService.cancelOrder(mixedOrder, retailer.getEmail());
+        entityManager.flush();
+        entityManager.clear();
+        assertThat(entityManager.find(Product.class, dal.getId()).getQuantity()).isEqualTo(1001);
+        assertThat(entityManager.find(Product.class, rice.getId()).getQuantity()).isEqualTo(1001);
+    }
+
+    @Test
+    void bulkStatusUpdateRejectsOrdersWithoutTheFarmersProducts() {
+        Long riceOnlyOrder = orderService.getOrdersByRetailer(retailer.getEmail(), null, 25).getItems().stream()
+                .filter(order -> order.getItems().size() == 1)
+                .findFirst().orElseThrow().getId();
+
+        List<OrderStatusUpdateResult> results = orderService.updateOrderStatuses(List.of(riceOnlyOrder),
+                "CONFIRMED", otherFarmer.getEmail());
+
+        assertThat(results.get(0).isUpdated()).isFalse();
+        assertThat(orderRepository.findById(riceOnlyOrder).orElseThrow().getStatus()).isEqualTo(OrderStatus.PENDING);
+    }
+
+    @Test
+    void terminalStatusesCannotBeLeft() {
+        assertThat(OrderStatus.CANCELLED.canTransitionTo(OrderStatus.DELIVERED)).isFalse();
+        assertThat(OrderStatus.DELIVERED.canTransitionTo(OrderStatus.PENDING)).isFalse();
+        assertThat(OrderStatus.PENDING.canTransitionTo(OrderStatus.SHIPPED)).isFalse();
+        assertThat(OrderStatus.SHIPPED.canTransitionTo(OrderStatus.DELIVERED)).isTrue();
+    }
+
+    @Test
+    void recentOrdersUseLimitAndFetchJoin() {
+        Statistics statistics = statistics();
+
+        List<Order> recent = orderService.getRecentOrdersByRetailer(retailer, 5);
+        touchGraph(recent);
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(recent).hasSize(5);
+    }
+
+    private Statistics statistics() {
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+
+    // Walks everything the JSON serializer would touch.
+    private static void touchGraph(List<Order> orders) {
+        for (Order order : orders) {
+            order.getRetailer().getFullName();
+            for (OrderItem item : order.getItems()) {
+                item.getProduct().getFarmer().getFullName();
+            }
+        }
+    }
+
+    private User persistUser(String email, Role role) {
+        User user = new User();
+        user.setEmail(email);
+        user.setPassword("secret");
+        user.setFullName(email);
+        user.setRole(role);
+        user.setStatus(UserStatus.APPROVED);
+        entityManager.persist(user);
+        return user;
+    }
+
+    private Product persistProduct(String name, User owner) {
+        Product product = new Product();
+        product.setName(name);
+        product.setPrice(BigDecimal.TEN);
+        product.setQuantity(1000);
+        product.setFarmer(owner);
+        entityManager.persist(product);
+        return product;
+    }
+
+    // Second order runs out of Rice, third references a missing product
+    private BulkOrderRequest bulkRequest(BulkOrderRequest.Mode mode) {
+        OrderItemRequest missingProduct = new OrderItemRequest();
+        missingProduct.setProductId(-1L);
+        missingProduct.setQuantity(1);
+        BulkOrderRequest request = new BulkOrderRequest();
+        request.setMode(mode);
+        request.setOrders(List.of(
+                orderRequest(itemRequest(rice, 600), itemRequest(dal, 10)),
+                orderRequest(itemRequest(rice, 500)),
+                orderRequest(itemRequest(rice, 1), missingProduct),
+                orderRequest(itemRequest(rice, 400), itemRequest(dal, 5), itemRequest(dal, 5))));
+        return request;
+    }
+
+    private static OrderRequest orderRequest(OrderItemRequest... items) {
+        OrderRequest request = new OrderRequest();
+        request.setItems(List.of(items));
+        return request;
+    }
+
+    private static OrderItemRequest itemRequest(Product product, int quantity) {
+        OrderItemRequest request = new OrderItemRequest();
+        request.setProductId(product.getId());
+        request.setQuantity(quantity);
+        return request;
+    }
+
+    private static OrderItem item(Order order, Product product) {
+        OrderItem item = new OrderItem();
+        item.setOrder(order);
+        item.setProduct(product);
+        item.setQuantity(1);
+        item.setPricePerUnit(Money.of(product.getPrice()));
+        return item;
+    }
+}
@@ -0,0 +1,70 @@
+package com.farmtrade.backend.service;
+
+import com.farmtrade.backend.model.Money;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+class PaymentGatewayTests {
+
+    private static final Money AMOUNT = Money.ofPaise(10_000);
+
+    @Test
+    void bulkheadRejectsCallsBeyondTheLimitImmediately() {
+        StubPaymentGateway gateway = stub(Duration.ofMillis(300), 0, 2, Duration.ofSeconds(2), 5);
+
+        CompletableFuture<String> first = gateway.createOrder(AMOUNT, "r1");
+        CompletableFuture<String> second = gateway.createOrder(AMOUNT, "r2");
+        CompletableFuture<String> third = gateway.createOrder(AMOUNT, "r3");
+
+        assertThat(third).isCompletedExceptionally();
+        assertThat(reasonOf(third)).isEqualTo(PaymentGatewayException.Reason.BUSY);
+        assertThat(first.join()).startsWith("order_stub");
+        assertThat(second.join()).startsWith("order_stub");
+        assertThat(gateway.getGuard().getAvailablePermits()).isEqualTo(2);
+    }
+
+    @Test
+    void slowCallsTimeOut() {
+        StubPaymentGateway gateway = stub(Duration.ofMillis(500), 0, 5, Duration.ofMillis(100), 5);
+
+        assertThat(reasonOf(gateway.createOrder(AMOUNT, "r1"))).isEqualTo(PaymentGatewayException.Reason.TIMEOUT);
+    }
+
+    @Test
+    void circuitOpensAfterConsecutiveFailuresAndClosesAfterASuccessfulTrial() throws InterruptedException {
+        StubPaymentGateway gateway = stub(Duration.ofMillis(10), 1.0, 5, Duration.ofSeconds(1), 3);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(reasonOf(gateway.createOrder(AMOUNT, "r" + i))).isEqualTo(PaymentGatewayException.Reason.ERROR);
+        }
+        CompletableFuture<String> rejected = gateway.createOrder(AMOUNT, "fast-fail");
+        assertThat(rejected).isCompletedExceptionally();
+        assertThat(reasonOf(rejected)).isEqualTo(PaymentGatewayException.Reason.UNAVAILABLE);
+        assertThat(gateway.getGuard().getState()).isEqualTo(GatewayGuard.State.OPEN);
+
+        gateway.setErrorRate(0);
+        Thread.sleep(250);
+        assertThat(gateway.createOrder(AMOUNT, "trial").join()).startsWith("order_stub");
+        assertThat(gateway.getGuard().getState()).isEqualTo(GatewayGuard.State.CLOSED);
+    }
+
+    // Circuit stays open for 200 ms in every test
+    private static StubPaymentGateway stub(Duration latency, double errorRate, int maxConcurrent, Duration timeout,
+            int failureThreshold) {
+        return new StubPaymentGateway(latency, errorRate,
+                new GatewayGuard("Stub gateway", maxConcurrent, timeout, failureThreshold, Duration.ofMillis(200)));
+    }
+
+    private static PaymentGatewayException.Reason reasonOf(CompletableFuture<String> call) {
+        Throwable error = catchThrowable(call::join);
+        assertThat(error).isInstanceOf(CompletionException.class)
+                .cause().isInstanceOf(PaymentGatewayException.class);
+        return ((PaymentGatewayException) error.getCause()).getReason();
+    }
+}
@@ -0,0 +1,146 @@
+package com.farmtrade.backend.service;
+
+import com.farmtrade.backend.dto.PaymentReconciliationReport;
+import com.farmtrade.backend.model.*;
+import com.farmtrade.backend.repository.LedgerRepository;
+import com.farmtrade.backend.repository.OrderBatchWriter;
+import com.farmtrade.backend.repository.UserStatsRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "app.payments.reconcile.page-size=3",
+        "app.payments.reconcile.rate-per-second=50"
+})
+@Import({ PaymentReconciliationService.class, OrderBatchWriter.class, LedgerService.class, LedgerRepository.class,
+        UserStatsService.class, UserStatsRepository.class, PaymentReconciliationServiceTests.StubGatewayConfig.class })
+class PaymentReconciliationServiceTests {
+
+    @TestConfiguration
+    static class StubGatewayConfig {
+        @Bean
+        StubPaymentGateway stubPaymentGateway() {
+            return new StubPaymentGateway(Duration.ofMillis(20), 0,
+                    new GatewayGuard("Stub gateway", 20, Duration.ofSeconds(2), 100, Duration.ofSeconds(30)));
+        }
+    }
+
+    @Autowired
+    private PaymentReconciliationService paymentReconciliationService;
+
+    @Autowired
+    private StubPaymentGateway stubPaymentGateway;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private final Map<String, Order> orders = new HashMap<>();
+
+    @BeforeEach
+    void seed() {
+        User retailer = new User();
+        retailer.setEmail("retailer@test.com");
+        retailer.setPassword("secret");
+        retailer.setFullName("Retailer");
+        retailer.setRole(Role.RETAILER);
+        retailer.setStatus(UserStatus.APPROVED);
+        entityManager.persist(retailer);
+
+        LocalDateTime old = LocalDateTime.now().minusHours(2);
+        for (int i = 0; i < 7; i++) {
+            persistOrder(retailer, "order_" + i, old, PaymentStatus.PENDING);
+        }
+        persistOrder(retailer, "order_young", LocalDateTime.now(), PaymentStatus.PENDING);
+        persistOrder(retailer, "order_paid", old, PaymentStatus.COMPLETED);
+        entityManager.flush();
+    }
+
+    @Test
+    void stalePendingOrdersAreSettledFromTheGateway() {
+        stubPaymentGateway.setOrderPayment("order_0", new PaymentGateway.OrderPayment(PaymentStatus.COMPLETED, "pay_0"));
+        stubPaymentGateway.setOrderPayment("order_4", new PaymentGateway.OrderPayment(PaymentStatus.FAILED, null));
+        stubPaymentGateway.setOrderPayment("order_6", new PaymentGateway.OrderPayment(PaymentStatus.COMPLETED, "pay_6"));
+        stubPaymentGateway.setOrderPayment("order_young",
+                new PaymentGateway.OrderPayment(PaymentStatus.COMPLETED, "pay_young"));
+        long lookupsBefore = stubPaymentGateway.getLookups();
+
+        long started = System.nanoTime();
+        PaymentReconciliationReport report = paymentReconciliationService.reconcile();
+        long elapsedMillis = Duration.ofNanos(System.nanoTime() - started).toMillis();
+        entityManager.clear();
+
+        assertThat(report.getPages()).isEqualTo(3);
+        assertThat(report.getChecked()).isEqualTo(7);
+        assertThat(report.getCompleted()).isEqualTo(2);
+        assertThat(report.getFailed()).isEqualTo(1);
+        assertThat(report.getStillPending()).isEqualTo(4);
+        assertThat(report.getLookupErrors()).isZero();
+        assertThat(stubPaymentGateway.getLookups() - lookupsBefore).isEqualTo(7);
+        // 50 lookups per second: seven calls cannot start within 100 ms
+        assertThat(elapsedMillis).isGreaterThanOrEqualTo(100);
+
+        Order paid = reload("order_0");
+        assertThat(paid.getPaymentStatus()).isEqualTo(PaymentStatus.COMPLETED);
+        assertThat(paid.getRazorpayPaymentId()).isEqualTo("pay_0");
+        assertThat(paid.getFarmers()).extracting(OrderFarmer::getPaymentStatus).containsOnly(PaymentStatus.COMPLETED);
+        assertThat(reload("order_4").getPaymentStatus()).isEqualTo(PaymentStatus.FAILED);
+        assertThat(reload("order_4").getFarmers()).extracting(OrderFarmer::getPaymentStatus)
+                .containsOnly(PaymentStatus.FAILED);
+        assertThat(reload("order_1").getPaymentStatus()).isEqualTo(PaymentStatus.PENDING);
+        assertThat(reload("order_young").getPaymentStatus()).isEqualTo(PaymentStatus.PENDING);
+
+        // A second run only asks about the orders that are still pending
+        PaymentReconciliationReport again = paymentReconciliationService.reconcile();
+        assertThat(again.getChecked()).isEqualTo(4);
+        assertThat(again.getCompleted() + again.getFailed()).isZero();
+    }
+
+    @Test
+    void failedLookupsLeaveOrdersUntouched() {
+        stubPaymentGateway.setOrderPayment("order_0", new PaymentGateway.OrderPayment(PaymentStatus.COMPLETED, "pay_0"));
+        stubPaymentGateway.setErrorRate(1);
+        try {
+            PaymentReconciliationReport report = paymentReconciliationService.reconcile();
+
+            assertThat(report.getChecked()).isEqualTo(7);
+            assertThat(report.getLookupErrors()).isEqualTo(7);
+            assertThat(report.getCompleted() + report.getFailed()).isZero();
+        } finally {
+            stubPaymentGateway.setErrorRate(0);
+        }
+        entityManager.clear();
+        assertThat(reload("order_0").getPaymentStatus()).isEqualTo(PaymentStatus.PENDING);
+    }
+
+    private Order reload(String razorpayOrderId) {
+        return entityManager.find(Order.class, orders.get(razorpayOrderId).getId());
+    }
+
+    private void persistOrder(User retailer, String razorpayOrderId, LocalDateTime orderDate, PaymentStatus paymentStatus) {
+        Order order = new Order();
+        order.setRetailer(retailer);
+        order.setOrderDate(orderDate);
+        order.setStatus(OrderStatus.PENDING);
+        order.setPaymentStatus(paymentStatus);
+        order.setTotalAmount(Money.of(BigDecimal.TEN));
+        order.setRazorpayOrderId(razorpayOrderId);
+        order.getFarmers().add(new OrderFarmer(order, retailer));
+        entityManager.persist(order);
+        orders.put(razorpayOrderId, order);
+    }
+}
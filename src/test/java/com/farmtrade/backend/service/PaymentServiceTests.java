@@ -0,0 +1,219 @@
+package com.farmtrade.backend.service;
+
+import com.farmtrade.backend.component.CheckoutSweeper;
+import com.farmtrade.backend.dto.OrderItemRequest;
+import com.farmtrade.backend.dto.OrderRequest;
+import com.farmtrade.backend.dto.PaymentDetails;
+import com.farmtrade.backend.dto.PaymentVerificationRequest;
+import com.farmtrade.backend.model.*;
+import com.farmtrade.backend.repository.AnalyticsRepository;
+import com.farmtrade.backend.repository.LeaderboardRepository;
+import com.farmtrade.backend.repository.LedgerRepository;
+import com.farmtrade.backend.repository.OrderBatchWriter;
+import com.farmtrade.backend.repository.OrderRepository;
+import com.farmtrade.backend.repository.OrderSearchRepository;
+import com.farmtrade.backend.repository.ProductRepository;
+import com.farmtrade.backend.repository.RollupRepository;
+import com.farmtrade.backend.repository.SalesLineRepository;
+import com.farmtrade.backend.repository.UserRepository;
+import com.farmtrade.backend.repository.UserStatsRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+/**
+ * Runs without a test transaction: the gateway completes on another thread,
+ * which has to see the committed order.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "razorpay.key.id=rzp_test_key",
+        "razorpay.key.secret=test-secret"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ PaymentService.class, OrderService.class, OrderBatchWriter.class, OrderSearchRepository.class,
+        LedgerService.class, LedgerRepository.class, StatsRollupService.class, RollupRepository.class,
+        UserStatsService.class, UserStatsRepository.class, LeaderboardService.class, LeaderboardRepository.class,
+        SalesLineRepository.class, OrderEvents.class, AnalyticsService.class, AnalyticsRepository.class,
+        CheckoutSweeper.class, PaymentServiceTests.Config.class })
+class PaymentServiceTests {
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        StubPaymentGateway stubPaymentGateway() {
+            return new StubPaymentGateway(Duration.ofMillis(200), 0,
+                    new GatewayGuard("Stub gateway", 20, Duration.ofSeconds(2), 100, Duration.ofSeconds(30)));
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private CheckoutSweeper checkoutSweeper;
+
+    @Autowired
+    private StubPaymentGateway stubPaymentGateway;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Product rice;
+
+    @BeforeEach
+    void seed() {
+        User farmer = userRepository.save(user("farmer@test.com", Role.FARMER));
+        userRepository.save(user("retailer@test.com", Role.RETAILER));
+        rice = new Product();
+        rice.setName("Rice");
+        rice.setPrice(BigDecimal.TEN);
+        rice.setQuantity(100);
+        rice.setFarmer(farmer);
+        rice = productRepository.save(rice);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        stubPaymentGateway.setErrorRate(0);
+        stubPaymentGateway.setLatency(Duration.ofMillis(200));
+        for (String table : List.of("order_items", "order_farmers", "orders", "products", "users")) {
+            jdbcTemplate.update("DELETE FROM " + table);
+        }
+    }
+
+    @Test
+    void checkoutHoldsAConnectionOnlyAroundItsOwnWrites() {
+        stubPaymentGateway.setLatency(Duration.ofSeconds(1));
+        PaymentDetails details = paymentService.createPaymentOrder(request(3), "retailer@test.com").join();
+
+        Order order = orderRepository.findById(Long.valueOf(details.getOrderId())).orElseThrow();
+        assertThat(order.getRazorpayOrderId()).isEqualTo(details.getRazorpayOrderId()).startsWith("order_stub");
+        assertThat(order.getCheckoutExpiresAt()).isNull();
+        assertThat(stockOfRice()).isEqualTo(97);
+
+        Timer hold = meterRegistry.get("payments.checkout.connection.hold").tag("outcome", "created").timer();
+        Timer gatewayWait = meterRegistry.get("payments.checkout.gateway.wait").timer();
+        assertThat(hold.count()).isEqualTo(1);
+        assertThat(gatewayWait.totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(1000);
+        // The one second gateway round-trip is not part of the time spent in transactions
+        assertThat(hold.totalTime(TimeUnit.MILLISECONDS)).isLessThan(gatewayWait.totalTime(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void gatewayFailureCancelsTheOrderAndReleasesStock() {
+        stubPaymentGateway.setErrorRate(1);
+
+        Throwable error = catchThrowable(() -> paymentService.createPaymentOrder(request(3), "retailer@test.com").join());
+
+        assertThat(error).isInstanceOf(CompletionException.class).hasCauseInstanceOf(PaymentGatewayException.class);
+        assertThat(orderRepository.findAll()).singleElement().satisfies(order -> {
+            assertThat(order.getStatus()).isEqualTo(OrderStatus.CANCELLED);
+            assertThat(order.getCheckoutExpiresAt()).isNull();
+        });
+        assertThat(stockOfRice()).isEqualTo(100);
+        assertThat(meterRegistry.get("payments.checkout.connection.hold").tag("outcome", "failed").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void sweeperCancelsAbandonedCheckoutsAndLateGatewayResultsAreRejected() {
+        Long orderId = transactionTemplate.execute(status -> {
+            Order order = orderService.placeOrder(request(5), "retailer@test.com");
+            order.setCheckoutExpiresAt(LocalDateTime.now().minusMinutes(1));
+            return order.getId();
+        });
+        assertThat(stockOfRice()).isEqualTo(95);
+
+        checkoutSweeper.sweepExpiredCheckouts();
+
+        assertThat(orderRepository.findById(orderId).orElseThrow().getStatus()).isEqualTo(OrderStatus.CANCELLED);
+        assertThat(stockOfRice()).isEqualTo(100);
+        assertThat(orderRepository.attachRazorpayOrder(orderId, "order_late")).isZero();
+        assertThat(orderService.cancelUnfinishedCheckout(orderId)).isFalse();
+    }
+
+    @Test
+    void verifyingAPaymentOfARefundedOrderFails() {
+        Long orderId = transactionTemplate.execute(status ->
+                orderService.placeOrder(request(1), "retailer@test.com").getId());
+        jdbcTemplate.update("UPDATE orders SET razorpay_order_id = 'order_R', payment_status = 'REFUNDED' WHERE id = ?",
+                orderId);
+        PaymentVerificationRequest verification = new PaymentVerificationRequest();
+        verification.setRazorpayOrderId("order_R");
+        verification.setRazorpayPaymentId("pay_R");
+        verification.setRazorpaySignature(new HmacVerifier("test-secret").sign("order_R|pay_R"));
+
+        assertThat(paymentService.verifyPayment(verification)).isFalse();
+        assertThat(orderRepository.findById(orderId).orElseThrow().getPaymentStatus())
+                .isEqualTo(PaymentStatus.REFUNDED);
+    }
+
+    private int stockOfRice() {
+        return productRepository.findById(rice.getId()).orElseThrow().getQuantity();
+    }
+
+    private OrderRequest request(int quantity) {
+        OrderItemRequest item = new OrderItemRequest();
+        item.setProductId(rice.getId());
+        item.setQuantity(quantity);
+        OrderRequest request = new OrderRequest();
+        request.setItems(List.of(item));
+        return request;
+    }
+
+    private static User user(String email, Role role) {
+        User user = new User();
+        user.setEmail(email);
+        user.setPassword("secret");
+        user.setFullName(email);
+        user.setRole(role);
+        user.setStatus(UserStatus.APPROVED);
+        return user;
+    }
+}
@@ -0,0 +1,228 @@
+package com.farmtrade.backend.service;
+
+import com.farmtrade.backend.model.*;
+import com.farmtrade.backend.repository.LedgerRepository;
+import com.farmtrade.backend.repository.OrderBatchWriter;
+import com.farmtrade.backend.repository.OrderFarmerRepository;
+import com.farmtrade.backend.repository.PaymentEventRepository;
+import com.farmtrade.backend.repository.UserStatsRepository;
+import com.razorpay.Utils;
+import jakarta.persistence.EntityManager;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "razorpay.webhook.secret=" + PaymentWebhookServiceTests.SECRET,
+        "app.payments.webhook.max-attempts=2"
+})
+@Import({ PaymentWebhookService.class, OrderBatchWriter.class, LedgerService.class, LedgerRepository.class,
+        UserStatsService.class, UserStatsRepository.class })
+class PaymentWebhookServiceTests {
+
+    static final String SECRET = "webhook-secret";
+
+    private final HmacVerifier signer = new HmacVerifier(SECRET);
+
+    @Autowired
+    private PaymentWebhookService paymentWebhookService;
+
+    @Autowired
+    private PaymentEventRepository paymentEventRepository;
+
+    @Autowired
+    private OrderFarmerRepository orderFarmerRepository;
+
+    @Autowired
+    private OrderBatchWriter orderBatchWriter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Order order;
+
+    @BeforeEach
+    void seedOrder() {
+        User retailer = new User();
+        retailer.setEmail("retailer@test.com");
+        retailer.setPassword("secret");
+        retailer.setFullName("Retailer");
+        retailer.setRole(Role.RETAILER);
+        retailer.setStatus(UserStatus.APPROVED);
+        entityManager.persist(retailer);
+
+        order = new Order();
+        order.setRetailer(retailer);
+        order.setOrderDate(LocalDateTime.now());
+        order.setStatus(OrderStatus.PENDING);
+        order.setTotalAmount(Money.of(BigDecimal.TEN));
+        order.setRazorpayOrderId("order_A");
+        order.getFarmers().add(new OrderFarmer(order, retailer));
+        entityManager.persist(order);
+        entityManager.flush();
+    }
+
+    @Test
+    void redeliveriesAreStoredOnceAndBadSignaturesRejected() {
+        String body = event("payment.captured", "pay_1", "order_A");
+
+        assertThat(receive(body, "evt_1")).isEqualTo(PaymentWebhookService.Receipt.ACCEPTED);
+        assertThat(receive(body, "evt_1")).isEqualTo(PaymentWebhookService.Receipt.DUPLICATE);
+        assertThat(paymentWebhookService.receive(body, signer.sign(body + " "), "evt_2"))
+                .isEqualTo(PaymentWebhookService.Receipt.INVALID_SIGNATURE);
+        assertThat(paymentEventRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    void batchAppliesTransitionsInArrivalOrder() {
+        receive(event("payment.failed", "pay_1", "order_A"), "evt_1");
+        receive(event("payment.captured", "pay_2", "order_A"), "evt_2");
+        receive(event("payment.captured", "pay_2", "order_A"), "evt_3");
+        receive(event("payment.failed", "pay_3", "order_A"), "evt_4");
+        receive(event("payment.authorized", "pay_2", "order_A"), "evt_5");
+
+        assertThat(paymentWebhookService.processBatch()).isEqualTo(5);
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(paymentEventRepository.findAll(Sort.by("id")))
+                .extracting(PaymentEvent::getOutcome)
+                .containsExactly(PaymentEvent.Outcome.APPLIED, PaymentEvent.Outcome.APPLIED,
+                        PaymentEvent.Outcome.DUPLICATE, PaymentEvent.Outcome.STALE, PaymentEvent.Outcome.IGNORED);
+        Order stored = entityManager.find(Order.class, order.getId());
+        assertThat(stored.getPaymentStatus()).isEqualTo(PaymentStatus.COMPLETED);
+        assertThat(stored.getRazorpayPaymentId()).isEqualTo("pay_2");
+        assertThat(orderFarmerRepository.findAll()).extracting(OrderFarmer::getPaymentStatus)
+                .containsOnly(PaymentStatus.COMPLETED);
+        assertThat(paymentWebhookService.processBatch()).isZero();
+    }
+
+    @Test
+    void eventsForUnknownOrdersAreRetriedThenGivenUp() {
+        receive(event("payment.captured", "pay_9", "order_missing"), "evt_1");
+
+        assertThat(paymentWebhookService.processBatch()).isEqualTo(1);
+        PaymentEvent pending = paymentEventRepository.findAll().get(0);
+        assertThat(pending.getProcessedAt()).isNull();
+        assertThat(pending.getNextAttemptAt()).isAfter(LocalDateTime.now());
+        // Not claimed again until the retry is due
+        assertThat(paymentWebhookService.processBatch()).isZero();
+
+        pending.setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+        entityManager.flush();
+        assertThat(paymentWebhookService.processBatch()).isEqualTo(1);
+        assertThat(paymentEventRepository.findAll()).singleElement()
+                .satisfies(event -> assertThat(event.getOutcome()).isEqualTo(PaymentEvent.Outcome.ORDER_NOT_FOUND));
+    }
+
+    @Test
+    void onlyARefundOfTheWholeTotalMarksTheOrderRefunded() {
+        receive(event("payment.captured", "pay_1", "order_A"), "evt_1");
+        paymentWebhookService.processBatch();
+        // The order total is 10, or 1000 paise
+        receive(refund("pay_1", 400), "evt_2");
+        paymentWebhookService.processBatch();
+        entityManager.flush();
+        entityManager.clear();
+        assertThat(entityManager.find(Order.class, order.getId()).getPaymentStatus())
+                .isEqualTo(PaymentStatus.COMPLETED);
+
+        receive("{\"entity\":\"event\",\"event\":\"payment.refunded\",\"payload\":{\"payment\":{\"entity\":"
+                + "{\"id\":\"pay_1\",\"order_id\":\"order_A\",\"amount_refunded\":1000}}}}", "evt_3");
+        paymentWebhookService.processBatch();
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(paymentEventRepository.findAll(Sort.by("id")))
+                .extracting(PaymentEvent::getOutcome)
+                .containsExactly(PaymentEvent.Outcome.APPLIED, PaymentEvent.Outcome.PARTIAL_REFUND,
+                        PaymentEvent.Outcome.APPLIED);
+        assertThat(entityManager.find(Order.class, order.getId()).getPaymentStatus())
+                .isEqualTo(PaymentStatus.REFUNDED);
+    }
+
+    @Test
+    void changesCommittedUnderTheBatchAreKeptAndItsEventsRetried() {
+        receive(event("payment.captured", "pay_1", "order_A"), "evt_1");
+        PaymentWebhookService target = AopTestUtils.getTargetObject(paymentWebhookService);
+        // A verify call failing the payment and the retailer cancelling, both between the batch's read and write
+        ReflectionTestUtils.setField(target, "orderBatchWriter", new OrderBatchWriter() {
+            @Override
+            public int[] movePayments(List<PaymentMove> moves) {
+                jdbcTemplate.update("UPDATE orders SET payment_status = 'FAILED', status = 'CANCELLED' WHERE id = ?",
+                        order.getId());
+                return orderBatchWriter.movePayments(moves);
+            }
+        });
+        try {
+            assertThat(paymentWebhookService.processBatch()).isEqualTo(1);
+        } finally {
+            ReflectionTestUtils.setField(target, "orderBatchWriter", orderBatchWriter);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        PaymentEvent retried = paymentEventRepository.findAll().get(0);
+        assertThat(retried.getOutcome()).isNull();
+        assertThat(retried.getProcessedAt()).isNull();
+        Order stored = entityManager.find(Order.class, order.getId());
+        assertThat(stored.getStatus()).isEqualTo(OrderStatus.CANCELLED);
+        assertThat(stored.getPaymentStatus()).isEqualTo(PaymentStatus.FAILED);
+        assertThat(orderFarmerRepository.findAll()).extracting(OrderFarmer::getPaymentStatus)
+                .containsOnly(PaymentStatus.PENDING);
+
+        // Judged again on the status now stored
+        assertThat(paymentWebhookService.processBatch()).isEqualTo(1);
+        entityManager.flush();
+        entityManager.clear();
+        assertThat(paymentEventRepository.findAll().get(0).getOutcome()).isEqualTo(PaymentEvent.Outcome.APPLIED);
+        stored = entityManager.find(Order.class, order.getId());
+        assertThat(stored.getStatus()).isEqualTo(OrderStatus.CANCELLED);
+        assertThat(stored.getPaymentStatus()).isEqualTo(PaymentStatus.COMPLETED);
+    }
+
+    @Test
+    void signaturesMatchTheRazorpaySdk() throws Exception {
+        HmacVerifier keyVerifier = new HmacVerifier("key-secret");
+        String signature = keyVerifier.sign("order_A|pay_1");
+        JSONObject attributes = new JSONObject();
+        attributes.put("razorpay_order_id", "order_A");
+        attributes.put("razorpay_payment_id", "pay_1");
+        attributes.put("razorpay_signature", signature);
+
+        assertThat(Utils.verifyPaymentSignature(attributes, "key-secret")).isTrue();
+        assertThat(keyVerifier.matches("order_A|pay_1", signature.toUpperCase())).isTrue();
+        assertThat(keyVerifier.matches("order_A|pay_2", signature)).isFalse();
+    }
+
+    private PaymentWebhookService.Receipt receive(String body, String eventId) {
+        return paymentWebhookService.receive(body, signer.sign(body), eventId);
+    }
+
+    private static String refund(String paymentId, long paise) {
+        return "{\"entity\":\"event\",\"event\":\"refund.processed\",\"payload\":{\"refund\":{\"entity\":"
+                + "{\"payment_id\":\"" + paymentId + "\",\"amount\":" + paise + "}}}}";
+    }
+
+    private static String event(String type, String paymentId, String razorpayOrderId) {
+        return "{\"entity\":\"event\",\"event\":\"" + type + "\",\"payload\":{\"payment\":{\"entity\":"
+                + "{\"id\":\"" + paymentId + "\",\"order_id\":\"" + razorpayOrderId + "\"}}}}";
+    }
+}
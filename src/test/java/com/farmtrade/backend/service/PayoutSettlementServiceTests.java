@@ -0,0 +1,195 @@
+package com.farmtrade.backend.service;
+
+import com.farmtrade.backend.model.*;
+import com.farmtrade.backend.repository.FarmerAccountRepository;
+import com.farmtrade.backend.repository.LedgerRepository;
+import com.farmtrade.backend.repository.PayoutItemRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs without a test transaction, since partitions are settled on worker
+ * threads that must see the committed ledger.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "app.payouts.partitions=3"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ LedgerService.class, LedgerRepository.class, PayoutSettlementService.class })
+class PayoutSettlementServiceTests {
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private PayoutSettlementService payoutSettlementService;
+
+    @Autowired
+    private FarmerAccountRepository farmerAccountRepository;
+
+    @Autowired
+    private PayoutItemRepository payoutItemRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User retailer;
+    private final List<User> farmers = new ArrayList<>();
+    private final List<Product> products = new ArrayList<>();
+
+    @BeforeEach
+    void seed() {
+        transactionTemplate.executeWithoutResult(status -> {
+            retailer = persistUser("retailer@test.com", Role.RETAILER);
+            for (int i = 0; i < 5; i++) {
+                User farmer = persistUser("farmer" + i + "@test.com", Role.FARMER);
+                farmers.add(farmer);
+                Product product = new Product();
+                product.setName("Product " + i);
+                product.setPrice(BigDecimal.valueOf(10 * (i + 1)));
+                product.setQuantity(1000);
+                product.setFarmer(farmer);
+                entityManager.persist(product);
+                products.add(product);
+            }
+        });
+    }
+
+    @AfterEach
+    void cleanUp() {
+        for (String table : List.of("ledger_entries", "farmer_accounts", "payout_items", "payout_batches",
+                "order_items", "order_farmers", "orders", "products", "users")) {
+            jdbcTemplate.update("DELETE FROM " + table);
+        }
+    }
+
+    @Test
+    void completedOrdersCreditEachFarmerWithTheirOwnLines() {
+        // Farmer 0 sells 3 x 10, farmer 1 sells 2 x 20 in the same order
+        Long orderId = placeOrder(new int[] { 3, 2, 0, 0, 0 });
+
+        Integer posted = transactionTemplate.execute(status -> ledgerService.recordSales(List.of(orderId)));
+        Integer replayed = transactionTemplate.execute(status -> ledgerService.recordSales(List.of(orderId)));
+
+        assertThat(posted).isEqualTo(2);
+        assertThat(replayed).isZero();
+
+        assertThat(balanceOf(0)).isEqualTo(Money.of(BigDecimal.valueOf(30)));
+        assertThat(balanceOf(1)).isEqualTo(Money.of(BigDecimal.valueOf(40)));
+        assertThat(farmerAccountRepository.findById(farmers.get(2).getId())).isEmpty();
+        assertThat(jdbcTemplate.queryForObject("SELECT SUM(CASE WHEN side = 'DEBIT' THEN amount ELSE -amount END) "
+                + "FROM ledger_entries", BigDecimal.class)).isZero();
+    }
+
+    @Test
+    void settlementPaysBalancesAsOfThePeriodEndAcrossPartitions() throws InterruptedException {
+        List<Long> early = List.of(placeOrder(new int[] { 1, 1, 1, 1, 1 }), placeOrder(new int[] { 2, 0, 0, 0, 1 }));
+        transactionTemplate.executeWithoutResult(status -> ledgerService.recordSales(early));
+        Thread.sleep(20);
+        LocalDateTime periodEnd = LocalDateTime.now();
+        Thread.sleep(20);
+        Long late = placeOrder(new int[] { 5, 0, 0, 0, 0 });
+        transactionTemplate.executeWithoutResult(status -> ledgerService.recordSales(List.of(late)));
+
+        PayoutBatch batch = payoutSettlementService.settle(periodEnd);
+
+        assertThat(batch.getStatus()).isEqualTo(PayoutBatch.Status.COMPLETED);
+        assertThat(batch.getFarmerCount()).isEqualTo(5);
+        // 3 x 10 + 20 + 30 + 40 + 2 x 50, without the later 5 x 10
+        assertThat(batch.getTotalAmount()).isEqualTo(Money.of(BigDecimal.valueOf(220)));
+        assertThat(payoutItemRepository.findByBatchIdOrderByFarmerId(batch.getId()))
+                .extracting(PayoutItem::getAmount)
+                .containsExactly(money(30), money(20), money(30), money(40), money(100));
+        assertThat(balanceOf(0)).isEqualTo(money(50));
+        assertThat(balanceOf(4)).isEqualTo(Money.ZERO);
+
+        PayoutBatch rerun = payoutSettlementService.settle(periodEnd);
+        assertThat(rerun.getFarmerCount()).isZero();
+
+        PayoutBatch next = payoutSettlementService.settle(LocalDateTime.now());
+        assertThat(next.getTotalAmount()).isEqualTo(money(50));
+        FarmerAccount account = farmerAccountRepository.findById(farmers.get(0).getId()).orElseThrow();
+        assertThat(account.getBalance()).isEqualTo(Money.ZERO);
+        assertThat(account.getTotalEarned()).isEqualTo(money(80));
+        assertThat(account.getTotalPaidOut()).isEqualTo(money(80));
+
+        assertThatThrownBy(() -> payoutSettlementService.settle(periodEnd))
+                .hasMessageContaining("already settled");
+    }
+
+    private Money balanceOf(int farmer) {
+        return farmerAccountRepository.findById(farmers.get(farmer).getId()).orElseThrow().getBalance();
+    }
+
+    private static Money money(long rupees) {
+        return Money.of(BigDecimal.valueOf(rupees));
+    }
+
+    // quantities[i] units of farmer i's product; the order is marked COMPLETED
+    private Long placeOrder(int[] quantities) {
+        return transactionTemplate.execute(status -> {
+            Order order = new Order();
+            order.setRetailer(retailer);
+            order.setOrderDate(LocalDateTime.now());
+            order.setStatus(OrderStatus.PENDING);
+            order.setPaymentStatus(PaymentStatus.COMPLETED);
+            Money total = Money.ZERO;
+            for (int i = 0; i < quantities.length; i++) {
+                if (quantities[i] == 0) {
+                    continue;
+                }
+                Product product = products.get(i);
+                OrderFarmer fulfilment = new OrderFarmer(order, product.getFarmer());
+                OrderItem item = new OrderItem();
+                item.setOrder(order);
+                item.setProduct(product);
+                item.setQuantity(quantities[i]);
+                item.setPricePerUnit(Money.of(product.getPrice()));
+                item.setOrderDate(order.getOrderDate());
+                item.setOrderFarmer(fulfilment);
+                fulfilment.setFarmerSubtotal(item.getPricePerUnit().times(quantities[i]));
+                order.getItems().add(item);
+                order.getFarmers().add(fulfilment);
+                total = total.plus(fulfilment.getFarmerSubtotal());
+            }
+            order.setTotalAmount(total);
+            entityManager.persist(order);
+            return order.getId();
+        });
+    }
+
+    private User persistUser(String email, Role role) {
+        User user = new User();
+        user.setEmail(email);
+        user.setPassword("secret");
+        user.setFullName(email);
+        user.setRole(role);
+        user.setStatus(UserStatus.APPROVED);
+        entityManager.persist(user);
+        return user;
+    }
+}
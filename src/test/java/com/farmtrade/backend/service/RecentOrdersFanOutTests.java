@@ -0,0 +1,128 @@
+package com.farmtrade.backend.service;
+
+import com.farmtrade.backend.dto.FarmerOrderView;
+import com.farmtrade.backend.dto.OrderItemRequest;
+import com.farmtrade.backend.dto.OrderRequest;
+import com.farmtrade.backend.model.*;
+import com.farmtrade.backend.repository.AnalyticsRepository;
+import com.farmtrade.backend.repository.LeaderboardRepository;
+import com.farmtrade.backend.repository.OrderBatchWriter;
+import com.farmtrade.backend.repository.OrderSearchRepository;
+import com.farmtrade.backend.repository.RollupRepository;
+import com.farmtrade.backend.repository.SalesLineRepository;
+import com.farmtrade.backend.repository.UserRepository;
+import com.farmtrade.backend.repository.UserStatsRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The dashboard's recent orders are read on a forked virtual thread, where
+ * the request's open session does not reach, and serialized after that
+ * thread's session has closed. Runs without a test transaction so the
+ * forked read sees the seeded orders.
+ */
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ DashboardFanOut.class, OrderService.class, OrderBatchWriter.class, OrderSearchRepository.class,
+        ProductService.class, UploadStore.class, StatsRollupService.class, RollupRepository.class,
+        UserStatsService.class, UserStatsRepository.class, LeaderboardService.class, LeaderboardRepository.class,
+        SalesLineRepository.class, OrderEvents.class, AnalyticsService.class, AnalyticsRepository.class })
+class RecentOrdersFanOutTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @Autowired
+    private DashboardFanOut dashboardFanOut;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User farmer;
+    private User retailer;
+
+    @BeforeEach
+    void seed() {
+        farmer = userRepository.save(user("farmer@test.com", Role.FARMER));
+        retailer = userRepository.save(user("retailer@test.com", Role.RETAILER));
+        Product rice = productService.addProduct(product("Rice"), "farmer@test.com");
+        OrderItemRequest item = new OrderItemRequest();
+        item.setProductId(rice.getId());
+        item.setQuantity(2);
+        OrderRequest request = new OrderRequest();
+        request.setItems(List.of(item));
+        orderService.placeOrder(request, "retailer@test.com");
+        orderService.placeOrder(request, "retailer@test.com");
+    }
+
+    @AfterEach
+    void cleanUp() {
+        for (String table : List.of("user_stats", "rollup_hourly", "rollup_daily", "order_items", "order_farmers",
+                "orders", "products", "users")) {
+            jdbcTemplate.update("DELETE FROM " + table);
+        }
+    }
+
+    @Test
+    void forkedRecentOrdersSerializeOnceTheirSessionHasClosed() throws Exception {
+        List<FarmerOrderView> farmerOrders;
+        List<Order> retailerOrders;
+        try (DashboardFanOut.Scope scope = dashboardFanOut.open()) {
+            DashboardFanOut.Part<List<FarmerOrderView>> forFarmer = scope.fork("farmer",
+                    () -> orderService.getRecentOrdersByFarmer(farmer, 5), List.of());
+            DashboardFanOut.Part<List<Order>> forRetailer = scope.fork("retailer",
+                    () -> orderService.getRecentOrdersByRetailer(retailer, 5), List.of());
+            scope.join();
+            assertThat(scope.degraded()).isEmpty();
+            farmerOrders = forFarmer.get();
+            retailerOrders = forRetailer.get();
+        }
+
+        assertThat(farmerOrders).hasSize(2);
+        assertThat(retailerOrders).hasSize(2);
+        // Every association the JSON walks was fetched before the forked session closed
+        assertThat(objectMapper.writeValueAsString(farmerOrders))
+                .contains("\"farmer\":{", "farmer@test.com", "retailer@test.com");
+        assertThat(objectMapper.writeValueAsString(retailerOrders))
+                .contains("\"farmer\":{", "farmer@test.com", "retailer@test.com");
+    }
+
+    private static Product product(String name) {
+        Product product = new Product();
+        product.setName(name);
+        product.setPrice(BigDecimal.TEN);
+        product.setQuantity(100);
+        return product;
+    }
+
+    private static User user(String email, Role role) {
+        User user = new User();
+        user.setEmail(email);
+        user.setPassword("secret");
+        user.setFullName(email);
+        user.setRole(role);
+        user.setStatus(UserStatus.APPROVED);
+        return user;
+    }
+}
@@ -0,0 +1,250 @@
+package com.farmtrade.backend.service;
+
+import com.farmtrade.backend.dto.OrderItemRequest;
+import com.farmtrade.backend.dto.OrderRequest;
+import com.farmtrade.backend.model.*;
+import com.farmtrade.backend.repository.AnalyticsRepository;
+import com.farmtrade.backend.repository.FarmerAccountRepository;
+import com.farmtrade.backend.repository.LeaderboardRepository;
+import com.farmtrade.backend.repository.LedgerRepository;
+import com.farmtrade.backend.repository.OrderBatchWriter;
+import com.farmtrade.backend.repository.OrderFarmerRepository;
+import com.farmtrade.backend.repository.OrderRepository;
+import com.farmtrade.backend.repository.OrderSearchRepository;
+import com.farmtrade.backend.repository.ProductRepository;
+import com.farmtrade.backend.repository.RefundRepository;
+import com.farmtrade.backend.repository.RollupRepository;
+import com.farmtrade.backend.repository.SalesLineRepository;
+import com.farmtrade.backend.repository.UserRepository;
+import com.farmtrade.backend.repository.UserStatsRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs without a test transaction, since a batch claims, calls the gateway and
+ * records outcomes in separate transactions.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "app.payments.refunds.rate-per-second=50",
+        "app.payments.refunds.retry-base-ms=0"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ RefundService.class, OrderService.class, OrderBatchWriter.class, OrderSearchRepository.class,
+        LedgerService.class, LedgerRepository.class, StatsRollupService.class, RollupRepository.class,
+        UserStatsService.class, UserStatsRepository.class, LeaderboardService.class, LeaderboardRepository.class,
+        SalesLineRepository.class, OrderEvents.class, AnalyticsService.class, AnalyticsRepository.class,
+        RefundServiceTests.StubGatewayConfig.class })
+class RefundServiceTests {
+
+    @TestConfiguration
+    static class StubGatewayConfig {
+        @Bean
+        StubPaymentGateway stubPaymentGateway() {
+            return new StubPaymentGateway(Duration.ofMillis(20), 0,
+                    new GatewayGuard("Stub gateway", 20, Duration.ofSeconds(2), 100, Duration.ofSeconds(30)));
+        }
+    }
+
+    @Autowired
+    private RefundService refundService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private StubPaymentGateway stubPaymentGateway;
+
+    @Autowired
+    private RefundRepository refundRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderFarmerRepository orderFarmerRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private FarmerAccountRepository farmerAccountRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User farmer;
+    private Product rice;
+
+    @BeforeEach
+    void seed() {
+        farmer = userRepository.save(user("farmer@test.com", Role.FARMER));
+        userRepository.save(user("retailer@test.com", Role.RETAILER));
+        rice = new Product();
+        rice.setName("Rice");
+        rice.setPrice(BigDecimal.TEN);
+        rice.setQuantity(100);
+        rice.setFarmer(farmer);
+        rice = productRepository.save(rice);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        stubPaymentGateway.setErrorRate(0);
+        for (String table : List.of("refunds", "ledger_entries", "farmer_accounts", "order_items", "order_farmers",
+                "orders", "products", "users")) {
+            jdbcTemplate.update("DELETE FROM " + table);
+        }
+    }
+
+    @Test
+    void cancellingAPaidOrderRefundsItOnceAndReversesTheFarmerCredit() {
+        Long orderId = paidOrder(4, "pay_cancel");
+        assertThat(balanceOfFarmer()).isEqualTo(Money.of(BigDecimal.valueOf(40)));
+
+        orderService.cancelOrder(orderId, "retailer@test.com");
+        assertThat(stockOfRice()).isEqualTo(100);
+        Refund queued = refundRepository.findByOrderId(orderId).orElseThrow();
+        assertThat(queued.getStatus()).isEqualTo(Refund.Status.QUEUED);
+        assertThat(queued.getSource()).isEqualTo(Refund.Source.CANCELLATION);
+        assertThat(queued.getAmount()).isEqualTo(Money.of(BigDecimal.valueOf(40)));
+
+        assertThat(refundService.processBatch()).isEqualTo(1);
+        assertThat(refundService.processBatch()).isZero();
+
+        Refund refund = refundRepository.findByOrderId(orderId).orElseThrow();
+        assertThat(refund.getStatus()).isEqualTo(Refund.Status.SUCCEEDED);
+        assertThat(refund.getRazorpayRefundId()).startsWith("rfnd_stub");
+        assertThat(stubPaymentGateway.getRefundsIssued()).isEqualTo(1);
+        Order order = orderRepository.findById(orderId).orElseThrow();
+        assertThat(order.getPaymentStatus()).isEqualTo(PaymentStatus.REFUNDED);
+        assertThat(order.getStatus()).isEqualTo(OrderStatus.CANCELLED);
+        // Restocked by the cancellation, not a second time by the refund
+        assertThat(stockOfRice()).isEqualTo(100);
+        assertThat(balanceOfFarmer()).isEqualTo(Money.ZERO);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ledger_entries WHERE type = 'REFUND'",
+                Integer.class)).isEqualTo(2);
+    }
+
+    @Test
+    void paidOrderCancelledByItsFarmersIsRefunded() {
+        Long orderId = paidOrder(4, "pay_farmer_cancel");
+
+        orderService.updateOrderStatuses(List.of(orderId), "CANCELLED", "farmer@test.com");
+        assertThat(stockOfRice()).isEqualTo(100);
+
+        Refund queued = refundRepository.findByOrderId(orderId).orElseThrow();
+        assertThat(queued.getSource()).isEqualTo(Refund.Source.CANCELLATION);
+        assertThat(queued.getRequestedBy()).isEqualTo("farmer@test.com");
+        assertThat(queued.getAmount()).isEqualTo(Money.of(BigDecimal.valueOf(40)));
+        assertThat(refundService.processBatch()).isEqualTo(1);
+        Order order = orderRepository.findById(orderId).orElseThrow();
+        assertThat(order.getStatus()).isEqualTo(OrderStatus.CANCELLED);
+        assertThat(order.getPaymentStatus()).isEqualTo(PaymentStatus.REFUNDED);
+        // Restocked by the farmers' cancellation, not a second time by the refund
+        assertThat(stockOfRice()).isEqualTo(100);
+        assertThat(balanceOfFarmer()).isEqualTo(Money.ZERO);
+    }
+
+    @Test
+    void adminRefundsAreRetriedAndCancelUnshippedOrders() {
+        Long retried = paidOrder(3, "pay_retried");
+        Long declined = paidOrder(5, "pay_declined");
+        assertThat(stockOfRice()).isEqualTo(92);
+        refundService.requestRefund(retried, "Damaged in transit", "admin@test.com");
+        refundService.requestRefund(declined, null, "admin@test.com");
+        assertThatThrownBy(() -> refundService.requestRefund(retried, null, "admin@test.com"))
+                .hasMessageContaining("already requested");
+        stubPaymentGateway.declineRefunds("pay_declined");
+
+        stubPaymentGateway.setErrorRate(1);
+        assertThat(refundService.processBatch()).isEqualTo(2);
+        assertThat(refundRepository.findAll()).allSatisfy(refund -> {
+            assertThat(refund.getStatus()).isEqualTo(Refund.Status.QUEUED);
+            assertThat(refund.getAttempts()).isEqualTo(1);
+            assertThat(refund.getLastError()).isNotNull();
+        });
+
+        stubPaymentGateway.setErrorRate(0);
+        assertThat(refundService.processBatch()).isEqualTo(2);
+
+        Refund done = refundRepository.findByOrderId(retried).orElseThrow();
+        assertThat(done.getStatus()).isEqualTo(Refund.Status.SUCCEEDED);
+        assertThat(done.getAttempts()).isEqualTo(2);
+        Refund failed = refundRepository.findByOrderId(declined).orElseThrow();
+        assertThat(failed.getStatus()).isEqualTo(Refund.Status.FAILED);
+        assertThat(failed.getLastError()).contains("cannot be refunded");
+
+        Order refunded = orderRepository.findById(retried).orElseThrow();
+        assertThat(refunded.getPaymentStatus()).isEqualTo(PaymentStatus.REFUNDED);
+        assertThat(refunded.getStatus()).isEqualTo(OrderStatus.CANCELLED);
+        assertThat(orderRepository.findById(declined).orElseThrow().getPaymentStatus())
+                .isEqualTo(PaymentStatus.COMPLETED);
+        assertThat(stockOfRice()).isEqualTo(95);
+        assertThat(balanceOfFarmer()).isEqualTo(Money.of(BigDecimal.valueOf(50)));
+        assertThat(refundService.processBatch()).isZero();
+    }
+
+    private Long paidOrder(int quantity, String razorpayPaymentId) {
+        return transactionTemplate.execute(status -> {
+            Long orderId = orderService.placeOrder(request(quantity), "retailer@test.com").getId();
+            orderRepository.completePayment(orderId, razorpayPaymentId, "signature");
+            orderFarmerRepository.updatePaymentStatusByOrderId(orderId, PaymentStatus.COMPLETED);
+            ledgerService.recordSales(List.of(orderId));
+            return orderId;
+        });
+    }
+
+    private int stockOfRice() {
+        return productRepository.findById(rice.getId()).orElseThrow().getQuantity();
+    }
+
+    private Money balanceOfFarmer() {
+        return farmerAccountRepository.findById(farmer.getId()).orElseThrow().getBalance();
+    }
+
+    private OrderRequest request(int quantity) {
+        OrderItemRequest item = new OrderItemRequest();
+        item.setProductId(rice.getId());
+        item.setQuantity(quantity);
+        OrderRequest request = new OrderRequest();
+        request.setItems(List.of(item));
+        return request;
+    }
+
+    private static User user(String email, Role role) {
+        User user = new User();
+        user.setEmail(email);
+        user.setPassword("secret");
+        user.setFullName(email);
+        user.setRole(role);
+        user.setStatus(UserStatus.APPROVED);
+        return user;
+    }
+}
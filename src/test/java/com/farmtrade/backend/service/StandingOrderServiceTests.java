@@ -0,0 +1,125 @@
+package com.farmtrade.backend.service;
+
+import com.farmtrade.backend.dto.OrderItemRequest;
+import com.farmtrade.backend.dto.StandingOrderRequest;
+import com.farmtrade.backend.model.*;
+import com.farmtrade.backend.repository.StandingOrderRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.scheduling.support.CronExpression;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+@Import(StandingOrderService.class)
+class StandingOrderServiceTests {
+
+    private static final CronExpression MONDAY_SIX = CronExpression.parse("0 0 6 * * MON");
+
+    @Autowired
+    private StandingOrderService standingOrderService;
+
+    @Autowired
+    private StandingOrderRepository standingOrderRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private User retailer;
+    private Product rice;
+
+    @BeforeEach
+    void seed() {
+        retailer = new User();
+        retailer.setEmail("retailer@test.com");
+        retailer.setPassword("secret");
+        retailer.setFullName("Retailer");
+        retailer.setRole(Role.RETAILER);
+        retailer.setStatus(UserStatus.APPROVED);
+        entityManager.persist(retailer);
+
+        rice = new Product();
+        rice.setName("Rice");
+        rice.setPrice(BigDecimal.TEN);
+        rice.setQuantity(100);
+        rice.setFarmer(retailer);
+        entityManager.persist(rice);
+    }
+
+    @Test
+    void templatesWithTheSameScheduleAreSpreadOverTheWindow() {
+        LocalDateTime sunday = LocalDateTime.of(2026, 10, 18, 12, 0);
+        Set<LocalDateTime> runTimes = new HashSet<>();
+        for (long id = 1; id <= 40; id++) {
+            LocalDateTime next = StandingOrderService.nextRunAt(MONDAY_SIX, sunday, id, 60);
+            assertThat(next.getDayOfWeek()).isEqualTo(DayOfWeek.MONDAY);
+            assertThat(next).isBetween(LocalDateTime.of(2026, 10, 19, 6, 0), LocalDateTime.of(2026, 10, 19, 7, 0));
+            runTimes.add(next);
+        }
+        assertThat(runTimes).hasSizeGreaterThan(30);
+    }
+
+    @Test
+    void nextRunKeepsTheSameSlotEachWeek() {
+        LocalDateTime first = StandingOrderService.nextRunAt(MONDAY_SIX, LocalDateTime.of(2026, 10, 18, 12, 0), 7, 60);
+        LocalDateTime second = StandingOrderService.nextRunAt(MONDAY_SIX, first, 7, 60);
+
+        assertThat(second).isEqualTo(first.plusWeeks(1));
+    }
+
+    @Test
+    void claimReturnsOverdueActiveTemplatesOldestFirst() {
+        LocalDateTime now = LocalDateTime.now();
+        StandingOrder lastWeek = persistTemplate(now.minusWeeks(1), true);
+        StandingOrder yesterday = persistTemplate(now.minusDays(1), true);
+        persistTemplate(now.minusDays(2), false);
+        persistTemplate(now.plusDays(1), true);
+        entityManager.flush();
+
+        List<Long> due = standingOrderRepository.claimDueIds(now, 10);
+
+        assertThat(due).containsExactly(lastWeek.getId(), yesterday.getId());
+        assertThat(standingOrderRepository.claimDueIds(now, 1)).containsExactly(lastWeek.getId());
+    }
+
+    @Test
+    void createRejectsInvalidSchedules() {
+        StandingOrderRequest request = new StandingOrderRequest();
+        request.setSchedule("every monday");
+        OrderItemRequest item = new OrderItemRequest();
+        item.setProductId(rice.getId());
+        item.setQuantity(5);
+        request.setItems(List.of(item));
+
+        assertThatThrownBy(() -> standingOrderService.createStandingOrder(request, retailer.getEmail()))
+                .hasMessageStartingWith("Invalid schedule");
+
+        request.setSchedule("0 0 6 * * MON");
+        StandingOrder created = standingOrderService.createStandingOrder(request, retailer.getEmail());
+        assertThat(created.getNextRunAt()).isAfter(LocalDateTime.now());
+        assertThat(created.getNextRunAt().getDayOfWeek()).isEqualTo(DayOfWeek.MONDAY);
+    }
+
+    private StandingOrder persistTemplate(LocalDateTime nextRunAt, boolean active) {
+        StandingOrder standingOrder = new StandingOrder();
+        standingOrder.setRetailer(retailer);
+        standingOrder.setSchedule("0 0 6 * * MON");
+        standingOrder.getItems().add(new StandingOrderItem(rice.getId(), 5));
+        standingOrder.setNextRunAt(nextRunAt);
+        standingOrder.setActive(active);
+        entityManager.persist(standingOrder);
+        return standingOrder;
+    }
+}
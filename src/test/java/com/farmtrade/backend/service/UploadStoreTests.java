@@ -0,0 +1,116 @@
+package com.farmtrade.backend.service;
+
+import com.farmtrade.backend.model.StoredFile;
+import com.farmtrade.backend.repository.StoredFileRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs without a test transaction, as uploads do: each reference count
+ * change commits on its own.
+ */
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(UploadStore.class)
+class UploadStoreTests {
+
+    @TempDir
+    static Path uploads;
+
+    @DynamicPropertySource
+    static void uploadDir(DynamicPropertyRegistry registry) {
+        registry.add("app.uploads.dir", uploads::toString);
+    }
+
+    @Autowired
+    private UploadStore uploadStore;
+
+    @Autowired
+    private StoredFileRepository storedFileRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void cleanUp() throws IOException {
+        jdbcTemplate.update("DELETE FROM stored_files");
+        FileSystemUtils.deleteRecursively(uploads.resolve(UploadStore.CONTENT_DIR));
+    }
+
+    @Test
+    void identicalUploadsAreStoredOnceUnderTheirHash() throws IOException {
+        StoredFile first = uploadStore.store(file("tomato.JPG", "same photo"));
+        StoredFile again = uploadStore.store(file("tomato-copy.png", "same photo"));
+        StoredFile other = uploadStore.store(file("onion.jpg", "another photo"));
+
+        assertThat(first.getHash()).hasSize(64).isEqualTo(again.getHash());
+        assertThat(UploadStore.urlOf(again)).isEqualTo(
+                "/uploads/sha256/" + first.getHash().substring(0, 2) + "/" + first.getHash() + ".jpg");
+        assertThat(other.getHash()).isNotEqualTo(first.getHash());
+        // Nothing uses an upload until it is attached
+        assertThat(storedFileRepository.findById(first.getHash()).orElseThrow().getRefCount()).isZero();
+        assertThat(Files.readString(uploads.resolve(first.getPath()))).isEqualTo("same photo");
+        assertThat(storedFiles()).hasSize(2);
+        try (Stream<Path> temps = Files.list(uploads.resolve("tmp"))) {
+            assertThat(temps).isEmpty();
+        }
+    }
+
+    @Test
+    void filesAreSweptOnlyOnceNothingReferencesThem() throws IOException {
+        StoredFile shared = uploadStore.store(file("a.jpg", "shared"));
+        StoredFile replaced = uploadStore.store(file("old.jpg", "replaced"));
+        StoredFile abandoned = uploadStore.store(file("never-saved.jpg", "abandoned"));
+        uploadStore.retain(UploadStore.urlOf(shared));
+        uploadStore.retain(UploadStore.urlOf(shared));
+        uploadStore.retain(UploadStore.urlOf(replaced));
+
+        uploadStore.release(UploadStore.urlOf(shared));
+        uploadStore.release("http://localhost:8080" + UploadStore.urlOf(replaced));
+        uploadStore.release("/uploads/0b7c1d2e-legacy_photo.jpg");
+        jdbcTemplate.update("UPDATE stored_files SET released_at = ?", LocalDateTime.now().minusDays(2));
+
+        assertThat(uploadStore.sweep()).isEqualTo(2);
+        assertThat(storedFileRepository.findById(replaced.getHash())).isEmpty();
+        assertThat(uploads.resolve(replaced.getPath())).doesNotExist();
+        assertThat(uploads.resolve(abandoned.getPath())).doesNotExist();
+        assertThat(storedFileRepository.findById(shared.getHash()).orElseThrow().getRefCount()).isEqualTo(1);
+        assertThat(uploads.resolve(shared.getPath())).exists();
+
+        // Uploading swept content again stores it afresh, with a new grace period
+        StoredFile back = uploadStore.store(file("new.jpg", "replaced"));
+        assertThat(back.getRefCount()).isZero();
+        assertThat(uploads.resolve(back.getPath())).exists();
+        assertThat(uploadStore.sweep()).isZero();
+    }
+
+    private Stream<Path> storedFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(uploads.resolve(UploadStore.CONTENT_DIR))) {
+            return files.filter(Files::isRegularFile).toList().stream();
+        }
+    }
+
+    private static MockMultipartFile file(String name, String content) {
+        return new MockMultipartFile("file", name, "image/jpeg", content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,237 @@
+package com.farmtrade.backend.service;
+
+import com.farmtrade.backend.dto.OrderItemRequest;
+import com.farmtrade.backend.dto.OrderRequest;
+import com.farmtrade.backend.model.*;
+import com.farmtrade.backend.repository.AnalyticsRepository;
+import com.farmtrade.backend.repository.LeaderboardRepository;
+import com.farmtrade.backend.repository.OrderBatchWriter;
+import com.farmtrade.backend.repository.OrderSearchRepository;
+import com.farmtrade.backend.repository.PasswordResetTokenRepository;
+import com.farmtrade.backend.repository.RollupRepository;
+import com.farmtrade.backend.repository.SalesLineRepository;
+import com.farmtrade.backend.repository.StandingOrderRepository;
+import com.farmtrade.backend.repository.StoredFileRepository;
+import com.farmtrade.backend.repository.UserBatchWriter;
+import com.farmtrade.backend.repository.UserRepository;
+import com.farmtrade.backend.repository.UserStatsRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs without a test transaction, since every job step commits on its own.
+ * A chunk size of 2 makes deleting a retailer with five orders take several
+ * steps.
+ */
+@DataJpaTest(properties = { "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "app.users.jobs.chunk-size=2" })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ UserJobService.class, UserBatchWriter.class, ProductService.class, OrderService.class, OrderBatchWriter.class,
+        OrderSearchRepository.class, StatsRollupService.class, RollupRepository.class, UserStatsService.class,
+        UserStatsRepository.class, LeaderboardService.class, LeaderboardRepository.class, SalesLineRepository.class,
+        OrderEvents.class, AnalyticsService.class, AnalyticsRepository.class, UploadStore.class })
+class UserJobServiceTests {
+
+    @Autowired
+    private UserJobService userJobService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private UserStatsService userStatsService;
+
+    @Autowired
+    private StatsRollupService statsRollupService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private StandingOrderRepository standingOrderRepository;
+
+    @Autowired
+    private PasswordResetTokenRepository passwordResetTokenRepository;
+
+    @Autowired
+    private StoredFileRepository storedFileRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User farmer;
+    private User retailer;
+    private Product rice;
+
+    @BeforeEach
+    void seed() {
+        farmer = userRepository.save(user("farmer@test.com", Role.FARMER));
+        retailer = userRepository.save(user("retailer@test.com", Role.RETAILER));
+        rice = productService.addProduct(product("Rice"), "farmer@test.com");
+    }
+
+    @AfterEach
+    void cleanUp() {
+        for (String table : List.of("stored_files", "user_job_items", "user_jobs", "user_stats", "rollup_hourly", "rollup_daily",
+                "standing_order_items", "standing_orders", "password_reset_token", "order_items", "order_farmers",
+                "orders", "products", "users")) {
+            jdbcTemplate.update("DELETE FROM " + table);
+        }
+    }
+
+    @Test
+    void deletingARetailerRemovesTheirOrdersInChunksAndResumesAfterARestart() {
+        for (int i = 1; i <= 5; i++) {
+            Long orderId = orderService.placeOrder(request(i), "retailer@test.com").getId();
+            orderService.cancelOrder(orderId, "retailer@test.com");
+        }
+        StandingOrder standing = new StandingOrder();
+        standing.setRetailer(retailer);
+        standing.setName("Weekly rice");
+        standing.setSchedule("0 0 6 * * MON");
+        StandingOrderItem line = new StandingOrderItem();
+        line.setProductId(rice.getId());
+        line.setQuantity(1);
+        standing.getItems().add(line);
+        standingOrderRepository.save(standing);
+        passwordResetTokenRepository.save(new PasswordResetToken("token", retailer));
+
+        UserJob job = userJobService.submit(UserJob.Type.DELETE, List.of(retailer.getId()), "admin@test.com");
+        // As a worker that stopped part way through would have left it
+        jdbcTemplate.update("UPDATE user_jobs SET status = 'RUNNING', lease_until = ? WHERE id = ?",
+                LocalDateTime.now().plusMinutes(5), job.getId());
+        assertThat(userJobService.processNext()).isFalse();
+        jdbcTemplate.update("UPDATE user_jobs SET lease_until = ? WHERE id = ?",
+                LocalDateTime.now().minusSeconds(1), job.getId());
+
+        assertThat(userJobService.processNext()).isTrue();
+
+        UserJob finished = userJobService.getJob(job.getId());
+        assertThat(finished.getStatus()).isEqualTo(UserJob.Status.COMPLETED);
+        assertThat(finished.getProcessed()).isEqualTo(1);
+        assertThat(finished.getFailed()).isZero();
+        assertThat(userRepository.existsById(retailer.getId())).isFalse();
+        assertThat(count("orders")).isZero();
+        assertThat(count("order_items")).isZero();
+        assertThat(count("standing_orders")).isZero();
+        assertThat(count("password_reset_token")).isZero();
+        UserStats farmerStats = userStatsService.getStats(farmer.getId());
+        assertThat(farmerStats.getOrderCount()).isZero();
+        assertThat(farmerStats.getOrderTotal()).isEqualTo(Money.ZERO);
+        assertThat(statsRollupService.getTotals().orders()).isZero();
+        assertThat(userStatsService.verifyAll()).isZero();
+    }
+
+    @Test
+    void failedUsersAreReportedAndTheRestGoAhead() {
+        User idle = user("idle@test.com", Role.FARMER);
+        idle.setProfilePhoto(storedFile("a", 1));
+        idle = userRepository.save(idle);
+        String grain = storedFile("b", 0);
+        Product wheat = product("Wheat");
+        wheat.setImageUrl(grain);
+        productService.addProduct(wheat, "idle@test.com");
+        Product millet = product("Millet");
+        millet.setImageUrl(grain);
+        productService.addProduct(millet, "idle@test.com");
+        productService.addProduct(product("Barley"), "idle@test.com");
+        assertThat(storedFileRepository.findById("b".repeat(64)).orElseThrow().getRefCount()).isEqualTo(2);
+        orderService.placeOrder(request(1), "retailer@test.com");
+
+        UserJob delete = userJobService.submit(UserJob.Type.DELETE, List.of(farmer.getId(), idle.getId(), -1L),
+                "admin@test.com");
+        UserJob reject = userJobService.submit(UserJob.Type.REJECT, List.of(farmer.getId(), retailer.getId(), -1L),
+                "admin@test.com");
+        assertThat(userJobService.processNext()).isTrue();
+        assertThat(userJobService.processNext()).isTrue();
+        assertThat(userJobService.processNext()).isFalse();
+
+        assertThat(userJobService.getJob(delete.getId()).getProcessed()).isEqualTo(3);
+        assertThat(userJobService.getJob(delete.getId()).getFailed()).isEqualTo(2);
+        assertThat(userJobService.getFailures(delete.getId())).extracting(UserJobItem::getError)
+                .containsExactly("Farmer has orders from retailers; reject the account instead", "User not found");
+        assertThat(userRepository.existsById(idle.getId())).isFalse();
+        assertThat(userRepository.existsById(farmer.getId())).isTrue();
+        assertThat(count("products")).isEqualTo(1);
+        // The deleted farmer's photo and product images are no longer in use
+        assertThat(storedFileRepository.findAll()).extracting(StoredFile::getRefCount).containsOnly(0);
+
+        assertThat(userJobService.getJob(reject.getId()).getFailed()).isEqualTo(1);
+        assertThat(userRepository.findById(farmer.getId()).orElseThrow().getStatus()).isEqualTo(UserStatus.REJECTED);
+        assertThat(userRepository.findById(retailer.getId()).orElseThrow().getStatus())
+                .isEqualTo(UserStatus.REJECTED);
+    }
+
+    @Test
+    void retailersWithPaidOrOpenOrdersAreNotDeleted() {
+        Long paid = orderService.placeOrder(request(1), "retailer@test.com").getId();
+        orderService.cancelOrder(orderService.placeOrder(request(2), "retailer@test.com").getId(),
+                "retailer@test.com");
+        jdbcTemplate.update("UPDATE orders SET status = 'DELIVERED', payment_status = 'COMPLETED' WHERE id = ?", paid);
+
+        UserJob job = userJobService.submit(UserJob.Type.DELETE, List.of(retailer.getId()), "admin@test.com");
+        userJobService.processNext();
+
+        assertThat(userJobService.getFailures(job.getId())).extracting(UserJobItem::getError)
+                .containsExactly("Retailer has paid, refunded or open orders; reject the account instead");
+        assertThat(userRepository.existsById(retailer.getId())).isTrue();
+        assertThat(count("orders")).isEqualTo(2);
+    }
+
+    private long count(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+    }
+
+    private OrderRequest request(int quantity) {
+        OrderItemRequest item = new OrderItemRequest();
+        item.setProductId(rice.getId());
+        item.setQuantity(quantity);
+        OrderRequest request = new OrderRequest();
+        request.setItems(List.of(item));
+        return request;
+    }
+
+    // A stored upload with the given number of references; returns its URL
+    private String storedFile(String hexDigit, int refCount) {
+        StoredFile file = new StoredFile();
+        file.setHash(hexDigit.repeat(64));
+        file.setPath(UploadStore.CONTENT_DIR + "/" + hexDigit.repeat(2) + "/" + file.getHash() + ".jpg");
+        file.setRefCount(refCount);
+        file.setCreatedAt(LocalDateTime.now());
+        return UploadStore.urlOf(storedFileRepository.save(file));
+    }
+
+    private static Product product(String name) {
+        Product product = new Product();
+        product.setName(name);
+        product.setPrice(BigDecimal.TEN);
+        product.setQuantity(100);
+        return product;
+    }
+
+    private static User user(String email, Role role) {
+        User user = new User();
+        user.setEmail(email);
+        user.setPassword("secret");
+        user.setFullName(email);
+        user.setRole(role);
+        user.setStatus(UserStatus.APPROVED);
+        return user;
+    }
+}
@@ -0,0 +1,161 @@
+package com.farmtrade.backend.service;
+
+import com.farmtrade.backend.dto.OrderItemRequest;
+import com.farmtrade.backend.dto.OrderRequest;
+import com.farmtrade.backend.model.*;
+import com.farmtrade.backend.repository.AnalyticsRepository;
+import com.farmtrade.backend.repository.LeaderboardRepository;
+import com.farmtrade.backend.repository.OrderBatchWriter;
+import com.farmtrade.backend.repository.OrderFarmerRepository;
+import com.farmtrade.backend.repository.OrderSearchRepository;
+import com.farmtrade.backend.repository.RollupRepository;
+import com.farmtrade.backend.repository.SalesLineRepository;
+import com.farmtrade.backend.repository.UserRepository;
+import com.farmtrade.backend.repository.UserStatsRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs without a test transaction, since counter rows are created and
+ * verified in their own transactions.
+ */
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ UserStatsService.class, UserStatsRepository.class, ProductService.class, OrderService.class,
+        OrderBatchWriter.class, OrderSearchRepository.class, StatsRollupService.class, RollupRepository.class,
+        LeaderboardService.class, LeaderboardRepository.class, SalesLineRepository.class, OrderEvents.class,
+        AnalyticsService.class, AnalyticsRepository.class, UploadStore.class })
+class UserStatsServiceTests {
+
+    @Autowired
+    private UserStatsService userStatsService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderFarmerRepository orderFarmerRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User farmer;
+    private User retailer;
+    private Product rice;
+
+    @BeforeEach
+    void seed() {
+        farmer = userRepository.save(user("farmer@test.com", Role.FARMER));
+        retailer = userRepository.save(user("retailer@test.com", Role.RETAILER));
+        rice = productService.addProduct(product("Rice"), "farmer@test.com");
+    }
+
+    @AfterEach
+    void cleanUp() {
+        for (String table : List.of("user_stats", "rollup_hourly", "rollup_daily", "order_items", "order_farmers",
+                "orders", "products", "users")) {
+            jdbcTemplate.update("DELETE FROM " + table);
+        }
+    }
+
+    @Test
+    void ordersPaymentsAndListingsAdjustTheCounters() {
+        Product wheat = productService.addProduct(product("Wheat"), "farmer@test.com");
+        productService.deleteProduct(wheat.getId(), "farmer@test.com");
+        Long paid = orderService.placeOrder(request(3), "retailer@test.com").getId();
+        Long cancelled = orderService.placeOrder(request(2), "retailer@test.com").getId();
+        orderService.cancelOrder(cancelled, "retailer@test.com");
+        setPaymentStatus(paid, PaymentStatus.COMPLETED);
+        // A repeated status changes nothing
+        setPaymentStatus(paid, PaymentStatus.COMPLETED);
+
+        UserStats farmerStats = userStatsService.getStats(farmer.getId());
+        assertThat(farmerStats.getOrderCount()).isEqualTo(2);
+        assertThat(farmerStats.getOrderTotal()).isEqualTo(Money.of(BigDecimal.valueOf(50)));
+        assertThat(farmerStats.getReceivedPayments()).isEqualTo(Money.of(BigDecimal.valueOf(30)));
+        assertThat(farmerStats.getActiveListings()).isEqualTo(1);
+        UserStats retailerStats = userStatsService.getStats(retailer.getId());
+        assertThat(retailerStats.getOrderCount()).isEqualTo(2);
+        assertThat(retailerStats.getOrderTotal()).isEqualTo(Money.of(BigDecimal.valueOf(50)));
+
+        setPaymentStatus(paid, PaymentStatus.REFUNDED);
+        assertThat(userStatsService.getStats(farmer.getId()).getReceivedPayments()).isEqualTo(Money.ZERO);
+        assertThat(userStatsService.verifyAll()).isZero();
+    }
+
+    @Test
+    void verificationCorrectsDriftAndFillsMissingRows() {
+        orderService.placeOrder(request(4), "retailer@test.com");
+        jdbcTemplate.update("UPDATE user_stats SET order_count = 7, active_listings = 0 WHERE user_id = ?",
+                farmer.getId());
+        jdbcTemplate.update("DELETE FROM user_stats WHERE user_id = ?", retailer.getId());
+
+        assertThat(userStatsService.verifyAll()).isEqualTo(2);
+
+        UserStats farmerStats = userStatsService.getStats(farmer.getId());
+        assertThat(farmerStats.getOrderCount()).isEqualTo(1);
+        assertThat(farmerStats.getActiveListings()).isEqualTo(1);
+        assertThat(farmerStats.getVerifiedAt()).isNotNull();
+        UserStats retailerStats = userStatsService.getStats(retailer.getId());
+        assertThat(retailerStats.getOrderCount()).isEqualTo(1);
+        assertThat(retailerStats.getOrderTotal()).isEqualTo(Money.of(BigDecimal.valueOf(40)));
+        assertThat(userStatsService.verifyAll()).isZero();
+    }
+
+    // What PaymentService and the webhook do for one order
+    private void setPaymentStatus(Long orderId, PaymentStatus status) {
+        transactionTemplate.executeWithoutResult(tx -> {
+            userStatsService.recordPaymentStatus(List.of(orderId), status);
+            orderFarmerRepository.updatePaymentStatusByOrderId(orderId, status);
+        });
+    }
+
+    private OrderRequest request(int quantity) {
+        OrderItemRequest item = new OrderItemRequest();
+        item.setProductId(rice.getId());
+        item.setQuantity(quantity);
+        OrderRequest request = new OrderRequest();
+        request.setItems(List.of(item));
+        return request;
+    }
+
+    private static Product product(String name) {
+        Product product = new Product();
+        product.setName(name);
+        product.setPrice(BigDecimal.TEN);
+        product.setQuantity(100);
+        return product;
+    }
+
+    private static User user(String email, Role role) {
+        User user = new User();
+        user.setEmail(email);
+        user.setPassword("secret");
+        user.setFullName(email);
+        user.setRole(role);
+        user.setStatus(UserStatus.APPROVED);
+        return user;
+    }
+}